@@ -0,0 +1,89 @@
+package com.example.fitness_tracker.benchmarks;
+
+import com.example.fitness_tracker.service.FitnessBatchCalculator;
+import com.example.fitness_tracker.service.LoadLevel;
+import com.example.fitness_tracker.service.ProgressStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетный расчет прогресса и нагрузки для когорты пользователей (FitnessBatchCalculator)
+ * в сравнении с последовательным расчетом по одному пользователю по тем же правилам.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchCalculatorBenchmark {
+    @Param({"100000", "1000000", "10000000"})
+    public int users;
+
+    private final FitnessBatchCalculator calculator = new FitnessBatchCalculator();
+    private LocalDate today;
+    private double[] currentWeights;
+    private double[] targetWeights;
+    private int[] targetEpochDays;
+    private int[] workouts;
+    private int[] avgDurations;
+    private double[] weeklyLoss;
+    private byte[] progressStatus;
+    private byte[] loadLevel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        today = LocalDate.now();
+        SplittableRandom random = new SplittableRandom(42);
+        currentWeights = new double[users];
+        targetWeights = new double[users];
+        targetEpochDays = new int[users];
+        workouts = new int[users];
+        avgDurations = new int[users];
+        for (int i = 0; i < users; i++) {
+            currentWeights[i] = 60 + random.nextDouble(60);
+            targetWeights[i] = currentWeights[i] - random.nextDouble(20);
+            // Небольшая доля сроков уже прошла
+            targetEpochDays[i] = (int) (today.toEpochDay() + random.nextInt(-10, 365));
+            workouts[i] = random.nextInt(0, 9);
+            avgDurations[i] = random.nextInt(15, 120);
+        }
+        weeklyLoss = new double[users];
+        progressStatus = new byte[users];
+        loadLevel = new byte[users];
+    }
+
+    @Benchmark
+    public byte[] batchProgress() {
+        calculator.calculateProgress(currentWeights, targetWeights, targetEpochDays, today, weeklyLoss, progressStatus);
+        return progressStatus;
+    }
+
+    @Benchmark
+    public byte[] batchOvertraining() {
+        calculator.checkOvertraining(workouts, avgDurations, loadLevel);
+        return loadLevel;
+    }
+
+    @Benchmark
+    public byte[] sequentialProgress() {
+        long todayEpochDay = today.toEpochDay();
+        for (int i = 0; i < users; i++) {
+            long days = targetEpochDays[i] - todayEpochDay;
+            double loss = ProgressStatus.weeklyLoss(currentWeights[i], targetWeights[i], days);
+            progressStatus[i] = ProgressStatus.of(days, loss).code();
+        }
+        return progressStatus;
+    }
+
+    @Benchmark
+    public byte[] sequentialOvertraining() {
+        for (int i = 0; i < users; i++) {
+            loadLevel[i] = LoadLevel.of(workouts[i], avgDurations[i]).code();
+        }
+        return loadLevel;
+    }
+}
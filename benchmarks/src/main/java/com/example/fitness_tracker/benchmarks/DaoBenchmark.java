@@ -0,0 +1,90 @@
+package com.example.fitness_tracker.benchmarks;
+
+import com.example.fitness_tracker.dao.UserDataDao;
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность и задержки операций UserDataDao для каждого источника данных
+ * при разном размере истории. PostgreSQL не входит в источники по умолчанию: его включают явно
+ * ({@code -p backend=postgres}) вместе с базой данных в свойстве {@code benchmark.jdbcUrl}.
+ * Операции сохранения увеличивают историю за время измерения; на больших размерах это не влияет
+ * на результат, на малых — учитывайте при сравнении.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final String SEARCH_TERM = "запись 4242";
+
+    @Param({"file", "memory", "mapped"})
+    public String backend;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int historySize;
+
+    private UserDataDao dao;
+    private int firstId;
+    private int lastId;
+    private int saved;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dao = HistoryFixtures.openEmpty(backend);
+        HistoryFixtures.fill(dao, historySize);
+        firstId = HistoryFixtures.boundaryId(dao, false);
+        lastId = HistoryFixtures.boundaryId(dao, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HistoryFixtures.close(dao);
+    }
+
+    @Benchmark
+    public void saveHistoryRecord() {
+        int i = saved++;
+        dao.saveHistoryRecord(HistoryFixtures.operationType(i), HistoryFixtures.details(i));
+    }
+
+    @Benchmark
+    public void saveUserData() {
+        dao.saveUserData(new UserData(80, 70, LocalDate.now().plusDays(30), 3, 45));
+    }
+
+    @Benchmark
+    public Optional<HistoryRecord> getHistoryRecordById() {
+        return dao.getHistoryRecordById(ThreadLocalRandom.current().nextInt(firstId, lastId + 1));
+    }
+
+    @Benchmark
+    public List<HistoryRecord> getHistoryPage() {
+        return dao.getHistoryPage(null, PAGE_SIZE, true);
+    }
+
+    @Benchmark
+    public List<HistoryRecord> searchHistoryRecords() {
+        return dao.searchHistoryRecords(SEARCH_TERM);
+    }
+
+    @Benchmark
+    public List<HistoryRecord> getHistoryRecordsSorted() {
+        return dao.getHistoryRecordsSorted("operation_date", false);
+    }
+
+    @Benchmark
+    public List<HistoryRecord> filterHistoryRecordsByType() {
+        return dao.filterHistoryRecordsByType(HistoryFixtures.OPERATION_TYPES[2]);
+    }
+}
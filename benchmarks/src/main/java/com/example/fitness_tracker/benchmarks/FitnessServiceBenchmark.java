@@ -0,0 +1,71 @@
+package com.example.fitness_tracker.benchmarks;
+
+import com.example.fitness_tracker.dao.InMemoryUserDataDao;
+import com.example.fitness_tracker.model.UserData;
+import com.example.fitness_tracker.service.FitnessService;
+import com.example.fitness_tracker.service.FitnessServiceImpl;
+import com.example.fitness_tracker.service.ResultFormatter;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчетные операции FitnessServiceImpl без обращения к источнику данных:
+ * готовым текстом и значениями с выводом текста в переиспользуемый StringBuilder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FitnessServiceBenchmark {
+    private FitnessService service;
+    private UserData progressData;
+    private UserData workloadData;
+    private double miles;
+    private final ResultFormatter formatter = ResultFormatter.getDefault();
+    private final StringBuilder text = new StringBuilder(256);
+
+    @Setup
+    public void setUp() {
+        service = new FitnessServiceImpl(InMemoryUserDataDao.getInstance());
+        progressData = new UserData(85.5, 72.0, LocalDate.now().plusDays(90), 0, 0);
+        workloadData = new UserData(0, 0, LocalDate.now(), 5, 75);
+        miles = 13.1;
+    }
+
+    @Benchmark
+    public String calculateProgress() {
+        return service.calculateProgress(progressData);
+    }
+
+    @Benchmark
+    public String checkOvertraining() {
+        return service.checkOvertraining(workloadData);
+    }
+
+    @Benchmark
+    public String convertMilesToKm() {
+        return service.convertMilesToKm(miles);
+    }
+
+    @Benchmark
+    public StringBuilder assessProgress() {
+        text.setLength(0);
+        return formatter.appendProgress(text, service.assessProgress(progressData));
+    }
+
+    @Benchmark
+    public StringBuilder assessLoad() {
+        text.setLength(0);
+        return formatter.appendLoad(text, service.assessLoad(workloadData));
+    }
+
+    @Benchmark
+    public StringBuilder convert() {
+        text.setLength(0);
+        return formatter.appendConversion(text, service.convert(miles));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.fitness_tracker.benchmarks;
+
+import com.example.fitness_tracker.dao.ConnectionPool;
+import com.example.fitness_tracker.dao.FileUserDataDao;
+import com.example.fitness_tracker.dao.InMemoryUserDataDao;
+import com.example.fitness_tracker.dao.MappedUserDataDao;
+import com.example.fitness_tracker.dao.PostgresUserDataDao;
+import com.example.fitness_tracker.dao.UserDataDao;
+import com.example.fitness_tracker.dao.WriteBatch;
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Подготовка источников данных для бенчмарков: очистка и заполнение историей заданного размера.
+ * Файловые источники работают с файлами в текущем каталоге, поэтому бенчмарки
+ * нужно запускать из отдельного каталога (например, benchmarks/), а не из каталога приложения.
+ * PostgreSQL подключается только к базе, явно указанной свойством {@value #JDBC_URL_PROPERTY},
+ * и очищаются в ней только записи пользователя {@value #BENCHMARK_USER_ID}.
+ */
+final class HistoryFixtures {
+    static final String[] OPERATION_TYPES = {"Расчет прогресса", "Анализ нагрузки", "Конвертация"};
+
+    static final String JDBC_URL_PROPERTY = "benchmark.jdbcUrl";
+    static final String JDBC_USER_PROPERTY = "benchmark.jdbcUser";
+    static final String JDBC_PASSWORD_PROPERTY = "benchmark.jdbcPassword";
+    // Пользователь, которого бенчмарк заполняет и очищает; данные остальных пользователей не затрагиваются
+    static final int BENCHMARK_USER_ID = Integer.MAX_VALUE;
+    private static final String[] USER_TABLES = {"history", "user_data", "weight_series"};
+
+    private static final int FILL_CHUNK_SIZE = 10_000;
+    private static final String[] FILE_DATA = {
+            "user_data.txt", "history.txt", "history_records.txt", "history_records.idx",
+            "history_records.wal", "history_records.nextid", "weight_series.dat"
+    };
+    private static final String[] MAPPED_DATA = {
+            "user_data.bin", "history.bin", "history_details.bin", "history_types.bin",
+            "history_types.txt", "weight_series.bin"
+    };
+
+    private HistoryFixtures() {
+    }
+
+    /**
+     * Открывает пустой источник данных.
+     * Вызывается один раз на форк JVM, до первого обращения к классу DAO.
+     * @param backend file, memory, mapped или postgres
+     * @return источник данных без записей
+     */
+    static UserDataDao openEmpty(String backend) {
+        switch (backend) {
+            case "file":
+                deleteFiles(FILE_DATA);
+                return new FileUserDataDao();
+            case "memory":
+                InMemoryUserDataDao memory = InMemoryUserDataDao.getInstance();
+                memory.clearAllData();
+                return memory;
+            case "mapped":
+                deleteFiles(MAPPED_DATA);
+                return MappedUserDataDao.getInstance();
+            case "postgres":
+                PostgresUserDataDao postgres = new PostgresUserDataDao(openPool(), BENCHMARK_USER_ID);
+                deleteUserRows(postgres);
+                return postgres;
+            default:
+                throw new IllegalArgumentException("Неизвестный источник данных: " + backend);
+        }
+    }
+
+    /**
+     * Заполняет историю пакетами записей.
+     * @param dao источник данных
+     * @param size количество записей
+     */
+    static void fill(UserDataDao dao, int size) {
+        WriteBatch batch = new WriteBatch();
+        for (int i = 0; i < size; i++) {
+            batch.saveHistoryRecord(operationType(i), details(i));
+            if (batch.size() == FILL_CHUNK_SIZE) {
+                dao.executeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            dao.executeBatch(batch);
+        }
+    }
+
+    /**
+     * Возвращает ID первой или последней записи истории.
+     */
+    static int boundaryId(UserDataDao dao, boolean last) {
+        List<HistoryRecord> page = dao.getHistoryPage(null, 1, last);
+        if (page.isEmpty()) {
+            throw new IllegalStateException("История пуста");
+        }
+        return page.get(0).getId();
+    }
+
+    static String operationType(int i) {
+        return OPERATION_TYPES[i % OPERATION_TYPES.length];
+    }
+
+    static String details(int i) {
+        return "Текущий вес: " + (60 + i % 60) + " кг, цель: " + (55 + i % 40) + " кг, запись " + i;
+    }
+
+    /**
+     * Закрывает общие ресурсы источника данных.
+     */
+    static void close(UserDataDao dao) {
+        if (dao instanceof MappedUserDataDao mapped) {
+            mapped.flush();
+        } else if (dao instanceof PostgresUserDataDao postgres) {
+            deleteUserRows(postgres);
+            postgres.getPool().close();
+        }
+    }
+
+    private static void deleteFiles(String[] names) {
+        try {
+            for (String name : names) {
+                Files.deleteIfExists(Path.of(name));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ConnectionPool openPool() {
+        String url = System.getProperty(JDBC_URL_PROPERTY);
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("Для бенчмарка PostgreSQL укажите базу данных: -D"
+                    + JDBC_URL_PROPERTY + "=jdbc:postgresql://host:port/database");
+        }
+        try {
+            return new ConnectionPool(url, System.getProperty(JDBC_USER_PROPERTY, "postgres"),
+                    System.getProperty(JDBC_PASSWORD_PROPERTY, "postgres"), 1, 8,
+                    Duration.ofSeconds(5), Duration.ofMinutes(5), Duration.ofMinutes(1));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось подключиться к " + url, e);
+        }
+    }
+
+    private static void deleteUserRows(PostgresUserDataDao dao) {
+        try (Connection connection = dao.getPool().getConnection()) {
+            for (String table : USER_TABLES) {
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "DELETE FROM " + table + " WHERE user_id = ?")) {
+                    stmt.setInt(1, BENCHMARK_USER_ID);
+                    stmt.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось удалить данные пользователя бенчмарка из PostgreSQL", e);
+        }
+    }
+}
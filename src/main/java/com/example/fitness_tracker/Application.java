@@ -1,15 +1,27 @@
 package com.example.fitness_tracker;
 
+import com.example.fitness_tracker.controller.FitnessTrackerController;
+import com.example.fitness_tracker.dao.MappedUserDataDao;
+import com.example.fitness_tracker.dao.PostgresUserDataDao;
+import com.example.fitness_tracker.metrics.MetricsRegistry;
+import com.example.fitness_tracker.server.FitnessHttpServer;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.time.Duration;
 
 /**
  * Главный класс приложения, запускающий JavaFX приложение.
+ * С параметром --server приложение запускается без окна как HTTP-сервер (см. {@link FitnessHttpServer}).
  */
 public class Application extends javafx.application.Application {
+    // Период вывода сводки метрик операций в лог
+    private static final Duration METRICS_REPORT_PERIOD = Duration.ofMinutes(1);
+
+    private FitnessTrackerController controller;
+
     /**
      * Запускает приложение и отображает главное окно.
      * @param stage Основное окно приложения
@@ -19,9 +31,24 @@ public class Application extends javafx.application.Application {
     public void start(Stage stage) throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(Application.class.getResource("hello-view.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 800, 700);
+        controller = fxmlLoader.getController();
         stage.setTitle("Фитнес-трекер");
         stage.setScene(scene);
         stage.show();
+        MetricsRegistry.getInstance().startReporting(METRICS_REPORT_PERIOD);
+    }
+
+    /**
+     * Освобождает ресурсы при закрытии приложения.
+     */
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+        PostgresUserDataDao.closeSharedPool();
+        MappedUserDataDao.flushAll();
+        MetricsRegistry.getInstance().stopReporting();
     }
 
     /**
@@ -29,6 +56,10 @@ public class Application extends javafx.application.Application {
      * @param args Аргументы командной строки
      */
     public static void main(String[] args) {
-        launch();
+        if (FitnessHttpServer.isServerMode(args)) {
+            FitnessHttpServer.launch(args, METRICS_REPORT_PERIOD);
+            return;
+        }
+        launch(args);
     }
 }
\ No newline at end of file
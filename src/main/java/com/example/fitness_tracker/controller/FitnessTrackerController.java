@@ -1,22 +1,39 @@
 package com.example.fitness_tracker.controller;
 
-import com.example.fitness_tracker.dao.FileUserDataDao;
+import com.example.fitness_tracker.dao.HistoryCursor;
 import com.example.fitness_tracker.dao.InMemoryUserDataDao;
-import com.example.fitness_tracker.dao.PostgresUserDataDao;
+import com.example.fitness_tracker.dao.ObservableHistoryAdapter;
+import com.example.fitness_tracker.dao.StorageBackend;
 import com.example.fitness_tracker.dao.UserDataDao;
 import com.example.fitness_tracker.model.UserData;
 import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.service.AsyncFitnessService;
 import com.example.fitness_tracker.service.FitnessService;
 import com.example.fitness_tracker.service.FitnessServiceImpl;
+import com.example.fitness_tracker.service.HistoryExportQuery;
+import com.example.fitness_tracker.service.MeteredFitnessService;
+import com.example.fitness_tracker.service.ResultFormatter;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
+import javafx.stage.FileChooser;
 
+import java.io.File;
 import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Основной контроллер приложения Fitness Tracker.
@@ -24,6 +41,8 @@ import java.util.List;
  * Обеспечивает взаимодействие между UI и сервисным слоем.
  */
 public class FitnessTrackerController {
+    private static final int HISTORY_PAGE_SIZE = 100;
+
     @FXML private TextField currentWeightField;
     @FXML private TextField targetWeightField;
     @FXML private TextField daysPeriod;
@@ -34,6 +53,7 @@ public class FitnessTrackerController {
     @FXML private Label recommendationResult;
     @FXML private Label conversionResult;
     @FXML private TableView<HistoryRecord> historyTable;
+    @FXML private Label importStatusLabel;
 
     @FXML private GridPane editForm;
     @FXML private TextField editIdField;
@@ -48,14 +68,79 @@ public class FitnessTrackerController {
     @FXML private RadioButton dbRadioButton;
     @FXML private RadioButton fileRadioButton;
     @FXML private RadioButton memoryRadioButton;
+    @FXML private RadioButton mappedRadioButton;
+    @FXML private TextField userIdField;
 
+    // Источник данных; DAO открывается для текущего пользователя
+    private StorageBackend storage;
+    private int userId = UserDataDao.DEFAULT_USER_ID;
     private UserDataDao dataSource;
     private FitnessService fitnessService;
+    // Операции с источником данных выполняются в виртуальных потоках, чтобы не блокировать UI
+    private final ExecutorService backgroundExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private AsyncFitnessService asyncService;
     private final ObservableList<HistoryRecord> historyData = FXCollections.observableArrayList();
+    // Текст результатов формируется здесь, сервис возвращает только значения
+    private final ResultFormatter formatter = ResultFormatter.getDefault();
+
+    // Состояние постраничной загрузки истории (только для неотфильтрованного списка)
+    private HistoryCursor historyCursor;
+    private boolean historyExhausted;
+    private boolean historyPaging;
+    private CompletableFuture<List<HistoryRecord>> pendingHistoryPage;
+    // История хранилища в памяти отображается целиком и обновляется самим хранилищем
+    private ObservableHistoryAdapter liveHistory;
+    private SortedList<HistoryRecord> liveHistoryView;
 
     public FitnessTrackerController() {
-        this.dataSource = new PostgresUserDataDao(); // По умолчанию выбираем базу данных
-        this.fitnessService = new FitnessServiceImpl(dataSource);
+        // По умолчанию выбираем базу данных; повторные запросы к БД и файлу обслуживаются из кэша
+        this.storage = StorageBackend.POSTGRES;
+        this.dataSource = storage.forUser(userId);
+        this.fitnessService = new MeteredFitnessService(new FitnessServiceImpl(dataSource), storage.getName());
+        this.asyncService = new AsyncFitnessService(fitnessService, backgroundExecutor, Platform::runLater);
+    }
+
+    /**
+     * Переключает источник данных и перезагружает историю.
+     * @param newStorage новый источник данных
+     */
+    private void switchDataSource(StorageBackend newStorage) {
+        storage = newStorage;
+        openDataSource();
+    }
+
+    /**
+     * Переключает пользователя в текущем источнике данных и перезагружает историю.
+     * @param newUserId ID пользователя, больше нуля
+     */
+    private void switchUser(int newUserId) {
+        if (newUserId <= 0) {
+            throw new IllegalArgumentException("User id must be positive: " + newUserId);
+        }
+        userId = newUserId;
+        openDataSource();
+    }
+
+    /**
+     * Открывает DAO текущего пользователя в текущем источнике.
+     * Незавершенные запросы к прежнему источнику отменяются.
+     */
+    private void openDataSource() {
+        asyncService.cancelPending();
+        dataSource = storage.forUser(userId);
+        fitnessService = new MeteredFitnessService(new FitnessServiceImpl(dataSource), storage.getName());
+        asyncService = new AsyncFitnessService(fitnessService, backgroundExecutor, Platform::runLater);
+        closeLiveHistory();
+        loadHistory(); // Перезагружаем историю при смене источника данных
+    }
+
+    /**
+     * Останавливает фоновые операции контроллера.
+     */
+    public void shutdown() {
+        closeLiveHistory();
+        asyncService.close();
+        backgroundExecutor.shutdownNow();
     }
 
     /**
@@ -69,34 +154,63 @@ public class FitnessTrackerController {
         dbRadioButton.setToggleGroup(dataSourceGroup);
         fileRadioButton.setToggleGroup(dataSourceGroup);
         memoryRadioButton.setToggleGroup(dataSourceGroup);
+        mappedRadioButton.setToggleGroup(dataSourceGroup);
 
         dbRadioButton.setSelected(true);
 
         dbRadioButton.setOnAction(event -> {
             if (dbRadioButton.isSelected()) {
-                dataSource = new PostgresUserDataDao();
-                fitnessService = new FitnessServiceImpl(dataSource);
-                loadHistory(); // Перезагружаем историю при смене источника данных
+                switchDataSource(StorageBackend.POSTGRES);
             }
         });
 
         fileRadioButton.setOnAction(event -> {
             if (fileRadioButton.isSelected()) {
-                dataSource = new FileUserDataDao();
-                fitnessService = new FitnessServiceImpl(dataSource);
-                loadHistory(); // Перезагружаем историю при смене источника данных
+                switchDataSource(StorageBackend.FILE);
             }
         });
 
         memoryRadioButton.setOnAction(event -> {
             if (memoryRadioButton.isSelected()) {
-                dataSource = InMemoryUserDataDao.getInstance();
-                fitnessService = new FitnessServiceImpl(dataSource);
-                loadHistory(); // Перезагружаем историю при смене источника данных
+                switchDataSource(StorageBackend.IN_MEMORY);
+            }
+        });
+
+        mappedRadioButton.setOnAction(event -> {
+            if (mappedRadioButton.isSelected()) {
+                switchDataSource(StorageBackend.MAPPED);
+            }
+        });
+
+        userIdField.setText(Integer.toString(userId));
+        userIdField.setOnAction(event -> {
+            try {
+                int newUserId = Integer.parseInt(userIdField.getText().trim());
+                if (newUserId <= 0) {
+                    showAlert("Ошибка", "ID пользователя должен быть положительным целым числом");
+                    userIdField.setText(Integer.toString(userId));
+                } else if (newUserId != userId) {
+                    switchUser(newUserId);
+                }
+            } catch (NumberFormatException e) {
+                showAlert("Ошибка", "ID пользователя должен быть положительным целым числом");
+                userIdField.setText(Integer.toString(userId));
             }
         });
 
         historyTable.setItems(historyData);
+        // Догружаем следующую страницу, когда таблица прокручена до конца
+        historyTable.skinProperty().addListener((observable, oldSkin, newSkin) -> {
+            for (Node node : historyTable.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL) {
+                    bar.valueProperty().addListener((o, oldValue, value) -> {
+                        if (value.doubleValue() >= bar.getMax()) {
+                            loadNextHistoryPage();
+                        }
+                    });
+                }
+            }
+        });
         loadHistory(); // Загружаем историю при старте
 
         // Инициализация ComboBox для сортировки и фильтрации
@@ -125,15 +239,12 @@ public class FitnessTrackerController {
             UserData userData = new UserData(currentWeight, targetWeight,
                     LocalDate.now().plusDays(days), 0, 0);
 
-            String result = fitnessService.calculateProgress(userData);
+            String result = formatter.formatProgress(fitnessService.assessProgress(userData));
             progressResult.setText(result);
 
-            // Сохраняем в выбранный источник данных
-            fitnessService.saveProgressCalculation(userData, result);
-
-            // Добавляем в историю
-            HistoryRecord record = new HistoryRecord(0, LocalDate.now(), "Расчет прогресса", result, true);
-            historyData.add(record);
+            // Сохраняем в выбранный источник данных и добавляем в историю после записи
+            asyncService.saveProgressCalculation(userData, result).whenComplete((ignored, error) ->
+                    addHistoryRecordAfterSave(error));
 
         } catch (Exception e) {
             progressResult.setText("Ошибка ввода данных!");
@@ -153,15 +264,12 @@ public class FitnessTrackerController {
 
             UserData userData = new UserData(0, 0, LocalDate.now(), workouts, duration);
 
-            String recommendation = fitnessService.checkOvertraining(userData);
+            String recommendation = formatter.formatLoad(fitnessService.assessLoad(userData));
             recommendationResult.setText(recommendation);
 
-            // Сохраняем в выбранный источник данных
-            fitnessService.saveWorkoutData(userData, recommendation);
-
-            // Добавляем в историю
-            HistoryRecord record = new HistoryRecord(0, LocalDate.now(), "Анализ нагрузки", recommendation, true);
-            historyData.add(record);
+            // Сохраняем в выбранный источник данных и добавляем в историю после записи
+            asyncService.saveWorkoutData(userData, recommendation).whenComplete((ignored, error) ->
+                    addHistoryRecordAfterSave(error));
 
         } catch (NumberFormatException e) {
             recommendationResult.setText("Ошибка ввода данных! Убедитесь, что введены корректные числа.");
@@ -179,15 +287,12 @@ public class FitnessTrackerController {
     private void convertToKm() {
         try {
             double miles = Double.parseDouble(milesField.getText());
-            String result = fitnessService.convertMilesToKm(miles);
+            String result = formatter.formatConversion(fitnessService.convert(miles));
             conversionResult.setText(result);
 
-            // Сохраняем в выбранный источник данных
-            fitnessService.saveConversion(miles, result);
-
-            // Добавляем в историю
-            HistoryRecord record = new HistoryRecord(0, LocalDate.now(), "Конвертация", result, true);
-            historyData.add(record);
+            // Сохраняем в выбранный источник данных и добавляем в историю после записи
+            asyncService.saveConversion(miles, result).whenComplete((ignored, error) ->
+                    addHistoryRecordAfterSave(error));
 
         } catch (Exception e) {
             conversionResult.setText("Ошибка ввода данных!");
@@ -196,17 +301,176 @@ public class FitnessTrackerController {
     }
 
     /**
-     * Загружает историю операций из выбранного источника данных.
+     * Показывает сохраненную операцию в таблице истории или сообщает об ошибке сохранения.
+     * Первая страница перечитывается из источника, поэтому новая запись попадает
+     * на свое место в порядке от новых к старым и с присвоенным ей ID.
+     * Результаты поиска и фильтрации не перезагружаются, а история в памяти
+     * обновляется в таблице сама. Вызывается в потоке JavaFX.
+     */
+    private void addHistoryRecordAfterSave(Throwable error) {
+        if (error != null) {
+            reportFailure("Ошибка сохранения", error);
+            return;
+        }
+        if (historyPaging) {
+            loadHistory();
+        }
+    }
+
+    /**
+     * Загружает первую страницу истории операций из выбранного источника данных.
+     * Следующие страницы подгружаются при прокрутке таблицы.
+     * Историю в памяти таблица показывает целиком через {@link ObservableHistoryAdapter}:
+     * изменения хранилища отражаются в ней без перезагрузки.
      */
     @FXML
     private void loadHistory() {
-        try {
-            List<HistoryRecord> records = dataSource.getHistoryRecords();
+        pendingHistoryPage = null;
+        historyCursor = null;
+        historyExhausted = false;
+        if (storage == StorageBackend.IN_MEMORY) {
+            historyPaging = false;
+            if (liveHistory == null) {
+                liveHistory = new ObservableHistoryAdapter(InMemoryUserDataDao.forUser(userId));
+                // От новых записей к старым, как в постраничной истории
+                liveHistoryView = new SortedList<>(liveHistory.getRecords(),
+                        Comparator.comparingInt(HistoryRecord::getId).reversed());
+            }
+            historyTable.setItems(liveHistoryView);
+            return;
+        }
+        historyTable.setItems(historyData);
+        historyData.clear();
+        historyPaging = true;
+        loadNextHistoryPage();
+    }
+
+    /**
+     * Отписывает таблицу от истории в памяти (при смене источника или пользователя).
+     */
+    private void closeLiveHistory() {
+        if (liveHistory != null) {
+            liveHistory.close();
+            liveHistory = null;
+            liveHistoryView = null;
+        }
+    }
+
+    /**
+     * Загружает следующую страницу истории (от новых записей к старым).
+     */
+    private void loadNextHistoryPage() {
+        if (!historyPaging || historyExhausted || pendingHistoryPage != null) {
+            return;
+        }
+        CompletableFuture<List<HistoryRecord>> request =
+                asyncService.loadHistoryPage(historyCursor, HISTORY_PAGE_SIZE, true);
+        pendingHistoryPage = request;
+        request.whenComplete((page, error) -> {
+            if (request != pendingHistoryPage) {
+                return; // Запрос устарел: история была перезагружена или отфильтрована
+            }
+            pendingHistoryPage = null;
+            if (error != null) {
+                reportFailure("Ошибка загрузки истории", error);
+                return;
+            }
+            historyExhausted = page.size() < HISTORY_PAGE_SIZE;
+            if (!page.isEmpty()) {
+                historyData.addAll(page);
+                historyCursor = HistoryCursor.after(page.get(page.size() - 1));
+            }
+        });
+    }
+
+    /**
+     * Импортирует историю и данные пользователя из файла XLSX или CSV в текущий источник данных.
+     * Ход импорта показывается рядом с кнопкой, по завершении история перезагружается.
+     */
+    @FXML
+    private void importData() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Импорт данных");
+        chooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Таблицы (*.xlsx, *.csv)", "*.xlsx", "*.csv"));
+        File file = chooser.showOpenDialog(historyTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        importStatusLabel.setText("Импорт...");
+        asyncService.importData(file.toPath(), progress -> importStatusLabel.setText(progress.toString()))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        importStatusLabel.setText("");
+                        reportFailure("Ошибка импорта", error);
+                        return;
+                    }
+                    importStatusLabel.setText(result.toString());
+                    if (!result.getErrors().isEmpty()) {
+                        showAlert("Отклоненные строки", String.join("\n", result.getErrors()));
+                    }
+                    loadHistory();
+                });
+    }
+
+    /**
+     * Выгружает историю в файл XLSX с текущими параметрами поиска, фильтра и сортировки.
+     */
+    @FXML
+    private void exportHistory() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Экспорт истории");
+        chooser.setInitialFileName("history.xlsx");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Книга Excel (*.xlsx)", "*.xlsx"));
+        File file = chooser.showSaveDialog(historyTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        String filterType = filterComboBox.getValue();
+        HistoryExportQuery query = new HistoryExportQuery()
+                .search(searchField.getText())
+                .operationType("Все".equals(filterType) ? null : filterType)
+                .sortBy(sortColumn(sortComboBox.getValue()), ascendingCheckBox.isSelected());
+        importStatusLabel.setText("Экспорт...");
+        asyncService.exportHistory(file.toPath(), query, progress -> importStatusLabel.setText(progress.toString()))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        importStatusLabel.setText("");
+                        reportFailure("Ошибка экспорта", error);
+                        return;
+                    }
+                    importStatusLabel.setText(result.toString());
+                });
+    }
+
+    /**
+     * Показывает результат поиска, сортировки или фильтрации вместо постраничной истории.
+     * @param request запрос, отменяющий предыдущие запросы истории
+     */
+    private void showHistoryResult(CompletableFuture<List<HistoryRecord>> request) {
+        historyPaging = false;
+        pendingHistoryPage = null;
+        historyTable.setItems(historyData);
+        request.whenComplete((records, error) -> {
+            if (error != null) {
+                reportFailure("Ошибка загрузки истории", error);
+                return;
+            }
             historyData.setAll(records);
-        } catch (Exception e) {
-            showAlert("Ошибка загрузки истории", e.getMessage());
-            e.printStackTrace();
+        });
+    }
+
+    /**
+     * Сообщает об ошибке фоновой операции. Отмененные запросы игнорируются.
+     */
+    private void reportFailure(String title, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        if (cause instanceof CancellationException) {
+            return;
         }
+        showAlert(title, cause.getMessage());
+        cause.printStackTrace();
     }
 
     private void showAlert(String title, String message) {
@@ -238,8 +502,12 @@ public class FitnessTrackerController {
     private void deleteHistoryRecord() {
         HistoryRecord selected = historyTable.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            dataSource.deleteHistoryRecord(selected.getId());
-            loadHistory(); // Обновляем таблицу
+            asyncService.deleteHistoryRecord(selected.getId()).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    reportFailure("Ошибка удаления", error);
+                }
+                loadHistory(); // Обновляем таблицу
+            });
         }
     }
 
@@ -262,8 +530,12 @@ public class FitnessTrackerController {
                     isActive
             );
 
-            dataSource.updateHistoryRecord(id, updated);
-            loadHistory(); // Обновляем таблицу
+            asyncService.updateHistoryRecord(id, updated).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    reportFailure("Ошибка сохранения", error);
+                }
+                loadHistory(); // Обновляем таблицу
+            });
             cancelEditing();
         } catch (Exception e) {
             showAlert("Ошибка сохранения", e.getMessage());
@@ -291,8 +563,7 @@ public class FitnessTrackerController {
         if (searchTerm.isEmpty()) {
             loadHistory();
         } else {
-            List<HistoryRecord> records = dataSource.searchHistoryRecords(searchTerm);
-            historyData.setAll(records);
+            showHistoryResult(asyncService.searchHistoryRecords(searchTerm));
         }
     }
 
@@ -303,17 +574,24 @@ public class FitnessTrackerController {
     private void handleSort() {
         String sortBy = sortComboBox.getValue();
         boolean ascending = ascendingCheckBox.isSelected();
+        String sortColumn = sortColumn(sortBy);
+        showHistoryResult(asyncService.getHistoryRecordsSorted(sortColumn != null ? sortColumn : "operation_date",
+                ascending));
+    }
 
-        String sortColumn;
+    /**
+     * Возвращает столбец сортировки для подписи из списка или null, если сортировка не выбрана.
+     */
+    private static String sortColumn(String sortBy) {
+        if (sortBy == null) {
+            return null;
+        }
         switch (sortBy) {
-            case "Дата": sortColumn = "operation_date"; break;
-            case "Тип операции": sortColumn = "operation_type"; break;
-            case "Детали": sortColumn = "details"; break;
-            default: sortColumn = "operation_date";
+            case "Дата": return "operation_date";
+            case "Тип операции": return "operation_type";
+            case "Детали": return "details";
+            default: return null;
         }
-
-        List<HistoryRecord> records = dataSource.getHistoryRecordsSorted(sortColumn, ascending);
-        historyData.setAll(records);
     }
 
     /**
@@ -325,8 +603,7 @@ public class FitnessTrackerController {
         if (filterType.equals("Все")) {
             loadHistory();
         } else {
-            List<HistoryRecord> records = dataSource.filterHistoryRecordsByType(filterType);
-            historyData.setAll(records);
+            showHistoryResult(asyncService.filterHistoryRecordsByType(filterType));
         }
     }
 
@@ -339,9 +616,15 @@ public class FitnessTrackerController {
         HistoryRecord selectedRecord = historyTable.getSelectionModel().getSelectedItem();
         if (selectedRecord != null) {
             boolean newStatus = !selectedRecord.isActive();
-            dataSource.updateHistoryRecordStatus(selectedRecord.getId(), newStatus);
-            selectedRecord.setActive(newStatus);
-            historyTable.refresh();
+            asyncService.updateHistoryRecordStatus(selectedRecord.getId(), newStatus)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            reportFailure("Ошибка изменения статуса", error);
+                            return;
+                        }
+                        selectedRecord.setActive(newStatus);
+                        historyTable.refresh();
+                    });
         } else {
             showAlert("Ошибка", "Не выбрана запись для изменения статуса");
         }
@@ -0,0 +1,493 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Кэширующая обертка над любым UserDataDao.
+ * Кэширует результаты запросов истории и поиска по ID с вытеснением давно не использованных
+ * записей (LRU) по суммарному весу и ограничением времени жизни (TTL).
+ * Вес списка или ряда веса равен количеству записей (точек) в нем, вес одиночного результата — 1.
+ * Запись через эту обертку точечно инвалидирует затронутые результаты:
+ * например, новая запись истории сбрасывает списки, страницы, поиск, фильтр по ее типу
+ * и выборки за периоды, включающие сегодняшний день, но не сбрасывает фильтры по другим типам,
+ * выборки за прошлые периоды и найденные по ID записи.
+ * Изменения, сделанные в обход обертки, становятся видны после истечения TTL.
+ */
+public class CachingUserDataDao implements UserDataDao {
+    private static final long DEFAULT_MAX_WEIGHT = 100_000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+
+    /**
+     * Вид кэшируемого запроса; определяет, какие записи затрагивает операция записи.
+     */
+    private enum Family {
+        ALL, SORTED, FILTER, SEARCH, PAGE, DATE_RANGE, RECORD, USER, SERIES
+    }
+
+    private static final class Key {
+        private final Family family;
+        private final List<Object> arguments;
+
+        Key(Family family, Object... arguments) {
+            this.family = family;
+            this.arguments = Arrays.asList(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && family == other.family && arguments.equals(other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * family.hashCode() + arguments.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long weight;
+        private final long expiresAt;
+
+        Entry(Object value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final UserDataDao delegate;
+    private final long maxWeight;
+    private final long ttlNanos;
+
+    // Порядок доступа: первым идет давно не использованный элемент
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+    // Увеличивается при каждой инвалидации; результат загрузки, начатой до нее, не кэшируется
+    private long version;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Создает кэш с настройками по умолчанию (100 000 записей, TTL 1 минута).
+     * @param delegate источник данных
+     */
+    public CachingUserDataDao(UserDataDao delegate) {
+        this(delegate, DEFAULT_MAX_WEIGHT, DEFAULT_TTL);
+    }
+
+    /**
+     * @param delegate источник данных
+     * @param maxWeight максимальный суммарный вес кэша (количество закэшированных записей)
+     * @param ttl время жизни закэшированного результата
+     */
+    public CachingUserDataDao(UserDataDao delegate, long maxWeight, Duration ttl) {
+        if (maxWeight <= 0 || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Invalid cache settings");
+        }
+        this.delegate = delegate;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Возвращает источник данных, который кэширует эта обертка.
+     */
+    public UserDataDao getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public int getUserId() {
+        return delegate.getUserId();
+    }
+
+    @Override
+    public void saveUserData(UserData userData) {
+        LocalDate before = LocalDate.now();
+        delegate.saveUserData(userData);
+        invalidateSavedUsers(before, LocalDate.now());
+    }
+
+    @Override
+    public void saveHistoryRecord(String operationType, String details) {
+        // Дата записи — текущий день; фиксируем его до и после записи на случай смены суток
+        LocalDate before = LocalDate.now();
+        delegate.saveHistoryRecord(operationType, details);
+        Set<LocalDate> days = Set.copyOf(List.of(before, LocalDate.now()));
+        invalidateHistoryLists(Collections.singleton(operationType), days);
+    }
+
+    @Override
+    public int saveHistoryRecord(HistoryRecord record) {
+        LocalDate before = LocalDate.now();
+        int id = delegate.saveHistoryRecord(record);
+        // Запись без даты может получить от хранилища текущий день, как в saveHistoryRecord(type, details)
+        Set<LocalDate> days = record.getDate() != null
+                ? Set.of(record.getDate())
+                : Set.copyOf(List.of(before, LocalDate.now()));
+        invalidateHistoryLists(Collections.singleton(record.getOperationType()), days);
+        return id;
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecords() {
+        return cachedList(new Key(Family.ALL), delegate::getHistoryRecords);
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryPage(HistoryCursor after, int limit, boolean descending) {
+        Key key = after == null
+                ? new Key(Family.PAGE, null, 0, limit, descending)
+                : new Key(Family.PAGE, after.getDate(), after.getId(), limit, descending);
+        return cachedList(key, () -> delegate.getHistoryPage(after, limit, descending));
+    }
+
+    @Override
+    public WeightSeries.Slice getWeightSeries(LocalDate from, LocalDate to) {
+        return cached(new Key(Family.SERIES, from, to), () -> delegate.getWeightSeries(from, to), -1);
+    }
+
+    @Override
+    public Optional<UserData> getUserDataById(int id) {
+        return cached(new Key(Family.USER, id), () -> delegate.getUserDataById(id), 1);
+    }
+
+    @Override
+    public void updateUserData(int id, UserData userData) {
+        delegate.updateUserData(id, userData);
+        invalidate((key, value) -> key.family == Family.USER && key.arguments.get(0).equals(id));
+    }
+
+    @Override
+    public void deleteUserData(int id) {
+        delegate.deleteUserData(id);
+        // Некоторые реализации адресуют данные по индексу, и удаление сдвигает последующие записи
+        invalidate((key, value) -> key.family == Family.USER);
+    }
+
+    @Override
+    public Optional<HistoryRecord> getHistoryRecordById(int id) {
+        return cached(new Key(Family.RECORD, id), () -> delegate.getHistoryRecordById(id), 1);
+    }
+
+    @Override
+    public void updateHistoryRecord(int id, HistoryRecord record) {
+        HistoryRecord previous = cachedRecord(id);
+        delegate.updateHistoryRecord(id, record);
+        invalidateRecord(id, previous, record);
+    }
+
+    @Override
+    public void deleteHistoryRecord(int id) {
+        HistoryRecord previous = cachedRecord(id);
+        delegate.deleteHistoryRecord(id);
+        invalidateRecord(id, previous, null);
+    }
+
+    @Override
+    public void updateHistoryRecordStatus(int id, boolean newStatus) {
+        HistoryRecord previous = cachedRecord(id);
+        delegate.updateHistoryRecordStatus(id, newStatus);
+        invalidateRecord(id, previous, null);
+    }
+
+    @Override
+    public List<HistoryRecord> searchHistoryRecords(String searchTerm) {
+        return cachedList(new Key(Family.SEARCH, searchTerm), () -> delegate.searchHistoryRecords(searchTerm));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending) {
+        return cachedList(new Key(Family.SORTED, sortBy, ascending),
+                () -> delegate.getHistoryRecordsSorted(sortBy, ascending));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending, int limit) {
+        return cachedList(new Key(Family.SORTED, sortBy, ascending, limit),
+                () -> delegate.getHistoryRecordsSorted(sortBy, ascending, limit));
+    }
+
+    @Override
+    public List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
+        return cachedList(new Key(Family.FILTER, operationType),
+                () -> delegate.filterHistoryRecordsByType(operationType));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecordsByDateRange(LocalDate from, LocalDate to) {
+        return cachedList(new Key(Family.DATE_RANGE, from, to),
+                () -> delegate.getHistoryRecordsByDateRange(from, to));
+    }
+
+    // Потоковые запросы предназначены для больших выборок и не кэшируются
+
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecords() {
+        return delegate.streamHistoryRecords();
+    }
+
+    @Override
+    public Stream<HistoryRecord> streamSearchHistoryRecords(String searchTerm) {
+        return delegate.streamSearchHistoryRecords(searchTerm);
+    }
+
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecordsSorted(String sortBy, boolean ascending) {
+        return delegate.streamHistoryRecordsSorted(sortBy, ascending);
+    }
+
+    @Override
+    public void executeBatch(WriteBatch batch) {
+        LocalDate before = LocalDate.now();
+        try {
+            delegate.executeBatch(batch);
+        } finally {
+            // Пакет, завершившийся ошибкой, мог быть записан частично
+            invalidateBatch(batch, before, LocalDate.now());
+        }
+    }
+
+    private void invalidateBatch(WriteBatch batch, LocalDate before, LocalDate after) {
+        Set<String> types = new HashSet<>();
+        Set<LocalDate> days = new HashSet<>();
+        boolean userData = false;
+        for (WriteBatch.Operation operation : batch.getOperations()) {
+            if (operation instanceof WriteBatch.SaveHistoryRecord save) {
+                types.add(save.getOperationType());
+                if (save.getDate() != null) {
+                    days.add(save.getDate());
+                } else {
+                    days.add(before);
+                    days.add(after);
+                }
+            } else if (operation instanceof WriteBatch.SaveUserData) {
+                userData = true;
+            }
+        }
+        if (!types.isEmpty()) {
+            invalidateHistoryLists(types, days);
+        }
+        if (userData) {
+            invalidateSavedUsers(before, after);
+        }
+    }
+
+    /**
+     * Очищает кэш полностью.
+     */
+    public void invalidateAll() {
+        invalidate((key, value) -> true);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Количество записей, вытесненных из-за превышения максимального веса.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Количество записей, удаленных по истечении TTL.
+     */
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    /**
+     * Количество записей, удаленных при инвалидации после записи.
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachingUserDataDao[entries=%d, weight=%d/%d, hits=%d, misses=%d, evictions=%d, "
+                        + "expirations=%d, invalidations=%d]",
+                getSize(), getWeight(), maxWeight, getHitCount(), getMissCount(), getEvictionCount(),
+                getExpirationCount(), getInvalidationCount());
+    }
+
+    private List<HistoryRecord> cachedList(Key key, Supplier<List<HistoryRecord>> loader) {
+        List<HistoryRecord> records = cached(key, () -> List.copyOf(loader.get()), -1);
+        // Вызывающий код может изменять список, поэтому возвращаем копию
+        return new ArrayList<>(records);
+    }
+
+    /**
+     * Возвращает закэшированный результат или загружает его.
+     * @param weight вес результата; -1 - размер списка или ряда
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(Key key, Supplier<T> loader, long weight) {
+        long loadVersion;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hitCount.incrementAndGet();
+                    return (T) entry.value;
+                }
+                removeEntry(key);
+                expirationCount.incrementAndGet();
+            }
+            missCount.incrementAndGet();
+            loadVersion = version;
+        }
+
+        T value = loader.get();
+        long valueWeight = weight >= 0 ? weight : Math.max(1, sizeOf(value));
+        synchronized (this) {
+            if (loadVersion == version && valueWeight <= maxWeight) {
+                Entry previous = entries.put(key, new Entry(value, valueWeight, System.nanoTime() + ttlNanos));
+                if (previous != null) {
+                    totalWeight -= previous.weight;
+                }
+                totalWeight += valueWeight;
+                evictToMaxWeight();
+            }
+        }
+        return value;
+    }
+
+    private void evictToMaxWeight() {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            totalWeight -= eldest.getValue().weight;
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private void removeEntry(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+    }
+
+    /**
+     * Удаляет из кэша результаты, для которых выполняется условие (ключ, закэшированное значение).
+     */
+    private synchronized void invalidate(BiPredicate<Key, Object> affected) {
+        version++;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (affected.test(entry.getKey(), entry.getValue().value)) {
+                totalWeight -= entry.getValue().weight;
+                iterator.remove();
+                invalidationCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Инвалидирует результаты, которые может изменить новая запись истории.
+     * Закэшированные отсутствующие записи по ID тоже сбрасываются: новая запись могла получить этот ID.
+     * @param types типы новых записей
+     * @param days дни новых записей
+     */
+    private void invalidateHistoryLists(Set<String> types, Set<LocalDate> days) {
+        invalidate((key, value) -> switch (key.family) {
+            case ALL, SORTED, SEARCH, PAGE -> true;
+            case FILTER -> types.stream().anyMatch(type -> filterMatches(key, type));
+            case DATE_RANGE -> days.stream().anyMatch(day -> rangeContains(key, day));
+            case RECORD -> isAbsent(value);
+            case USER, SERIES -> false;
+        });
+    }
+
+    /**
+     * Инвалидирует результаты, содержащие измененную или удаленную запись.
+     * @param previous закэшированная прежняя версия записи или null, если она неизвестна
+     * @param current новая версия записи или null, если тип и дата не менялись
+     */
+    private void invalidateRecord(int id, HistoryRecord previous, HistoryRecord current) {
+        invalidate((key, value) -> switch (key.family) {
+            case ALL, SORTED, SEARCH, PAGE -> true;
+            case FILTER -> previous == null || filterMatches(key, previous.getOperationType())
+                    || (current != null && filterMatches(key, current.getOperationType()));
+            case DATE_RANGE -> previous == null || rangeContains(key, previous.getDate())
+                    || (current != null && rangeContains(key, current.getDate()));
+            case RECORD -> key.arguments.get(0).equals(id);
+            case USER, SERIES -> false;
+        });
+    }
+
+    private static boolean filterMatches(Key key, String operationType) {
+        Object filtered = key.arguments.get(0);
+        return filtered == null || operationType == null || ((String) filtered).equalsIgnoreCase(operationType);
+    }
+
+    private static boolean rangeContains(Key key, LocalDate date) {
+        LocalDate from = (LocalDate) key.arguments.get(0);
+        LocalDate to = (LocalDate) key.arguments.get(1);
+        return date == null || (!date.isBefore(from) && !date.isAfter(to));
+    }
+
+    /**
+     * Инвалидирует результаты, которые могут измениться после сохранения данных пользователя:
+     * отсутствующие данные по ID и ряды веса за периоды, включающие день сохранения.
+     * @param firstDay первый возможный день новой точки ряда
+     * @param lastDay последний возможный день новой точки ряда
+     */
+    private void invalidateSavedUsers(LocalDate firstDay, LocalDate lastDay) {
+        invalidate((key, value) -> switch (key.family) {
+            case USER -> isAbsent(value);
+            case SERIES -> rangeContains(key, firstDay) || rangeContains(key, lastDay);
+            default -> false;
+        });
+    }
+
+    private static int sizeOf(Object value) {
+        return value instanceof WeightSeries.Slice slice ? slice.size() : ((List<?>) value).size();
+    }
+
+    private static boolean isAbsent(Object value) {
+        return value instanceof Optional<?> optional && optional.isEmpty();
+    }
+
+    /**
+     * Возвращает закэшированную запись истории или null, если ее нет в кэше.
+     */
+    private synchronized HistoryRecord cachedRecord(int id) {
+        Entry entry = entries.get(new Key(Family.RECORD, id));
+        if (entry != null && entry.value instanceof Optional<?> optional && optional.isPresent()) {
+            return (HistoryRecord) optional.get();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Потокобезопасное хранилище записей истории с доступом по ID за O(1).
+ * Записи лежат в неизменяемых блоках фиксированного размера; ID записи определяет сегмент, блок и позицию.
+ * Сегменты создаются по мере роста ID и никогда не заменяются. Запись копирует один блок и публикует его
+ * через CAS (без блокировок), поэтому снимок хранилища — лишь копия ссылок на блоки, и читатели работают
+ * с ним без блокировок и без копирования записей.
+ * Записи в хранилище не изменяются на месте: изменение заменяет объект записи.
+ * <p>
+ * Изменения одной записи вместе с вызовами слушателей выполняются под блокировкой полосы ID,
+ * поэтому слушатели получают изменения каждой записи в том порядке, в каком они применены,
+ * а индексы не остаются со старыми ключами. Изменения разных полос не блокируют друг друга.
+ */
+class ConcurrentHistoryStore {
+    private static final int CHUNK_BITS = 9;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    // Сегментов достаточно для всех положительных int ID
+    private static final int SEGMENT_COUNT = 1 << (31 - CHUNK_BITS - SEGMENT_BITS);
+    // Количество полос блокировок изменений (степень двойки)
+    private static final int STRIPES = 64;
+
+    /**
+     * Слушатель изменений хранилища. Вызывается в потоке, выполнившем изменение,
+     * под блокировкой полосы ID записи.
+     */
+    interface Listener {
+        void added(HistoryRecord record);
+
+        void updated(HistoryRecord previous, HistoryRecord current);
+
+        void removed(HistoryRecord record);
+
+        void cleared();
+    }
+
+    /**
+     * Неизменяемый блок записей; пустые позиции — удаленные или еще не выданные ID.
+     */
+    private static final class Chunk {
+        private static final Chunk EMPTY = new Chunk(new HistoryRecord[CHUNK_SIZE], 0);
+
+        private final HistoryRecord[] slots;
+        private final int count;
+
+        Chunk(HistoryRecord[] slots, int count) {
+            this.slots = slots;
+            this.count = count;
+        }
+
+        Chunk with(int slot, HistoryRecord record) {
+            HistoryRecord[] copy = slots.clone();
+            HistoryRecord previous = copy[slot];
+            copy[slot] = record;
+            int delta = (record != null ? 1 : 0) - (previous != null ? 1 : 0);
+            return new Chunk(copy, count + delta);
+        }
+    }
+
+    private volatile AtomicReferenceArray<AtomicReferenceArray<Chunk>> segments =
+            new AtomicReferenceArray<>(SEGMENT_COUNT);
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final AtomicInteger size = new AtomicInteger();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Object[] stripes = new Object[STRIPES];
+
+    ConcurrentHistoryStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Добавляет запись с новым ID.
+     * @return сохраненная запись
+     */
+    HistoryRecord add(LocalDate date, String operationType, String details, boolean active) {
+        int id = nextId.getAndIncrement();
+        HistoryRecord record = new HistoryRecord(id, date, operationType, details, active);
+        synchronized (stripe(id)) {
+            swap(id, current -> record, true);
+            size.incrementAndGet();
+            for (Listener listener : listeners) {
+                listener.added(record);
+            }
+        }
+        return record;
+    }
+
+    Optional<HistoryRecord> get(int id) {
+        return Optional.ofNullable(find(id));
+    }
+
+    /**
+     * Заменяет существующую запись результатом функции.
+     * Функция может быть вызвана повторно при конкурентной записи в тот же блок.
+     * @return прежняя запись или null, если записи с таким ID нет
+     */
+    HistoryRecord replace(int id, UnaryOperator<HistoryRecord> update) {
+        HistoryRecord[] current = new HistoryRecord[1];
+        synchronized (stripe(id)) {
+            HistoryRecord previous = swap(id, record -> current[0] = update.apply(record), false);
+            if (previous != null) {
+                for (Listener listener : listeners) {
+                    listener.updated(previous, current[0]);
+                }
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * Удаляет запись.
+     * @return удаленная запись или null, если записи с таким ID нет
+     */
+    HistoryRecord remove(int id) {
+        synchronized (stripe(id)) {
+            HistoryRecord previous = swap(id, current -> null, false);
+            if (previous != null) {
+                size.decrementAndGet();
+                for (Listener listener : listeners) {
+                    listener.removed(previous);
+                }
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * Удаляет все записи и начинает нумерацию ID заново.
+     */
+    synchronized void clear() {
+        segments = new AtomicReferenceArray<>(SEGMENT_COUNT);
+        nextId.set(1);
+        size.set(0);
+        for (Listener listener : listeners) {
+            listener.cleared();
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Возвращает неизменяемый снимок хранилища: записи в порядке ID на момент вызова.
+     * Стоимость — O(количество блоков), записи не копируются.
+     */
+    List<HistoryRecord> snapshot() {
+        AtomicReferenceArray<AtomicReferenceArray<Chunk>> current = segments;
+        int used = chunkOf(Math.max(nextId.get() - 1, 0)) + 1;
+        Chunk[] chunks = new Chunk[used];
+        for (int i = 0; i < used; i++) {
+            AtomicReferenceArray<Chunk> segment = current.get(i >>> SEGMENT_BITS);
+            Chunk chunk = segment == null ? null : segment.get(i & (SEGMENT_SIZE - 1));
+            chunks[i] = chunk != null ? chunk : Chunk.EMPTY;
+        }
+        return new Snapshot(chunks);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private Object stripe(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    private HistoryRecord find(int id) {
+        if (id <= 0) {
+            return null;
+        }
+        int chunkIndex = chunkOf(id);
+        AtomicReferenceArray<Chunk> segment = segments.get(chunkIndex >>> SEGMENT_BITS);
+        if (segment == null) {
+            return null;
+        }
+        Chunk chunk = segment.get(chunkIndex & (SEGMENT_SIZE - 1));
+        return chunk == null ? null : chunk.slots[slotOf(id)];
+    }
+
+    /**
+     * Атомарно заменяет запись в позиции ID.
+     * @param insert true - позиция должна быть пустой (новая запись)
+     * @return прежняя запись; null, если позиция была пуста (при insert=false ничего не меняется)
+     */
+    private HistoryRecord swap(int id, UnaryOperator<HistoryRecord> update, boolean insert) {
+        if (id <= 0) {
+            return null;
+        }
+        int chunkIndex = chunkOf(id);
+        int position = chunkIndex & (SEGMENT_SIZE - 1);
+        int slot = slotOf(id);
+        AtomicReferenceArray<Chunk> segment = insert ? segment(chunkIndex >>> SEGMENT_BITS)
+                : segments.get(chunkIndex >>> SEGMENT_BITS);
+        if (segment == null) {
+            return null;
+        }
+        while (true) {
+            Chunk chunk = segment.get(position);
+            Chunk base = chunk != null ? chunk : Chunk.EMPTY;
+            HistoryRecord previous = base.slots[slot];
+            if (previous == null && !insert) {
+                return null;
+            }
+            if (segment.compareAndSet(position, chunk, base.with(slot, update.apply(previous)))) {
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Возвращает сегмент, создавая его при первом обращении.
+     */
+    private AtomicReferenceArray<Chunk> segment(int index) {
+        AtomicReferenceArray<AtomicReferenceArray<Chunk>> current = segments;
+        AtomicReferenceArray<Chunk> segment = current.get(index);
+        if (segment == null) {
+            current.compareAndSet(index, null, new AtomicReferenceArray<>(SEGMENT_SIZE));
+            segment = current.get(index);
+        }
+        return segment;
+    }
+
+    private static int chunkOf(int id) {
+        return id >>> CHUNK_BITS;
+    }
+
+    private static int slotOf(int id) {
+        return id & (CHUNK_SIZE - 1);
+    }
+
+    /**
+     * Неизменяемое представление снимка в виде списка.
+     * Доступ по позиции находит блок двоичным поиском по префиксным суммам.
+     */
+    private static final class Snapshot extends AbstractList<HistoryRecord> implements RandomAccess {
+        private final Chunk[] chunks;
+        private final int[] prefix;
+
+        Snapshot(Chunk[] chunks) {
+            this.chunks = chunks;
+            this.prefix = new int[chunks.length + 1];
+            for (int i = 0; i < chunks.length; i++) {
+                prefix[i + 1] = prefix[i] + chunks[i].count;
+            }
+        }
+
+        @Override
+        public int size() {
+            return prefix[chunks.length];
+        }
+
+        @Override
+        public HistoryRecord get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int position = Arrays.binarySearch(prefix, index + 1);
+            int chunkIndex = position >= 0 ? position - 1 : -position - 2;
+            // Для повторяющихся сумм (пустые блоки) бинарный поиск может вернуть любой из них
+            while (chunkIndex > 0 && prefix[chunkIndex] > index) {
+                chunkIndex--;
+            }
+            while (prefix[chunkIndex + 1] <= index) {
+                chunkIndex++;
+            }
+            int remaining = index - prefix[chunkIndex];
+            for (HistoryRecord record : chunks[chunkIndex].slots) {
+                if (record != null && remaining-- == 0) {
+                    return record;
+                }
+            }
+            throw new IllegalStateException("Inconsistent chunk count");
+        }
+
+        @Override
+        public Iterator<HistoryRecord> iterator() {
+            return new Iterator<>() {
+                private int chunkIndex;
+                private int slot = -1;
+                private HistoryRecord next = advance();
+
+                private HistoryRecord advance() {
+                    while (chunkIndex < chunks.length) {
+                        HistoryRecord[] slots = chunks[chunkIndex].slots;
+                        while (++slot < slots.length) {
+                            if (slots[slot] != null) {
+                                return slots[slot];
+                            }
+                        }
+                        chunkIndex++;
+                        slot = -1;
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public HistoryRecord next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    HistoryRecord current = next;
+                    next = advance();
+                    return current;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.fitness_tracker.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный пул JDBC-соединений.
+ * Поддерживает минимальный и максимальный размер, проверку соединения при выдаче,
+ * вытеснение простаивающих соединений, обнаружение утечек и метрики ожидания.
+ * Выданное соединение возвращается в пул вызовом {@link Connection#close()}.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long idleTimeoutNanos;
+    private final long leakThresholdNanos;
+
+    private final BlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<Connection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitTimeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitObservedNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    /**
+     * Простаивающее физическое соединение и время его возврата в пул.
+     */
+    private static final class IdleConnection {
+        final Connection connection;
+        final long returnedAt;
+
+        IdleConnection(Connection connection, long returnedAt) {
+            this.connection = connection;
+            this.returnedAt = returnedAt;
+        }
+    }
+
+    /**
+     * Сведения о выданном соединении для обнаружения утечек.
+     */
+    private static final class Borrow {
+        final Connection physical;
+        final long borrowedAt;
+        final Throwable borrowSite;
+        volatile boolean leakReported;
+
+        Borrow(Connection physical, long borrowedAt, Throwable borrowSite) {
+            this.physical = physical;
+            this.borrowedAt = borrowedAt;
+            this.borrowSite = borrowSite;
+        }
+    }
+
+    /**
+     * Создает пул и открывает минимальное количество соединений.
+     * @param url JDBC URL базы данных
+     * @param user имя пользователя
+     * @param password пароль
+     * @param minSize минимальное количество соединений в пуле
+     * @param maxSize максимальное количество соединений
+     * @param maxWait максимальное время ожидания свободного соединения
+     * @param idleTimeout время простоя, после которого лишнее соединение закрывается
+     * @param leakThreshold время удержания соединения, после которого сообщается об утечке
+     * @throws SQLException если не удалось открыть начальные соединения
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          Duration maxWait, Duration idleTimeout, Duration leakThreshold) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Некорректные размеры пула: " + minSize + ".." + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.leakThresholdNanos = leakThreshold.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+
+        try {
+            for (int i = 0; i < minSize; i++) {
+                idle.offerFirst(new IdleConnection(openPhysical(), System.nanoTime()));
+            }
+        } catch (SQLException e) {
+            idle.forEach(c -> discard(c.connection));
+            throw e;
+        }
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = idleTimeout.toMillis();
+        if (leakThresholdNanos > 0) {
+            periodMillis = Math.min(periodMillis, leakThreshold.toMillis());
+        }
+        long period = Math.max(100, periodMillis / 2);
+        maintenance.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдает соединение из пула, при необходимости ожидая освобождения.
+     * Простаивающее соединение проверяется перед выдачей; неисправное заменяется новым.
+     * @return соединение, которое нужно закрыть для возврата в пул
+     * @throws SQLException если пул закрыт, истекло ожидание или соединение не открылось
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                waitTimeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Нет свободных соединений за " +
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " мс");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitObservedNanos.accumulateAndGet(waited, Math::max);
+        borrowCount.incrementAndGet();
+
+        try {
+            Connection physical = takeValidIdle();
+            if (physical == null) {
+                physical = openPhysical();
+            }
+            Connection proxy = wrap(physical);
+            borrowed.put(proxy, new Borrow(physical, System.nanoTime(),
+                    leakThresholdNanos > 0 ? new Throwable("Место получения соединения") : null));
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeValidIdle() {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (isValid(candidate.connection)) {
+                return candidate.connection;
+            }
+            discard(candidate.connection);
+        }
+        return null;
+    }
+
+    private void release(Connection proxy) {
+        Borrow borrow = borrowed.remove(proxy);
+        if (borrow == null) {
+            return;
+        }
+        Connection physical = borrow.physical;
+        try {
+            if (closed || physical.isClosed()) {
+                discard(physical);
+            } else {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                idle.offerFirst(new IdleConnection(physical, System.nanoTime()));
+            }
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Периодическое обслуживание: вытеснение простаивающих соединений сверх минимума,
+     * восполнение минимума и сообщения о соединениях, удерживаемых слишком долго.
+     */
+    private void maintain() {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        IdleConnection oldest;
+        while (totalConnections.get() > minSize && (oldest = idle.peekLast()) != null
+                && now - oldest.returnedAt > idleTimeoutNanos) {
+            if (idle.removeLastOccurrence(oldest)) {
+                discard(oldest.connection);
+                evictedCount.incrementAndGet();
+            }
+        }
+        while (totalConnections.get() < minSize && !closed) {
+            try {
+                idle.offerLast(new IdleConnection(openPhysical(), now));
+            } catch (SQLException e) {
+                System.err.println("ERROR: Пул соединений - не удалось восполнить минимум: " + e.getMessage());
+                break;
+            }
+        }
+        if (leakThresholdNanos > 0) {
+            for (Borrow borrow : borrowed.values()) {
+                if (!borrow.leakReported && now - borrow.borrowedAt > leakThresholdNanos) {
+                    borrow.leakReported = true;
+                    leakCount.incrementAndGet();
+                    System.err.println("WARN: Возможная утечка соединения: удерживается более " +
+                            TimeUnit.NANOSECONDS.toMillis(leakThresholdNanos) + " мс");
+                    borrow.borrowSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return connection;
+    }
+
+    private void discard(Connection connection) {
+        totalConnections.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Соединение уже неработоспособно
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        InvocationHandler handler = new InvocationHandler() {
+            private volatile boolean returned;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            release((Connection) proxy);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "PooledConnection[" + physical + "]";
+                    default:
+                        if (returned) {
+                            throw new SQLException("Соединение уже возвращено в пул");
+                        }
+                        try {
+                            return method.invoke(physical, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /** @return количество выданных сейчас соединений */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /** @return количество простаивающих соединений */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /** @return общее количество открытых физических соединений */
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    /** @return максимальный размер пула */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return количество выдач соединений */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /** @return количество запросов, не дождавшихся соединения */
+    public long getWaitTimeoutCount() {
+        return waitTimeoutCount.get();
+    }
+
+    /** @return среднее время ожидания соединения в наносекундах */
+    public long getAverageWaitNanos() {
+        long count = borrowCount.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / count;
+    }
+
+    /** @return максимальное наблюдавшееся время ожидания в наносекундах */
+    public long getMaxWaitNanos() {
+        return maxWaitObservedNanos.get();
+    }
+
+    /** @return количество открытых за время жизни пула физических соединений */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /** @return количество соединений, закрытых из-за простоя */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /** @return количество обнаруженных возможных утечек */
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[active=" + getActiveCount() + ", idle=" + getIdleCount() +
+                ", total=" + getTotalCount() + "/" + maxSize + ", borrows=" + getBorrowCount() +
+                ", avgWaitUs=" + getAverageWaitNanos() / 1000 + ", maxWaitUs=" + getMaxWaitNanos() / 1000 +
+                ", timeouts=" + getWaitTimeoutCount() + ", leaks=" + getLeakCount() + "]";
+    }
+
+    /**
+     * Закрывает пул: простаивающие соединения закрываются сразу,
+     * выданные — при возврате.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        maintenance.shutdownNow();
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection.connection);
+        }
+    }
+}
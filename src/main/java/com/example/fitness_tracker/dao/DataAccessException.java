@@ -0,0 +1,14 @@
+package com.example.fitness_tracker.dao;
+
+/**
+ * Ошибка хранилища, которая передается вызывающему коду исключением, а не окном ошибки.
+ * Так DAO сообщают об ошибках пакетной записи ({@link UserDataDao#executeBatch(WriteBatch)}):
+ * вызывающий код должен узнать, что пакет не записан, например чтобы прервать импорт.
+ * Тем же исключением DAO сообщают обо всех ошибках хранилища, когда JavaFX не запущен
+ * и показать окно ошибки некому (см. {@link ErrorAlerts}).
+ */
+public class DataAccessException extends RuntimeException {
+    public DataAccessException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
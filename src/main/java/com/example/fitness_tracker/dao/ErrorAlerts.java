@@ -0,0 +1,54 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.metrics.OperationMetrics;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+
+/**
+ * Показ ошибок DAO пользователю.
+ * DAO может вызываться как из потока JavaFX, так и из фоновых потоков,
+ * поэтому окно ошибки всегда открывается в потоке JavaFX. Если JavaFX не запущен
+ * (например, в серверном режиме), показать ошибку некому: она передается вызывающему коду
+ * исключением {@link DataAccessException}, чтобы запрос не завершился как успешный.
+ * Показанная ошибка засчитывается измеряемой операции, во время которой она произошла
+ * (см. {@link MeteredUserDataDao}); исключение засчитывается самими метриками как выход операции с ошибкой.
+ */
+final class ErrorAlerts {
+    private ErrorAlerts() {
+    }
+
+    static void show(String title, String message) {
+        show(title, message, null);
+    }
+
+    /**
+     * Показывает ошибку или, если JavaFX не запущен, бросает исключение.
+     * @param title заголовок окна
+     * @param message текст ошибки
+     * @param cause исходная ошибка хранилища или null
+     * @throws DataAccessException если JavaFX не запущен
+     */
+    static void show(String title, String message, Exception cause) {
+        System.err.println("ERROR: " + title + " - " + message);  // Логирование в консоль
+        if (Platform.isFxApplicationThread()) {
+            OperationMetrics.reportError();
+            showNow(title, message);
+            return;
+        }
+        try {
+            Platform.runLater(() -> showNow(title, message));
+        } catch (IllegalStateException e) {
+            // JavaFX не запущен: сообщаем об ошибке вызывающему коду
+            throw new DataAccessException(title + ": " + message, cause);
+        }
+        OperationMetrics.reportError();
+    }
+
+    private static void showNow(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
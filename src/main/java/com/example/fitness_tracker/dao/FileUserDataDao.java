@@ -2,35 +2,177 @@ package com.example.fitness_tracker.dao;
 
 import com.example.fitness_tracker.model.UserData;
 import com.example.fitness_tracker.model.HistoryRecord;
-import javafx.scene.control.Alert;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Реализация UserDataDao для хранения данных в файловой системе.
  * Сохраняет данные в текстовых файлах и обеспечивает базовые CRUD операции.
+ * У каждого пользователя свой сегмент: каталог с файлами (см. {@link UserDirectories})
+ * и индексы в памяти под собственной блокировкой, поэтому пользователи не конкурируют
+ * ни за файлы, ни за блокировки. Компакция журналов всех сегментов выполняется одним фоновым потоком.
  */
 public class FileUserDataDao implements UserDataDao {
     private static final String USER_DATA_FILE = "user_data.txt";
-    private static final String HISTORY_FILE = "history.txt";
     private static final String FILE_PATH = "history_records.txt";
+    private static final String INDEX_FILE = "history_records.idx";
+    private static final String LOG_FILE = "history_records.wal";
+    private static final String NEXT_ID_FILE = "history_records.nextid";
+    private static final String WEIGHT_SERIES_FILE = "weight_series.dat";
+    // Количество записей, читаемых из файла за одно обращение к индексу при потоковом чтении
+    private static final int STREAM_CHUNK_SIZE = 1024;
+    // Начальный размер буфера порции потокового чтения
+    private static final int STREAM_CHUNK_BYTES = 1 << 18;
+    private static final Duration COMPACTION_PERIOD = Duration.ofSeconds(30);
+
+    // Сегменты общие для всех экземпляров DAO одного пользователя
+    private static final ConcurrentMap<Integer, Segment> SEGMENTS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService COMPACTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "history-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Файлы и индексы одного пользователя. Индексы открываются и строятся при первом обращении
+     * под блокировкой сегмента.
+     */
+    private static final class Segment {
+        private final Path userDataFile;
+        private final Path historyFile;
+        private final Path indexFile;
+        private final Path logFile;
+        private final Path nextIdFile;
+        private final Path weightSeriesFile;
+        private HistoryFileIndex historyIndex;
+        private HistorySearchIndex searchIndex;
+        private HistorySortIndex sortIndex;
+        private WeightSeriesLog weightSeries;
+
+        Segment(Path directory) {
+            userDataFile = directory.resolve(USER_DATA_FILE);
+            historyFile = directory.resolve(FILE_PATH);
+            indexFile = directory.resolve(INDEX_FILE);
+            logFile = directory.resolve(LOG_FILE);
+            nextIdFile = directory.resolve(NEXT_ID_FILE);
+            weightSeriesFile = directory.resolve(WEIGHT_SERIES_FILE);
+        }
+    }
+
+    private final int userId;
+    private final Segment segment;
 
     /**
-     * Сохраняет данные пользователя в файл.
+     * Создает DAO пользователя по умолчанию; его файлы находятся в рабочем каталоге.
+     */
+    public FileUserDataDao() {
+        this(DEFAULT_USER_ID);
+    }
+
+    /**
+     * Создает DAO пользователя; каталог пользователя создается при первом обращении.
+     * @param userId ID пользователя
+     * @throws UncheckedIOException если каталог пользователя не удается создать
+     */
+    public FileUserDataDao(int userId) {
+        this.userId = userId;
+        this.segment = SEGMENTS.computeIfAbsent(userId, id -> {
+            try {
+                return new Segment(UserDirectories.of(id));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create user directory", e);
+            }
+        });
+    }
+
+    /**
+     * Закрывает сегмент пользователя: останавливает компакцию его журнала и освобождает индексы в памяти.
+     * Файлы пользователя остаются на диске; следующий экземпляр DAO откроет сегмент заново.
+     * Экземпляры DAO пользователя, созданные до вызова, использовать нельзя.
+     * @param userId ID пользователя
+     */
+    public static void release(int userId) {
+        Segment segment = SEGMENTS.remove(userId);
+        if (segment == null) {
+            return;
+        }
+        synchronized (segment) {
+            if (segment.historyIndex != null) {
+                segment.historyIndex.close();
+            }
+        }
+    }
+
+    @Override
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Сохраняет данные пользователя в файл и добавляет точку во временной ряд веса.
      * @param userData Данные пользователя для сохранения
      */
     @Override
     public void saveUserData(UserData userData) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USER_DATA_FILE, true))) {
-            writer.println(userData.getCurrentWeight() + "," + userData.getTargetWeight() + "," +
-                    userData.getTargetDate() + "," + userData.getWorkoutsThisWeek() + "," +
-                    userData.getAvgWorkoutDuration());
+        try {
+            saveUsers(List.of(userData), List.of(userData));
         } catch (IOException e) {
-            showErrorAlert("Ошибка сохранения", e.getMessage());
+            showErrorAlert("Ошибка сохранения", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Дописывает данные пользователя одним открытием файла, затем точки ряда веса.
+     * @param users данные пользователя
+     * @param points данные, для которых добавляются точки ряда веса за текущий день
+     */
+    private void saveUsers(List<UserData> users, List<UserData> points) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(segment.userDataFile.toFile(), StandardCharsets.UTF_8, true))) {
+            for (UserData userData : users) {
+                writer.println(userData.getCurrentWeight() + "," + userData.getTargetWeight() + "," +
+                        userData.getTargetDate() + "," + userData.getWorkoutsThisWeek() + "," +
+                        userData.getAvgWorkoutDuration());
+            }
+            // PrintWriter не выбрасывает ошибки записи, а только запоминает их
+            if (writer.checkError()) {
+                throw new IOException("Не удалось записать " + segment.userDataFile);
+            }
+        }
+        weightSeries().appendAll(points);
+    }
+
+    /**
+     * Получает временной ряд веса из файла ряда (загружается в память при первом обращении).
+     */
+    @Override
+    public WeightSeries.Slice getWeightSeries(LocalDate from, LocalDate to) {
+        try {
+            return weightSeries().series().slice(from, to);
+        } catch (IOException e) {
+            showErrorAlert("Ошибка получения данных", e.getMessage(), e);
+            return WeightSeries.emptySlice();
         }
     }
 
@@ -41,58 +183,237 @@ public class FileUserDataDao implements UserDataDao {
      */
     @Override
     public void saveHistoryRecord(String operationType, String details) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            int maxId = 0;
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    int id = Integer.parseInt(parts[0]);
-                    if (id > maxId) {
-                        maxId = id;
-                    }
+        saveHistoryRecord(new HistoryRecord(LocalDate.now(), operationType, details, true));
+    }
+
+    /**
+     * Сохраняет запись истории с заданными датой и статусом.
+     * @param record запись истории
+     * @return ID новой записи
+     */
+    @Override
+    public int saveHistoryRecord(HistoryRecord record) {
+        try {
+            int id = historyIndex().append(recordId -> formatHistoryRecord(withId(record, recordId)));
+            indexSavedRecord(withId(record, id));
+            return id;
+        } catch (IOException e) {
+            showErrorAlert("Ошибка сохранения истории", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Выполняет пакет: записи истории дописываются в файл одной операцией записи,
+     * данные пользователя — одним открытием файла.
+     * @param batch пакет операций
+     * @throws DataAccessException если файл не удалось записать
+     */
+    @Override
+    public void executeBatch(WriteBatch batch) {
+        List<HistoryRecord> records = new ArrayList<>();
+        List<UserData> users = new ArrayList<>();
+        List<UserData> points = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (WriteBatch.Operation operation : batch.getOperations()) {
+            if (operation instanceof WriteBatch.SaveHistoryRecord save) {
+                records.add(new HistoryRecord(save.getDate() != null ? save.getDate() : today,
+                        save.getOperationType(), save.getDetails(), save.isActive()));
+            } else if (operation instanceof WriteBatch.SaveUserData save) {
+                users.add(save.getUserData());
+                if (save.isWeightPoint()) {
+                    points.add(save.getUserData());
                 }
+            } else {
+                operation.applyTo(this);
             }
-            try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH, true))) {
-                writer.println((maxId + 1) + "," + LocalDate.now() + "," + operationType + "," + details + "," + true);
+        }
+        if (!records.isEmpty()) {
+            try {
+                List<IntFunction<byte[]>> encoders = new ArrayList<>(records.size());
+                for (HistoryRecord record : records) {
+                    encoders.add(recordId -> formatHistoryRecord(withId(record, recordId)));
+                }
+                int firstId = historyIndex().appendAll(encoders);
+                for (int i = 0; i < records.size(); i++) {
+                    indexSavedRecord(withId(records.get(i), firstId + i));
+                }
+            } catch (IOException e) {
+                throw new DataAccessException("Ошибка сохранения истории: " + e.getMessage(), e);
+            }
+        }
+        if (!users.isEmpty()) {
+            try {
+                saveUsers(users, points);
+            } catch (IOException e) {
+                throw new DataAccessException("Ошибка сохранения: " + e.getMessage(), e);
             }
-        } catch (IOException e) {
-            showErrorAlert("Ошибка сохранения истории", e.getMessage());
         }
     }
 
     /**
-     * Получает все записи истории из файла.
-     * @return Список записей истории
+     * Добавляет сохраненную запись в построенные индексы в памяти.
+     */
+    private void indexSavedRecord(HistoryRecord record) {
+        HistorySearchIndex index = builtSearchIndex();
+        if (index != null) {
+            index.put(record.getId(), record.getOperationType(), record.getDetails());
+        }
+        HistorySortIndex sorted = builtSortIndex();
+        if (sorted != null) {
+            sorted.put(record);
+        }
+    }
+
+    private static HistoryRecord withId(HistoryRecord record, int id) {
+        return new HistoryRecord(id, record.getDate(), record.getOperationType(), record.getDetails(),
+                record.isActive());
+    }
+
+    /**
+     * Получает все записи истории из файла с учетом журнала изменений.
+     * @return Список записей истории в порядке ID
      */
     @Override
     public List<HistoryRecord> getHistoryRecords() {
+        try (Stream<HistoryRecord> records = streamHistoryRecords()) {
+            return records.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Получает страницу истории через индекс: записи читаются позиционно по смещениям,
+     * без чтения остальной части файла.
+     */
+    @Override
+    public List<HistoryRecord> getHistoryPage(HistoryCursor after, int limit, boolean descending) {
         List<HistoryRecord> records = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 5) { // Проверяем, что есть хотя бы 5 частей
-                    int id = Integer.parseInt(parts[0]);
-                    LocalDate date = LocalDate.parse(parts[1]);
-                    String operationType = parts[2];
-                    String details = parts[3];
-                    boolean isActive = Boolean.parseBoolean(parts[4]);
-                    records.add(new HistoryRecord(id, date, operationType, details, isActive));
-                }
+        try {
+            HistoryRecordCodec codec = new HistoryRecordCodec();
+            for (byte[] bytes : historyIndex().readPage(after, limit, descending)) {
+                codec.decode(bytes).ifPresent(records::add);
+            }
+        } catch (IOException e) {
+            showErrorAlert("Ошибка загрузки истории", e.getMessage(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Получает записи за период через индекс по (дата, ID), читая с диска только записи периода.
+     * @param from начальная дата
+     * @param to конечная дата (включительно)
+     * @return записи в порядке (дата, ID)
+     */
+    @Override
+    public List<HistoryRecord> getHistoryRecordsByDateRange(LocalDate from, LocalDate to) {
+        List<HistoryRecord> records = new ArrayList<>();
+        try {
+            HistoryRecordCodec codec = new HistoryRecordCodec();
+            for (byte[] bytes : historyIndex().readDateRange(from.toEpochDay(), to.toEpochDay())) {
+                codec.decode(bytes).ifPresent(records::add);
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            showErrorAlert("Ошибка загрузки истории", e.getMessage(), e);
         }
         return records;
     }
 
+    /**
+     * Лениво читает историю через индекс порциями по {@value #STREAM_CHUNK_SIZE} записей,
+     * поэтому измененные и удаленные через журнал записи читаются в текущем состоянии.
+     * В памяти находятся только снимок ID и текущая порция. Поток нужно закрыть.
+     * @return поток записей истории в порядке ID
+     */
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecords() {
+        return scanAllHistoryRecords(codec -> true);
+    }
 
+    /**
+     * Читает всю историю порциями (см. {@link #scanHistoryRecords}).
+     */
+    private Stream<HistoryRecord> scanAllHistoryRecords(Predicate<HistoryRecordCodec> filter) {
+        try {
+            HistoryFileIndex index = historyIndex();
+            return scanHistoryRecords(index, Arrays.stream(index.ids()).iterator(), filter);
+        } catch (IOException e) {
+            throw new DataAccessException("Ошибка загрузки истории: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Читает записи по ID порциями: ID берутся из источника по {@value #STREAM_CHUNK_SIZE},
+     * записи, идущие в файле подряд, попадают в буфер порции одним чтением и разбираются прямо из него.
+     * Строки типа и деталей создаются только для записей, которые проверяет или пропускает фильтр.
+     * Удаленные к моменту чтения ID пропускаются. Ошибка чтения файла прерывает обход
+     * исключением {@link DataAccessException}.
+     * @param index индекс файла истории
+     * @param ids ID записей в порядке выдачи; читается по мере обхода потока
+     * @param filter условие на разобранную запись
+     * @return поток подходящих записей в порядке ids
+     */
+    private Stream<HistoryRecord> scanHistoryRecords(HistoryFileIndex index, PrimitiveIterator.OfInt ids,
+                                                     Predicate<HistoryRecordCodec> filter) {
+        Iterator<HistoryRecord> records = new Iterator<>() {
+            private final HistoryFileIndex.Chunk chunk = new HistoryFileIndex.Chunk(STREAM_CHUNK_SIZE, STREAM_CHUNK_BYTES);
+            private final HistoryRecordCodec codec = new HistoryRecordCodec();
+            private final int[] buffer = new int[STREAM_CHUNK_SIZE];
+            // ID текущей порции и позиция первого еще не прочитанного из них
+            private int[] batch = new int[0];
+            private int position;
+            private int inChunk;
+            private HistoryRecord next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (inChunk == chunk.size()) {
+                        if (position == batch.length && !nextBatch()) {
+                            return false;
+                        }
+                        try {
+                            position = index.readChunk(batch, position, chunk);
+                        } catch (IOException e) {
+                            throw new DataAccessException("Ошибка загрузки истории: " + e.getMessage(), e);
+                        }
+                        inChunk = 0;
+                        continue;
+                    }
+                    int i = inChunk++;
+                    if (codec.read(chunk.buffer(), chunk.start(i), chunk.length(i)) && filter.test(codec)) {
+                        next = codec.toRecord();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public HistoryRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                HistoryRecord record = next;
+                next = null;
+                return record;
+            }
 
+            private boolean nextBatch() {
+                int size = 0;
+                while (size < buffer.length && ids.hasNext()) {
+                    buffer[size++] = ids.nextInt();
+                }
+                batch = size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+                position = 0;
+                return size > 0;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED), false);
+    }
 
     @Override
     public Optional<UserData> getUserDataById(int id) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(USER_DATA_FILE))) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(segment.userDataFile.toFile(), StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 String[] parts = line.split(",");
@@ -107,7 +428,7 @@ public class FileUserDataDao implements UserDataDao {
                 }
             }
         } catch (IOException e) {
-            showErrorAlert("Ошибка получения данных", e.getMessage());
+            showErrorAlert("Ошибка получения данных", e.getMessage(), e);
         }
         return Optional.empty();
     }
@@ -115,163 +436,308 @@ public class FileUserDataDao implements UserDataDao {
     @Override
     public void updateUserData(int id, UserData userData) {
         // В файле нет ID, поэтому просто перезаписываем файл
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USER_DATA_FILE))) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(segment.userDataFile.toFile(), StandardCharsets.UTF_8))) {
             writer.println(userData.getCurrentWeight() + "," + userData.getTargetWeight() + "," +
                     userData.getTargetDate() + "," + userData.getWorkoutsThisWeek() + "," +
                     userData.getAvgWorkoutDuration());
         } catch (IOException e) {
-            showErrorAlert("Ошибка обновления данных", e.getMessage());
+            showErrorAlert("Ошибка обновления данных", e.getMessage(), e);
         }
     }
 
     @Override
     public void deleteUserData(int id) {
         // В файле нет ID, поэтому просто очищаем файл
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USER_DATA_FILE))) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(segment.userDataFile.toFile(), StandardCharsets.UTF_8))) {
             writer.print("");
         } catch (IOException e) {
-            showErrorAlert("Ошибка удаления данных", e.getMessage());
+            showErrorAlert("Ошибка удаления данных", e.getMessage(), e);
         }
     }
 
     @Override
     public Optional<HistoryRecord> getHistoryRecordById(int id) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    return Optional.of(new HistoryRecord(
-                            0, // ID не используется в файле
-                            LocalDate.parse(parts[0]),
-                            parts[1],
-                            parts[2],
-                            Boolean.parseBoolean(parts[3])
-                    ));
-                }
-            }
+        try {
+            return historyIndex().read(id).flatMap(FileUserDataDao::parseHistoryRecord);
         } catch (IOException e) {
-            showErrorAlert("Ошибка получения записи истории", e.getMessage());
+            showErrorAlert("Ошибка получения записи истории", e.getMessage(), e);
         }
         return Optional.empty();
     }
 
+    /**
+     * Заменяет запись и обновляет построенные индексы в памяти. Изменения записей упорядочены
+     * блокировкой сегмента, так как поисковый индекс снимает триграммы прежнего текста записи.
+     */
     @Override
     public void updateHistoryRecord(int id, HistoryRecord record) {
-        // В файле нет ID, поэтому просто перезаписываем файл
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-            writer.println(record.getDate() + "," + record.getOperationType() + "," +
-                    record.getDetails() + "," + record.isActive());
+        HistoryRecord updated = new HistoryRecord(id, record.getDate(), record.getOperationType(),
+                record.getDetails(), record.isActive());
+        try {
+            HistoryFileIndex index = historyIndex();
+            synchronized (segment) {
+                HistorySearchIndex search = segment.searchIndex;
+                HistoryRecord previous = search == null ? null
+                        : index.read(id).flatMap(FileUserDataDao::parseHistoryRecord).orElse(null);
+                if (!index.replace(id, formatHistoryRecord(updated))) {
+                    return;
+                }
+                if (previous != null) {
+                    search.update(id, previous, updated.getOperationType(), updated.getDetails());
+                } else if (search != null) {
+                    search.put(id, updated.getOperationType(), updated.getDetails());
+                }
+                if (segment.sortIndex != null) {
+                    segment.sortIndex.put(updated);
+                }
+            }
         } catch (IOException e) {
-            showErrorAlert("Ошибка обновления истории", e.getMessage());
+            showErrorAlert("Ошибка обновления истории", e.getMessage(), e);
         }
     }
 
     @Override
     public void deleteHistoryRecord(int id) {
-        // В файле нет ID, поэтому просто очищаем файл
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-            writer.print("");
+        try {
+            HistoryFileIndex index = historyIndex();
+            synchronized (segment) {
+                HistorySearchIndex search = segment.searchIndex;
+                HistoryRecord previous = search == null ? null
+                        : index.read(id).flatMap(FileUserDataDao::parseHistoryRecord).orElse(null);
+                index.remove(id);
+                if (previous != null) {
+                    search.remove(previous);
+                }
+                if (segment.sortIndex != null) {
+                    segment.sortIndex.remove(id);
+                }
+            }
         } catch (IOException e) {
-            showErrorAlert("Ошибка удаления записи истории", e.getMessage());
+            showErrorAlert("Ошибка удаления записи истории", e.getMessage(), e);
         }
     }
 
     @Override
     public void updateHistoryRecordStatus(int id, boolean newStatus) {
-        // В файле нет ID, поэтому просто перезаписываем файл
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            List<String> lines = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    lines.add(parts[0] + "," + parts[1] + "," + parts[2] + "," + newStatus);
-                }
-            }
-            try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-                for (String updatedLine : lines) {
-                    writer.println(updatedLine);
+        try {
+            HistoryFileIndex index = historyIndex();
+            synchronized (segment) {
+                // Запись прежнего формата со статусом переменной ширины переписывается целиком
+                if (!index.patchStatus(id, newStatus)) {
+                    index.read(id).flatMap(FileUserDataDao::parseHistoryRecord).ifPresent(r -> {
+                        r.setActive(newStatus);
+                        updateHistoryRecord(id, r);
+                    });
                 }
             }
         } catch (IOException e) {
-            showErrorAlert("Ошибка обновления статуса", e.getMessage());
+            showErrorAlert("Ошибка обновления статуса", e.getMessage(), e);
         }
     }
 
+    /**
+     * Ищет записи истории через инвертированный индекс (без учета регистра).
+     * Запись подходит, если содержит все слова запроса.
+     * @param searchTerm поисковый запрос
+     * @return список найденных записей в порядке ID
+     */
     @Override
     public List<HistoryRecord> searchHistoryRecords(String searchTerm) {
-        List<HistoryRecord> records = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4 && (parts[1].contains(searchTerm) || parts[2].contains(searchTerm))) {
-                    HistoryRecord record = new HistoryRecord(
-                            0, // ID не используется в файле
-                            LocalDate.parse(parts[0]),
-                            parts[1],
-                            parts[2],
-                            Boolean.parseBoolean(parts[3])
-                    );
-                    records.add(record);
-                }
-            }
+        try (Stream<HistoryRecord> records = streamSearchHistoryRecords(searchTerm)) {
+            return records.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Потоково ищет записи: кандидаты из инвертированного индекса читаются порциями
+     * и проверяются по тексту самих записей. В памяти находятся только ID кандидатов и текущая порция.
+     * Поток нужно закрыть.
+     * @param searchTerm поисковый запрос
+     * @return поток найденных записей в порядке ID
+     */
+    @Override
+    public Stream<HistoryRecord> streamSearchHistoryRecords(String searchTerm) {
+        String[] terms = HistorySearchIndex.terms(searchTerm);
+        try {
+            HistoryFileIndex index = historyIndex();
+            return scanHistoryRecords(index, Arrays.stream(searchIndex().candidates(terms)).iterator(),
+                    codec -> HistorySearchIndex.matches(terms, codec.getOperationType(), codec.getDetails()));
         } catch (IOException e) {
-            showErrorAlert("Ошибка поиска", e.getMessage());
+            throw new DataAccessException("Ошибка поиска: " + e.getMessage(), e);
         }
-        return records;
     }
 
+    /**
+     * Возвращает отсортированные записи обходом поддерживаемого в памяти порядка;
+     * сами записи читаются из файла по смещениям.
+     * @param sortBy поле для сортировки (operation_date, operation_type, details)
+     * @param ascending направление сортировки
+     * @return отсортированный список записей
+     */
     @Override
     public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending) {
-        List<HistoryRecord> records = getHistoryRecords();
-        // Простая сортировка в памяти
-        records.sort((r1, r2) -> {
-            switch (sortBy) {
-                case "operation_date":
-                    return ascending ? r1.getDate().compareTo(r2.getDate()) : r2.getDate().compareTo(r1.getDate());
-                case "operation_type":
-                    return ascending ? r1.getOperationType().compareTo(r2.getOperationType()) : r2.getOperationType().compareTo(r1.getOperationType());
-                case "details":
-                    return ascending ? r1.getDetails().compareTo(r2.getDetails()) : r2.getDetails().compareTo(r1.getDetails());
-                default:
-                    return 0;
-            }
-        });
-        return records;
+        return getHistoryRecordsSorted(sortBy, ascending, Integer.MAX_VALUE);
     }
 
+    /**
+     * Возвращает первые limit записей в порядке сортировки, читая с диска только их.
+     */
     @Override
-    public List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending, int limit) {
         List<HistoryRecord> records = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4 && parts[1].equals(operationType)) {
-                    HistoryRecord record = new HistoryRecord(
-                            0, // ID не используется в файле
-                            LocalDate.parse(parts[0]),
-                            parts[1],
-                            parts[2],
-                            Boolean.parseBoolean(parts[3])
-                    );
-                    records.add(record);
-                }
+        try {
+            HistorySortIndex sorted = sortIndex();
+            List<Integer> ids = new ArrayList<>(Math.max(0, Math.min(limit, sorted.size())));
+            for (Iterator<Integer> it = sorted.ids(sortBy, ascending); it.hasNext() && ids.size() < limit; ) {
+                ids.add(it.next());
+            }
+            HistoryRecordCodec codec = new HistoryRecordCodec();
+            for (byte[] bytes : historyIndex().readAll(ids)) {
+                codec.decode(bytes).ifPresent(records::add);
             }
         } catch (IOException e) {
-            showErrorAlert("Ошибка фильтрации", e.getMessage());
+            showErrorAlert("Ошибка сортировки", e.getMessage(), e);
         }
         return records;
     }
 
-    private void showErrorAlert(String title, String message) {
-        System.err.println("ERROR: " + title + " - " + message);  // Логирование в консоль
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(message);
-        alert.showAndWait();
+    /**
+     * Потоково выдает отсортированные записи: ID обходятся по индексу сортировки в памяти,
+     * а записи читаются из файла порциями, как в {@link #streamHistoryRecords()}.
+     * В памяти находятся индекс сортировки и текущая порция, но не все записи. Поток нужно закрыть.
+     */
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecordsSorted(String sortBy, boolean ascending) {
+        try {
+            HistoryFileIndex index = historyIndex();
+            Iterator<Integer> sorted = sortIndex().ids(sortBy, ascending);
+            PrimitiveIterator.OfInt ids = new PrimitiveIterator.OfInt() {
+                @Override
+                public boolean hasNext() {
+                    return sorted.hasNext();
+                }
+
+                @Override
+                public int nextInt() {
+                    return sorted.next();
+                }
+            };
+            return scanHistoryRecords(index, ids, codec -> true);
+        } catch (IOException e) {
+            throw new DataAccessException("Ошибка сортировки: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Фильтрует историю по типу операции; тип сравнивается с байтами записи,
+     * поэтому строки создаются только для подходящих записей.
+     */
+    @Override
+    public List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
+        byte[] type = operationType.getBytes(StandardCharsets.UTF_8);
+        try (Stream<HistoryRecord> records = scanAllHistoryRecords(codec -> codec.operationTypeEquals(type))) {
+            return records.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Возвращает индекс файла истории пользователя, открывая его при первом обращении
+     * и запуская фоновую компакцию журнала изменений.
+     */
+    private HistoryFileIndex historyIndex() throws IOException {
+        synchronized (segment) {
+            if (segment.historyIndex == null) {
+                segment.historyIndex = HistoryFileIndex.open(segment.historyFile, segment.indexFile, segment.logFile,
+                        segment.nextIdFile);
+                segment.historyIndex.startCompactor(COMPACTOR, COMPACTION_PERIOD);
+            }
+            return segment.historyIndex;
+        }
+    }
+
+    private WeightSeriesLog weightSeries() throws IOException {
+        synchronized (segment) {
+            if (segment.weightSeries == null) {
+                segment.weightSeries = new WeightSeriesLog(segment.weightSeriesFile);
+            }
+            return segment.weightSeries;
+        }
+    }
+
+    /**
+     * Возвращает поисковый индекс, строя его однократным потоковым чтением файла.
+     */
+    private HistorySearchIndex searchIndex() {
+        synchronized (segment) {
+            buildMemoryIndexes();
+            return segment.searchIndex;
+        }
+    }
+
+    /**
+     * Возвращает индекс порядков сортировки, строя его однократным потоковым чтением файла.
+     */
+    private HistorySortIndex sortIndex() {
+        synchronized (segment) {
+            buildMemoryIndexes();
+            return segment.sortIndex;
+        }
+    }
+
+    /**
+     * Строит недостающие индексы в памяти за одно чтение файла. Вызывается под блокировкой сегмента.
+     */
+    private void buildMemoryIndexes() {
+        if (segment.searchIndex != null && segment.sortIndex != null) {
+            return;
+        }
+        HistorySearchIndex search = segment.searchIndex != null ? null : new HistorySearchIndex();
+        HistorySortIndex sorted = segment.sortIndex != null ? null : new HistorySortIndex();
+        try (Stream<HistoryRecord> records = streamHistoryRecords()) {
+            records.forEach(r -> {
+                if (search != null) {
+                    search.put(r.getId(), r.getOperationType(), r.getDetails());
+                }
+                if (sorted != null) {
+                    sorted.put(r);
+                }
+            });
+        }
+        if (search != null) {
+            segment.searchIndex = search;
+        }
+        if (sorted != null) {
+            segment.sortIndex = sorted;
+        }
+    }
+
+    /**
+     * Возвращает индекс сортировки, если он уже построен.
+     */
+    private HistorySortIndex builtSortIndex() {
+        synchronized (segment) {
+            return segment.sortIndex;
+        }
+    }
+
+    /**
+     * Возвращает поисковый индекс, если он уже построен; иначе он будет построен из файла при первом поиске.
+     */
+    private HistorySearchIndex builtSearchIndex() {
+        synchronized (segment) {
+            return segment.searchIndex;
+        }
+    }
+
+    private static byte[] formatHistoryRecord(HistoryRecord record) {
+        return HistoryRecordCodec.encode(record);
+    }
+
+    private static Optional<HistoryRecord> parseHistoryRecord(byte[] bytes) {
+        return new HistoryRecordCodec().decode(bytes);
+    }
+
+    private void showErrorAlert(String title, String message, Exception cause) {
+        ErrorAlerts.show(title, message, cause);
     }
 }
@@ -0,0 +1,111 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Вторичные индексы истории в памяти: тип операции (без учета регистра) → ID
+ * и день эпохи → ID. Обновляются инкрементально по событиям {@link ConcurrentHistoryStore},
+ * поэтому фильтр по типу и выборка за период работают за время, пропорциональное результату.
+ * Индексы могут ненадолго отставать от хранилища при конкурентной записи, поэтому
+ * вызывающий код проверяет найденные записи по хранилищу.
+ */
+class HistoryAttributeIndex implements ConcurrentHistoryStore.Listener {
+    // Пустые множества не удаляются: их немного (по одному на тип и день), а удаление гонялось бы с добавлением
+    private final Map<String, NavigableSet<Integer>> idsByType = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, NavigableSet<Integer>> idsByDay = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void added(HistoryRecord record) {
+        index(record);
+    }
+
+    @Override
+    public void updated(HistoryRecord previous, HistoryRecord current) {
+        if (!normalize(previous.getOperationType()).equals(normalize(current.getOperationType()))
+                || !previous.getDate().equals(current.getDate())) {
+            unindex(previous);
+            index(current);
+        }
+    }
+
+    @Override
+    public void removed(HistoryRecord record) {
+        unindex(record);
+    }
+
+    @Override
+    public void cleared() {
+        idsByType.clear();
+        idsByDay.clear();
+    }
+
+    /**
+     * Возвращает ID записей с указанным типом (без учета регистра) по возрастанию.
+     */
+    Iterable<Integer> idsOfType(String operationType) {
+        NavigableSet<Integer> ids = idsByType.get(normalize(operationType));
+        return ids != null ? ids : Collections.emptySet();
+    }
+
+    /**
+     * Возвращает ID записей с датой в диапазоне [fromDay, toDay] в порядке (дата, ID).
+     */
+    Iterable<Integer> idsInDateRange(long fromDay, long toDay) {
+        if (fromDay > toDay) {
+            return Collections.emptySet();
+        }
+        NavigableMap<Long, NavigableSet<Integer>> days = idsByDay.subMap(fromDay, true, toDay, true);
+        return () -> days.values().stream().flatMap(NavigableSet::stream).iterator();
+    }
+
+    /**
+     * Перебирает ID в порядке (дата, ID) строго после курсора.
+     * @param after курсор или null, чтобы начать с первой записи
+     * @param descending true - от новых записей к старым
+     */
+    Iterator<Integer> idsAfter(HistoryCursor after, boolean descending) {
+        NavigableMap<Long, NavigableSet<Integer>> days = descending ? idsByDay.descendingMap() : idsByDay;
+        if (after != null) {
+            days = days.tailMap(after.getDate().toEpochDay(), true);
+        }
+        return days.entrySet().stream().flatMap(day -> {
+            NavigableSet<Integer> ids = descending ? day.getValue().descendingSet() : day.getValue();
+            if (after != null && day.getKey() == after.getDate().toEpochDay()) {
+                ids = ids.tailSet(after.getId(), false);
+            }
+            return ids.stream();
+        }).iterator();
+    }
+
+    private void index(HistoryRecord record) {
+        idsByType.computeIfAbsent(normalize(record.getOperationType()), type -> new ConcurrentSkipListSet<>())
+                .add(record.getId());
+        idsByDay.computeIfAbsent(record.getDate().toEpochDay(), day -> new ConcurrentSkipListSet<>())
+                .add(record.getId());
+    }
+
+    private void unindex(HistoryRecord record) {
+        NavigableSet<Integer> byType = idsByType.get(normalize(record.getOperationType()));
+        if (byType != null) {
+            byType.remove(record.getId());
+        }
+        NavigableSet<Integer> byDay = idsByDay.get(record.getDate().toEpochDay());
+        if (byDay != null) {
+            byDay.remove(record.getId());
+        }
+    }
+
+    static String normalize(String operationType) {
+        return operationType == null ? "" : operationType.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * Курсор постраничного чтения истории.
+ * Указывает на последнюю запись предыдущей страницы по ключу (дата, ID);
+ * следующая страница начинается строго после него.
+ */
+public final class HistoryCursor {
+    /**
+     * Порядок записей истории при постраничном чтении: по дате, затем по ID.
+     */
+    public static final Comparator<HistoryRecord> ORDER =
+            Comparator.comparing(HistoryRecord::getDate).thenComparingInt(HistoryRecord::getId);
+
+    private final LocalDate date;
+    private final int id;
+
+    private HistoryCursor(LocalDate date, int id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    /**
+     * Создает курсор по дате и ID записи.
+     * @param date дата операции
+     * @param id идентификатор записи
+     * @return курсор
+     */
+    public static HistoryCursor of(LocalDate date, int id) {
+        return new HistoryCursor(date, id);
+    }
+
+    /**
+     * Создает курсор, указывающий на запись.
+     * @param record последняя запись предыдущей страницы
+     * @return курсор
+     */
+    public static HistoryCursor after(HistoryRecord record) {
+        return new HistoryCursor(record.getDate(), record.getId());
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Проверяет, идет ли запись после курсора в заданном направлении.
+     * @param record запись истории
+     * @param descending true - от новых к старым
+     * @return true, если запись должна попасть на следующую страницу
+     */
+    public boolean precedes(HistoryRecord record, boolean descending) {
+        int cmp = compareTo(record.getDate().toEpochDay(), record.getId());
+        return descending ? cmp > 0 : cmp < 0;
+    }
+
+    /**
+     * Возвращает упакованный ключ курсора, совместимый с {@link #key(long, int)}.
+     */
+    long key() {
+        return key(date.toEpochDay(), id);
+    }
+
+    /**
+     * Упаковывает (день эпохи, ID) в одно число с тем же порядком сравнения.
+     */
+    static long key(long epochDay, int id) {
+        return (epochDay << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    static int idOf(long key) {
+        return (int) key;
+    }
+
+    private int compareTo(long epochDay, int otherId) {
+        int cmp = Long.compare(date.toEpochDay(), epochDay);
+        return cmp != 0 ? cmp : Integer.compare(id, otherId);
+    }
+}
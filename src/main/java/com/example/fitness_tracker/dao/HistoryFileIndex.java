@@ -0,0 +1,1007 @@
+package com.example.fitness_tracker.dao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Индекс-спутник для файла истории.
+ * Хранит счетчик ID и смещение/длину каждой записи в файле данных,
+ * что позволяет добавлять записи и находить их по ID без чтения всего файла.
+ * Дополнительно поддерживает порядок записей по (дата, ID) для постраничного чтения.
+ * Индекс перестраивается сканированием файла данных, если он отсутствует или устарел.
+ * <p>
+ * Файл данных только дописывается: изменения и удаления записей попадают в журнал
+ * {@link HistoryMutationLog}, а измененные записи хранятся в памяти и подставляются при чтении.
+ * Компакция периодически переносит журнал в новый файл данных и атомарно заменяет им старый.
+ * Перед заменой счетчик ID сохраняется в отдельный файл: удаленные записи исчезают из файла данных,
+ * и без него перестроение индекса выдало бы их ID повторно.
+ */
+class HistoryFileIndex {
+    private static final int MAGIC = 0x46544958; // "FTIX"
+    private static final int VERSION = 2;
+    // magic, version, длина файла данных, следующий ID
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int DATA_LENGTH_POSITION = 8;
+    private static final int NEXT_ID_POSITION = 16;
+    // id, смещение, длина, день эпохи
+    private static final int ENTRY_SIZE = 4 + 8 + 4 + 4;
+    private static final long NOT_A_RECORD = Long.MIN_VALUE;
+    // Смещение записи, которая есть только в журнале (восстановлена при воспроизведении)
+    private static final long ONLY_IN_LOG = -1;
+    // Размер журнала, при котором компакция запускается, не дожидаясь очередного периода
+    private static final long COMPACT_THRESHOLD = 1 << 20;
+    // Размер блока, которым файл данных читается при перестроении индекса
+    private static final int REBUILD_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Положение записи в файле данных.
+     */
+    private static final class Entry {
+        final long offset;
+        final int length;
+        final int epochDay;
+
+        Entry(long offset, int length, int epochDay) {
+            this.offset = offset;
+            this.length = length;
+            this.epochDay = epochDay;
+        }
+    }
+
+    /**
+     * Порция записей, прочитанных подряд в один буфер (см. {@link #readChunk}).
+     * Буфер переиспользуется между порциями и растет, если в него не помещается одна запись.
+     */
+    static final class Chunk {
+        private final int[] starts;
+        private final int[] lengths;
+        private byte[] data;
+        private ByteBuffer buffer;
+        private int count;
+        private int used;
+
+        /**
+         * @param maxRecords наибольшее количество записей в порции
+         * @param bufferSize начальный размер буфера в байтах
+         */
+        Chunk(int maxRecords, int bufferSize) {
+            starts = new int[maxRecords];
+            lengths = new int[maxRecords];
+            data = new byte[bufferSize];
+            buffer = ByteBuffer.wrap(data);
+        }
+
+        ByteBuffer buffer() {
+            return buffer;
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * @return начало i-й записи в буфере
+         */
+        int start(int i) {
+            return starts[i];
+        }
+
+        int length(int i) {
+            return lengths[i];
+        }
+
+        private void clear() {
+            count = 0;
+            used = 0;
+        }
+
+        private boolean isFull() {
+            return count == starts.length;
+        }
+
+        private boolean fits(int length) {
+            return length <= data.length - used;
+        }
+
+        private void grow(int length) {
+            data = new byte[Math.max(length, data.length * 2)];
+            buffer = ByteBuffer.wrap(data);
+        }
+
+        /**
+         * Резервирует место под запись и возвращает ее начало в буфере.
+         */
+        private int add(int length) {
+            int start = used;
+            starts[count] = start;
+            lengths[count] = length;
+            count++;
+            used += length;
+            return start;
+        }
+    }
+
+    private final Path dataPath;
+    private final Path indexPath;
+    private final Path nextIdPath;
+    private final HistoryMutationLog log;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    // Текущие байты записей, измененных через журнал и еще не перенесенных в файл данных
+    private final Map<Integer, byte[]> changed = new HashMap<>();
+    // Ключи (день эпохи, ID), упакованные HistoryCursor.key
+    private final NavigableSet<Long> order = new TreeSet<>();
+    private int nextId = 1;
+    private long dataLength;
+    private ScheduledExecutorService compactor;
+    private ScheduledFuture<?> scheduledCompaction;
+    private boolean compacting;
+    private boolean compactionRequested;
+    private boolean closed;
+
+    private HistoryFileIndex(Path dataPath, Path indexPath, Path logPath, Path nextIdPath) {
+        this.dataPath = dataPath;
+        this.indexPath = indexPath;
+        this.nextIdPath = nextIdPath;
+        this.log = new HistoryMutationLog(logPath);
+    }
+
+    /**
+     * Открывает индекс для файла данных, перестраивая его при необходимости,
+     * и воспроизводит журнал изменений.
+     * @param dataPath путь к файлу истории
+     * @param indexPath путь к файлу индекса
+     * @param logPath путь к журналу изменений
+     * @param nextIdPath путь к файлу счетчика ID, сохраняемого при компакции
+     * @return готовый к работе индекс
+     * @throws IOException если файлы не удается прочитать или записать
+     */
+    static HistoryFileIndex open(Path dataPath, Path indexPath, Path logPath, Path nextIdPath) throws IOException {
+        HistoryFileIndex index = new HistoryFileIndex(dataPath, indexPath, logPath, nextIdPath);
+        if (!Files.exists(dataPath)) {
+            Files.createFile(dataPath);
+        }
+        if (!index.load()) {
+            index.rebuild();
+        }
+        index.replayLog();
+        return index;
+    }
+
+    /**
+     * Запускает фоновую компакцию: журнал переносится в файл данных через каждые period,
+     * а при превышении {@value #COMPACT_THRESHOLD} байт — сразу.
+     * @param executor планировщик компакции; может быть общим для индексов нескольких файлов
+     * @param period период компакции
+     */
+    synchronized void startCompactor(ScheduledExecutorService executor, Duration period) {
+        if (compactor != null || closed) {
+            return;
+        }
+        compactor = executor;
+        scheduledCompaction = compactor.scheduleWithFixedDelay(this::compactQuietly, period.toMillis(),
+                period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает фоновую компакцию и дожидается завершения начатой. Журнал не переносится
+     * в файл данных: он воспроизводится при следующем открытии. После вызова файлы можно открыть
+     * новым индексом; этот экземпляр использовать нельзя.
+     */
+    synchronized void close() {
+        closed = true;
+        if (scheduledCompaction != null) {
+            scheduledCompaction.cancel(false);
+            scheduledCompaction = null;
+        }
+        compactor = null;
+        boolean interrupted = false;
+        while (compacting) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Добавляет запись в конец файла данных и регистрирует ее в индексе.
+     * @param encoder формирует байты записи по выделенному ID
+     * @return ID новой записи
+     * @throws IOException если запись не удалась
+     */
+    synchronized int append(IntFunction<byte[]> encoder) throws IOException {
+        int id = nextId;
+        byte[] bytes = encoder.apply(id);
+        int epochDay = epochDayOf(bytes);
+        long offset = dataLength;
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(bytes), offset);
+        }
+        put(id, new Entry(offset, bytes.length, epochDay));
+        nextId = id + 1;
+        dataLength = offset + bytes.length;
+
+        // Сначала запись, затем заголовок: при сбое длина не совпадет и индекс перестроится
+        try (RandomAccessFile raf = new RandomAccessFile(indexPath.toFile(), "rw")) {
+            raf.seek(raf.length());
+            raf.writeInt(id);
+            raf.writeLong(offset);
+            raf.writeInt(bytes.length);
+            raf.writeInt(epochDay);
+            raf.seek(DATA_LENGTH_POSITION);
+            raf.writeLong(dataLength);
+            raf.seek(NEXT_ID_POSITION);
+            raf.writeInt(nextId);
+        }
+        return id;
+    }
+
+    /**
+     * Добавляет несколько записей: данные и элементы индекса дописываются
+     * одной операцией записи в каждый файл, заголовок индекса обновляется один раз.
+     * @param encoders формируют байты записей по выделенным ID
+     * @return ID первой добавленной записи; остальные записи получают следующие по порядку ID
+     * @throws IOException если запись не удалась
+     */
+    synchronized int appendAll(List<IntFunction<byte[]>> encoders) throws IOException {
+        int firstId = nextId;
+        if (encoders.isEmpty()) {
+            return firstId;
+        }
+        byte[][] records = new byte[encoders.size()][];
+        int[] epochDays = new int[records.length];
+        int total = 0;
+        for (int i = 0; i < records.length; i++) {
+            records[i] = encoders.get(i).apply(firstId + i);
+            epochDays[i] = epochDayOf(records[i]);
+            total += records[i].length;
+        }
+        ByteBuffer data = ByteBuffer.allocate(total);
+        ByteBuffer index = ByteBuffer.allocate(records.length * ENTRY_SIZE);
+        long offset = dataLength;
+        for (int i = 0; i < records.length; i++) {
+            data.put(records[i]);
+            index.putInt(firstId + i).putLong(offset).putInt(records[i].length).putInt(epochDays[i]);
+            offset += records[i].length;
+        }
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+            writeFully(channel, data.flip(), dataLength);
+        }
+        offset = dataLength;
+        for (int i = 0; i < records.length; i++) {
+            put(firstId + i, new Entry(offset, records[i].length, epochDays[i]));
+            offset += records[i].length;
+        }
+        nextId = firstId + records.length;
+        dataLength = offset;
+
+        // Как и в append: сначала данные, затем заголовок
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+            writeFully(channel, index.flip(), channel.size());
+            ByteBuffer header = ByteBuffer.allocate(12).putLong(dataLength).putInt(nextId);
+            writeFully(channel, header.flip(), DATA_LENGTH_POSITION);
+        }
+        return firstId;
+    }
+
+    /**
+     * Читает байты записи по ID.
+     * @param id идентификатор записи
+     * @return байты записи, если запись существует
+     * @throws IOException если чтение не удалось
+     */
+    synchronized Optional<byte[]> read(int id) throws IOException {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            return Optional.of(read(channel, id, entry));
+        }
+    }
+
+    /**
+     * Читает страницу записей в порядке (дата, ID), начиная строго после курсора.
+     * Каждая запись читается позиционно по смещению из индекса.
+     * @param after курсор или null для первой страницы
+     * @param limit максимальное количество записей
+     * @param descending true - от новых к старым
+     * @return байты записей в порядке страницы
+     * @throws IOException если чтение не удалось
+     */
+    synchronized List<byte[]> readPage(HistoryCursor after, int limit, boolean descending) throws IOException {
+        NavigableSet<Long> view = descending ? order.descendingSet() : order;
+        if (after != null) {
+            view = view.tailSet(after.key(), false);
+        }
+        List<byte[]> page = new ArrayList<>(Math.min(limit, entries.size()));
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            for (Iterator<Long> it = view.iterator(); it.hasNext() && page.size() < limit; ) {
+                int id = HistoryCursor.idOf(it.next());
+                page.add(read(channel, id, entries.get(id)));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Читает записи по списку ID в заданном порядке через один открытый канал.
+     * Отсутствующие ID пропускаются.
+     * @param ids идентификаторы записей
+     * @return байты найденных записей
+     * @throws IOException если чтение не удалось
+     */
+    synchronized List<byte[]> readAll(List<Integer> ids) throws IOException {
+        List<byte[]> records = new ArrayList<>(ids.size());
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            for (int id : ids) {
+                Entry entry = entries.get(id);
+                if (entry != null) {
+                    records.add(read(channel, id, entry));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Читает в порцию записи по ID из ids начиная с позиции from, пока порция не заполнится.
+     * Записи, идущие в файле данных подряд, читаются в буфер одним обращением к каналу;
+     * измененные через журнал записи копируются из памяти. Отсутствующие ID пропускаются.
+     * @param ids идентификаторы записей
+     * @param from позиция в ids, с которой начинается порция
+     * @param chunk порция; прежнее содержимое заменяется
+     * @return позиция в ids, с которой начинается следующая порция
+     * @throws IOException если чтение не удалось
+     */
+    synchronized int readChunk(int[] ids, int from, Chunk chunk) throws IOException {
+        chunk.clear();
+        int position = from;
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            // Участок файла, который еще предстоит прочитать в буфер
+            long spanOffset = 0;
+            int spanStart = 0;
+            int spanLength = 0;
+            for (; position < ids.length && !chunk.isFull(); position++) {
+                int id = ids[position];
+                Entry entry = entries.get(id);
+                if (entry == null) {
+                    continue;
+                }
+                byte[] bytes = changed.get(id);
+                int length = bytes != null ? bytes.length : entry.length;
+                if (!chunk.fits(length)) {
+                    if (chunk.size() > 0) {
+                        break;
+                    }
+                    chunk.grow(length);
+                }
+                if (bytes == null && spanLength > 0 && entry.offset == spanOffset + spanLength) {
+                    chunk.add(length);
+                    spanLength += length;
+                    continue;
+                }
+                readFully(channel, chunk.buffer, spanStart, spanLength, spanOffset);
+                spanLength = 0;
+                int start = chunk.add(length);
+                if (bytes != null) {
+                    System.arraycopy(bytes, 0, chunk.data, start, length);
+                } else {
+                    spanOffset = entry.offset;
+                    spanStart = start;
+                    spanLength = length;
+                }
+            }
+            readFully(channel, chunk.buffer, spanStart, spanLength, spanOffset);
+        }
+        return position;
+    }
+
+    /**
+     * Возвращает ID всех записей по возрастанию (порядок файла данных).
+     * @return снимок ID на момент вызова
+     */
+    synchronized int[] ids() {
+        int[] ids = new int[entries.size()];
+        int i = 0;
+        for (int id : entries.keySet()) {
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Читает записи с датой в диапазоне [fromDay, toDay] в порядке (дата, ID).
+     * @param fromDay начальный день эпохи
+     * @param toDay конечный день эпохи (включительно)
+     * @return байты записей
+     * @throws IOException если чтение не удалось
+     */
+    synchronized List<byte[]> readDateRange(long fromDay, long toDay) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        if (fromDay > toDay) {
+            return records;
+        }
+        NavigableSet<Long> range = order.subSet(HistoryCursor.key(fromDay, 0), true,
+                HistoryCursor.key(toDay + 1, 0), false);
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            for (long key : range) {
+                int id = HistoryCursor.idOf(key);
+                records.add(read(channel, id, entries.get(id)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Заменяет часть записи без изменения ее длины (например, статус фиксированной ширины).
+     * Изменение записывается в журнал; файл данных не переписывается.
+     * @param id идентификатор записи
+     * @param relativeOffset смещение внутри записи
+     * @param bytes новые байты
+     * @return false, если запись не найдена или патч выходит за ее границы
+     * @throws IOException если запись в журнал не удалась
+     */
+    synchronized boolean patch(int id, int relativeOffset, byte[] bytes) throws IOException {
+        byte[] current = current(id);
+        if (current == null || relativeOffset < 0 || relativeOffset + bytes.length > current.length) {
+            return false;
+        }
+        log.logPatch(id, relativeOffset, bytes);
+        applyPatch(id, current, relativeOffset, bytes);
+        requestCompactionIfLarge();
+        return true;
+    }
+
+    /**
+     * Меняет статус записи, если он записан фиксированной ширины: в журнал пишется только статус.
+     * Статус — последнее поле записи; его начало ищется в текущих байтах записи под той же блокировкой,
+     * что и патч, поэтому одновременная замена записи не сдвигает смещение.
+     * @param id идентификатор записи
+     * @param active новый статус
+     * @return false, если запись не найдена или ее статус не фиксированной ширины (прежний формат)
+     * @throws IOException если запись в журнал не удалась
+     */
+    synchronized boolean patchStatus(int id, boolean active) throws IOException {
+        byte[] current = current(id);
+        if (current == null) {
+            return false;
+        }
+        int end = current.length;
+        if (end > 0 && current[end - 1] == '\n') {
+            end--;
+        }
+        int statusStart = end;
+        while (statusStart > 0 && current[statusStart - 1] != ',') {
+            statusStart--;
+        }
+        if (end - statusStart != HistoryRecordCodec.STATUS_WIDTH) {
+            return false;
+        }
+        byte[] status = HistoryRecordCodec.status(active);
+        log.logPatch(id, statusStart, status);
+        applyPatch(id, current, statusStart, status);
+        requestCompactionIfLarge();
+        return true;
+    }
+
+    /**
+     * Заменяет запись целиком. Новые байты записываются в журнал и подставляются при чтении
+     * до ближайшей компакции.
+     * @param id идентификатор записи
+     * @param bytes новые байты записи
+     * @return false, если запись не найдена
+     * @throws IOException если запись в журнал не удалась
+     */
+    synchronized boolean replace(int id, byte[] bytes) throws IOException {
+        if (!entries.containsKey(id)) {
+            return false;
+        }
+        int epochDay = epochDayOf(bytes);
+        log.logUpdate(id, bytes);
+        applyUpdate(id, bytes, epochDay);
+        requestCompactionIfLarge();
+        return true;
+    }
+
+    /**
+     * Удаляет запись: удаление записывается в журнал, запись сразу исчезает из индекса.
+     * Счетчик ID не уменьшается.
+     * @param id идентификатор записи
+     * @return false, если запись не найдена
+     * @throws IOException если запись в журнал не удалась
+     */
+    synchronized boolean remove(int id) throws IOException {
+        if (!entries.containsKey(id)) {
+            return false;
+        }
+        log.logDelete(id);
+        applyDelete(id);
+        requestCompactionIfLarge();
+        return true;
+    }
+
+    /**
+     * Переносит журнал в новый файл данных. Живые записи копируются в порядке ID без удержания
+     * блокировки (начало файла данных не меняется, он только дописывается); затем под блокировкой
+     * дописываются записи, добавленные за время копирования, и файлы атомарно заменяются.
+     * Записи журнала, появившиеся после начала компакции, переходят в новый журнал.
+     * При сбое на любом шаге воспроизведение журнала дает то же состояние: записи журнала
+     * задают итоговые байты записи, поэтому их повторное применение безопасно.
+     * @return true, если компакция выполнена; false, если журнал пуст, компакция уже идет или индекс закрыт
+     * @throws IOException если файлы не удается прочитать или записать
+     */
+    boolean compact() throws IOException {
+        int[] ids;
+        long[] offsets;
+        int[] lengths;
+        byte[][] folded;
+        long snapshotLength;
+        long snapshotLogLength;
+        int snapshotLogSize;
+        synchronized (this) {
+            compactionRequested = false;
+            if (closed || compacting || log.size() == 0) {
+                return false;
+            }
+            compacting = true;
+            ids = new int[entries.size()];
+            int n = 0;
+            for (int id : entries.keySet()) {
+                ids[n++] = id;
+            }
+            Arrays.sort(ids);
+            offsets = new long[ids.length];
+            lengths = new int[ids.length];
+            folded = new byte[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                Entry entry = entries.get(ids[i]);
+                offsets[i] = entry.offset;
+                lengths[i] = entry.length;
+                folded[i] = changed.get(ids[i]);
+            }
+            snapshotLength = dataLength;
+            snapshotLogLength = log.length();
+            snapshotLogSize = log.size();
+        }
+        Path tmp = dataPath.resolveSibling(dataPath.getFileName() + ".compact");
+        Path logTmp = null;
+        try (FileChannel src = FileChannel.open(dataPath, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long[] newOffsets = new long[ids.length];
+            int[] newLengths = new int[ids.length];
+            long position = 0;
+            // Подряд идущие неизмененные записи копируются одним transferTo
+            long runStart = 0;
+            long runLength = 0;
+            for (int i = 0; i < ids.length; i++) {
+                newOffsets[i] = position;
+                if (folded[i] != null) {
+                    transfer(src, runStart, runLength, dst, position - runLength);
+                    runLength = 0;
+                    writeFully(dst, ByteBuffer.wrap(folded[i]), position);
+                    newLengths[i] = folded[i].length;
+                } else {
+                    if (runLength == 0 || runStart + runLength != offsets[i]) {
+                        transfer(src, runStart, runLength, dst, position - runLength);
+                        runStart = offsets[i];
+                        runLength = 0;
+                    }
+                    runLength += lengths[i];
+                    newLengths[i] = lengths[i];
+                }
+                position += newLengths[i];
+            }
+            transfer(src, runStart, runLength, dst, position - runLength);
+
+            synchronized (this) {
+                long appended = dataLength - snapshotLength;
+                transfer(src, snapshotLength, appended, dst, position);
+                dst.force(true);
+                // Счетчик сохраняется до замены файла: после нее ID удаленных записей в файле данных уже нет
+                writeNextId();
+                logTmp = log.writeTail(snapshotLogLength);
+                Files.move(tmp, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.replaceWith(logTmp, snapshotLogLength, snapshotLogSize);
+                logTmp = null;
+
+                long shift = position - snapshotLength;
+                Map<Integer, Entry> current = new HashMap<>(entries);
+                for (Map.Entry<Integer, Entry> e : current.entrySet()) {
+                    Entry entry = e.getValue();
+                    if (entry.offset >= snapshotLength) {
+                        put(e.getKey(), new Entry(entry.offset + shift, entry.length, entry.epochDay));
+                    }
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    Entry entry = current.get(ids[i]);
+                    // Запись удалена после снимка: ее байты остаются в файле до следующей компакции
+                    if (entry != null && entry.offset < snapshotLength) {
+                        put(ids[i], new Entry(newOffsets[i], newLengths[i], entry.epochDay));
+                    }
+                    if (folded[i] != null && changed.get(ids[i]) == folded[i]) {
+                        changed.remove(ids[i]);
+                    }
+                }
+                dataLength = position + appended;
+                writeIndex();
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+            if (logTmp != null) {
+                Files.deleteIfExists(logTmp);
+            }
+            synchronized (this) {
+                compacting = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARN: компакция журнала истории не удалась - " + e.getMessage());
+        }
+    }
+
+    private void requestCompactionIfLarge() {
+        if (compactor != null && !compactionRequested && log.length() >= COMPACT_THRESHOLD) {
+            compactionRequested = true;
+            compactor.execute(this::compactQuietly);
+        }
+    }
+
+    private void replayLog() throws IOException {
+        log.replay(new HistoryMutationLog.Replayer() {
+            @Override
+            public void update(int id, byte[] bytes) {
+                try {
+                    applyUpdate(id, bytes, epochDayOf(bytes));
+                } catch (IOException e) {
+                    // запись прошла проверку формата до записи в журнал
+                }
+            }
+
+            @Override
+            public void delete(int id) {
+                applyDelete(id);
+            }
+
+            @Override
+            public void patch(int id, int relativeOffset, byte[] bytes) {
+                try {
+                    byte[] current = current(id);
+                    if (current != null && relativeOffset >= 0 && relativeOffset + bytes.length <= current.length) {
+                        applyPatch(id, current, relativeOffset, bytes);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private void applyUpdate(int id, byte[] bytes, int epochDay) {
+        Entry entry = entries.get(id);
+        // При воспроизведении запись может уже отсутствовать в файле данных (удалена компакцией)
+        put(id, entry != null
+                ? new Entry(entry.offset, entry.length, epochDay)
+                : new Entry(ONLY_IN_LOG, 0, epochDay));
+        changed.put(id, bytes);
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    private void applyPatch(int id, byte[] current, int relativeOffset, byte[] bytes) {
+        // Всегда новый массив: компакция сравнивает снимок измененных записей по ссылке
+        byte[] patched = current.clone();
+        System.arraycopy(bytes, 0, patched, relativeOffset, bytes.length);
+        changed.put(id, patched);
+    }
+
+    private void applyDelete(int id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            order.remove(HistoryCursor.key(entry.epochDay, id));
+        }
+        changed.remove(id);
+    }
+
+    /**
+     * Возвращает текущие байты записи с учетом журнала или null, если записи нет.
+     */
+    private byte[] current(int id) throws IOException {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            return read(channel, id, entry);
+        }
+    }
+
+    private boolean load() throws IOException {
+        if (!Files.exists(indexPath)) {
+            return false;
+        }
+        long indexSize = Files.size(indexPath);
+        if (indexSize < HEADER_SIZE || (indexSize - HEADER_SIZE) % ENTRY_SIZE != 0) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            long storedLength = in.readLong();
+            int storedNextId = in.readInt();
+            if (storedLength != Files.size(dataPath)) {
+                return false;
+            }
+            long count = (indexSize - HEADER_SIZE) / ENTRY_SIZE;
+            for (long i = 0; i < count; i++) {
+                int id = in.readInt();
+                long offset = in.readLong();
+                int length = in.readInt();
+                int epochDay = in.readInt();
+                if (offset < 0 || length < 0 || offset + length > storedLength) {
+                    entries.clear();
+                    order.clear();
+                    return false;
+                }
+                put(id, new Entry(offset, length, epochDay));
+            }
+            dataLength = storedLength;
+            nextId = storedNextId;
+        }
+        return true;
+    }
+
+    /**
+     * Перестраивает индекс сканированием файла данных, читаемого через канал блоками.
+     * Началом записи считается строка вида "id,yyyy-MM-dd,", поэтому
+     * многострочные детали остаются частью своей записи. Если поля записи в кавычках
+     * (см. {@link HistoryRecordCodec}), перевод строки внутри кавычек не завершает строку,
+     * даже когда следующая строка деталей похожа на начало записи.
+     */
+    private void rebuild() throws IOException {
+        entries.clear();
+        order.clear();
+        int maxId = 0;
+        long position = 0;
+        long recordStart = -1;
+        long recordKey = 0;
+        byte[] head = new byte[32];
+        long lineStart = 0;
+        int headLength = 0;
+        boolean lineChecked = false;
+        // Следующий байт после "id,yyyy-MM-dd," показывает, записаны ли поля в кавычках
+        boolean checkQuote = false;
+        boolean quoted = false;
+        boolean inQuotes = false;
+
+        ByteBuffer buffer = ByteBuffer.allocate(REBUILD_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+                    if (checkQuote) {
+                        quoted = b == '"';
+                        checkQuote = false;
+                    }
+                    if (quoted && b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (b == '\n') {
+                        if (!inQuotes) {
+                            lineStart = position;
+                            headLength = 0;
+                            lineChecked = false;
+                        }
+                    } else if (!lineChecked && headLength < head.length) {
+                        head[headLength++] = b;
+                        long key = b == ',' ? parseRecordStart(head, headLength) : NOT_A_RECORD;
+                        if (key != NOT_A_RECORD) {
+                            if (recordStart >= 0) {
+                                put(recordKey, recordStart, (int) (lineStart - recordStart));
+                            }
+                            recordStart = lineStart;
+                            recordKey = key;
+                            maxId = Math.max(maxId, HistoryCursor.idOf(key));
+                            lineChecked = true;
+                            checkQuote = true;
+                            quoted = false;
+                        }
+                    }
+                }
+            }
+        }
+        if (recordStart >= 0) {
+            put(recordKey, recordStart, (int) (position - recordStart));
+        }
+        dataLength = position;
+        nextId = Math.max(maxId + 1, readNextId());
+        writeIndex();
+    }
+
+    /**
+     * Читает счетчик ID, сохраненный при компакции.
+     * @return сохраненное значение или 1, если файла нет или он поврежден
+     */
+    private int readNextId() throws IOException {
+        if (!Files.exists(nextIdPath) || Files.size(nextIdPath) != 4) {
+            return 1;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(nextIdPath))) {
+            return Math.max(in.readInt(), 1);
+        }
+    }
+
+    private void writeNextId() throws IOException {
+        Path tmp = nextIdPath.resolveSibling(nextIdPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            out.writeInt(nextId);
+        }
+        Files.move(tmp, nextIdPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeIndex() throws IOException {
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dataLength);
+            out.writeInt(nextId);
+            for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+                if (e.getValue().offset == ONLY_IN_LOG) {
+                    continue;
+                }
+                out.writeInt(e.getKey());
+                out.writeLong(e.getValue().offset);
+                out.writeInt(e.getValue().length);
+                out.writeInt(e.getValue().epochDay);
+            }
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void put(int id, Entry entry) {
+        Entry previous = entries.put(id, entry);
+        if (previous != null) {
+            order.remove(HistoryCursor.key(previous.epochDay, id));
+        }
+        order.add(HistoryCursor.key(entry.epochDay, id));
+    }
+
+    private void put(long key, long offset, int length) {
+        put(HistoryCursor.idOf(key), new Entry(offset, length, (int) (key >> 32)));
+    }
+
+    private byte[] read(FileChannel channel, int id, Entry entry) throws IOException {
+        byte[] bytes = changed.get(id);
+        return bytes != null ? bytes : read(channel, entry);
+    }
+
+    private static byte[] read(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new EOFException("Файл истории короче, чем указано в индексе");
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Читает length байт файла с позиции fileOffset в буфер начиная с bufferOffset.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, int bufferOffset, int length,
+                                  long fileOffset) throws IOException {
+        ByteBuffer target = buffer.slice(bufferOffset, length);
+        while (target.hasRemaining()) {
+            if (channel.read(target, fileOffset + target.position()) < 0) {
+                throw new EOFException("Файл истории короче, чем указано в индексе");
+            }
+        }
+    }
+
+    /**
+     * Возвращает день эпохи из начала закодированной записи.
+     */
+    private static int epochDayOf(byte[] bytes) throws IOException {
+        long key = parseRecordStart(bytes, Math.min(bytes.length, 32));
+        if (key == NOT_A_RECORD) {
+            throw new IOException("Запись истории имеет неверный формат");
+        }
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Проверяет, начинается ли строка с "id,yyyy-MM-dd,".
+     * @return ключ (день эпохи, ID) или NOT_A_RECORD, если строка не является началом записи
+     */
+    private static long parseRecordStart(byte[] head, int length) {
+        int i = 0;
+        long id = 0;
+        while (i < length && head[i] >= '0' && head[i] <= '9') {
+            id = id * 10 + (head[i] - '0');
+            if (id > Integer.MAX_VALUE) {
+                return NOT_A_RECORD;
+            }
+            i++;
+        }
+        if (i == 0 || i + 12 > length || head[i] != ',' || head[i + 11] != ',') {
+            return NOT_A_RECORD;
+        }
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        for (int k = 1; k <= 10; k++) {
+            byte c = head[i + k];
+            if (k == 5 || k == 8) {
+                if (c != '-') {
+                    return NOT_A_RECORD;
+                }
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return NOT_A_RECORD;
+            }
+            if (k < 5) {
+                year = year * 10 + (c - '0');
+            } else if (k < 8) {
+                month = month * 10 + (c - '0');
+            } else {
+                day = day * 10 + (c - '0');
+            }
+        }
+        try {
+            return HistoryCursor.key(LocalDate.of(year, month, day).toEpochDay(), (int) id);
+        } catch (DateTimeException e) {
+            return NOT_A_RECORD;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Копирует count байт из src начиная с position в dst начиная с target.
+     */
+    private static void transfer(FileChannel src, long position, long count, FileChannel dst, long target)
+            throws IOException {
+        while (count > 0) {
+            long transferred = src.transferTo(position, count, dst.position(target));
+            if (transferred <= 0) {
+                throw new EOFException("Неожиданный конец файла истории");
+            }
+            position += transferred;
+            target += transferred;
+            count -= transferred;
+        }
+    }
+}
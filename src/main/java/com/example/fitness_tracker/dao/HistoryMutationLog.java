@@ -0,0 +1,235 @@
+package com.example.fitness_tracker.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений файла истории (write-ahead log).
+ * Изменение, удаление и смена статуса записи дописываются в конец журнала небольшой записью
+ * и сбрасываются на диск до того, как изменение станет видно читателям; сам файл данных
+ * при этом не переписывается. Журнал воспроизводится при открытии и переносится в файл данных
+ * компакцией ({@link HistoryFileIndex#compact()}).
+ * Формат: заголовок (magic, версия), затем записи [длина, CRC32, тип, ID, данные].
+ * Запись, оборванная при сбое, определяется по длине или контрольной сумме и отбрасывается.
+ */
+class HistoryMutationLog {
+    static final byte UPDATE = 1;
+    static final byte DELETE = 2;
+    static final byte PATCH = 3;
+
+    private static final int MAGIC = 0x4654574C; // "FTWL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4;
+    // длина тела, CRC32 тела
+    private static final int FRAME_SIZE = 4 + 4;
+    // тип, ID
+    private static final int BODY_HEADER_SIZE = 1 + 4;
+
+    /**
+     * Получатель записей журнала при воспроизведении.
+     */
+    interface Replayer {
+        void update(int id, byte[] bytes);
+
+        void delete(int id);
+
+        void patch(int id, int relativeOffset, byte[] bytes);
+    }
+
+    private final Path path;
+    private long length;
+    private int size;
+
+    HistoryMutationLog(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Размер журнала в байтах (позиция следующей записи).
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Количество записей в журнале.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Воспроизводит журнал, создавая его при отсутствии. Оборванный хвост обрезается.
+     * @param replayer получатель записей
+     * @throws IOException если журнал не удается прочитать или он имеет неизвестный формат
+     */
+    void replay(Replayer replayer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                // Журнал не был создан до конца: изменений в нем нет
+                channel.truncate(0);
+                writeFully(channel, header(), 0);
+                length = HEADER_SIZE;
+                size = 0;
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(channel, header, 0) || header.flip().getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Неизвестный формат журнала истории: " + path);
+            }
+            long position = HEADER_SIZE;
+            int count = 0;
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+            CRC32 crc = new CRC32();
+            while (position + FRAME_SIZE <= fileSize) {
+                frame.clear();
+                readFully(channel, frame, position);
+                int bodyLength = frame.flip().getInt();
+                int checksum = frame.getInt();
+                if (bodyLength < BODY_HEADER_SIZE || position + FRAME_SIZE + bodyLength > fileSize) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(bodyLength);
+                readFully(channel, body, position + FRAME_SIZE);
+                crc.reset();
+                crc.update(body.array());
+                if ((int) crc.getValue() != checksum || !apply(body.flip(), replayer)) {
+                    break;
+                }
+                position += FRAME_SIZE + bodyLength;
+                count++;
+            }
+            if (position < fileSize) {
+                channel.truncate(position);
+            }
+            length = position;
+            size = count;
+        }
+    }
+
+    void logUpdate(int id, byte[] bytes) throws IOException {
+        append(body(UPDATE, id, bytes.length).put(bytes));
+    }
+
+    void logDelete(int id) throws IOException {
+        append(body(DELETE, id, 0));
+    }
+
+    void logPatch(int id, int relativeOffset, byte[] bytes) throws IOException {
+        append(body(PATCH, id, 4 + bytes.length).putInt(relativeOffset).put(bytes));
+    }
+
+    /**
+     * Записывает во временный файл журнал из записей, начиная с позиции from.
+     * Используется компакцией: записи до from уже перенесены в файл данных.
+     * @param from позиция первой сохраняемой записи
+     * @return путь временного файла для {@link #replaceWith(Path, long, int)}
+     */
+    Path writeTail(long from) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel src = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(dst, header(), 0);
+            long position = HEADER_SIZE;
+            long remaining = length - from;
+            while (remaining > 0) {
+                long transferred = src.transferTo(from, remaining, dst.position(position));
+                if (transferred <= 0) {
+                    throw new IOException("Неожиданный конец журнала истории");
+                }
+                from += transferred;
+                position += transferred;
+                remaining -= transferred;
+            }
+            dst.force(true);
+        }
+        return tmp;
+    }
+
+    /**
+     * Атомарно заменяет журнал файлом из {@link #writeTail(long)}.
+     * @param tmp временный файл
+     * @param from позиция, с которой он был записан
+     * @param entriesBefore количество записей до этой позиции
+     */
+    void replaceWith(Path tmp, long from, int entriesBefore) throws IOException {
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        length = HEADER_SIZE + length - from;
+        size -= entriesBefore;
+    }
+
+    private static ByteBuffer body(byte type, int id, int payloadLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_SIZE + BODY_HEADER_SIZE + payloadLength);
+        buffer.position(FRAME_SIZE);
+        return buffer.put(type).putInt(id);
+    }
+
+    /**
+     * Дописывает запись и сбрасывает ее на диск.
+     */
+    private void append(ByteBuffer buffer) throws IOException {
+        int bodyLength = buffer.position() - FRAME_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), FRAME_SIZE, bodyLength);
+        buffer.putInt(0, bodyLength).putInt(4, (int) crc.getValue()).flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            writeFully(channel, buffer, length);
+            channel.force(false);
+        }
+        length += buffer.limit();
+        size++;
+    }
+
+    private static boolean apply(ByteBuffer body, Replayer replayer) {
+        byte type = body.get();
+        int id = body.getInt();
+        switch (type) {
+            case UPDATE -> replayer.update(id, remaining(body));
+            case DELETE -> replayer.delete(id);
+            case PATCH -> {
+                if (body.remaining() < 4) {
+                    return false;
+                }
+                replayer.patch(id, body.getInt(), remaining(body));
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
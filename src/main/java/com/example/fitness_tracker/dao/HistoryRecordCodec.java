@@ -0,0 +1,341 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Формат записи файла истории: {@code id,yyyy-MM-dd,"тип","детали",статус\n}.
+ * Тип и детали пишутся в кавычках, кавычка внутри поля удваивается, поэтому поля могут содержать
+ * запятые (например, "0,31 кг") и переводы строк. Статус — последнее поле фиксированной ширины
+ * {@value #STATUS_WIDTH}, чтобы его смену можно было записать в журнал коротким патчем.
+ * <p>
+ * Записи разбираются прямо из байтов буфера: ID и дата читаются без промежуточных строк,
+ * а строки типа и деталей создаются только при обращении к ним. Читаются и записи прежнего формата
+ * без кавычек ({@code id,дата,тип,детали,статус}), в которых детали находятся между третьей и последней запятой.
+ * Экземпляр хранит последнюю разобранную запись, переиспользуется для разбора многих записей
+ * и не потокобезопасен.
+ */
+final class HistoryRecordCodec {
+    static final int STATUS_WIDTH = 5;
+
+    private static final byte QUOTE = '"';
+    private static final byte[] ACTIVE = "true ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INACTIVE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    // Байты последней записи: массив буфера или копия участка буфера без массива
+    private byte[] data;
+    private byte[] copy = new byte[0];
+    private int id;
+    private int packedDate;
+    private LocalDate date;
+    private int typeStart;
+    private int typeEnd;
+    private boolean typeEscaped;
+    private int detailsStart;
+    private int detailsEnd;
+    private boolean detailsEscaped;
+    // Результат последнего closingQuote
+    private boolean escaped;
+    private boolean active;
+    private String operationType;
+    private String details;
+
+    /**
+     * Кодирует запись в байты файла истории.
+     * @param record запись с выделенным ID
+     * @return байты записи вместе с завершающим переводом строки
+     */
+    static byte[] encode(HistoryRecord record) {
+        byte[] prefix = (record.getId() + "," + record.getDate() + ",").getBytes(StandardCharsets.US_ASCII);
+        byte[] type = String.valueOf(record.getOperationType()).getBytes(StandardCharsets.UTF_8);
+        byte[] details = String.valueOf(record.getDetails()).getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[prefix.length + quotedLength(type) + 1 + quotedLength(details) + 1 + STATUS_WIDTH + 1];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        int i = putQuoted(bytes, prefix.length, type);
+        bytes[i++] = ',';
+        i = putQuoted(bytes, i, details);
+        bytes[i++] = ',';
+        System.arraycopy(status(record.isActive()), 0, bytes, i, STATUS_WIDTH);
+        bytes[i + STATUS_WIDTH] = '\n';
+        return bytes;
+    }
+
+    /**
+     * @return байты статуса фиксированной ширины {@value #STATUS_WIDTH}
+     */
+    static byte[] status(boolean active) {
+        return (active ? ACTIVE : INACTIVE).clone();
+    }
+
+    /**
+     * Разбирает запись из массива байтов.
+     * @param bytes байты одной записи
+     * @return запись или empty, если байты не являются записью истории
+     */
+    Optional<HistoryRecord> decode(byte[] bytes) {
+        data = bytes;
+        return parse(0, bytes.length) ? Optional.of(toRecord()) : Optional.empty();
+    }
+
+    /**
+     * Разбирает запись из участка буфера, не меняя его позицию и границы.
+     * Строки типа и деталей не создаются: они декодируются при первом обращении,
+     * поэтому буфер нельзя менять, пока запись используется.
+     * @param buffer буфер с записью
+     * @param start начало записи в буфере
+     * @param length длина записи вместе с завершающим переводом строки
+     * @return false, если участок не является записью истории
+     */
+    boolean read(ByteBuffer buffer, int start, int length) {
+        if (buffer.hasArray()) {
+            data = buffer.array();
+            start += buffer.arrayOffset();
+        } else {
+            if (copy.length < length) {
+                copy = new byte[length];
+            }
+            buffer.get(start, copy, 0, length);
+            data = copy;
+            start = 0;
+        }
+        return parse(start, start + length);
+    }
+
+    private boolean parse(int start, int end) {
+        operationType = null;
+        details = null;
+        if (end > start && data[end - 1] == '\n') {
+            end--;
+        }
+        int i = start;
+        long value = 0;
+        while (i < end && isDigit(data[i])) {
+            value = value * 10 + (data[i] - '0');
+            if (value > Integer.MAX_VALUE) {
+                return false;
+            }
+            i++;
+        }
+        if (i == start || i + 12 > end || data[i] != ',' || data[i + 11] != ',') {
+            return false;
+        }
+        id = (int) value;
+        if (!readDate(i + 1)) {
+            return false;
+        }
+        int fieldStart = i + 12;
+        int statusStart = fieldStart < end && data[fieldStart] == QUOTE ? readQuotedFields(fieldStart, end) : -1;
+        if (statusStart < 0) {
+            statusStart = readPlainFields(fieldStart, end);
+            if (statusStart < 0) {
+                return false;
+            }
+        }
+        active = isTrue(statusStart, end);
+        return true;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    LocalDate getDate() {
+        return date;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    String getOperationType() {
+        if (operationType == null) {
+            operationType = decodeString(typeStart, typeEnd, typeEscaped);
+        }
+        return operationType;
+    }
+
+    String getDetails() {
+        if (details == null) {
+            details = decodeString(detailsStart, detailsEnd, detailsEscaped);
+        }
+        return details;
+    }
+
+    /**
+     * Сравнивает тип записи с заданным, не создавая строку типа.
+     * @param utf8 тип в UTF-8
+     * @return true, если тип записи совпадает
+     */
+    boolean operationTypeEquals(byte[] utf8) {
+        if (typeEscaped) {
+            return getOperationType().equals(new String(utf8, StandardCharsets.UTF_8));
+        }
+        return Arrays.equals(data, typeStart, typeEnd, utf8, 0, utf8.length);
+    }
+
+    HistoryRecord toRecord() {
+        return new HistoryRecord(id, date, getOperationType(), getDetails(), active);
+    }
+
+    /**
+     * Читает дату yyyy-MM-dd; объект даты переиспользуется, пока записи идут с одной датой.
+     */
+    private boolean readDate(int start) {
+        int packed = 0;
+        for (int k = 0; k < 10; k++) {
+            byte c = data[start + k];
+            if (k == 4 || k == 7) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (isDigit(c)) {
+                packed = packed * 10 + (c - '0');
+            } else {
+                return false;
+            }
+        }
+        if (date != null && packed == packedDate) {
+            return true;
+        }
+        try {
+            date = LocalDate.of(packed / 10000, packed / 100 % 100, packed % 100);
+        } catch (DateTimeException e) {
+            return false;
+        }
+        packedDate = packed;
+        return true;
+    }
+
+    /**
+     * Находит поля "тип","детали", в кавычках.
+     * @return начало статуса или -1, если поля записаны не в кавычках
+     */
+    private int readQuotedFields(int start, int end) {
+        int close = closingQuote(start, end);
+        if (close < 0 || close + 2 >= end || data[close + 1] != ',' || data[close + 2] != QUOTE) {
+            return -1;
+        }
+        typeStart = start + 1;
+        typeEnd = close;
+        typeEscaped = escaped;
+        int detailsQuote = close + 2;
+        close = closingQuote(detailsQuote, end);
+        if (close < 0 || close + 1 >= end || data[close + 1] != ',') {
+            return -1;
+        }
+        detailsStart = detailsQuote + 1;
+        detailsEnd = close;
+        detailsEscaped = escaped;
+        return close + 2;
+    }
+
+    /**
+     * Находит поля прежнего формата: тип до следующей запятой, детали до последней.
+     * @return начало статуса или -1, если запятых недостаточно
+     */
+    private int readPlainFields(int start, int end) {
+        int comma = start;
+        while (comma < end && data[comma] != ',') {
+            comma++;
+        }
+        int last = end - 1;
+        while (last > comma && data[last] != ',') {
+            last--;
+        }
+        if (comma >= end || last <= comma) {
+            return -1;
+        }
+        typeStart = start;
+        typeEnd = comma;
+        typeEscaped = false;
+        detailsStart = comma + 1;
+        detailsEnd = last;
+        detailsEscaped = false;
+        return last + 1;
+    }
+
+    /**
+     * Находит конец поля в кавычках; {@link #escaped} показывает, были ли в поле удвоенные кавычки.
+     * @param open позиция открывающей кавычки
+     * @return позиция закрывающей кавычки или -1
+     */
+    private int closingQuote(int open, int end) {
+        escaped = false;
+        for (int i = open + 1; i < end; i++) {
+            if (data[i] == QUOTE) {
+                if (i + 1 < end && data[i + 1] == QUOTE) {
+                    escaped = true;
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Статус "true" без учета регистра и пробелов по краям, как Boolean.parseBoolean(s.trim()).
+     */
+    private boolean isTrue(int from, int to) {
+        while (from < to && (data[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (data[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        if (to - from != 4) {
+            return false;
+        }
+        return (data[from] | 0x20) == 't' && (data[from + 1] | 0x20) == 'r'
+                && (data[from + 2] | 0x20) == 'u' && (data[from + 3] | 0x20) == 'e';
+    }
+
+    private String decodeString(int from, int to, boolean doubledQuotes) {
+        if (!doubledQuotes) {
+            return new String(data, from, to - from, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[to - from];
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            bytes[length++] = b;
+            if (b == QUOTE) {
+                i++;
+            }
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static int quotedLength(byte[] text) {
+        int length = text.length + 2;
+        for (byte b : text) {
+            if (b == QUOTE) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    private static int putQuoted(byte[] bytes, int i, byte[] text) {
+        bytes[i++] = QUOTE;
+        for (byte b : text) {
+            bytes[i++] = b;
+            if (b == QUOTE) {
+                bytes[i++] = QUOTE;
+            }
+        }
+        bytes[i++] = QUOTE;
+        return i;
+    }
+}
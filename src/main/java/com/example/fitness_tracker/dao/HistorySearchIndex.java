@@ -0,0 +1,305 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный триграммный индекс для полнотекстового поиска по истории.
+ * Каждой триграмме (три подряд идущих символа в нижнем регистре) соответствует
+ * отсортированный список ID записей. Поиск пересекает списки триграмм запроса,
+ * начиная с самого короткого; оставшихся кандидатов вызывающий код проверяет
+ * по самим записям ({@link #matches}), поэтому текст записей в индексе не хранится.
+ * Индекс обновляется инкрементально при добавлении, изменении и удалении записей;
+ * при изменении и удалении передается прежний текст записи. Может быть подписан на
+ * {@link ConcurrentHistoryStore}, который передает изменения каждой записи по порядку.
+ */
+class HistorySearchIndex implements ConcurrentHistoryStore.Listener {
+    private static final int GRAM_LENGTH = 3;
+    // Разделитель полей: не встречается в запросе, поэтому совпадение не пересекает границу полей
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    // ID всех проиндексированных записей: кандидаты для запросов без триграмм
+    private final PostingList indexed = new PostingList();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Отсортированный по возрастанию список ID.
+     * ID новых записей обычно больше всех существующих, поэтому добавление — O(1).
+     */
+    private static final class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == 0 || id > ids[size - 1]) {
+                ensureCapacity();
+                ids[size++] = id;
+                return;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -position - 1;
+            ensureCapacity();
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+
+        void clear() {
+            ids = new int[4];
+            size = 0;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+        }
+    }
+
+    /**
+     * Добавляет запись в индекс.
+     * @param id идентификатор записи
+     * @param operationType тип операции
+     * @param details детали операции
+     */
+    void put(int id, String operationType, String details) {
+        Set<Long> grams = grams(text(operationType, details));
+        lock.writeLock().lock();
+        try {
+            indexed.add(id);
+            for (long gram : grams) {
+                postings.computeIfAbsent(gram, g -> new PostingList()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Заменяет текст записи в индексе.
+     * @param id идентификатор записи
+     * @param previous запись до изменения
+     * @param operationType новый тип операции
+     * @param details новые детали операции
+     */
+    void update(int id, HistoryRecord previous, String operationType, String details) {
+        Set<Long> removed = grams(text(previous.getOperationType(), previous.getDetails()));
+        Set<Long> added = grams(text(operationType, details));
+        lock.writeLock().lock();
+        try {
+            for (long gram : removed) {
+                if (!added.contains(gram)) {
+                    unindex(id, gram);
+                }
+            }
+            indexed.add(id);
+            for (long gram : added) {
+                postings.computeIfAbsent(gram, g -> new PostingList()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет запись из индекса.
+     * @param previous удаляемая запись
+     */
+    void remove(HistoryRecord previous) {
+        Set<Long> grams = grams(text(previous.getOperationType(), previous.getDetails()));
+        lock.writeLock().lock();
+        try {
+            indexed.remove(previous.getId());
+            for (long gram : grams) {
+                unindex(previous.getId(), gram);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void added(HistoryRecord record) {
+        put(record.getId(), record.getOperationType(), record.getDetails());
+    }
+
+    @Override
+    public void updated(HistoryRecord previous, HistoryRecord current) {
+        // Смена статуса не меняет текст записи
+        if (!Objects.equals(previous.getOperationType(), current.getOperationType())
+                || !Objects.equals(previous.getDetails(), current.getDetails())) {
+            update(current.getId(), previous, current.getOperationType(), current.getDetails());
+        }
+    }
+
+    @Override
+    public void removed(HistoryRecord record) {
+        remove(record);
+    }
+
+    @Override
+    public void cleared() {
+        clear();
+    }
+
+    /**
+     * Очищает индекс.
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            indexed.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Разбирает поисковый запрос на слова в нижнем регистре.
+     * @param query поисковый запрос
+     * @return слова запроса; для пустого запроса — одно пустое слово, которому соответствуют все записи
+     */
+    static String[] terms(String query) {
+        return normalize(query).trim().split("\\s+");
+    }
+
+    /**
+     * Возвращает записи, которые могут содержать все слова запроса: в них есть все триграммы слов.
+     * Совпадение нужно проверить по самой записи методом {@link #matches}.
+     * Если в запросе нет слов длиной от трех символов, кандидатами являются все записи.
+     * @param terms слова запроса ({@link #terms})
+     * @return ID кандидатов по возрастанию
+     */
+    int[] candidates(String[] terms) {
+        Set<Long> grams = new HashSet<>();
+        for (String term : terms) {
+            grams.addAll(grams(term));
+        }
+        lock.readLock().lock();
+        try {
+            if (grams.isEmpty()) {
+                return Arrays.copyOf(indexed.ids, indexed.size);
+            }
+            return intersect(grams);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Проверяет, содержит ли запись все слова запроса (без учета регистра).
+     * Каждое слово ищется как подстрока в типе операции или в деталях.
+     * @param terms слова запроса ({@link #terms})
+     * @param operationType тип операции записи
+     * @param details детали записи
+     * @return true, если запись подходит
+     */
+    static boolean matches(String[] terms, String operationType, String details) {
+        String text = text(operationType, details);
+        for (String term : terms) {
+            if (!text.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает количество проиндексированных записей.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return indexed.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Пересекает списки триграмм, начиная с самого короткого. Вызывается под блокировкой чтения.
+     */
+    private int[] intersect(Set<Long> grams) {
+        List<PostingList> lists = new ArrayList<>(grams.size());
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        PostingList smallest = lists.get(0);
+        int[] result = Arrays.copyOf(smallest.ids, smallest.size);
+        int count = result.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            PostingList list = lists.get(i);
+            int kept = 0;
+            for (int k = 0; k < count; k++) {
+                if (list.contains(result[k])) {
+                    result[kept++] = result[k];
+                }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private void unindex(int id, long gram) {
+        PostingList list = postings.get(gram);
+        if (list != null) {
+            list.remove(id);
+            if (list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Текст записи для поиска: тип и детали в нижнем регистре через разделитель полей.
+     */
+    private static String text(String operationType, String details) {
+        return normalize(operationType) + FIELD_SEPARATOR + normalize(details);
+    }
+
+    /**
+     * Возвращает различные триграммы текста, упакованные в long (по 16 бит на символ).
+     */
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            char a = text.charAt(i);
+            char b = text.charAt(i + 1);
+            char c = text.charAt(i + 2);
+            if (a == FIELD_SEPARATOR || b == FIELD_SEPARATOR || c == FIELD_SEPARATOR) {
+                continue;
+            }
+            grams.add(((long) a << 32) | ((long) b << 16) | c);
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
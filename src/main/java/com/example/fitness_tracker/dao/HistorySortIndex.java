@@ -0,0 +1,232 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiPredicate;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Поддерживаемые порядки сортировки истории: по дате (operation_date), типу операции
+ * (operation_type) и деталям (details). Каждый порядок — упорядоченное множество на skip-list,
+ * обновляемое инкрементально при записи, поэтому отсортированное представление не сортируется
+ * заново: оно обходится в нужном направлении, а первые k записей получаются за O(k).
+ * Текстовые поля сравниваются без учета регистра; равные значения упорядочены по ID
+ * в направлении обхода. Для неизвестного поля возвращается порядок ID.
+ */
+class HistorySortIndex implements ConcurrentHistoryStore.Listener {
+    static final String BY_DATE = "operation_date";
+    static final String BY_TYPE = "operation_type";
+    static final String BY_DETAILS = "details";
+
+    private static final Comparator<TextKey> TEXT_ORDER = Comparator
+            .comparing((TextKey key) -> key.text, String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(key -> key.id);
+
+    /**
+     * Ключ текстового порядка: значение поля и ID для различения равных значений.
+     */
+    private static final class TextKey {
+        private final String text;
+        private final int id;
+
+        TextKey(String text, int id) {
+            this.text = text == null ? "" : text;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Проиндексированные значения полей записи; нужны, чтобы удалить старые ключи при изменении.
+     */
+    private static final class Fields {
+        private final LocalDate date;
+        private final String operationType;
+        private final String details;
+
+        Fields(HistoryRecord record) {
+            this.date = record.getDate();
+            this.operationType = record.getOperationType();
+            this.details = record.getDetails();
+        }
+    }
+
+    // compute в ConcurrentHashMap атомарен, поэтому изменения одной записи не перемешиваются
+    private final Map<Integer, Fields> fields = new ConcurrentHashMap<>();
+    private final NavigableSet<Integer> byId = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Long> byDate = new ConcurrentSkipListSet<>();
+    private final NavigableSet<TextKey> byType = new ConcurrentSkipListSet<>(TEXT_ORDER);
+    private final NavigableSet<TextKey> byDetails = new ConcurrentSkipListSet<>(TEXT_ORDER);
+
+    /**
+     * Добавляет запись или обновляет ее ключи сортировки.
+     */
+    void put(HistoryRecord record) {
+        Fields current = new Fields(record);
+        fields.compute(record.getId(), (id, previous) -> {
+            if (previous != null) {
+                unindex(id, previous);
+            }
+            index(id, current);
+            return current;
+        });
+    }
+
+    void remove(int id) {
+        fields.computeIfPresent(id, (key, previous) -> {
+            unindex(key, previous);
+            return null;
+        });
+    }
+
+    void clear() {
+        fields.clear();
+        byId.clear();
+        byDate.clear();
+        byType.clear();
+        byDetails.clear();
+    }
+
+    @Override
+    public void added(HistoryRecord record) {
+        put(record);
+    }
+
+    @Override
+    public void updated(HistoryRecord previous, HistoryRecord current) {
+        put(current);
+    }
+
+    @Override
+    public void removed(HistoryRecord record) {
+        remove(record.getId());
+    }
+
+    @Override
+    public void cleared() {
+        clear();
+    }
+
+    /**
+     * Перебирает ID в порядке сортировки.
+     * @param sortBy поле сортировки (operation_date, operation_type, details)
+     * @param ascending направление обхода
+     * @return итератор ID; для неизвестного поля — ID по возрастанию
+     */
+    Iterator<Integer> ids(String sortBy, boolean ascending) {
+        switch (sortBy) {
+            case BY_DATE: {
+                Iterator<Long> keys = ascending ? byDate.iterator() : byDate.descendingIterator();
+                return mapped(keys, HistoryCursor::idOf);
+            }
+            case BY_TYPE:
+                return mapped(ascending ? byType.iterator() : byType.descendingIterator(), key -> key.id);
+            case BY_DETAILS:
+                return mapped(ascending ? byDetails.iterator() : byDetails.descendingIterator(), key -> key.id);
+            default:
+                return byId.iterator();
+        }
+    }
+
+    /**
+     * Перебирает записи в порядке сортировки, читая их через lookup. Запись, ключ которой изменился
+     * после того, как обход прочитал его позицию, на старой позиции пропускается: она встретится
+     * на новой, если та еще впереди. Удаленные записи пропускаются.
+     * @param sortBy поле сортировки (operation_date, operation_type, details)
+     * @param ascending направление обхода
+     * @param lookup чтение записи по ID; null, если записи нет
+     * @return итератор записей; для неизвестного поля — в порядке ID
+     */
+    Iterator<HistoryRecord> records(String sortBy, boolean ascending, IntFunction<HistoryRecord> lookup) {
+        switch (sortBy) {
+            case BY_DATE:
+                return checked(ascending ? byDate.iterator() : byDate.descendingIterator(), HistoryCursor::idOf,
+                        (key, record) -> key == HistoryCursor.key(record.getDate().toEpochDay(), record.getId()),
+                        lookup);
+            case BY_TYPE:
+                return checked(ascending ? byType.iterator() : byType.descendingIterator(), key -> key.id,
+                        (key, record) -> TEXT_ORDER.compare(key, new TextKey(record.getOperationType(), key.id)) == 0,
+                        lookup);
+            case BY_DETAILS:
+                return checked(ascending ? byDetails.iterator() : byDetails.descendingIterator(), key -> key.id,
+                        (key, record) -> TEXT_ORDER.compare(key, new TextKey(record.getDetails(), key.id)) == 0,
+                        lookup);
+            default:
+                return checked(byId.iterator(), id -> id, (id, record) -> true, lookup);
+        }
+    }
+
+    int size() {
+        return fields.size();
+    }
+
+    private void index(int id, Fields values) {
+        byId.add(id);
+        byDate.add(HistoryCursor.key(values.date.toEpochDay(), id));
+        byType.add(new TextKey(values.operationType, id));
+        byDetails.add(new TextKey(values.details, id));
+    }
+
+    private void unindex(int id, Fields values) {
+        byId.remove(id);
+        byDate.remove(HistoryCursor.key(values.date.toEpochDay(), id));
+        byType.remove(new TextKey(values.operationType, id));
+        byDetails.remove(new TextKey(values.details, id));
+    }
+
+    private static <T> Iterator<HistoryRecord> checked(Iterator<T> keys, ToIntFunction<T> idOf,
+                                                       BiPredicate<T, HistoryRecord> atKey,
+                                                       IntFunction<HistoryRecord> lookup) {
+        return new Iterator<>() {
+            private HistoryRecord next = advance();
+
+            private HistoryRecord advance() {
+                while (keys.hasNext()) {
+                    T key = keys.next();
+                    HistoryRecord record = lookup.apply(idOf.applyAsInt(key));
+                    if (record != null && atKey.test(key, record)) {
+                        return record;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public HistoryRecord next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                HistoryRecord current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    private static <T> Iterator<Integer> mapped(Iterator<T> keys, ToIntFunction<T> idOf) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return idOf.applyAsInt(keys.next());
+            }
+        };
+    }
+}
@@ -2,76 +2,161 @@ package com.example.fitness_tracker.dao;
 
 import com.example.fitness_tracker.model.UserData;
 import com.example.fitness_tracker.model.HistoryRecord;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.scene.control.Alert;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Реализация UserDataDao для хранения данных в памяти.
- * Использует паттерн Singleton для обеспечения единственного экземпляра.
- * Хранит данные в ObservableList для удобства работы с JavaFX.
+ * Для каждого пользователя создается один экземпляр ({@link #forUser(int)}) со своими хранилищем
+ * и индексами, поэтому запись одного пользователя не блокирует других.
+ * История хранится в потокобезопасном хранилище с доступом по ID
+ * ({@link ConcurrentHistoryStore}); чтение списков идет по неизменяемым снимкам.
+ * Для отображения в JavaFX используйте {@link ObservableHistoryAdapter}.
  */
 public class InMemoryUserDataDao implements UserDataDao {
-    // Singleton instance
-    private static final InMemoryUserDataDao INSTANCE = new InMemoryUserDataDao();
+    // Разделы пользователей; создаются при первом обращении
+    private static final ConcurrentMap<Integer, InMemoryUserDataDao> PARTITIONS = new ConcurrentHashMap<>();
 
-    private final ObservableList<UserData> userDataList = FXCollections.observableArrayList();
-    private final ObservableList<HistoryRecord> historyRecords = FXCollections.observableArrayList();
+    private final int userId;
+    // Хранятся только последние данные пользователя
+    private final AtomicReference<UserData> userData = new AtomicReference<>();
+    private final ConcurrentHistoryStore historyStore = new ConcurrentHistoryStore();
+    private final HistorySearchIndex searchIndex = new HistorySearchIndex();
+    private final HistoryAttributeIndex attributeIndex = new HistoryAttributeIndex();
+    private final HistorySortIndex sortIndex = new HistorySortIndex();
+    private final WeightSeries weightSeries = new WeightSeries();
 
-    private InMemoryUserDataDao() {
-        // Конструктор пустой
+    private InMemoryUserDataDao(int userId) {
+        this.userId = userId;
+        historyStore.addListener(searchIndex);
+        historyStore.addListener(attributeIndex);
+        historyStore.addListener(sortIndex);
     }
 
     /**
-     * Возвращает единственный экземпляр DAO.
+     * Возвращает экземпляр DAO пользователя по умолчанию.
      * @return Экземпляр InMemoryUserDataDao
      */
     public static InMemoryUserDataDao getInstance() {
-        return INSTANCE;
+        return forUser(DEFAULT_USER_ID);
     }
 
     /**
-     * Сохраняет данные пользователя в памяти.
+     * Возвращает экземпляр DAO пользователя, создавая его раздел при первом обращении.
+     * @param userId ID пользователя
+     * @return Экземпляр InMemoryUserDataDao
+     */
+    public static InMemoryUserDataDao forUser(int userId) {
+        return PARTITIONS.computeIfAbsent(userId, InMemoryUserDataDao::new);
+    }
+
+    @Override
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Сохраняет данные пользователя в памяти и добавляет точку во временной ряд веса.
      * @param userData Данные пользователя для сохранения
      */
     @Override
     public void saveUserData(UserData userData) {
-        // Всегда храним только одну запись пользователя
-        if (userDataList.isEmpty()) {
-            userDataList.add(userData);
-        } else {
-            userDataList.set(0, userData);
+        // Храним только последние данные пользователя; история веса остается в ряду
+        this.userData.set(userData);
+        weightSeries.append(userData);
+    }
+
+    /**
+     * Выполняет пакет по одной операции; импортированные данные пользователя
+     * не добавляют точку во временной ряд веса.
+     * @param batch пакет операций
+     */
+    @Override
+    public void executeBatch(WriteBatch batch) {
+        for (WriteBatch.Operation operation : batch.getOperations()) {
+            if (operation instanceof WriteBatch.SaveUserData save && !save.isWeightPoint()) {
+                userData.set(save.getUserData());
+            } else {
+                operation.applyTo(this);
+            }
         }
     }
 
     /**
      * Сохраняет запись истории операций в памяти.
+     * Запись получает уникальный ID, который не меняется при удалении других записей.
      * @param operationType тип выполненной операции (например, "Расчет прогресса")
      * @param details детали операции (результат вычислений)
      */
     @Override
     public void saveHistoryRecord(String operationType, String details) {
-        HistoryRecord record = new HistoryRecord(
-                LocalDate.now(),
-                operationType,
-                details,
-                true
-        );
-        historyRecords.add(record);
+        historyStore.add(LocalDate.now(), operationType, details, true);
+    }
+
+    /**
+     * Сохраняет запись истории с заданными датой и статусом под новым ID.
+     * @param record запись истории
+     * @return ID новой записи
+     */
+    @Override
+    public int saveHistoryRecord(HistoryRecord record) {
+        return historyStore.add(record.getDate(), record.getOperationType(), record.getDetails(),
+                record.isActive()).getId();
     }
 
     /**
      * Получает все записи истории операций.
-     * @return неизменяемый список записей истории
+     * @return неизменяемый снимок истории в порядке ID
      */
     @Override
     public List<HistoryRecord> getHistoryRecords() {
-        return List.copyOf(historyRecords);
+        return historyStore.snapshot();
+    }
+
+    /**
+     * Получает страницу истории обходом индекса по дате: читаются только записи страницы.
+     * @param after курсор последней записи предыдущей страницы или null
+     * @param limit максимальное количество записей
+     * @param descending true - от новых записей к старым
+     * @return записи страницы
+     */
+    @Override
+    public List<HistoryRecord> getHistoryPage(HistoryCursor after, int limit, boolean descending) {
+        List<HistoryRecord> page = new ArrayList<>(Math.max(0, Math.min(limit, historyStore.size())));
+        for (Iterator<Integer> ids = attributeIndex.idsAfter(after, descending); ids.hasNext() && page.size() < limit; ) {
+            historyStore.get(ids.next()).ifPresent(page::add);
+        }
+        return page;
+    }
+
+    /**
+     * Получает записи за период через индекс по дате.
+     * @param from начальная дата
+     * @param to конечная дата (включительно)
+     * @return записи в порядке (дата, ID)
+     */
+    @Override
+    public List<HistoryRecord> getHistoryRecordsByDateRange(LocalDate from, LocalDate to) {
+        List<HistoryRecord> records = new ArrayList<>();
+        for (int id : attributeIndex.idsInDateRange(from.toEpochDay(), to.toEpochDay())) {
+            // Индекс может отставать от конкурентной записи: проверяем дату по хранилищу
+            historyStore.get(id)
+                    .filter(record -> !record.getDate().isBefore(from) && !record.getDate().isAfter(to))
+                    .ifPresent(records::add);
+        }
+        return records;
+    }
+
+    @Override
+    public WeightSeries.Slice getWeightSeries(LocalDate from, LocalDate to) {
+        return weightSeries.slice(from, to);
     }
 
     /**
@@ -81,8 +166,8 @@ public class InMemoryUserDataDao implements UserDataDao {
      */
     @Override
     public Optional<UserData> getUserDataById(int index) {
-        if (index == 0 && !userDataList.isEmpty()) {
-            return Optional.of(userDataList.get(0));
+        if (index == 0) {
+            return Optional.ofNullable(userData.get());
         }
         return Optional.empty();
     }
@@ -94,8 +179,8 @@ public class InMemoryUserDataDao implements UserDataDao {
      */
     @Override
     public void updateUserData(int index, UserData userData) {
-        if (index == 0 && !userDataList.isEmpty()) {
-            userDataList.set(0, userData);
+        if (index == 0) {
+            this.userData.updateAndGet(current -> current != null ? userData : null);
         }
     }
 
@@ -105,124 +190,141 @@ public class InMemoryUserDataDao implements UserDataDao {
      */
     @Override
     public void deleteUserData(int index) {
-        if (index == 0 && !userDataList.isEmpty()) {
-            userDataList.clear();
+        if (index == 0) {
+            userData.set(null);
         }
     }
 
     /**
-     * Получает запись истории по индексу.
-     * @param index индекс записи истории
+     * Получает запись истории по ID.
+     * @param id идентификатор записи истории
      * @return Optional с записью истории, если она существует
      */
     @Override
-    public Optional<HistoryRecord> getHistoryRecordById(int index) {
-        if (index >= 0 && index < historyRecords.size()) {
-            return Optional.of(historyRecords.get(index));
-        }
-        return Optional.empty();
+    public Optional<HistoryRecord> getHistoryRecordById(int id) {
+        return historyStore.get(id);
     }
 
     /**
      * Обновляет запись истории.
-     * @param index индекс записи для обновления
+     * @param id идентификатор записи для обновления
      * @param record новые данные записи истории
      */
     @Override
-    public void updateHistoryRecord(int index, HistoryRecord record) {
-        if (index >= 0 && index < historyRecords.size()) {
-            historyRecords.set(index, record);
-        }
+    public void updateHistoryRecord(int id, HistoryRecord record) {
+        HistoryRecord updated = new HistoryRecord(id, record.getDate(), record.getOperationType(),
+                record.getDetails(), record.isActive());
+        historyStore.replace(id, current -> updated);
     }
 
     /**
      * Удаляет запись истории.
-     * @param index индекс записи для удаления
+     * @param id идентификатор записи для удаления
      */
     @Override
-    public void deleteHistoryRecord(int index) {
-        if (index >= 0 && index < historyRecords.size()) {
-            historyRecords.remove(index);
-        }
+    public void deleteHistoryRecord(int id) {
+        historyStore.remove(id);
     }
 
     /**
      * Обновляет статус активности записи истории.
-     * @param index индекс записи
+     * @param id идентификатор записи
      * @param newStatus новый статус активности (true/false)
      */
     @Override
-    public void updateHistoryRecordStatus(int index, boolean newStatus) {
-        if (index >= 0 && index < historyRecords.size()) {
-            historyRecords.get(index).setActive(newStatus);
-        }
+    public void updateHistoryRecordStatus(int id, boolean newStatus) {
+        // Запись заменяется новой, чтобы не изменять объекты в уже выданных снимках
+        historyStore.replace(id, previous -> new HistoryRecord(id, previous.getDate(),
+                previous.getOperationType(), previous.getDetails(), newStatus));
     }
 
     /**
-     * Ищет записи истории по ключевому слову.
-     * @param searchTerm ключевое слово для поиска
-     * @return список найденных записей истории
+     * Ищет записи истории через инвертированный индекс (без учета регистра).
+     * Запись подходит, если содержит все слова запроса; кандидаты из индекса проверяются по самим записям.
+     * @param searchTerm поисковый запрос
+     * @return список найденных записей истории в порядке ID
      */
     @Override
     public List<HistoryRecord> searchHistoryRecords(String searchTerm) {
-        return historyRecords.stream()
-                .filter(record -> record.getOperationType().toLowerCase().contains(searchTerm.toLowerCase()) ||
-                        record.getDetails().toLowerCase().contains(searchTerm.toLowerCase()))
-                .collect(Collectors.toList());
+        String[] terms = HistorySearchIndex.terms(searchTerm);
+        int[] ids = searchIndex.candidates(terms);
+        List<HistoryRecord> records = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            // Запись могла быть удалена или изменена конкурентно между поиском и чтением
+            historyStore.get(id)
+                    .filter(record -> HistorySearchIndex.matches(terms, record.getOperationType(), record.getDetails()))
+                    .ifPresent(records::add);
+        }
+        return records;
     }
 
     /**
-     * Возвращает отсортированные записи истории.
-     * @param sortBy поле для сортировки (date, operationType, details)
+     * Возвращает отсортированные записи истории обходом поддерживаемого порядка, без сортировки.
+     * @param sortBy поле для сортировки (operation_date, operation_type, details)
      * @param ascending направление сортировки (true - по возрастанию)
      * @return отсортированный список записей
      */
     @Override
     public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending) {
-        return historyRecords.stream()
-                .sorted((r1, r2) -> {
-                    int comparison = 0;
-                    switch (sortBy) {
-                        case "operation_date":
-                            comparison = r1.getDate().compareTo(r2.getDate());
-                            break;
-                        case "operation_type":
-                            comparison = r1.getOperationType().compareToIgnoreCase(r2.getOperationType());
-                            break;
-                        case "details":
-                            comparison = r1.getDetails().compareToIgnoreCase(r2.getDetails());
-                            break;
-                    }
-                    return ascending ? comparison : -comparison;
-                })
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Фильтрует записи истории по типу операции.
+        return getHistoryRecordsSorted(sortBy, ascending, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает первые limit записей в порядке сортировки за O(limit).
+     * Записи, изменившие ключ сортировки во время обхода, берутся только с их текущей позиции.
+     */
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending, int limit) {
+        List<HistoryRecord> records = new ArrayList<>(Math.max(0, Math.min(limit, historyStore.size())));
+        for (Iterator<HistoryRecord> sorted = sortIndex.records(sortBy, ascending, this::findHistoryRecord);
+             sorted.hasNext() && records.size() < limit; ) {
+            records.add(sorted.next());
+        }
+        return records;
+    }
+
+    /**
+     * Фильтрует записи истории по типу операции (без учета регистра) через индекс по типу.
      * @param operationType тип операции для фильтрации
-     * @return отфильтрованный список записей
+     * @return отфильтрованный список записей в порядке ID
      */
     @Override
     public List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
-        return historyRecords.stream()
-                .filter(record -> record.getOperationType().equalsIgnoreCase(operationType))
-                .collect(Collectors.toList());
+        String type = HistoryAttributeIndex.normalize(operationType);
+        List<HistoryRecord> records = new ArrayList<>();
+        for (int id : attributeIndex.idsOfType(operationType)) {
+            historyStore.get(id)
+                    .filter(record -> HistoryAttributeIndex.normalize(record.getOperationType()).equals(type))
+                    .ifPresent(records::add);
+        }
+        return records;
     }
 
     /**
      * Очищает все хранимые данные (для тестирования).
      */
     public void clearAllData() {
-        userDataList.clear();
-        historyRecords.clear();
+        userData.set(null);
+        historyStore.clear();
+        weightSeries.clear();
+    }
+
+    /**
+     * Подписывает слушателя на изменения истории (используется {@link ObservableHistoryAdapter}).
+     */
+    void addHistoryListener(ConcurrentHistoryStore.Listener listener) {
+        historyStore.addListener(listener);
+    }
+
+    void removeHistoryListener(ConcurrentHistoryStore.Listener listener) {
+        historyStore.removeListener(listener);
+    }
+
+    private HistoryRecord findHistoryRecord(int id) {
+        return historyStore.get(id).orElse(null);
     }
 
     private void showErrorAlert(String title, String message) {
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(message);
-        alert.showAndWait();
+        ErrorAlerts.show(title, message);
     }
 }
\ No newline at end of file
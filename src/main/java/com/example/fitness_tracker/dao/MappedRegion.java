@@ -0,0 +1,75 @@
+package com.example.fitness_tracker.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл, отображенный в память, с возможностью роста.
+ * При нехватке места файл расширяется вдвое и отображается заново.
+ * Размер одного отображения ограничен 2 ГБ.
+ */
+class MappedRegion implements Closeable {
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Открывает (или создает) файл и отображает его в память.
+     * @param path путь к файлу
+     * @param initialCapacity начальный размер отображения в байтах
+     * @throws IOException если файл не удается открыть
+     */
+    MappedRegion(Path path, long initialCapacity) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(Math.max(initialCapacity, channel.size()));
+    }
+
+    /**
+     * Возвращает текущее отображение. Ссылку нельзя кэшировать между вызовами
+     * {@link #ensureCapacity(long)}, так как после роста буфер заменяется.
+     */
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Гарантирует, что отображение вмещает указанное количество байт.
+     * @param required требуемый размер в байтах
+     * @return актуальное отображение
+     * @throws IOException если файл не удается расширить
+     */
+    MappedByteBuffer ensureCapacity(long required) throws IOException {
+        if (required > buffer.capacity()) {
+            long capacity = buffer.capacity();
+            while (capacity < required) {
+                capacity *= 2;
+            }
+            map(capacity);
+        }
+        return buffer;
+    }
+
+    /**
+     * Сбрасывает измененные страницы на диск.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    private void map(long capacity) throws IOException {
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Превышен максимальный размер отображаемого файла");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,760 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.UserData;
+import com.example.fitness_tracker.model.HistoryRecord;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Реализация UserDataDao на файлах, отображенных в память.
+ * Записи истории хранятся в виде заголовков фиксированной ширины
+ * (ID, день эпохи, код типа, флаги), а детали — в отдельной append-only области.
+ * Просмотр и фильтрация истории идут по памяти страничного кэша без разбора строк.
+ * Для каждого пользователя открывается один экземпляр со своими файлами ({@link #forUser(int)}),
+ * так как счетчики хранятся в отображенных файлах; экземпляры разных пользователей
+ * не разделяют ни файлов, ни блокировок.
+ */
+public class MappedUserDataDao implements UserDataDao {
+    private static final String HISTORY_FILE = "history.bin";
+    private static final String DETAILS_FILE = "history_details.bin";
+    private static final String TYPES_FILE = "history_types.bin";
+    // Словарь типов прежнего формата (по типу на строку); переносится в TYPES_FILE при открытии
+    private static final String LEGACY_TYPES_FILE = "history_types.txt";
+    private static final String USER_DATA_FILE = "user_data.bin";
+    private static final String WEIGHT_SERIES_FILE = "weight_series.bin";
+
+    private static final int MAGIC = 0x46544D48; // "FTMH"
+    private static final int TYPES_MAGIC = 0x46544D54; // "FTMT"
+    private static final int VERSION = 1;
+    // magic, version, количество слотов, резерв
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_POSITION = 8;
+
+    // id, день эпохи, код типа, флаги, резерв, смещение деталей, длина деталей
+    private static final int HISTORY_SLOT_SIZE = 24;
+    private static final int SLOT_EPOCH_DAY = 4;
+    private static final int SLOT_TYPE = 8;
+    private static final int SLOT_FLAGS = 10;
+    private static final int SLOT_DETAILS_OFFSET = 12;
+    private static final int SLOT_DETAILS_LENGTH = 20;
+
+    // текущий вес, целевой вес, день эпохи цели, тренировки, длительность, флаги
+    private static final int USER_SLOT_SIZE = 32;
+
+    // Область деталей начинается с длины использованной части
+    private static final int DETAILS_HEADER_SIZE = 8;
+
+    private static final byte FLAG_ACTIVE = 1;
+    private static final byte FLAG_DELETED = 2;
+
+    private static final int INITIAL_SLOTS = 1024;
+
+    private static final ConcurrentMap<Integer, MappedUserDataDao> PARTITIONS = new ConcurrentHashMap<>();
+
+    private final int userId;
+    private final Path typesFile;
+    private final MappedRegion history;
+    private final MappedRegion details;
+    private final MappedRegion users;
+    private final WeightSeriesLog weightSeries;
+    private final List<String> types = new ArrayList<>();
+    private final Map<String, Short> typeCodes = new HashMap<>();
+    // Ключи (день эпохи, ID) неудаленных записей, упакованные HistoryCursor.key; строится при первом обращении
+    private NavigableSet<Long> order;
+
+    private MappedUserDataDao(int userId) throws IOException {
+        this.userId = userId;
+        Path directory = UserDirectories.of(userId);
+        typesFile = directory.resolve(TYPES_FILE);
+        history = openRegion(directory.resolve(HISTORY_FILE), HEADER_SIZE + (long) INITIAL_SLOTS * HISTORY_SLOT_SIZE);
+        users = openRegion(directory.resolve(USER_DATA_FILE), HEADER_SIZE + (long) INITIAL_SLOTS * USER_SLOT_SIZE);
+        details = new MappedRegion(directory.resolve(DETAILS_FILE), DETAILS_HEADER_SIZE + INITIAL_SLOTS * 64L);
+        if (details.buffer().getLong(0) == 0) {
+            details.buffer().putLong(0, DETAILS_HEADER_SIZE);
+        }
+        weightSeries = new WeightSeriesLog(directory.resolve(WEIGHT_SERIES_FILE));
+        loadTypes(directory.resolve(LEGACY_TYPES_FILE));
+    }
+
+    /**
+     * Возвращает экземпляр DAO пользователя по умолчанию, открывая файлы при первом обращении.
+     * @return Экземпляр MappedUserDataDao
+     */
+    public static MappedUserDataDao getInstance() {
+        return forUser(DEFAULT_USER_ID);
+    }
+
+    /**
+     * Возвращает экземпляр DAO пользователя, открывая его файлы при первом обращении.
+     * @param userId ID пользователя
+     * @return Экземпляр MappedUserDataDao
+     */
+    public static MappedUserDataDao forUser(int userId) {
+        return PARTITIONS.computeIfAbsent(userId, id -> {
+            try {
+                return new MappedUserDataDao(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open mapped history store", e);
+            }
+        });
+    }
+
+    @Override
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Сохраняет данные пользователя в новый слот и добавляет точку во временной ряд веса.
+     * @param userData Данные пользователя для сохранения
+     */
+    @Override
+    public synchronized void saveUserData(UserData userData) {
+        try {
+            appendUserData(userData, true);
+        } catch (IOException e) {
+            showErrorAlert("Ошибка сохранения", e.getMessage(), e);
+        }
+    }
+
+    private void appendUserData(UserData userData, boolean weightPoint) throws IOException {
+        int slot = count(users);
+        MappedByteBuffer buffer = users.ensureCapacity(userSlotPosition(slot + 1));
+        writeUserSlot(buffer, slot, userData);
+        buffer.putInt(COUNT_POSITION, slot + 1);
+        if (weightPoint) {
+            weightSeries.append(userData);
+        }
+    }
+
+    /**
+     * Сохраняет запись истории: заголовок в слот, детали в область деталей.
+     * ID записи совпадает с номером слота, начиная с 1.
+     * @param operationType Тип операции
+     * @param details Детали операции
+     */
+    @Override
+    public void saveHistoryRecord(String operationType, String details) {
+        saveHistoryRecord(new HistoryRecord(LocalDate.now(), operationType, details, true));
+    }
+
+    /**
+     * Сохраняет запись истории с заданными датой и статусом в новый слот.
+     * @param record запись истории
+     * @return ID новой записи
+     */
+    @Override
+    public synchronized int saveHistoryRecord(HistoryRecord record) {
+        try {
+            return appendHistoryRecord(record);
+        } catch (IOException e) {
+            showErrorAlert("Ошибка сохранения истории", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private int appendHistoryRecord(HistoryRecord record) throws IOException {
+        int slot = count(history);
+        MappedByteBuffer buffer = history.ensureCapacity(historySlotPosition(slot + 1));
+        writeHistorySlot(buffer, slot, record.getDate(), typeCode(record.getOperationType()),
+                record.isActive(), record.getDetails());
+        buffer.putInt(COUNT_POSITION, slot + 1);
+        return slot + 1;
+    }
+
+    /**
+     * Получает все записи истории в порядке добавления.
+     * @return список записей истории
+     */
+    @Override
+    public synchronized List<HistoryRecord> getHistoryRecords() {
+        MappedByteBuffer buffer = history.buffer();
+        int count = count(history);
+        List<HistoryRecord> records = new ArrayList<>(count);
+        for (int slot = 0; slot < count; slot++) {
+            if (!isDeleted(buffer, slot)) {
+                records.add(readHistorySlot(buffer, slot));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Получает страницу истории обходом упорядоченного множества ключей (день эпохи, ID),
+     * начиная сразу после курсора; детали читаются только для записей страницы.
+     * @param after курсор последней записи предыдущей страницы или null
+     * @param limit максимальное количество записей
+     * @param descending true - от новых записей к старым
+     * @return записи страницы
+     */
+    @Override
+    public synchronized List<HistoryRecord> getHistoryPage(HistoryCursor after, int limit, boolean descending) {
+        NavigableSet<Long> view = descending ? order().descendingSet() : order();
+        if (after != null) {
+            view = view.tailSet(after.key(), false);
+        }
+        MappedByteBuffer buffer = history.buffer();
+        List<HistoryRecord> records = new ArrayList<>(Math.max(0, Math.min(limit, order.size())));
+        for (Iterator<Long> it = view.iterator(); it.hasNext() && records.size() < limit; ) {
+            records.add(readHistorySlot(buffer, HistoryCursor.idOf(it.next()) - 1));
+        }
+        return records;
+    }
+
+    /**
+     * Получает записи за период по упорядоченному множеству ключей (день эпохи, ID);
+     * детали декодируются только для записей периода.
+     * @param from начальная дата
+     * @param to конечная дата (включительно)
+     * @return записи в порядке (дата, ID)
+     */
+    @Override
+    public synchronized List<HistoryRecord> getHistoryRecordsByDateRange(LocalDate from, LocalDate to) {
+        List<HistoryRecord> records = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return records;
+        }
+        MappedByteBuffer buffer = history.buffer();
+        for (long key : order().subSet(HistoryCursor.key(from.toEpochDay(), 0), true,
+                HistoryCursor.key(to.toEpochDay() + 1, 0), false)) {
+            records.add(readHistorySlot(buffer, HistoryCursor.idOf(key) - 1));
+        }
+        return records;
+    }
+
+    /**
+     * Получает временной ряд веса. Ряд загружается в память при открытии файлов,
+     * поэтому чтение не требует блокировки DAO.
+     */
+    @Override
+    public WeightSeries.Slice getWeightSeries(LocalDate from, LocalDate to) {
+        return weightSeries.series().slice(from, to);
+    }
+
+    /**
+     * Получает данные пользователя по ID.
+     * @param id идентификатор (номер слота, начиная с 1)
+     * @return Optional с данными пользователя, если они существуют
+     */
+    @Override
+    public synchronized Optional<UserData> getUserDataById(int id) {
+        int slot = id - 1;
+        if (slot < 0 || slot >= count(users)) {
+            return Optional.empty();
+        }
+        MappedByteBuffer buffer = users.buffer();
+        long position = userSlotPosition(slot);
+        if ((buffer.getInt((int) position + 28) & FLAG_DELETED) != 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new UserData(
+                buffer.getDouble((int) position),
+                buffer.getDouble((int) position + 8),
+                LocalDate.ofEpochDay(buffer.getInt((int) position + 16)),
+                buffer.getInt((int) position + 20),
+                buffer.getInt((int) position + 24)
+        ));
+    }
+
+    /**
+     * Обновляет данные пользователя на месте.
+     * @param id идентификатор пользователя
+     * @param userData новые данные пользователя
+     */
+    @Override
+    public synchronized void updateUserData(int id, UserData userData) {
+        int slot = id - 1;
+        if (slot >= 0 && slot < count(users)) {
+            writeUserSlot(users.buffer(), slot, userData);
+        }
+    }
+
+    /**
+     * Помечает данные пользователя удаленными.
+     * @param id идентификатор пользователя
+     */
+    @Override
+    public synchronized void deleteUserData(int id) {
+        int slot = id - 1;
+        if (slot >= 0 && slot < count(users)) {
+            users.buffer().putInt((int) userSlotPosition(slot) + 28, FLAG_DELETED);
+        }
+    }
+
+    /**
+     * Получает запись истории по ID за O(1).
+     * @param id идентификатор записи истории
+     * @return Optional с записью истории, если она существует
+     */
+    @Override
+    public synchronized Optional<HistoryRecord> getHistoryRecordById(int id) {
+        int slot = id - 1;
+        if (slot < 0 || slot >= count(history) || isDeleted(history.buffer(), slot)) {
+            return Optional.empty();
+        }
+        return Optional.of(readHistorySlot(history.buffer(), slot));
+    }
+
+    /**
+     * Обновляет запись истории. Новые детали дописываются в область деталей,
+     * заголовок перезаписывается на месте.
+     * @param id идентификатор записи
+     * @param record новые данные записи истории
+     */
+    @Override
+    public synchronized void updateHistoryRecord(int id, HistoryRecord record) {
+        int slot = id - 1;
+        if (slot < 0 || slot >= count(history) || isDeleted(history.buffer(), slot)) {
+            return;
+        }
+        try {
+            writeHistorySlot(history.buffer(), slot, record.getDate(), typeCode(record.getOperationType()),
+                    record.isActive(), record.getDetails());
+        } catch (IOException e) {
+            showErrorAlert("Ошибка обновления истории", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Помечает запись истории удаленной. ID других записей не меняются.
+     * @param id идентификатор записи
+     */
+    @Override
+    public synchronized void deleteHistoryRecord(int id) {
+        int slot = id - 1;
+        if (slot >= 0 && slot < count(history)) {
+            if (order != null && !isDeleted(history.buffer(), slot)) {
+                order.remove(keyOf(history.buffer(), slot));
+            }
+            history.buffer().put((int) historySlotPosition(slot) + SLOT_FLAGS, FLAG_DELETED);
+        }
+    }
+
+    /**
+     * Обновляет статус активности записи истории на месте.
+     * @param id идентификатор записи
+     * @param newStatus новый статус активности (true/false)
+     */
+    @Override
+    public synchronized void updateHistoryRecordStatus(int id, boolean newStatus) {
+        int slot = id - 1;
+        if (slot >= 0 && slot < count(history) && !isDeleted(history.buffer(), slot)) {
+            history.buffer().put((int) historySlotPosition(slot) + SLOT_FLAGS, newStatus ? FLAG_ACTIVE : 0);
+        }
+    }
+
+    /**
+     * Ищет записи истории по ключевому слову (без учета регистра).
+     * @param searchTerm ключевое слово для поиска
+     * @return список найденных записей истории
+     */
+    @Override
+    public synchronized List<HistoryRecord> searchHistoryRecords(String searchTerm) {
+        String term = searchTerm.toLowerCase();
+        return getHistoryRecords().stream()
+                .filter(record -> record.getOperationType().toLowerCase().contains(term) ||
+                        record.getDetails().toLowerCase().contains(term))
+                .toList();
+    }
+
+    /**
+     * Возвращает отсортированные записи истории.
+     * Равные значения упорядочены по ID в направлении сортировки.
+     * @param sortBy поле для сортировки (operation_date, operation_type, details)
+     * @param ascending направление сортировки (true - по возрастанию)
+     * @return отсортированный список записей
+     */
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending) {
+        try (Stream<HistoryRecord> records = streamHistoryRecordsSorted(sortBy, ascending)) {
+            return records.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Потоково выдает отсортированные записи: под блокировкой упорядочиваются только номера слотов
+     * (по дате — обходом множества ключей, по типу — по кодам типов, по деталям — сравнением деталей
+     * в отображенном файле), а сами записи читаются из файла по одной при обходе потока.
+     * В памяти находятся номера слотов, но не записи. Запись, измененная во время обхода,
+     * выдается в новом виде на прежней позиции; удаленная — пропускается.
+     * @param sortBy поле для сортировки (operation_date, operation_type, details)
+     * @param ascending направление сортировки (true - по возрастанию)
+     * @return поток отсортированных записей; для неизвестного поля — в порядке ID
+     */
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecordsSorted(String sortBy, boolean ascending) {
+        int[] slots;
+        synchronized (this) {
+            slots = sortedSlots(sortBy, ascending);
+        }
+        return Arrays.stream(slots)
+                .mapToObj(this::readLiveHistorySlot)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Упорядочивает номера неудаленных слотов; равные значения — по номеру слота в направлении сортировки.
+     */
+    private int[] sortedSlots(String sortBy, boolean ascending) {
+        MappedByteBuffer buffer = history.buffer();
+        int count = count(history);
+        switch (sortBy) {
+            case "operation_date": {
+                NavigableSet<Long> keys = ascending ? order() : order().descendingSet();
+                int[] slots = new int[keys.size()];
+                int i = 0;
+                for (long key : keys) {
+                    slots[i++] = HistoryCursor.idOf(key) - 1;
+                }
+                return slots;
+            }
+            case "operation_type": {
+                // Ранг типа в порядке без учета регистра; типы, различающиеся только регистром, равны
+                Integer[] codes = new Integer[types.size()];
+                for (int code = 0; code < codes.length; code++) {
+                    codes[code] = code;
+                }
+                Arrays.sort(codes, Comparator.comparing(types::get, String.CASE_INSENSITIVE_ORDER));
+                long[] ranks = new long[codes.length];
+                for (int i = 1; i < codes.length; i++) {
+                    boolean same = String.CASE_INSENSITIVE_ORDER.compare(types.get(codes[i - 1]), types.get(codes[i])) == 0;
+                    ranks[codes[i]] = ranks[codes[i - 1]] + (same ? 0 : 1);
+                }
+                long[] keys = new long[count];
+                int size = 0;
+                for (int slot = 0; slot < count; slot++) {
+                    if (!isDeleted(buffer, slot)) {
+                        int code = Short.toUnsignedInt(buffer.getShort((int) historySlotPosition(slot) + SLOT_TYPE));
+                        keys[size++] = ranks[code] << 32 | slot;
+                    }
+                }
+                Arrays.sort(keys, 0, size);
+                int[] slots = new int[size];
+                for (int i = 0; i < size; i++) {
+                    slots[i] = (int) keys[ascending ? i : size - 1 - i];
+                }
+                return slots;
+            }
+            case "details": {
+                Comparator<Integer> byDetails = Comparator
+                        .comparing((Integer slot) -> readDetails(buffer, slot), String.CASE_INSENSITIVE_ORDER)
+                        .thenComparingInt(slot -> slot);
+                return liveSlots(buffer, count).boxed()
+                        .sorted(ascending ? byDetails : byDetails.reversed())
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+            }
+            default:
+                return liveSlots(buffer, count).toArray();
+        }
+    }
+
+    private static IntStream liveSlots(MappedByteBuffer buffer, int count) {
+        return IntStream.range(0, count).filter(slot -> !isDeleted(buffer, slot));
+    }
+
+    /**
+     * Читает запись слота под блокировкой DAO (буфер мог быть переотображен при росте файла).
+     * @return запись или null, если она удалена
+     */
+    private synchronized HistoryRecord readLiveHistorySlot(int slot) {
+        MappedByteBuffer buffer = history.buffer();
+        return slot < count(history) && !isDeleted(buffer, slot) ? readHistorySlot(buffer, slot) : null;
+    }
+
+    /**
+     * Фильтрует записи истории по типу операции (без учета регистра).
+     * Сравниваются только коды типов в заголовках; детали читаются лишь для совпавших записей.
+     * @param operationType тип операции для фильтрации
+     * @return отфильтрованный список записей
+     */
+    @Override
+    public synchronized List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
+        BitSet codes = new BitSet(types.size());
+        for (int code = 0; code < types.size(); code++) {
+            if (types.get(code).equalsIgnoreCase(operationType)) {
+                codes.set(code);
+            }
+        }
+        List<HistoryRecord> records = new ArrayList<>();
+        if (codes.isEmpty()) {
+            return records;
+        }
+        MappedByteBuffer buffer = history.buffer();
+        int count = count(history);
+        for (int slot = 0; slot < count; slot++) {
+            int position = (int) historySlotPosition(slot);
+            if (!isDeleted(buffer, slot) && codes.get(Short.toUnsignedInt(buffer.getShort(position + SLOT_TYPE)))) {
+                records.add(readHistorySlot(buffer, slot));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Выполняет пакет операций под общей блокировкой, чтобы другие потоки
+     * не видели его частично примененным. Операции, выполненные до ошибки, остаются записанными.
+     * @param batch пакет операций
+     * @throws DataAccessException если файл не удалось расширить или записать
+     */
+    @Override
+    public synchronized void executeBatch(WriteBatch batch) {
+        LocalDate today = LocalDate.now();
+        try {
+            for (WriteBatch.Operation operation : batch.getOperations()) {
+                if (operation instanceof WriteBatch.SaveUserData save) {
+                    appendUserData(save.getUserData(), save.isWeightPoint());
+                } else if (operation instanceof WriteBatch.SaveHistoryRecord save) {
+                    appendHistoryRecord(new HistoryRecord(save.getDate() != null ? save.getDate() : today,
+                            save.getOperationType(), save.getDetails(), save.isActive()));
+                } else {
+                    operation.applyTo(this);
+                }
+            }
+        } catch (IOException e) {
+            throw new DataAccessException("Ошибка сохранения: " + e.getMessage(), e);
+        }
+    }
+
+    private HistoryRecord readHistorySlot(MappedByteBuffer buffer, int slot) {
+        int position = (int) historySlotPosition(slot);
+        return new HistoryRecord(
+                buffer.getInt(position),
+                LocalDate.ofEpochDay(buffer.getInt(position + SLOT_EPOCH_DAY)),
+                types.get(Short.toUnsignedInt(buffer.getShort(position + SLOT_TYPE))),
+                readDetails(buffer, slot),
+                (buffer.get(position + SLOT_FLAGS) & FLAG_ACTIVE) != 0
+        );
+    }
+
+    private String readDetails(MappedByteBuffer buffer, int slot) {
+        int position = (int) historySlotPosition(slot);
+        long detailsOffset = buffer.getLong(position + SLOT_DETAILS_OFFSET);
+        int detailsLength = buffer.getInt(position + SLOT_DETAILS_LENGTH);
+        byte[] bytes = new byte[detailsLength];
+        details.buffer().get((int) detailsOffset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeHistorySlot(MappedByteBuffer buffer, int slot, LocalDate date, short typeCode,
+                                  boolean active, String text) throws IOException {
+        byte[] bytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        long offset = details.buffer().getLong(0);
+        MappedByteBuffer arena = details.ensureCapacity(offset + bytes.length);
+        arena.put((int) offset, bytes);
+        arena.putLong(0, offset + bytes.length);
+
+        int position = (int) historySlotPosition(slot);
+        if (order != null) {
+            // Новый слот еще не учтен в счетчике; существующий меняет ключ при смене даты
+            if (slot < count(history)) {
+                order.remove(keyOf(buffer, slot));
+            }
+            order.add(HistoryCursor.key(date.toEpochDay(), slot + 1));
+        }
+        buffer.putInt(position, slot + 1);
+        buffer.putInt(position + SLOT_EPOCH_DAY, (int) date.toEpochDay());
+        buffer.putShort(position + SLOT_TYPE, typeCode);
+        buffer.put(position + SLOT_FLAGS, active ? FLAG_ACTIVE : 0);
+        buffer.putLong(position + SLOT_DETAILS_OFFSET, offset);
+        buffer.putInt(position + SLOT_DETAILS_LENGTH, bytes.length);
+    }
+
+    /**
+     * Возвращает ключи неудаленных записей, строя их однократным проходом по заголовкам.
+     */
+    private NavigableSet<Long> order() {
+        if (order == null) {
+            MappedByteBuffer buffer = history.buffer();
+            int count = count(history);
+            order = new TreeSet<>();
+            for (int slot = 0; slot < count; slot++) {
+                if (!isDeleted(buffer, slot)) {
+                    order.add(keyOf(buffer, slot));
+                }
+            }
+        }
+        return order;
+    }
+
+    private static long keyOf(MappedByteBuffer buffer, int slot) {
+        int position = (int) historySlotPosition(slot);
+        return HistoryCursor.key(buffer.getInt(position + SLOT_EPOCH_DAY), buffer.getInt(position));
+    }
+
+    private static void writeUserSlot(MappedByteBuffer buffer, int slot, UserData userData) {
+        int position = (int) userSlotPosition(slot);
+        buffer.putDouble(position, userData.getCurrentWeight());
+        buffer.putDouble(position + 8, userData.getTargetWeight());
+        buffer.putInt(position + 16, (int) userData.getTargetDate().toEpochDay());
+        buffer.putInt(position + 20, userData.getWorkoutsThisWeek());
+        buffer.putInt(position + 24, userData.getAvgWorkoutDuration());
+        buffer.putInt(position + 28, 0);
+    }
+
+    private static boolean isDeleted(MappedByteBuffer buffer, int slot) {
+        return (buffer.get((int) historySlotPosition(slot) + SLOT_FLAGS) & FLAG_DELETED) != 0;
+    }
+
+    private static int count(MappedRegion region) {
+        return region.buffer().getInt(COUNT_POSITION);
+    }
+
+    private static long historySlotPosition(int slot) {
+        return HEADER_SIZE + (long) slot * HISTORY_SLOT_SIZE;
+    }
+
+    private static long userSlotPosition(int slot) {
+        return HEADER_SIZE + (long) slot * USER_SLOT_SIZE;
+    }
+
+    /**
+     * Возвращает код типа операции, добавляя новый тип в словарь при необходимости.
+     * Тип дописывается в файл словаря до того, как его код попадет в слот.
+     */
+    private short typeCode(String operationType) throws IOException {
+        Short code = typeCodes.get(operationType);
+        if (code != null) {
+            return code;
+        }
+        if (types.size() > 0xFFFF) {
+            throw new IOException("Слишком много различных типов операций");
+        }
+        byte[] bytes = operationType.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+        try (FileChannel channel = FileChannel.open(typesFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+            channel.force(false);
+        }
+        short newCode = (short) types.size();
+        types.add(operationType);
+        typeCodes.put(operationType, newCode);
+        return newCode;
+    }
+
+    /**
+     * Читает словарь типов: после заголовка (magic, версия) типы идут в порядке кодов,
+     * каждый — длина и байты UTF-8, поэтому тип может содержать переводы строк.
+     * Неполная последняя запись (сбой при добавлении типа) отрезается: ее код не записан ни в один слот.
+     * @param legacyTypesFile словарь прежнего формата, который переносится, если нового словаря еще нет
+     */
+    private void loadTypes(Path legacyTypesFile) throws IOException {
+        if (!Files.exists(typesFile)) {
+            List<String> legacy = Files.exists(legacyTypesFile)
+                    ? Files.readAllLines(legacyTypesFile, StandardCharsets.UTF_8) : List.of();
+            writeTypes(legacy);
+            Files.deleteIfExists(legacyTypesFile);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(typesFile));
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != TYPES_MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Неверный формат файла " + typesFile);
+        }
+        int end = buffer.position();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            String type = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            typeCodes.put(type, (short) types.size());
+            types.add(type);
+            end = buffer.position();
+        }
+        if (end < buffer.limit()) {
+            try (FileChannel channel = FileChannel.open(typesFile, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+    }
+
+    private void writeTypes(List<String> initialTypes) throws IOException {
+        Path tmp = typesFile.resolveSibling(typesFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(TYPES_MAGIC);
+            out.writeInt(VERSION);
+            for (String type : initialTypes) {
+                byte[] bytes = type.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        Files.move(tmp, typesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MappedRegion openRegion(Path path, long initialCapacity) throws IOException {
+        MappedRegion region = new MappedRegion(path, initialCapacity);
+        MappedByteBuffer buffer = region.buffer();
+        if (buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(COUNT_POSITION, 0);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            region.close();
+            throw new IOException("Неверный формат файла " + path);
+        }
+        return region;
+    }
+
+    /**
+     * Сбрасывает отображенные файлы на диск.
+     */
+    public synchronized void flush() {
+        history.force();
+        details.force();
+        users.force();
+    }
+
+    /**
+     * Сбрасывает на диск отображенные файлы всех открытых пользователей.
+     * Вызывается при завершении приложения, чтобы записи пережили сбой ОС.
+     */
+    public static void flushAll() {
+        for (MappedUserDataDao dao : PARTITIONS.values()) {
+            dao.flush();
+        }
+    }
+
+    /**
+     * Сбрасывает на диск и закрывает файлы пользователя. Следующий вызов {@link #forUser(int)}
+     * откроет их заново; экземпляр, полученный до вызова, использовать нельзя.
+     * @param userId ID пользователя
+     */
+    public static void release(int userId) {
+        MappedUserDataDao dao = PARTITIONS.remove(userId);
+        if (dao != null) {
+            dao.close();
+        }
+    }
+
+    private synchronized void close() {
+        for (MappedRegion region : List.of(history, details, users)) {
+            try {
+                region.close();
+            } catch (IOException e) {
+                System.err.println("WARN: не удалось закрыть файл пользователя " + userId + " - " + e.getMessage());
+            }
+        }
+    }
+
+    private void showErrorAlert(String title, String message, Exception cause) {
+        ErrorAlerts.show(title, message, cause);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.metrics.MetricsRegistry;
+import com.example.fitness_tracker.metrics.OperationMetrics;
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Обертка над любым UserDataDao, измеряющая каждый метод: количество вызовов, ошибок
+ * и распределение длительностей (см. {@link MetricsRegistry}).
+ * Метрики накапливаются по имени источника данных, а не по экземпляру обертки.
+ * Для потоковых методов измеряется открытие потока (выполнение запроса), но не чтение записей.
+ */
+public class MeteredUserDataDao implements UserDataDao {
+    private static final String LAYER = "dao";
+
+    private final UserDataDao delegate;
+    private final String backend;
+
+    private final OperationMetrics saveUserData;
+    private final OperationMetrics saveHistoryRecord;
+    private final OperationMetrics saveHistoryRecordWithDate;
+    private final OperationMetrics getHistoryRecords;
+    private final OperationMetrics getHistoryPage;
+    private final OperationMetrics getWeightSeries;
+    private final OperationMetrics getUserDataById;
+    private final OperationMetrics updateUserData;
+    private final OperationMetrics deleteUserData;
+    private final OperationMetrics getHistoryRecordById;
+    private final OperationMetrics updateHistoryRecord;
+    private final OperationMetrics deleteHistoryRecord;
+    private final OperationMetrics updateHistoryRecordStatus;
+    private final OperationMetrics searchHistoryRecords;
+    private final OperationMetrics getHistoryRecordsSorted;
+    private final OperationMetrics getHistoryRecordsSortedTop;
+    private final OperationMetrics filterHistoryRecordsByType;
+    private final OperationMetrics getHistoryRecordsByDateRange;
+    private final OperationMetrics streamHistoryRecords;
+    private final OperationMetrics streamSearchHistoryRecords;
+    private final OperationMetrics streamHistoryRecordsSorted;
+    private final OperationMetrics executeBatch;
+
+    /**
+     * @param delegate измеряемое хранилище
+     * @param backend имя источника данных в метриках (например, Postgres)
+     */
+    public MeteredUserDataDao(UserDataDao delegate, String backend) {
+        this.delegate = delegate;
+        this.backend = backend;
+        saveUserData = operation("saveUserData");
+        saveHistoryRecord = operation("saveHistoryRecord");
+        saveHistoryRecordWithDate = operation("saveHistoryRecordWithDate");
+        getHistoryRecords = operation("getHistoryRecords");
+        getHistoryPage = operation("getHistoryPage");
+        getWeightSeries = operation("getWeightSeries");
+        getUserDataById = operation("getUserDataById");
+        updateUserData = operation("updateUserData");
+        deleteUserData = operation("deleteUserData");
+        getHistoryRecordById = operation("getHistoryRecordById");
+        updateHistoryRecord = operation("updateHistoryRecord");
+        deleteHistoryRecord = operation("deleteHistoryRecord");
+        updateHistoryRecordStatus = operation("updateHistoryRecordStatus");
+        searchHistoryRecords = operation("searchHistoryRecords");
+        getHistoryRecordsSorted = operation("getHistoryRecordsSorted");
+        getHistoryRecordsSortedTop = operation("getHistoryRecordsSortedTop");
+        filterHistoryRecordsByType = operation("filterHistoryRecordsByType");
+        getHistoryRecordsByDateRange = operation("getHistoryRecordsByDateRange");
+        streamHistoryRecords = operation("streamHistoryRecords");
+        streamSearchHistoryRecords = operation("streamSearchHistoryRecords");
+        streamHistoryRecordsSorted = operation("streamHistoryRecordsSorted");
+        executeBatch = operation("executeBatch");
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    @Override
+    public int getUserId() {
+        return delegate.getUserId();
+    }
+
+    @Override
+    public void saveUserData(UserData userData) {
+        saveUserData.run(() -> delegate.saveUserData(userData));
+    }
+
+    @Override
+    public void saveHistoryRecord(String operationType, String details) {
+        saveHistoryRecord.run(() -> delegate.saveHistoryRecord(operationType, details));
+    }
+
+    @Override
+    public int saveHistoryRecord(HistoryRecord record) {
+        return saveHistoryRecordWithDate.call(() -> delegate.saveHistoryRecord(record));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecords() {
+        return getHistoryRecords.call(delegate::getHistoryRecords);
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryPage(HistoryCursor after, int limit, boolean descending) {
+        return getHistoryPage.call(() -> delegate.getHistoryPage(after, limit, descending));
+    }
+
+    @Override
+    public WeightSeries.Slice getWeightSeries(LocalDate from, LocalDate to) {
+        return getWeightSeries.call(() -> delegate.getWeightSeries(from, to));
+    }
+
+    @Override
+    public Optional<UserData> getUserDataById(int id) {
+        return getUserDataById.call(() -> delegate.getUserDataById(id));
+    }
+
+    @Override
+    public void updateUserData(int id, UserData userData) {
+        updateUserData.run(() -> delegate.updateUserData(id, userData));
+    }
+
+    @Override
+    public void deleteUserData(int id) {
+        deleteUserData.run(() -> delegate.deleteUserData(id));
+    }
+
+    @Override
+    public Optional<HistoryRecord> getHistoryRecordById(int id) {
+        return getHistoryRecordById.call(() -> delegate.getHistoryRecordById(id));
+    }
+
+    @Override
+    public void updateHistoryRecord(int id, HistoryRecord record) {
+        updateHistoryRecord.run(() -> delegate.updateHistoryRecord(id, record));
+    }
+
+    @Override
+    public void deleteHistoryRecord(int id) {
+        deleteHistoryRecord.run(() -> delegate.deleteHistoryRecord(id));
+    }
+
+    @Override
+    public void updateHistoryRecordStatus(int id, boolean newStatus) {
+        updateHistoryRecordStatus.run(() -> delegate.updateHistoryRecordStatus(id, newStatus));
+    }
+
+    @Override
+    public List<HistoryRecord> searchHistoryRecords(String searchTerm) {
+        return searchHistoryRecords.call(() -> delegate.searchHistoryRecords(searchTerm));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending) {
+        return getHistoryRecordsSorted.call(() -> delegate.getHistoryRecordsSorted(sortBy, ascending));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending, int limit) {
+        return getHistoryRecordsSortedTop.call(() -> delegate.getHistoryRecordsSorted(sortBy, ascending, limit));
+    }
+
+    @Override
+    public List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
+        return filterHistoryRecordsByType.call(() -> delegate.filterHistoryRecordsByType(operationType));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecordsByDateRange(LocalDate from, LocalDate to) {
+        return getHistoryRecordsByDateRange.call(() -> delegate.getHistoryRecordsByDateRange(from, to));
+    }
+
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecords() {
+        return streamHistoryRecords.call(delegate::streamHistoryRecords);
+    }
+
+    @Override
+    public Stream<HistoryRecord> streamSearchHistoryRecords(String searchTerm) {
+        return streamSearchHistoryRecords.call(() -> delegate.streamSearchHistoryRecords(searchTerm));
+    }
+
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecordsSorted(String sortBy, boolean ascending) {
+        return streamHistoryRecordsSorted.call(() -> delegate.streamHistoryRecordsSorted(sortBy, ascending));
+    }
+
+    @Override
+    public void executeBatch(WriteBatch batch) {
+        executeBatch.run(() -> delegate.executeBatch(batch));
+    }
+
+    private OperationMetrics operation(String name) {
+        return MetricsRegistry.getInstance().operation(LAYER, backend, name);
+    }
+}
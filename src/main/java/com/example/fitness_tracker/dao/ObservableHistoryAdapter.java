@@ -0,0 +1,107 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Адаптер истории InMemoryUserDataDao для JavaFX.
+ * Поддерживает ObservableList, отражающий содержимое хранилища, и применяет изменения
+ * в потоке JavaFX, поэтому список можно напрямую привязать к таблице.
+ * Записи в списке упорядочены по ID. После использования адаптер нужно закрыть.
+ */
+public class ObservableHistoryAdapter implements AutoCloseable {
+    private static final Comparator<HistoryRecord> BY_ID = Comparator.comparingInt(HistoryRecord::getId);
+
+    private final InMemoryUserDataDao dao;
+    private final ObservableList<HistoryRecord> records = FXCollections.observableArrayList();
+    private final ObservableList<HistoryRecord> readOnlyRecords = FXCollections.unmodifiableObservableList(records);
+
+    private final ConcurrentHistoryStore.Listener listener = new ConcurrentHistoryStore.Listener() {
+        @Override
+        public void added(HistoryRecord record) {
+            runOnFxThread(() -> put(record));
+        }
+
+        @Override
+        public void updated(HistoryRecord previous, HistoryRecord current) {
+            runOnFxThread(() -> put(current));
+        }
+
+        @Override
+        public void removed(HistoryRecord record) {
+            runOnFxThread(() -> {
+                int index = indexOf(record.getId());
+                if (index >= 0) {
+                    records.remove(index);
+                }
+            });
+        }
+
+        @Override
+        public void cleared() {
+            runOnFxThread(records::clear);
+        }
+    };
+
+    /**
+     * Подписывается на изменения истории и загружает ее текущее содержимое.
+     * @param dao хранилище истории в памяти
+     */
+    public ObservableHistoryAdapter(InMemoryUserDataDao dao) {
+        this.dao = dao;
+        dao.addHistoryListener(listener);
+        // Снимок берется в потоке JavaFX после подписки: изменения, поставленные в очередь до него,
+        // уже отражены в снимке, а более поздние применяются поверх (put заменяет запись с тем же ID)
+        runOnFxThread(() -> records.setAll(dao.getHistoryRecords()));
+    }
+
+    /**
+     * Возвращает список записей истории только для чтения.
+     */
+    public ObservableList<HistoryRecord> getRecords() {
+        return readOnlyRecords;
+    }
+
+    /**
+     * Отписывается от изменений хранилища.
+     */
+    @Override
+    public void close() {
+        dao.removeHistoryListener(listener);
+    }
+
+    private void put(HistoryRecord record) {
+        int index = indexOf(record.getId());
+        if (index >= 0) {
+            records.set(index, record);
+        } else {
+            records.add(-index - 1, record);
+        }
+    }
+
+    /**
+     * Ищет запись по ID двоичным поиском.
+     * @return позиция записи или (-(точка вставки) - 1)
+     */
+    private int indexOf(int id) {
+        return Collections.binarySearch(records, new HistoryRecord(id, null, null, null, false), BY_ID);
+    }
+
+    private static void runOnFxThread(Runnable action) {
+        if (Platform.isFxApplicationThread()) {
+            action.run();
+            return;
+        }
+        try {
+            Platform.runLater(action);
+        } catch (IllegalStateException e) {
+            // JavaFX не запущен (например, при работе без интерфейса): применяем изменение сразу
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.fitness_tracker.dao;
+
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Кодирует строки в текстовый формат COPY ... FROM STDIN (поля через табуляцию, строки через \n)
+ * и передает их серверу блоками через {@link CopyIn}.
+ * Строки кодируются в UTF-8 прямо в буфер, без промежуточных массивов; буфер отправляется
+ * по заполнении, поэтому память не зависит от количества строк.
+ */
+final class PgCopyEncoder {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Максимальная длина одного символа после экранирования или кодирования в UTF-8
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final CopyIn copyIn;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private boolean rowStarted;
+
+    PgCopyEncoder(CopyIn copyIn) {
+        this.copyIn = copyIn;
+    }
+
+    PgCopyEncoder text(String value) throws SQLException {
+        separator();
+        if (value == null) {
+            return nullValue();
+        }
+        for (int i = 0; i < value.length(); i++) {
+            ensure(MAX_CHAR_BYTES);
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '\\' -> escape('\\');
+                    case '\n' -> escape('n');
+                    case '\r' -> escape('r');
+                    case '\t' -> escape('t');
+                    default -> buffer[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Непарный суррогат не представим в UTF-8, как и в String.getBytes
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return this;
+    }
+
+    PgCopyEncoder date(LocalDate value) throws SQLException {
+        separator();
+        if (value == null) {
+            return nullValue();
+        }
+        int year = value.getYear();
+        if (year > 9999) {
+            // LocalDate пишет такие годы со знаком "+", который PostgreSQL не принимает
+            return ascii(value.toString().substring(1));
+        }
+        if (year < 1) {
+            return ascii(value.toString());
+        }
+        ensure(10);
+        digits(year, 4);
+        buffer[position++] = '-';
+        digits(value.getMonthValue(), 2);
+        buffer[position++] = '-';
+        digits(value.getDayOfMonth(), 2);
+        return this;
+    }
+
+    PgCopyEncoder number(int value) throws SQLException {
+        separator();
+        if (value < 0) {
+            return ascii(Integer.toString(value));
+        }
+        int length = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+        ensure(length);
+        digits(value, length);
+        return this;
+    }
+
+    PgCopyEncoder number(double value) throws SQLException {
+        separator();
+        // Double.toString дает формат, который принимает float8in, включая NaN и Infinity
+        return ascii(Double.toString(value));
+    }
+
+    PgCopyEncoder bool(boolean value) throws SQLException {
+        separator();
+        ensure(1);
+        buffer[position++] = (byte) (value ? 't' : 'f');
+        return this;
+    }
+
+    void endRow() throws SQLException {
+        ensure(1);
+        buffer[position++] = '\n';
+        rowStarted = false;
+    }
+
+    /**
+     * Отправляет остаток буфера и завершает COPY.
+     * @return количество строк, принятых сервером
+     */
+    long finish() throws SQLException {
+        flush();
+        return copyIn.endCopy();
+    }
+
+    /**
+     * Прерывает COPY; сервер отбрасывает уже переданные строки.
+     */
+    void cancel() {
+        try {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            // соединение все равно откатывает транзакцию
+        }
+    }
+
+    private void separator() throws SQLException {
+        if (rowStarted) {
+            ensure(1);
+            buffer[position++] = '\t';
+        }
+        rowStarted = true;
+    }
+
+    private PgCopyEncoder nullValue() throws SQLException {
+        ensure(2);
+        escape('N');
+        return this;
+    }
+
+    private PgCopyEncoder ascii(String value) throws SQLException {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return this;
+    }
+
+    private void escape(char c) {
+        buffer[position++] = '\\';
+        buffer[position++] = (byte) c;
+    }
+
+    private void digits(int value, int width) {
+        for (int i = position + width - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += width;
+    }
+
+    private void ensure(int bytes) throws SQLException {
+        if (position + bytes > buffer.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (position > 0) {
+            copyIn.writeToCopy(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -2,38 +2,168 @@ package com.example.fitness_tracker.dao;
 
 import com.example.fitness_tracker.model.UserData;
 import com.example.fitness_tracker.model.HistoryRecord;
-import javafx.scene.control.Alert;
+import org.postgresql.PGConnection;
 
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Реализация UserDataDao для работы с PostgreSQL.
  * Обеспечивает подключение к базе данных и выполнение SQL запросов.
+ * Экземпляр работает с данными одного пользователя: все таблицы содержат столбец user_id,
+ * каждый запрос ограничен им, а индексы начинаются с user_id, поэтому запросы разных
+ * пользователей читают непересекающиеся диапазоны индексов.
  */
 public class PostgresUserDataDao implements UserDataDao {
-    private Connection connection;
+    private static final String URL = "jdbc:postgresql://localhost:7777/ft_bd";
+    private static final String USER = "postgres";
+    private static final String PASSWORD = "postgres";
+
+    // Количество строк, получаемых за один запрос к серверному курсору
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Размер подпакета JDBC при массовой загрузке
+    private static final int BATCH_CHUNK_SIZE = 1000;
+
+    private static final String INSERT_USER_DATA_SQL = "INSERT INTO user_data (current_weight, target_weight, " +
+            "target_date, workouts_this_week, avg_workout_duration, user_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_WEIGHT_POINT_SQL =
+            "INSERT INTO weight_series (recorded_on, weight, workouts, duration, user_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO history (operation_date, operation_type, details, active, user_id) VALUES (?, ?, ?, ?, ?)";
+
+    // Пакеты от этого размера записываются через COPY (или многострочный INSERT)
+    private static final int BULK_THRESHOLD = 100;
+    // Количество строк в одном INSERT ... VALUES, если COPY недоступен
+    private static final int VALUES_ROWS = 1000;
+
+    private static final String COPY_HISTORY_SQL =
+            "COPY history (operation_date, operation_type, details, active, user_id) FROM STDIN";
+    // Данные пользователя загружаются через временную таблицу, из которой одновременно
+    // заполняются user_data и временной ряд веса
+    private static final String CREATE_USER_DATA_STAGE_SQL = "CREATE TEMP TABLE user_data_load (" +
+            "seq BIGSERIAL," +
+            "current_weight DOUBLE PRECISION," +
+            "target_weight DOUBLE PRECISION," +
+            "target_date DATE," +
+            "workouts_this_week INTEGER," +
+            "avg_workout_duration INTEGER," +
+            "user_id INTEGER) ON COMMIT DROP";
+    private static final String COPY_USER_DATA_STAGE_SQL = "COPY user_data_load (current_weight, target_weight, " +
+            "target_date, workouts_this_week, avg_workout_duration, user_id) FROM STDIN";
+    private static final String INSERT_USER_DATA_STAGE_SQL = "INSERT INTO user_data_load (current_weight, " +
+            "target_weight, target_date, workouts_this_week, avg_workout_duration, user_id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String MOVE_USER_DATA_STAGE_SQL = "INSERT INTO user_data (current_weight, target_weight, " +
+            "target_date, workouts_this_week, avg_workout_duration, user_id) " +
+            "SELECT current_weight, target_weight, target_date, workouts_this_week, avg_workout_duration, user_id " +
+            "FROM user_data_load ORDER BY seq";
+    private static final String DROP_USER_DATA_STAGE_SQL = "DROP TABLE user_data_load";
+    private static final String MOVE_WEIGHT_POINTS_STAGE_SQL =
+            "INSERT INTO weight_series (recorded_on, weight, workouts, duration, user_id) " +
+            "SELECT ?, current_weight, workouts_this_week, avg_workout_duration, user_id " +
+            "FROM user_data_load ORDER BY seq";
+
+    private static ConnectionPool sharedPool;
+
+    private final ConnectionPool pool;
+    private final int userId;
 
     /**
-     * Создает соединение с PostgreSQL и необходимые таблицы, если они не существуют.
+     * Создает DAO пользователя по умолчанию поверх общего пула соединений.
+     * Пул и таблицы создаются при первом обращении; последующие экземпляры
+     * переиспользуют уже открытые соединения.
      */
     public PostgresUserDataDao() {
-        try {
-            String url = "jdbc:postgresql://localhost:7777/ft_bd";
-            String user = "postgres";
-            String password = "postgres";
-            connection = DriverManager.getConnection(url, user, password);
-            createTablesIfNotExist();
+        this(DEFAULT_USER_ID);
+    }
+
+    /**
+     * Создает DAO указанного пользователя поверх общего пула соединений.
+     * @param userId ID пользователя
+     */
+    public PostgresUserDataDao(int userId) {
+        this(sharedPool(), userId);
+    }
+
+    /**
+     * Создает DAO пользователя по умолчанию поверх указанного пула.
+     * @param pool пул соединений с базой данных
+     */
+    public PostgresUserDataDao(ConnectionPool pool) {
+        this(pool, DEFAULT_USER_ID);
+    }
+
+    /**
+     * Создает DAO пользователя поверх указанного пула и необходимые таблицы, если они не существуют.
+     * @param pool пул соединений с базой данных
+     * @param userId ID пользователя
+     */
+    public PostgresUserDataDao(ConnectionPool pool, int userId) {
+        this.pool = pool;
+        this.userId = userId;
+        if (pool != sharedPool) {
+            initSchema(pool);
+        }
+    }
+
+    @Override
+    public int getUserId() {
+        return userId;
+    }
+
+    private static synchronized ConnectionPool sharedPool() {
+        if (sharedPool == null) {
+            try {
+                ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, 1, 8,
+                        Duration.ofSeconds(5), Duration.ofMinutes(5), Duration.ofMinutes(1));
+                initSchema(pool);
+                sharedPool = pool;
+            } catch (SQLException e) {
+                showErrorAlert("Ошибка подключения", e.getMessage(), e);
+                throw new DataAccessException("Failed to connect to PostgreSQL", e);
+            }
+        }
+        return sharedPool;
+    }
+
+    /**
+     * Закрывает общий пул соединений. Вызывается при завершении приложения.
+     */
+    public static synchronized void closeSharedPool() {
+        if (sharedPool != null) {
+            sharedPool.close();
+            sharedPool = null;
+        }
+    }
+
+    /**
+     * Возвращает пул соединений этого DAO (для метрик).
+     * @return пул соединений
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    private static void initSchema(ConnectionPool pool) {
+        try (Connection connection = pool.getConnection()) {
+            createTablesIfNotExist(connection);
         } catch (SQLException e) {
-            showErrorAlert("Ошибка подключения", e.getMessage());
-            throw new RuntimeException("Failed to connect to PostgreSQL", e);
+            showErrorAlert("Ошибка подключения", e.getMessage(), e);
+            throw new DataAccessException("Failed to connect to PostgreSQL", e);
         }
     }
 
-    private void createTablesIfNotExist() throws SQLException {
+    private static void createTablesIfNotExist(Connection connection) throws SQLException {
         try (Statement stmt = connection.createStatement()) {
             // Таблица пользовательских данных
             stmt.execute("CREATE TABLE IF NOT EXISTS user_data (" +
@@ -42,7 +172,17 @@ public class PostgresUserDataDao implements UserDataDao {
                     "target_weight DOUBLE PRECISION," +
                     "target_date DATE," +
                     "workouts_this_week INTEGER," +
-                    "avg_workout_duration INTEGER)");
+                    "avg_workout_duration INTEGER," +
+                    "user_id INTEGER NOT NULL DEFAULT " + DEFAULT_USER_ID + ")");
+
+            // Временной ряд веса: только дополняется при сохранении данных пользователя
+            stmt.execute("CREATE TABLE IF NOT EXISTS weight_series (" +
+                    "id BIGSERIAL PRIMARY KEY," +
+                    "recorded_on DATE NOT NULL," +
+                    "weight DOUBLE PRECISION," +
+                    "workouts INTEGER," +
+                    "duration INTEGER," +
+                    "user_id INTEGER NOT NULL DEFAULT " + DEFAULT_USER_ID + ")");
 
             // Таблица истории операций
             stmt.execute("CREATE TABLE IF NOT EXISTS history (" +
@@ -50,29 +190,70 @@ public class PostgresUserDataDao implements UserDataDao {
                     "operation_date DATE," +
                     "operation_type VARCHAR(50)," +
                     "details TEXT," +
-                    "active BOOLEAN DEFAULT true)");
+                    "active BOOLEAN DEFAULT true," +
+                    "user_id INTEGER NOT NULL DEFAULT " + DEFAULT_USER_ID + ")");
+
+            // Таблицы, созданные до разделения по пользователям: прежние данные принадлежат пользователю по умолчанию
+            for (String table : new String[]{"user_data", "weight_series", "history"}) {
+                stmt.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS user_id INTEGER NOT NULL DEFAULT " +
+                        DEFAULT_USER_ID);
+            }
+
+            // Составные индексы: каждый запрос ограничен пользователем
+            stmt.execute("CREATE INDEX IF NOT EXISTS user_data_user_id_idx ON user_data (user_id, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS weight_series_user_day_id_idx " +
+                    "ON weight_series (user_id, recorded_on, id)");
+            // Постраничное чтение по ключу (дата, ID) и выборки за период
+            stmt.execute("CREATE INDEX IF NOT EXISTS history_user_date_id_idx ON history (user_id, operation_date, id)");
+            // Фильтр и сортировка по типу операции
+            stmt.execute("CREATE INDEX IF NOT EXISTS history_user_type_id_idx ON history (user_id, operation_type, id)");
+            // Прежние индексы без user_id не используются запросами и только замедляют запись
+            stmt.execute("DROP INDEX IF EXISTS weight_series_day_id_idx");
+            stmt.execute("DROP INDEX IF EXISTS history_date_id_idx");
+        }
+        createSearchIndexes(connection);
+    }
+
+    /**
+     * Создает триграммные GIN-индексы для поиска по подстроке.
+     * С ними ILIKE '%...%' выполняется через bitmap-сканирование индексов
+     * вместо последовательного чтения таблицы; условие по пользователю проверяется
+     * по найденным строкам. Если расширение pg_trgm недоступно
+     * (нет прав или пакета contrib), поиск продолжает работать без индекса.
+     */
+    private static void createSearchIndexes(Connection connection) {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            stmt.execute("CREATE INDEX IF NOT EXISTS history_operation_type_trgm_idx " +
+                    "ON history USING gin (operation_type gin_trgm_ops)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS history_details_trgm_idx " +
+                    "ON history USING gin (details gin_trgm_ops)");
+        } catch (SQLException e) {
+            System.err.println("WARN: pg_trgm недоступно, поиск по истории будет без индекса - " + e.getMessage());
         }
     }
 
     /**
-     * Сохраняет данные пользователя в базу данных.
+     * Сохраняет данные пользователя и точку временного ряда веса в одной транзакции.
      * @param userData Данные пользователя для сохранения
      */
     @Override
     public void saveUserData(UserData userData) {
-        String sql = "INSERT INTO user_data (current_weight, target_weight, target_date, " +
-                "workouts_this_week, avg_workout_duration) VALUES (?, ?, ?, ?, ?)";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setDouble(1, userData.getCurrentWeight());
-            pstmt.setDouble(2, userData.getTargetWeight());
-            pstmt.setDate(3, Date.valueOf(userData.getTargetDate()));
-            pstmt.setInt(4, userData.getWorkoutsThisWeek());
-            pstmt.setInt(5, userData.getAvgWorkoutDuration());
-
-            pstmt.executeUpdate();
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_USER_DATA_SQL);
+                 PreparedStatement pointStmt = connection.prepareStatement(INSERT_WEIGHT_POINT_SQL)) {
+                bindUserData(pstmt, 0, userData);
+                pstmt.executeUpdate();
+                bindWeightPoint(pointStmt, userData);
+                pointStmt.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка сохранения", e.getMessage());
+            showErrorAlert("Ошибка сохранения", e.getMessage(), e);
         }
     }
 
@@ -83,17 +264,27 @@ public class PostgresUserDataDao implements UserDataDao {
      */
     @Override
     public void saveHistoryRecord(String operationType, String details) {
-        String sql = "INSERT INTO history (operation_date, operation_type, details, active) VALUES (?, ?, ?, ?)";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setDate(1, Date.valueOf(LocalDate.now()));
-            pstmt.setString(2, operationType);
-            pstmt.setString(3, details);
-            pstmt.setBoolean(4, true);
+        saveHistoryRecord(new HistoryRecord(LocalDate.now(), operationType, details, true));
+    }
 
+    /**
+     * Сохраняет запись истории с заданными датой и статусом.
+     * @param record запись истории
+     * @return ID, выданный базой данных
+     */
+    @Override
+    public int saveHistoryRecord(HistoryRecord record) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(INSERT_HISTORY_SQL, new String[] {"id"})) {
+            bindHistoryRecord(pstmt, 0, record.getDate(), record.getOperationType(), record.getDetails(),
+                    record.isActive());
             pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                return keys.next() ? keys.getInt(1) : 0;
+            }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка сохранения истории", e.getMessage());
+            showErrorAlert("Ошибка сохранения истории", e.getMessage(), e);
+            return 0;
         }
     }
 
@@ -104,28 +295,137 @@ public class PostgresUserDataDao implements UserDataDao {
     @Override
     public List<HistoryRecord> getHistoryRecords() {
         List<HistoryRecord> records = new ArrayList<>();
-        String sql = "SELECT id, operation_date, operation_type, details, active FROM history ORDER BY operation_date DESC";
-
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        String sql = "SELECT id, operation_date, operation_type, details, active FROM history " +
+                "WHERE user_id = ? ORDER BY operation_date DESC";
 
-            while (rs.next()) {
-                HistoryRecord record = new HistoryRecord(
-                        rs.getInt("id"),
-                        rs.getDate("operation_date").toLocalDate(),
-                        rs.getString("operation_type"),
-                        rs.getString("details"),
-                        rs.getBoolean("active")
-                );
-                records.add(record);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    HistoryRecord record = new HistoryRecord(
+                            rs.getInt("id"),
+                            rs.getDate("operation_date").toLocalDate(),
+                            rs.getString("operation_type"),
+                            rs.getString("details"),
+                            rs.getBoolean("active")
+                    );
+                    records.add(record);
+                }
             }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка загрузки истории", "Не удалось загрузить историю: " + e.getMessage());
+            showErrorAlert("Ошибка загрузки истории", "Не удалось загрузить историю: " + e.getMessage(), e);
             e.printStackTrace();
         }
         return records;
     }
 
+    /**
+     * Получает страницу истории по ключу (operation_date, id).
+     * Условие на кортеж позволяет использовать индекс history_user_date_id_idx
+     * без OFFSET, поэтому стоимость страницы не зависит от ее номера.
+     * @param after курсор последней записи предыдущей страницы или null
+     * @param limit максимальное количество записей
+     * @param descending true - от новых записей к старым
+     * @return записи страницы
+     */
+    @Override
+    public List<HistoryRecord> getHistoryPage(HistoryCursor after, int limit, boolean descending) {
+        List<HistoryRecord> records = new ArrayList<>();
+        String direction = descending ? "DESC" : "ASC";
+        String sql = "SELECT id, operation_date, operation_type, details, active FROM history WHERE user_id = ? " +
+                (after == null ? "" : "AND (operation_date, id) " + (descending ? "<" : ">") + " (?, ?) ") +
+                "ORDER BY operation_date " + direction + ", id " + direction + " LIMIT ?";
+
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            pstmt.setInt(index++, userId);
+            if (after != null) {
+                pstmt.setDate(index++, Date.valueOf(after.getDate()));
+                pstmt.setInt(index++, after.getId());
+            }
+            pstmt.setInt(index, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    records.add(new HistoryRecord(
+                            rs.getInt("id"),
+                            rs.getDate("operation_date").toLocalDate(),
+                            rs.getString("operation_type"),
+                            rs.getString("details"),
+                            rs.getBoolean("active")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            showErrorAlert("Ошибка загрузки истории", e.getMessage(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Получает записи за период; условие по operation_date использует индекс history_user_date_id_idx.
+     * @param from начальная дата
+     * @param to конечная дата (включительно)
+     * @return записи в порядке (дата, ID)
+     */
+    @Override
+    public List<HistoryRecord> getHistoryRecordsByDateRange(LocalDate from, LocalDate to) {
+        List<HistoryRecord> records = new ArrayList<>();
+        String sql = "SELECT id, operation_date, operation_type, details, active FROM history " +
+                "WHERE user_id = ? AND operation_date BETWEEN ? AND ? ORDER BY operation_date, id";
+
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setDate(2, Date.valueOf(from));
+            pstmt.setDate(3, Date.valueOf(to));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    records.add(mapHistoryRecord(rs));
+                }
+            }
+        } catch (SQLException e) {
+            showErrorAlert("Ошибка загрузки истории", e.getMessage(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Получает временной ряд веса за период. Строки читаются порциями через серверный курсор
+     * (вне режима autocommit, как в {@link #streamQuery}) прямо в столбцы ряда;
+     * день эпохи вычисляется в запросе, поэтому объекты дат не создаются.
+     * @param from начальная дата
+     * @param to конечная дата (включительно)
+     * @return точки ряда в порядке дней
+     */
+    @Override
+    public WeightSeries.Slice getWeightSeries(LocalDate from, LocalDate to) {
+        String sql = "SELECT recorded_on - DATE '1970-01-01' AS epoch_day, weight, workouts, duration " +
+                "FROM weight_series WHERE user_id = ? AND recorded_on BETWEEN ? AND ? ORDER BY recorded_on, id";
+        WeightSeries series = new WeightSeries();
+
+        try (Connection connection = pool.getConnection()) {
+            // Пул откатит транзакцию чтения и вернет соединению autocommit
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setFetchSize(STREAM_FETCH_SIZE);
+                pstmt.setInt(1, userId);
+                pstmt.setDate(2, Date.valueOf(from));
+                pstmt.setDate(3, Date.valueOf(to));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        series.append(rs.getInt(1), rs.getDouble(2), rs.getInt(3), rs.getInt(4));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            showErrorAlert("Ошибка получения данных", e.getMessage(), e);
+        }
+        return series.slice();
+    }
+
     /**
      * Получает данные пользователя по ID.
      * @param id идентификатор пользователя
@@ -133,9 +433,11 @@ public class PostgresUserDataDao implements UserDataDao {
      */
     @Override
     public Optional<UserData> getUserDataById(int id) {
-        String sql = "SELECT * FROM user_data WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        String sql = "SELECT * FROM user_data WHERE id = ? AND user_id = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, id);
+            pstmt.setInt(2, userId);
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
@@ -148,7 +450,7 @@ public class PostgresUserDataDao implements UserDataDao {
                 ));
             }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка получения данных", e.getMessage());
+            showErrorAlert("Ошибка получения данных", e.getMessage(), e);
         }
         return Optional.empty();
     }
@@ -162,19 +464,21 @@ public class PostgresUserDataDao implements UserDataDao {
     public void updateUserData(int id, UserData userData) {
         String sql = "UPDATE user_data SET current_weight = ?, target_weight = ?, " +
                 "target_date = ?, workouts_this_week = ?, avg_workout_duration = ? " +
-                "WHERE id = ?";
+                "WHERE id = ? AND user_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setDouble(1, userData.getCurrentWeight());
             pstmt.setDouble(2, userData.getTargetWeight());
             pstmt.setDate(3, Date.valueOf(userData.getTargetDate()));
             pstmt.setInt(4, userData.getWorkoutsThisWeek());
             pstmt.setInt(5, userData.getAvgWorkoutDuration());
             pstmt.setInt(6, id);
+            pstmt.setInt(7, userId);
 
             pstmt.executeUpdate();
         } catch (SQLException e) {
-            showErrorAlert("Ошибка обновления данных", e.getMessage());
+            showErrorAlert("Ошибка обновления данных", e.getMessage(), e);
         }
     }
 
@@ -184,12 +488,14 @@ public class PostgresUserDataDao implements UserDataDao {
      */
     @Override
     public void deleteUserData(int id) {
-        String sql = "DELETE FROM user_data WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        String sql = "DELETE FROM user_data WHERE id = ? AND user_id = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, id);
+            pstmt.setInt(2, userId);
             pstmt.executeUpdate();
         } catch (SQLException e) {
-            showErrorAlert("Ошибка удаления данных", e.getMessage());
+            showErrorAlert("Ошибка удаления данных", e.getMessage(), e);
         }
     }
 
@@ -201,9 +507,11 @@ public class PostgresUserDataDao implements UserDataDao {
     // Методы для работы с историей
     @Override
     public Optional<HistoryRecord> getHistoryRecordById(int id) {
-        String sql = "SELECT * FROM history WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        String sql = "SELECT * FROM history WHERE id = ? AND user_id = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, id);
+            pstmt.setInt(2, userId);
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
@@ -216,7 +524,7 @@ public class PostgresUserDataDao implements UserDataDao {
                 ));
             }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка получения записи истории", e.getMessage());
+            showErrorAlert("Ошибка получения записи истории", e.getMessage(), e);
         }
         return Optional.empty();
     }
@@ -229,18 +537,20 @@ public class PostgresUserDataDao implements UserDataDao {
     @Override
     public void updateHistoryRecord(int id, HistoryRecord record) {
         String sql = "UPDATE history SET operation_date = ?, operation_type = ?, details = ?, active = ? " +
-                "WHERE id = ?";
+                "WHERE id = ? AND user_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setDate(1, Date.valueOf(record.getDate()));
             pstmt.setString(2, record.getOperationType());
             pstmt.setString(3, record.getDetails());
             pstmt.setBoolean(4, record.isActive());
             pstmt.setInt(5, id);
+            pstmt.setInt(6, userId);
 
             pstmt.executeUpdate();
         } catch (SQLException e) {
-            showErrorAlert("Ошибка обновления истории", e.getMessage());
+            showErrorAlert("Ошибка обновления истории", e.getMessage(), e);
         }
     }
 
@@ -250,12 +560,14 @@ public class PostgresUserDataDao implements UserDataDao {
      */
     @Override
     public void deleteHistoryRecord(int id) {
-        String sql = "DELETE FROM history WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        String sql = "DELETE FROM history WHERE id = ? AND user_id = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setInt(1, id);
+            pstmt.setInt(2, userId);
             pstmt.executeUpdate();
         } catch (SQLException e) {
-            showErrorAlert("Ошибка удаления записи истории", e.getMessage());
+            showErrorAlert("Ошибка удаления записи истории", e.getMessage(), e);
         }
     }
 
@@ -266,15 +578,17 @@ public class PostgresUserDataDao implements UserDataDao {
      */
     @Override
     public void updateHistoryRecordStatus(int id, boolean newStatus) {
-        String sql = "UPDATE history SET active = ? WHERE id = ?";
+        String sql = "UPDATE history SET active = ? WHERE id = ? AND user_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setBoolean(1, newStatus);
             pstmt.setInt(2, id);
+            pstmt.setInt(3, userId);
 
             pstmt.executeUpdate();
         } catch (SQLException e) {
-            showErrorAlert("Ошибка обновления статуса", e.getMessage());
+            showErrorAlert("Ошибка обновления статуса", e.getMessage(), e);
         }
     }
 
@@ -286,13 +600,16 @@ public class PostgresUserDataDao implements UserDataDao {
     @Override
     public List<HistoryRecord> searchHistoryRecords(String searchTerm) {
         List<HistoryRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM history WHERE " +
-                "operation_type ILIKE ? OR details ILIKE ? " +
+        String sql = "SELECT * FROM history WHERE user_id = ? AND " +
+                "(operation_type ILIKE ? OR details ILIKE ?) " +
                 "ORDER BY operation_date DESC";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, "%" + searchTerm + "%");
-            pstmt.setString(2, "%" + searchTerm + "%");
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            String pattern = likePattern(searchTerm);
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, pattern);
+            pstmt.setString(3, pattern);
 
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -305,7 +622,7 @@ public class PostgresUserDataDao implements UserDataDao {
                 ));
             }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка поиска", e.getMessage());
+            showErrorAlert("Ошибка поиска", e.getMessage(), e);
         }
         return records;
     }
@@ -320,22 +637,51 @@ public class PostgresUserDataDao implements UserDataDao {
     public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending) {
         List<HistoryRecord> records = new ArrayList<>();
         String direction = ascending ? "ASC" : "DESC";
-        String sql = "SELECT * FROM history ORDER BY " + sortBy + " " + direction;
+        String sql = "SELECT * FROM history WHERE user_id = ? ORDER BY " + sortColumn(sortBy) + " " + direction +
+                ", id " + direction;
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    records.add(new HistoryRecord(
+                            rs.getInt("id"),
+                            rs.getDate("operation_date").toLocalDate(),
+                            rs.getString("operation_type"),
+                            rs.getString("details"),
+                            rs.getBoolean("active")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            showErrorAlert("Ошибка сортировки", e.getMessage(), e);
+        }
+        return records;
+    }
 
-            while (rs.next()) {
-                records.add(new HistoryRecord(
-                        rs.getInt("id"),
-                        rs.getDate("operation_date").toLocalDate(),
-                        rs.getString("operation_type"),
-                        rs.getString("details"),
-                        rs.getBoolean("active")
-                ));
+    /**
+     * Возвращает первые limit записей в порядке сортировки; LIMIT позволяет серверу
+     * использовать индекс или частичную сортировку вместо полной.
+     */
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending, int limit) {
+        List<HistoryRecord> records = new ArrayList<>();
+        String direction = ascending ? "ASC" : "DESC";
+        String sql = "SELECT id, operation_date, operation_type, details, active FROM history WHERE user_id = ? " +
+                "ORDER BY " + sortColumn(sortBy) + " " + direction + ", id " + direction + " LIMIT ?";
+
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, Math.max(limit, 0));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    records.add(mapHistoryRecord(rs));
+                }
             }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка сортировки", e.getMessage());
+            showErrorAlert("Ошибка сортировки", e.getMessage(), e);
         }
         return records;
     }
@@ -348,10 +694,12 @@ public class PostgresUserDataDao implements UserDataDao {
     @Override
     public List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
         List<HistoryRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM history WHERE operation_type = ? ORDER BY operation_date DESC";
+        String sql = "SELECT * FROM history WHERE user_id = ? AND operation_type = ? ORDER BY operation_date DESC";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, operationType);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, operationType);
 
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
@@ -364,17 +712,470 @@ public class PostgresUserDataDao implements UserDataDao {
                 ));
             }
         } catch (SQLException e) {
-            showErrorAlert("Ошибка фильтрации", e.getMessage());
+            showErrorAlert("Ошибка фильтрации", e.getMessage(), e);
         }
         return records;
     }
 
-    private void showErrorAlert(String title, String message) {
-        System.err.println("ERROR: " + title + " - " + message);  // Логирование в консоль
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(message);
-        alert.showAndWait();
+    /**
+     * Выполняет пакет операций в одной транзакции.
+     * Пакеты от {@value #BULK_THRESHOLD} операций загружаются через COPY, как в
+     * {@link #bulkLoadHistory(Stream)}; меньшие группируются через addBatch/executeBatch подпакетами по
+     * {@value #BATCH_CHUNK_SIZE} строк. При ошибке транзакция откатывается целиком.
+     * @param batch пакет операций
+     */
+    @Override
+    public void executeBatch(WriteBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() >= BULK_THRESHOLD) {
+            executeBulk(batch);
+            return;
+        }
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement userStmt = connection.prepareStatement(INSERT_USER_DATA_SQL);
+                 PreparedStatement pointStmt = connection.prepareStatement(INSERT_WEIGHT_POINT_SQL);
+                 PreparedStatement historyStmt = connection.prepareStatement(INSERT_HISTORY_SQL)) {
+                int pendingUsers = 0;
+                int pendingHistory = 0;
+                for (WriteBatch.Operation operation : batch.getOperations()) {
+                    if (operation instanceof WriteBatch.SaveUserData save) {
+                        bindUserData(userStmt, 0, save.getUserData());
+                        userStmt.addBatch();
+                        if (save.isWeightPoint()) {
+                            bindWeightPoint(pointStmt, save.getUserData());
+                            pointStmt.addBatch();
+                        }
+                        if (++pendingUsers == BATCH_CHUNK_SIZE) {
+                            userStmt.executeBatch();
+                            pointStmt.executeBatch();
+                            pendingUsers = 0;
+                        }
+                    } else if (operation instanceof WriteBatch.SaveHistoryRecord save) {
+                        LocalDate date = save.getDate() != null ? save.getDate() : LocalDate.now();
+                        bindHistoryRecord(historyStmt, 0, date, save.getOperationType(), save.getDetails(),
+                                save.isActive());
+                        historyStmt.addBatch();
+                        if (++pendingHistory == BATCH_CHUNK_SIZE) {
+                            historyStmt.executeBatch();
+                            pendingHistory = 0;
+                        }
+                    } else {
+                        throw new SQLException("Неподдерживаемая операция пакета: " + operation.getClass().getName());
+                    }
+                }
+                if (pendingUsers > 0) {
+                    userStmt.executeBatch();
+                    pointStmt.executeBatch();
+                }
+                if (pendingHistory > 0) {
+                    historyStmt.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Ошибка сохранения: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Массово загружает записи истории одной транзакцией через COPY history FROM STDIN.
+     * Записи кодируются в текстовый формат COPY по мере чтения потока, поэтому источник может быть
+     * больше доступной памяти (например, {@code streamHistoryRecords()} другого хранилища).
+     * Если соединение не поддерживает COPY, записи вставляются многострочными INSERT по
+     * {@value #VALUES_ROWS} строк. ID назначает база данных; кэширующие обертки DAO эту загрузку не видят.
+     * @param records поток записей; закрывает вызывающий код
+     * @return количество загруженных записей или 0, если загрузка не удалась
+     */
+    public long bulkLoadHistory(Stream<HistoryRecord> records) {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long loaded = loadHistory(connection, records.iterator());
+                connection.commit();
+                return loaded;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            showErrorAlert("Ошибка массовой загрузки истории", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Массово загружает данные пользователя одной транзакцией, как {@link #bulkLoadHistory(Stream)}.
+     * Каждая запись, как и в {@link #saveUserData(UserData)}, добавляет точку временного ряда веса за текущий день.
+     * @param userData поток данных пользователя; закрывает вызывающий код
+     * @return количество загруженных записей или 0, если загрузка не удалась
+     */
+    public long bulkLoadUserData(Stream<UserData> userData) {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long loaded = loadUserData(connection, userData.iterator(), true);
+                connection.commit();
+                return loaded;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            showErrorAlert("Ошибка массовой загрузки данных", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Загружает пакет через COPY. Данные пользователя с точкой ряда веса и без нее загружаются
+     * двумя группами, поэтому между группами порядок пакета не сохраняется.
+     */
+    private void executeBulk(WriteBatch batch) {
+        List<HistoryRecord> records = new ArrayList<>();
+        List<UserData> users = new ArrayList<>();
+        List<UserData> usersWithoutPoints = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (WriteBatch.Operation operation : batch.getOperations()) {
+            if (operation instanceof WriteBatch.SaveUserData save) {
+                (save.isWeightPoint() ? users : usersWithoutPoints).add(save.getUserData());
+            } else if (operation instanceof WriteBatch.SaveHistoryRecord save) {
+                records.add(new HistoryRecord(save.getDate() != null ? save.getDate() : today,
+                        save.getOperationType(), save.getDetails(), save.isActive()));
+            } else {
+                throw new DataAccessException("Неподдерживаемая операция пакета: "
+                        + operation.getClass().getName(), null);
+            }
+        }
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (!users.isEmpty()) {
+                    loadUserData(connection, users.iterator(), true);
+                }
+                if (!usersWithoutPoints.isEmpty()) {
+                    loadUserData(connection, usersWithoutPoints.iterator(), false);
+                }
+                if (!records.isEmpty()) {
+                    loadHistory(connection, records.iterator());
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Ошибка сохранения: " + e.getMessage(), e);
+        }
+    }
+
+    private long loadHistory(Connection connection, Iterator<HistoryRecord> records) throws SQLException {
+        PgCopyEncoder encoder = startCopy(connection, COPY_HISTORY_SQL);
+        if (encoder == null) {
+            return insertValues(connection, INSERT_HISTORY_SQL, 5, records, (pstmt, offset, record) ->
+                    bindHistoryRecord(pstmt, offset, record.getDate(), record.getOperationType(),
+                            record.getDetails(), record.isActive()));
+        }
+        try {
+            while (records.hasNext()) {
+                HistoryRecord record = records.next();
+                encoder.date(record.getDate())
+                        .text(record.getOperationType())
+                        .text(record.getDetails())
+                        .bool(record.isActive())
+                        .number(userId)
+                        .endRow();
+            }
+            return encoder.finish();
+        } catch (SQLException | RuntimeException e) {
+            encoder.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Загружает данные пользователя через временную таблицу, которая удаляется после переноса,
+     * поэтому в одной транзакции загрузку можно выполнить несколько раз.
+     * @param weightPoints true - для каждой записи добавляется точка ряда веса за текущий день
+     */
+    private long loadUserData(Connection connection, Iterator<UserData> userData, boolean weightPoints)
+            throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(CREATE_USER_DATA_STAGE_SQL);
+        }
+        PgCopyEncoder encoder = startCopy(connection, COPY_USER_DATA_STAGE_SQL);
+        if (encoder == null) {
+            insertValues(connection, INSERT_USER_DATA_STAGE_SQL, 6, userData, this::bindUserData);
+        } else {
+            try {
+                while (userData.hasNext()) {
+                    UserData data = userData.next();
+                    encoder.number(data.getCurrentWeight())
+                            .number(data.getTargetWeight())
+                            .date(data.getTargetDate())
+                            .number(data.getWorkoutsThisWeek())
+                            .number(data.getAvgWorkoutDuration())
+                            .number(userId)
+                            .endRow();
+                }
+                encoder.finish();
+            } catch (SQLException | RuntimeException e) {
+                encoder.cancel();
+                throw e;
+            }
+        }
+        long loaded;
+        try (Statement stmt = connection.createStatement()) {
+            loaded = stmt.executeUpdate(MOVE_USER_DATA_STAGE_SQL);
+        }
+        if (weightPoints) {
+            try (PreparedStatement pstmt = connection.prepareStatement(MOVE_WEIGHT_POINTS_STAGE_SQL)) {
+                pstmt.setDate(1, Date.valueOf(LocalDate.now()));
+                pstmt.executeUpdate();
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(DROP_USER_DATA_STAGE_SQL);
+        }
+        return loaded;
+    }
+
+    /**
+     * Начинает COPY FROM STDIN, если соединение — соединение драйвера PostgreSQL.
+     * @return кодировщик строк или null, если COPY недоступен
+     */
+    private static PgCopyEncoder startCopy(Connection connection, String sql) throws SQLException {
+        if (!connection.isWrapperFor(PGConnection.class)) {
+            return null;
+        }
+        return new PgCopyEncoder(connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql));
+    }
+
+    /**
+     * Привязывает значения строки к параметрам многострочного INSERT, начиная с offset + 1.
+     */
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement pstmt, int offset, T row) throws SQLException;
+    }
+
+    /**
+     * Вставляет строки многострочными INSERT ... VALUES (...), (...) по {@value #VALUES_ROWS} строк.
+     * @param singleRowSql INSERT с одной группой параметров после VALUES
+     * @param columns количество параметров в группе
+     */
+    private static <T> long insertValues(Connection connection, String singleRowSql, int columns,
+                                         Iterator<T> rows, RowBinder<T> binder) throws SQLException {
+        List<T> chunk = new ArrayList<>(VALUES_ROWS);
+        long inserted = 0;
+        try (PreparedStatement full = connection.prepareStatement(multiRowSql(singleRowSql, VALUES_ROWS))) {
+            while (rows.hasNext()) {
+                chunk.add(rows.next());
+                if (chunk.size() == VALUES_ROWS) {
+                    inserted += insertChunk(full, columns, chunk, binder);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            try (PreparedStatement tail = connection.prepareStatement(multiRowSql(singleRowSql, chunk.size()))) {
+                inserted += insertChunk(tail, columns, chunk, binder);
+            }
+        }
+        return inserted;
+    }
+
+    private static <T> int insertChunk(PreparedStatement pstmt, int columns, List<T> chunk, RowBinder<T> binder)
+            throws SQLException {
+        for (int i = 0; i < chunk.size(); i++) {
+            binder.bind(pstmt, i * columns, chunk.get(i));
+        }
+        return pstmt.executeUpdate();
+    }
+
+    private static String multiRowSql(String singleRowSql, int rows) {
+        int values = singleRowSql.lastIndexOf("VALUES ") + "VALUES ".length();
+        String group = singleRowSql.substring(values);
+        StringBuilder sql = new StringBuilder(values + rows * (group.length() + 2)).append(singleRowSql);
+        for (int i = 1; i < rows; i++) {
+            sql.append(", ").append(group);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Потоково читает историю через серверный курсор.
+     * Строки подгружаются порциями по {@value #STREAM_FETCH_SIZE}, поэтому память
+     * не зависит от размера таблицы. Соединение удерживается до закрытия потока.
+     * @return поток записей истории, отсортированный по дате (новые сначала)
+     */
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecords() {
+        return streamQuery("SELECT id, operation_date, operation_type, details, active FROM history " +
+                "WHERE user_id = ? ORDER BY operation_date DESC", userId);
+    }
+
+    /**
+     * Потоково ищет записи истории по ключевому слову через серверный курсор.
+     * @param searchTerm ключевое слово для поиска
+     * @return поток найденных записей, отсортированный по дате (новые сначала)
+     */
+    @Override
+    public Stream<HistoryRecord> streamSearchHistoryRecords(String searchTerm) {
+        return streamQuery("SELECT id, operation_date, operation_type, details, active FROM history WHERE " +
+                "user_id = ? AND (operation_type ILIKE ? OR details ILIKE ?) ORDER BY operation_date DESC",
+                userId, likePattern(searchTerm), likePattern(searchTerm));
+    }
+
+    /**
+     * Потоково читает отсортированную историю через серверный курсор.
+     * Равные значения упорядочиваются по ID в том же направлении, как в остальных хранилищах.
+     * @param sortBy поле для сортировки (operation_date, operation_type, details)
+     * @param ascending направление сортировки
+     * @return поток отсортированных записей
+     */
+    @Override
+    public Stream<HistoryRecord> streamHistoryRecordsSorted(String sortBy, boolean ascending) {
+        String direction = ascending ? "ASC" : "DESC";
+        return streamQuery("SELECT id, operation_date, operation_type, details, active FROM history " +
+                "WHERE user_id = ? ORDER BY " + sortColumn(sortBy) + " " + direction + ", id " + direction, userId);
+    }
+
+    /**
+     * Выполняет запрос с курсором и оборачивает ResultSet в ленивый поток.
+     * PostgreSQL использует серверный курсор только вне режима autocommit
+     * и при заданном fetch size. Ошибка запроса не подменяется пустым потоком,
+     * чтобы потребитель (например, экспорт) не принял ее за пустую историю.
+     * @throws DataAccessException если запрос не удалось выполнить
+     */
+    private Stream<HistoryRecord> streamQuery(String sql, Object... params) {
+        Connection connection = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs;
+        try {
+            connection = pool.getConnection();
+            connection.setAutoCommit(false);
+            pstmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            closeQuietly(pstmt, connection);
+            throw new DataAccessException("Failed to query history", e);
+        }
+
+        ResultSet cursor = rs;
+        Spliterator<HistoryRecord> spliterator = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super HistoryRecord> action) {
+                try {
+                    if (!cursor.next()) {
+                        return false;
+                    }
+                    action.accept(mapHistoryRecord(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException("Failed to read history cursor", e);
+                }
+            }
+        };
+        Connection heldConnection = connection;
+        PreparedStatement heldStatement = pstmt;
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> closeQuietly(heldStatement, heldConnection));
+    }
+
+    private static void closeQuietly(Statement statement, Connection connection) {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException ignored) {
+            // Курсор закрывается вместе с транзакцией
+        }
+        try {
+            if (connection != null) {
+                connection.close(); // Пул откатит транзакцию чтения и вернет соединение
+            }
+        } catch (SQLException ignored) {
+            // Соединение уже недоступно
+        }
+    }
+
+    private static HistoryRecord mapHistoryRecord(ResultSet rs) throws SQLException {
+        return new HistoryRecord(
+                rs.getInt("id"),
+                rs.getDate("operation_date").toLocalDate(),
+                rs.getString("operation_type"),
+                rs.getString("details"),
+                rs.getBoolean("active")
+        );
+    }
+
+    /**
+     * Формирует шаблон ILIKE для поиска подстроки. Символы %, _ и \ в запросе
+     * экранируются, чтобы искались буквально.
+     */
+    private static String likePattern(String searchTerm) {
+        String escaped = searchTerm.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Проверяет имя столбца сортировки, чтобы в ORDER BY не попал произвольный SQL.
+     */
+    private static String sortColumn(String sortBy) {
+        switch (sortBy) {
+            case "operation_date":
+            case "operation_type":
+            case "details":
+                return sortBy;
+            default:
+                return "operation_date";
+        }
+    }
+
+    /**
+     * Привязывает данные пользователя и user_id (6 параметров, начиная с offset + 1).
+     */
+    private void bindUserData(PreparedStatement pstmt, int offset, UserData userData) throws SQLException {
+        pstmt.setDouble(offset + 1, userData.getCurrentWeight());
+        pstmt.setDouble(offset + 2, userData.getTargetWeight());
+        pstmt.setDate(offset + 3, Date.valueOf(userData.getTargetDate()));
+        pstmt.setInt(offset + 4, userData.getWorkoutsThisWeek());
+        pstmt.setInt(offset + 5, userData.getAvgWorkoutDuration());
+        pstmt.setInt(offset + 6, userId);
+    }
+
+    private void bindWeightPoint(PreparedStatement pstmt, UserData userData) throws SQLException {
+        pstmt.setDate(1, Date.valueOf(LocalDate.now()));
+        pstmt.setDouble(2, userData.getCurrentWeight());
+        pstmt.setInt(3, userData.getWorkoutsThisWeek());
+        pstmt.setInt(4, userData.getAvgWorkoutDuration());
+        pstmt.setInt(5, userId);
+    }
+
+    /**
+     * Привязывает запись истории и user_id (5 параметров, начиная с offset + 1).
+     */
+    private void bindHistoryRecord(PreparedStatement pstmt, int offset, LocalDate date, String operationType,
+                                   String details, boolean active) throws SQLException {
+        pstmt.setDate(offset + 1, Date.valueOf(date));
+        pstmt.setString(offset + 2, operationType);
+        pstmt.setString(offset + 3, details);
+        pstmt.setBoolean(offset + 4, active);
+        pstmt.setInt(offset + 5, userId);
+    }
+
+    private static void showErrorAlert(String title, String message, Exception cause) {
+        ErrorAlerts.show(title, message, cause);
     }
 }
@@ -0,0 +1,82 @@
+package com.example.fitness_tracker.dao;
+
+/**
+ * Источники данных приложения и способ открыть DAO пользователя в каждом из них.
+ * Все DAO измеряются (см. {@link MeteredUserDataDao}); повторные запросы к БД и файлу
+ * обслуживаются из кэша. {@link #release(int)} закрывает файлы пользователя в FILE и MAPPED;
+ * раздел пользователя IN_MEMORY не освобождается, так как других копий его данных нет.
+ */
+public enum StorageBackend implements UserDataDaoFactory {
+    POSTGRES("Postgres") {
+        @Override
+        public UserDataDao forUser(int userId) {
+            return cached(getName(), new PostgresUserDataDao(userId));
+        }
+    },
+    FILE("File") {
+        @Override
+        public UserDataDao forUser(int userId) {
+            return cached(getName(), new FileUserDataDao(userId));
+        }
+
+        @Override
+        public void release(int userId) {
+            FileUserDataDao.release(userId);
+        }
+    },
+    IN_MEMORY("InMemory") {
+        @Override
+        public UserDataDao forUser(int userId) {
+            return new MeteredUserDataDao(InMemoryUserDataDao.forUser(userId), getName());
+        }
+    },
+    MAPPED("Mapped") {
+        @Override
+        public UserDataDao forUser(int userId) {
+            return new MeteredUserDataDao(MappedUserDataDao.forUser(userId), getName());
+        }
+
+        @Override
+        public void release(int userId) {
+            MappedUserDataDao.release(userId);
+        }
+    };
+
+    private final String name;
+
+    StorageBackend(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return имя источника данных в метриках
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Находит источник по имени в метриках или имени константы, без учета регистра.
+     * @param name имя источника (например, postgres, file, inmemory, in_memory, mapped)
+     * @return источник данных
+     * @throws IllegalArgumentException если источника с таким именем нет
+     */
+    public static StorageBackend fromName(String name) {
+        for (StorageBackend backend : values()) {
+            if (backend.name.equalsIgnoreCase(name) || backend.name().equalsIgnoreCase(name)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный источник данных: " + name
+                + " (допустимы: postgres, file, inmemory, mapped)");
+    }
+
+    /**
+     * Оборачивает хранилище кэшем; метрики снимаются и с самого хранилища,
+     * и с кэша (источник с суффиксом "-cached"), чтобы было видно долю попаданий во времени.
+     */
+    private static UserDataDao cached(String backend, UserDataDao dao) {
+        return new MeteredUserDataDao(new CachingUserDataDao(new MeteredUserDataDao(dao, backend)),
+                backend + "-cached");
+    }
+}
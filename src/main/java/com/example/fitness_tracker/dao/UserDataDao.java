@@ -2,14 +2,31 @@ package com.example.fitness_tracker.dao;
 
 import com.example.fitness_tracker.model.UserData;
 import com.example.fitness_tracker.model.HistoryRecord;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Интерфейс Data Access Object (DAO) для работы с данными пользователя и историей операций.
  * Определяет контракт для всех реализаций DAO.
+ * Экземпляр DAO работает с данными одного пользователя ({@link #getUserId()}); хранилища разделены
+ * по пользователям, поэтому DAO разных пользователей не конкурируют за общие блокировки и файлы.
+ * ID записей уникальны в пределах пользователя. DAO пользователя создает {@link UserDataDaoFactory}.
  */
 public interface UserDataDao {
+    /**
+     * Пользователь, которому принадлежат данные, сохраненные до разделения хранилищ по пользователям.
+     */
+    int DEFAULT_USER_ID = 1;
+
+    /**
+     * @return ID пользователя, с данными которого работает этот DAO
+     */
+    int getUserId();
+
     /**
      * Сохраняет данные пользователя.
      * @param userData Данные пользователя для сохранения
@@ -21,7 +38,32 @@ public interface UserDataDao {
      * @param details Детали операции
      */
     void saveHistoryRecord(String operationType, String details);
+    /**
+     * Сохраняет запись истории с заданными датой и статусом (например, при импорте).
+     * ID назначает хранилище, ID из переданной записи не используется.
+     * @param record запись истории
+     * @return ID сохраненной записи или 0, если запись не сохранена и ошибка показана пользователю
+     */
+    int saveHistoryRecord(HistoryRecord record);
     List<HistoryRecord> getHistoryRecords();
+    /**
+     * Получает страницу истории в порядке (дата, ID), начиная строго после курсора.
+     * В отличие от {@link #getHistoryRecords()} не загружает всю историю целиком.
+     * @param after курсор последней записи предыдущей страницы или null для первой страницы
+     * @param limit максимальное количество записей на странице
+     * @param descending true - от новых записей к старым
+     * @return записи страницы; пустой список, если записей больше нет
+     */
+    List<HistoryRecord> getHistoryPage(HistoryCursor after, int limit, boolean descending);
+    /**
+     * Получает временной ряд веса за период [from, to] включительно.
+     * Ряд пополняется каждым вызовом {@link #saveUserData(UserData)} (точка за текущий день)
+     * и не меняется при изменении или удалении сохраненных данных.
+     * @param from начальная дата
+     * @param to конечная дата
+     * @return точки ряда в порядке дней
+     */
+    WeightSeries.Slice getWeightSeries(LocalDate from, LocalDate to);
     Optional<UserData> getUserDataById(int id);
     void updateUserData(int id, UserData userData);
     void deleteUserData(int id);
@@ -38,5 +80,81 @@ public interface UserDataDao {
      */
     List<HistoryRecord> searchHistoryRecords(String searchTerm);
     List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending);
+    /**
+     * Возвращает первые limit записей в порядке сортировки (top-k).
+     * По умолчанию сортирует всю историю; реализации с поддерживаемым порядком
+     * читают только первые limit записей.
+     * @param sortBy поле для сортировки (operation_date, operation_type, details)
+     * @param ascending направление сортировки
+     * @param limit максимальное количество записей
+     * @return отсортированные записи
+     */
+    default List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending, int limit) {
+        List<HistoryRecord> sorted = getHistoryRecordsSorted(sortBy, ascending);
+        return sorted.size() > limit ? new ArrayList<>(sorted.subList(0, Math.max(limit, 0))) : sorted;
+    }
     List<HistoryRecord> filterHistoryRecordsByType(String operationType);
+
+    /**
+     * Получает записи истории с датой операции в диапазоне [from, to] включительно.
+     * По умолчанию просматривает всю историю; реализации с индексом по дате переопределяют метод.
+     * @param from начальная дата
+     * @param to конечная дата
+     * @return записи в порядке (дата, ID)
+     */
+    default List<HistoryRecord> getHistoryRecordsByDateRange(LocalDate from, LocalDate to) {
+        try (Stream<HistoryRecord> records = streamHistoryRecords()) {
+            return records
+                    .filter(record -> !record.getDate().isBefore(from) && !record.getDate().isAfter(to))
+                    .sorted(HistoryCursor.ORDER)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Потоково читает всю историю. Реализации могут читать записи лениво
+     * (курсором БД или построчно из файла), поэтому поток нужно закрыть,
+     * например через try-with-resources. Ошибка чтения не подменяется пустым потоком.
+     * @return поток записей истории
+     * @throws DataAccessException если историю не удалось прочитать при открытии потока или при его обходе
+     */
+    default Stream<HistoryRecord> streamHistoryRecords() {
+        return getHistoryRecords().stream();
+    }
+
+    /**
+     * Потоковый вариант {@link #searchHistoryRecords(String)}. Поток нужно закрыть.
+     * @param searchTerm ключевое слово для поиска
+     * @return поток найденных записей
+     * @throws DataAccessException если историю не удалось прочитать
+     */
+    default Stream<HistoryRecord> streamSearchHistoryRecords(String searchTerm) {
+        return searchHistoryRecords(searchTerm).stream();
+    }
+
+    /**
+     * Потоковый вариант {@link #getHistoryRecordsSorted(String, boolean)}. Поток нужно закрыть.
+     * @param sortBy поле для сортировки
+     * @param ascending направление сортировки
+     * @return поток отсортированных записей
+     * @throws DataAccessException если историю не удалось прочитать
+     */
+    default Stream<HistoryRecord> streamHistoryRecordsSorted(String sortBy, boolean ascending) {
+        return getHistoryRecordsSorted(sortBy, ascending).stream();
+    }
+
+    /**
+     * Выполняет пакет операций записи.
+     * По умолчанию операции выполняются по одной; реализации с транзакциями
+     * переопределяют метод, чтобы выполнить пакет атомарно.
+     * В отличие от остальных методов, ошибка записи пакета не показывается окном, а передается
+     * вызывающему коду исключением.
+     * @param batch пакет операций
+     * @throws DataAccessException если пакет не записан (полностью или частично)
+     */
+    default void executeBatch(WriteBatch batch) {
+        for (WriteBatch.Operation operation : batch.getOperations()) {
+            operation.applyTo(this);
+        }
+    }
 }
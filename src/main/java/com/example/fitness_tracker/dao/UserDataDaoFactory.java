@@ -0,0 +1,24 @@
+package com.example.fitness_tracker.dao;
+
+/**
+ * Источник DAO пользователей одного хранилища.
+ * Реализации: {@code PostgresUserDataDao::new}, {@code FileUserDataDao::new},
+ * {@link InMemoryUserDataDao#forUser(int)}, {@link MappedUserDataDao#forUser(int)}.
+ */
+@FunctionalInterface
+public interface UserDataDaoFactory {
+    /**
+     * Возвращает DAO, работающий с данными указанного пользователя.
+     * @param userId ID пользователя
+     * @return DAO пользователя
+     */
+    UserDataDao forUser(int userId);
+
+    /**
+     * Освобождает ресурсы, открытые хранилищем для пользователя (файлы, отображения, индексы в памяти).
+     * Данные пользователя остаются в хранилище; DAO, полученные до вызова, использовать нельзя.
+     * @param userId ID пользователя
+     */
+    default void release(int userId) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.fitness_tracker.dao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Каталоги файловых хранилищ пользователей.
+ * Файлы пользователя по умолчанию остаются в рабочем каталоге, где они лежали до разделения
+ * хранилищ по пользователям; файлы остальных пользователей — в users/&lt;ID&gt;.
+ */
+final class UserDirectories {
+    private static final Path ROOT = Path.of("users");
+
+    private UserDirectories() {
+    }
+
+    /**
+     * Возвращает каталог пользователя, создавая его при необходимости.
+     * @param userId ID пользователя
+     * @return каталог, относительно которого открываются файлы пользователя
+     * @throws IOException если каталог не удается создать
+     */
+    static Path of(int userId) throws IOException {
+        if (userId == UserDataDao.DEFAULT_USER_ID) {
+            return Path.of("");
+        }
+        return Files.createDirectories(ROOT.resolve(Integer.toString(userId)));
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.UserData;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Временной ряд веса пользователя в столбцовом виде: день эпохи, вес, тренировки за неделю
+ * и средняя длительность тренировки хранятся в отдельных примитивных массивах.
+ * Ряд только дополняется; точки упорядочены по дню. Массивы растут блоками фиксированного
+ * размера, поэтому добавление не копирует уже сохраненные точки.
+ * Добавление выполняется под блокировкой ряда, чтение — без блокировок:
+ * срез фиксирует состояние ряда на момент вызова и не создает объектов на каждую точку.
+ */
+public final class WeightSeries {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int INITIAL_CHUNKS = 4;
+
+    /**
+     * Получатель точек ряда с примитивными аргументами.
+     */
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(int epochDay, double weight, int workouts, int duration);
+    }
+
+    /**
+     * Каталоги блоков столбцов и количество точек. Новое состояние публикуется при каждом
+     * добавлении; блоки переходят в него без копирования, поэтому читатель, получивший состояние,
+     * видит согласованные каталоги и количество.
+     */
+    private static final class State {
+        private final int[][] days;
+        private final double[][] weights;
+        private final int[][] workouts;
+        private final int[][] durations;
+        private final int size;
+
+        State(int[][] days, double[][] weights, int[][] workouts, int[][] durations, int size) {
+            this.days = days;
+            this.weights = weights;
+            this.workouts = workouts;
+            this.durations = durations;
+            this.size = size;
+        }
+
+        static State empty() {
+            return new State(new int[INITIAL_CHUNKS][], new double[INITIAL_CHUNKS][],
+                    new int[INITIAL_CHUNKS][], new int[INITIAL_CHUNKS][], 0);
+        }
+    }
+
+    private volatile State state = State.empty();
+
+    /**
+     * Добавляет точку с данными пользователя за текущий день.
+     * @param userData данные пользователя
+     * @return день эпохи добавленной точки
+     */
+    synchronized int append(UserData userData) {
+        int day = appendDay(LocalDate.now());
+        append(day, userData.getCurrentWeight(), userData.getWorkoutsThisWeek(), userData.getAvgWorkoutDuration());
+        return day;
+    }
+
+    /**
+     * Возвращает день, за который добавляется точка с датой date. Если системные часы
+     * переведены назад, точка относится ко дню последней точки, чтобы ряд оставался упорядоченным.
+     */
+    int appendDay(LocalDate date) {
+        State current = state;
+        int day = (int) date.toEpochDay();
+        return current.size > 0 ? Math.max(day, dayAt(current.days, current.size - 1)) : day;
+    }
+
+    /**
+     * Добавляет точку в конец ряда.
+     * @throws IllegalArgumentException если день раньше последней точки ряда
+     */
+    synchronized void append(int epochDay, double weight, int workoutCount, int duration) {
+        State current = state;
+        int index = current.size;
+        if (index > 0 && epochDay < dayAt(current.days, index - 1)) {
+            throw new IllegalArgumentException("Точки ряда должны добавляться по возрастанию дня: "
+                    + LocalDate.ofEpochDay(epochDay));
+        }
+        int[][] days = current.days;
+        double[][] weights = current.weights;
+        int[][] workouts = current.workouts;
+        int[][] durations = current.durations;
+        int chunk = index >>> CHUNK_BITS;
+        if (chunk == days.length) {
+            int length = chunk * 2;
+            days = Arrays.copyOf(days, length);
+            weights = Arrays.copyOf(weights, length);
+            workouts = Arrays.copyOf(workouts, length);
+            durations = Arrays.copyOf(durations, length);
+        }
+        if (days[chunk] == null) {
+            days[chunk] = new int[CHUNK_SIZE];
+            weights[chunk] = new double[CHUNK_SIZE];
+            workouts[chunk] = new int[CHUNK_SIZE];
+            durations[chunk] = new int[CHUNK_SIZE];
+        }
+        int slot = index & (CHUNK_SIZE - 1);
+        days[chunk][slot] = epochDay;
+        weights[chunk][slot] = weight;
+        workouts[chunk][slot] = workoutCount;
+        durations[chunk][slot] = duration;
+        state = new State(days, weights, workouts, durations, index + 1);
+    }
+
+    /**
+     * Удаляет все точки. Ранее полученные срезы остаются неизменными.
+     */
+    synchronized void clear() {
+        state = State.empty();
+    }
+
+    public int size() {
+        return state.size;
+    }
+
+    /**
+     * Возвращает пустой срез (например, если ряд не удалось прочитать).
+     */
+    static Slice emptySlice() {
+        return new Slice(State.empty(), 0, 0);
+    }
+
+    /**
+     * Возвращает все точки ряда на момент вызова.
+     */
+    public Slice slice() {
+        State current = state;
+        return new Slice(current, 0, current.size);
+    }
+
+    /**
+     * Возвращает точки с датой в диапазоне [from, to] (границы включительно).
+     * Границы находятся двоичным поиском по дням, точки не копируются.
+     * @param from начальная дата
+     * @param to конечная дата
+     */
+    public Slice slice(LocalDate from, LocalDate to) {
+        State current = state;
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        if (fromDay > toDay) {
+            return new Slice(current, 0, 0);
+        }
+        int start = lowerBound(current.days, current.size, fromDay);
+        int end = lowerBound(current.days, current.size, toDay + 1);
+        return new Slice(current, start, end);
+    }
+
+    /**
+     * Возвращает позицию первой точки с днем не меньше day.
+     */
+    private static int lowerBound(int[][] dayChunks, int count, long day) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dayAt(dayChunks, middle) < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int dayAt(int[][] dayChunks, int index) {
+        return dayChunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Неизменяемое представление части ряда. Доступ по позиции читает столбцы напрямую.
+     */
+    public static final class Slice {
+        private final int[][] days;
+        private final double[][] weights;
+        private final int[][] workouts;
+        private final int[][] durations;
+        private final int start;
+        private final int end;
+
+        private Slice(State state, int start, int end) {
+            this.days = state.days;
+            this.weights = state.weights;
+            this.workouts = state.workouts;
+            this.durations = state.durations;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int size() {
+            return end - start;
+        }
+
+        public boolean isEmpty() {
+            return end == start;
+        }
+
+        public int epochDay(int index) {
+            int position = position(index);
+            return days[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+        }
+
+        public LocalDate date(int index) {
+            return LocalDate.ofEpochDay(epochDay(index));
+        }
+
+        public double weight(int index) {
+            int position = position(index);
+            return weights[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+        }
+
+        public int workouts(int index) {
+            int position = position(index);
+            return workouts[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+        }
+
+        public int duration(int index) {
+            int position = position(index);
+            return durations[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+        }
+
+        /**
+         * Передает точки среза по порядку, обходя столбцы блоками.
+         */
+        public void forEach(PointConsumer consumer) {
+            int position = start;
+            while (position < end) {
+                int chunk = position >>> CHUNK_BITS;
+                int slot = position & (CHUNK_SIZE - 1);
+                int last = Math.min(CHUNK_SIZE, slot + (end - position));
+                int[] dayChunk = days[chunk];
+                double[] weightChunk = weights[chunk];
+                int[] workoutChunk = workouts[chunk];
+                int[] durationChunk = durations[chunk];
+                for (int i = slot; i < last; i++) {
+                    consumer.accept(dayChunk[i], weightChunk[i], workoutChunk[i], durationChunk[i]);
+                }
+                position += last - slot;
+            }
+        }
+
+        /**
+         * Копирует веса среза в новый массив (например, для построения графика).
+         */
+        public double[] weights() {
+            double[] result = new double[size()];
+            int position = start;
+            while (position < end) {
+                int chunk = position >>> CHUNK_BITS;
+                int slot = position & (CHUNK_SIZE - 1);
+                int length = Math.min(CHUNK_SIZE - slot, end - position);
+                System.arraycopy(weights[chunk], slot, result, position - start, length);
+                position += length;
+            }
+            return result;
+        }
+
+        private int position(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return start + index;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.UserData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Файл временного ряда веса: заголовок и записи фиксированной ширины
+ * (день эпохи, вес, тренировки, длительность — 20 байт на точку).
+ * Файл только дополняется; при открытии ряд загружается в {@link WeightSeries} блоками,
+ * неполная последняя запись (прерванная запись) отбрасывается.
+ */
+class WeightSeriesLog {
+    private static final int MAGIC = 0x46545753; // "FTWS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 20;
+    private static final int READ_BUFFER_SIZE = RECORD_SIZE * 4096;
+
+    private final Path path;
+    private final WeightSeries series = new WeightSeries();
+
+    /**
+     * Открывает файл ряда и загружает точки; отсутствующий файл создается при первой записи.
+     * @param path путь к файлу ряда
+     * @throws IOException если файл не читается или имеет неизвестный формат
+     */
+    WeightSeriesLog(Path path) throws IOException {
+        this.path = path;
+        load();
+    }
+
+    WeightSeries series() {
+        return series;
+    }
+
+    /**
+     * Дописывает точку за текущий день в файл, затем добавляет ее в ряд.
+     * @param userData данные пользователя
+     */
+    void append(UserData userData) throws IOException {
+        appendAll(List.of(userData));
+    }
+
+    /**
+     * Дописывает точки за текущий день одной операцией записи, затем добавляет их в ряд.
+     * @param users данные пользователя в порядке сохранения
+     */
+    synchronized void appendAll(List<UserData> users) throws IOException {
+        if (users.isEmpty()) {
+            return;
+        }
+        int day = series.appendDay(LocalDate.now());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + RECORD_SIZE * users.size());
+            if (channel.size() == 0) {
+                buffer.putInt(MAGIC).putInt(VERSION);
+            }
+            for (UserData userData : users) {
+                buffer.putInt(day)
+                        .putDouble(userData.getCurrentWeight())
+                        .putInt(userData.getWorkoutsThisWeek())
+                        .putInt(userData.getAvgWorkoutDuration());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        for (UserData userData : users) {
+            series.append(day, userData.getCurrentWeight(), userData.getWorkoutsThisWeek(),
+                    userData.getAvgWorkoutDuration());
+        }
+    }
+
+    /**
+     * Удаляет файл ряда и все точки.
+     */
+    synchronized void clear() throws IOException {
+        Files.deleteIfExists(path);
+        series.clear();
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                // Заголовок не был дописан: точек в файле нет
+                channel.truncate(0);
+                return;
+            }
+            buffer.limit(HEADER_SIZE);
+            readFully(channel, buffer, 0);
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Неизвестный формат файла ряда веса: " + path);
+            }
+            long complete = HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            long position = HEADER_SIZE;
+            while (position < complete) {
+                buffer.clear();
+                buffer.limit((int) Math.min(READ_BUFFER_SIZE, complete - position));
+                readFully(channel, buffer, position);
+                position += buffer.position();
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    series.append(buffer.getInt(), buffer.getDouble(), buffer.getInt(), buffer.getInt());
+                }
+            }
+            if (complete < size) {
+                channel.truncate(complete);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Неожиданный конец файла ряда веса");
+            }
+        }
+    }
+}
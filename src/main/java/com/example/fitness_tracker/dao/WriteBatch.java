@@ -0,0 +1,174 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Набор операций записи, выполняемых как единица работы.
+ * Операции накапливаются в порядке добавления и передаются в
+ * {@link UserDataDao#executeBatch(WriteBatch)}; реализации с поддержкой транзакций
+ * выполняют их атомарно и пакетно.
+ */
+public class WriteBatch {
+    /**
+     * Операция записи в пакете.
+     */
+    public interface Operation {
+        /**
+         * Выполняет операцию через обычные методы DAO.
+         * @param dao DAO, в который выполняется запись
+         */
+        void applyTo(UserDataDao dao);
+    }
+
+    /**
+     * Сохранение данных пользователя.
+     */
+    public static final class SaveUserData implements Operation {
+        private final UserData userData;
+        private final boolean weightPoint;
+
+        SaveUserData(UserData userData, boolean weightPoint) {
+            this.userData = userData;
+            this.weightPoint = weightPoint;
+        }
+
+        public UserData getUserData() {
+            return userData;
+        }
+
+        /**
+         * Возвращает true, если сохранение добавляет точку временного ряда веса за текущий день.
+         */
+        public boolean isWeightPoint() {
+            return weightPoint;
+        }
+
+        /**
+         * Выполняет операцию через {@link UserDataDao#saveUserData(UserData)}, который всегда
+         * добавляет точку ряда; DAO учитывают {@link #isWeightPoint()} в своем executeBatch.
+         */
+        @Override
+        public void applyTo(UserDataDao dao) {
+            dao.saveUserData(userData);
+        }
+    }
+
+    /**
+     * Сохранение записи истории.
+     */
+    public static final class SaveHistoryRecord implements Operation {
+        private final LocalDate date;
+        private final String operationType;
+        private final String details;
+        private final boolean active;
+
+        SaveHistoryRecord(LocalDate date, String operationType, String details, boolean active) {
+            this.date = date;
+            this.operationType = operationType;
+            this.details = details;
+            this.active = active;
+        }
+
+        /**
+         * Возвращает дату записи или null, если запись получает текущую дату при выполнении.
+         */
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public String getOperationType() {
+            return operationType;
+        }
+
+        public String getDetails() {
+            return details;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public void applyTo(UserDataDao dao) {
+            if (date == null) {
+                dao.saveHistoryRecord(operationType, details);
+            } else {
+                dao.saveHistoryRecord(new HistoryRecord(date, operationType, details, active));
+            }
+        }
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * Добавляет в пакет сохранение данных пользователя.
+     * @param userData данные пользователя
+     * @return этот пакет
+     */
+    public WriteBatch saveUserData(UserData userData) {
+        operations.add(new SaveUserData(userData, true));
+        return this;
+    }
+
+    /**
+     * Добавляет в пакет сохранение импортированных данных пользователя. Точка временного ряда веса
+     * не добавляется: данные относятся не к текущему дню, а ряд пополняется только по возрастанию дня.
+     * @param userData данные пользователя
+     * @return этот пакет
+     */
+    public WriteBatch importUserData(UserData userData) {
+        operations.add(new SaveUserData(userData, false));
+        return this;
+    }
+
+    /**
+     * Добавляет в пакет сохранение записи истории.
+     * @param operationType тип операции
+     * @param details детали операции
+     * @return этот пакет
+     */
+    public WriteBatch saveHistoryRecord(String operationType, String details) {
+        operations.add(new SaveHistoryRecord(null, operationType, details, true));
+        return this;
+    }
+
+    /**
+     * Добавляет в пакет сохранение записи истории с заданными датой и статусом.
+     * @param record запись истории (ID не используется)
+     * @return этот пакет
+     */
+    public WriteBatch saveHistoryRecord(HistoryRecord record) {
+        operations.add(new SaveHistoryRecord(record.getDate(), record.getOperationType(),
+                record.getDetails(), record.isActive()));
+        return this;
+    }
+
+    /**
+     * Возвращает операции пакета в порядке добавления.
+     * @return неизменяемый список операций
+     */
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * Удаляет все операции из пакета, чтобы его можно было использовать повторно.
+     */
+    public void clear() {
+        operations.clear();
+    }
+}
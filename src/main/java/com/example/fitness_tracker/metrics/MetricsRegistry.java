@@ -0,0 +1,139 @@
+package com.example.fitness_tracker.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реестр метрик операций приложения.
+ * Метрики операции создаются при первом обращении и регистрируются как MBean
+ * (см. {@link OperationMetricsMXBean}); повторное создание DAO или сервиса для того же источника
+ * продолжает накапливать те же метрики. Сводку можно периодически выводить в лог.
+ */
+public final class MetricsRegistry {
+    private static final String DOMAIN = "com.example.fitness_tracker";
+    private static final Comparator<OperationMetrics> ORDER = Comparator.comparing(OperationMetrics::getLayer)
+            .thenComparing(OperationMetrics::getBackend)
+            .thenComparing(OperationMetrics::getOperation);
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer server;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reporter;
+    private long reportedCalls;
+
+    MetricsRegistry(MBeanServer server) {
+        this.server = server;
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Возвращает метрики операции, создавая и регистрируя их при первом обращении.
+     * @param layer слой приложения (dao, service)
+     * @param backend источник данных
+     * @param operation имя операции
+     * @return метрики операции
+     */
+    public OperationMetrics operation(String layer, String backend, String operation) {
+        return operations.computeIfAbsent(layer + '/' + backend + '/' + operation, key -> {
+            OperationMetrics metrics = new OperationMetrics(layer, backend, operation);
+            register(metrics);
+            return metrics;
+        });
+    }
+
+    /**
+     * @return метрики всех операций, упорядоченные по слою, источнику и имени
+     */
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> result = new ArrayList<>(operations.values());
+        result.sort(ORDER);
+        return result;
+    }
+
+    /**
+     * Формирует сводку по операциям, которые вызывались хотя бы раз.
+     * @return строки сводки; пустая строка, если вызовов не было
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (OperationMetrics metrics : getOperations()) {
+            LatencyHistogram.Snapshot snapshot = metrics.snapshot();
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format(Locale.ROOT,
+                    "%-7s %-15s %-32s calls=%d errors=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                    metrics.getLayer(), metrics.getBackend(), metrics.getOperation(),
+                    snapshot.getCount(), metrics.getErrors(), snapshot.getMeanNanos() / 1000.0,
+                    snapshot.getPercentileNanos(0.5) / 1000.0, snapshot.getPercentileNanos(0.99) / 1000.0,
+                    snapshot.getPercentileNanos(0.999) / 1000.0, snapshot.getMaxNanos() / 1000.0));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Запускает периодический вывод сводки в лог. Сводка не выводится, если с прошлого вывода
+     * не было новых вызовов. Повторный запуск заменяет прежний период.
+     * @param period период вывода
+     */
+    public synchronized void startReporting(Duration period) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = period.toMillis();
+        reporter.scheduleAtFixedRate(this::reportIfChanged, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    private void reportIfChanged() {
+        long calls = 0;
+        for (OperationMetrics metrics : operations.values()) {
+            calls += metrics.getCalls();
+        }
+        if (calls == reportedCalls) {
+            return;
+        }
+        reportedCalls = calls;
+        System.err.print("METRICS:" + System.lineSeparator() + report());
+    }
+
+    private void register(OperationMetrics metrics) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Latency"
+                    + ",layer=" + metrics.getLayer()
+                    + ",backend=" + metrics.getBackend()
+                    + ",operation=" + metrics.getOperation());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            // Метрики продолжают собираться и выводиться в лог без JMX
+            System.err.println("WARN: не удалось зарегистрировать MBean " + metrics.getOperation() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.fitness_tracker.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики одной операции (метода DAO или сервиса) для одного источника данных:
+ * количество вызовов, ошибок и гистограмма длительностей.
+ * Ошибкой считается исключение из операции или сообщение об ошибке, показанное во время ее выполнения
+ * ({@link #reportError()}): DAO сообщают о большинстве ошибок окном, а не исключением.
+ * Экземпляры создает {@link MetricsRegistry}.
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+    // Выполняемая в потоке операция; при вложенных вызовах — самая внутренняя
+    private static final ThreadLocal<OperationMetrics> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Измеряемое действие с результатом.
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T execute() throws E;
+    }
+
+    /**
+     * Измеряемое действие без результата.
+     */
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+        void execute() throws E;
+    }
+
+    private final String layer;
+    private final String backend;
+    private final String operation;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics(String layer, String backend, String operation) {
+        this.layer = layer;
+        this.backend = backend;
+        this.operation = operation;
+    }
+
+    /**
+     * Выполняет действие, записывая его длительность и исход.
+     * @param call действие
+     * @return результат действия
+     * @throws E исключение действия
+     */
+    public <T, E extends Exception> T call(Call<T, E> call) throws E {
+        OperationMetrics outer = CURRENT.get();
+        CURRENT.set(this);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.execute();
+            failed = false;
+            return result;
+        } finally {
+            record(System.nanoTime() - start, failed);
+            CURRENT.set(outer);
+        }
+    }
+
+    /**
+     * Выполняет действие без результата, записывая его длительность и исход.
+     * @param action действие
+     * @throws E исключение действия
+     */
+    public <E extends Exception> void run(Action<E> action) throws E {
+        call(() -> {
+            action.execute();
+            return null;
+        });
+    }
+
+    /**
+     * Записывает завершенный вызов.
+     * @param nanos длительность вызова
+     * @param failed завершился ли вызов исключением
+     */
+    public void record(long nanos, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * Засчитывает ошибку операции, выполняемой в текущем потоке, если она измеряется.
+     * Вызывается при показе сообщения об ошибке.
+     */
+    public static void reportError() {
+        OperationMetrics current = CURRENT.get();
+        if (current != null) {
+            current.errors.increment();
+        }
+    }
+
+    public LatencyHistogram.Snapshot snapshot() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public String getLayer() {
+        return layer;
+    }
+
+    @Override
+    public String getBackend() {
+        return backend;
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.snapshot().getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileMicros(0.5);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentileMicros(0.999);
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.snapshot().getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        latency.reset();
+    }
+
+    private double percentileMicros(double quantile) {
+        return latency.snapshot().getPercentileNanos(quantile) / 1000.0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.fitness_tracker.metrics;
+
+/**
+ * JMX-представление метрик одной операции.
+ * Регистрируется под именем com.example.fitness_tracker:type=Latency,layer=...,backend=...,operation=...
+ * Длительности указаны в микросекундах.
+ */
+public interface OperationMetricsMXBean {
+    String getLayer();
+
+    String getBackend();
+
+    String getOperation();
+
+    long getCalls();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * Обнуляет счетчики и гистограмму.
+     */
+    void reset();
+}
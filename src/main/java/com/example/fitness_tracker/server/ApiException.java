@@ -0,0 +1,17 @@
+package com.example.fitness_tracker.server;
+
+/**
+ * Ошибка запроса к HTTP API: код ответа и сообщение для клиента.
+ */
+final class ApiException extends RuntimeException {
+    private final int status;
+
+    ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    int getStatus() {
+        return status;
+    }
+}
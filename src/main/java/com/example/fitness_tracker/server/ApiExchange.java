@@ -0,0 +1,228 @@
+package com.example.fitness_tracker.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запрос к HTTP API и ответ на него: параметры, тело в JSON и отправка ответа.
+ * Ошибки разбора запроса сообщаются исключением {@link ApiException} с кодом 400.
+ */
+final class ApiExchange {
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    // Тела запросов API небольшие; ограничение защищает память сервера
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    private final HttpExchange exchange;
+    private final ObjectMapper mapper;
+    private Map<String, String> query;
+    private int status;
+    // Ресурсы запроса, освобождаемые по его завершении
+    private final List<AutoCloseable> resources = new ArrayList<>(1);
+
+    ApiExchange(HttpExchange exchange, ObjectMapper mapper) {
+        this.exchange = exchange;
+        this.mapper = mapper;
+    }
+
+    String getMethod() {
+        return exchange.getRequestMethod();
+    }
+
+    String getPath() {
+        return exchange.getRequestURI().getPath();
+    }
+
+    /**
+     * @return код отправленного ответа или 0, если ответ еще не отправлен
+     */
+    int getStatus() {
+        return status;
+    }
+
+    String getHeader(String name) {
+        return exchange.getRequestHeaders().getFirst(name);
+    }
+
+    /**
+     * Регистрирует ресурс, который закрывается по завершении запроса ({@link #complete()}).
+     */
+    void closeOnCompletion(AutoCloseable resource) {
+        resources.add(resource);
+    }
+
+    /**
+     * Завершает обмен и закрывает ресурсы запроса.
+     */
+    void complete() {
+        exchange.close();
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                System.err.println("WARN: не удалось освободить ресурс запроса: " + e.getMessage());
+            }
+        }
+        resources.clear();
+    }
+
+    /**
+     * Задает заголовок ответа; вызывается до отправки ответа.
+     */
+    void setResponseHeader(String name, String value) {
+        exchange.getResponseHeaders().set(name, value);
+    }
+
+    /**
+     * Возвращает параметр строки запроса.
+     * @param name имя параметра
+     * @return значение или null, если параметра нет
+     */
+    String getParam(String name) {
+        if (query == null) {
+            query = parseQuery(exchange.getRequestURI().getRawQuery());
+        }
+        return query.get(name);
+    }
+
+    int getIntParam(String name, int defaultValue) {
+        String value = getParam(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Параметр " + name + " должен быть целым числом");
+        }
+    }
+
+    boolean getBooleanParam(String name, boolean defaultValue) {
+        String value = getParam(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return switch (value.trim()) {
+            case "true", "1" -> true;
+            case "false", "0" -> false;
+            default -> throw new ApiException(400, "Параметр " + name + " должен быть true или false");
+        };
+    }
+
+    /**
+     * Читает тело запроса как объект заданного типа.
+     * @param type тип объекта
+     * @return прочитанный объект
+     * @throws IOException если тело не удается прочитать
+     */
+    <T> T readBody(Class<T> type) throws IOException {
+        byte[] body = readBodyBytes();
+        try {
+            return mapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new ApiException(400, "Некорректный JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Читает тело запроса как дерево JSON-объекта.
+     * @return объект JSON
+     * @throws IOException если тело не удается прочитать
+     */
+    JsonNode readObject() throws IOException {
+        JsonNode node = readBody(JsonNode.class);
+        if (node == null || !node.isObject()) {
+            throw new ApiException(400, "Тело запроса должно быть объектом JSON");
+        }
+        return node;
+    }
+
+    /**
+     * Отправляет объект в JSON целиком.
+     * @param status код ответа
+     * @param value объект ответа
+     * @throws IOException если ответ не удается отправить
+     */
+    void sendJson(int status, Object value) throws IOException {
+        byte[] body = mapper.writeValueAsBytes(value);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        sendHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Отправляет ответ без тела.
+     * @param status код ответа
+     * @throws IOException если ответ не удается отправить
+     */
+    void sendEmpty(int status) throws IOException {
+        sendHeaders(status, -1);
+    }
+
+    void sendError(int status, String message) throws IOException {
+        sendJson(status, Map.of("error", message));
+    }
+
+    /**
+     * Начинает потоковый ответ в JSON (chunked): записанное в генератор уходит клиенту
+     * по мере заполнения буфера, размер ответа заранее не известен.
+     * Генератор нужно закрыть.
+     * @param status код ответа
+     * @return генератор JSON поверх тела ответа
+     * @throws IOException если заголовки не удается отправить
+     */
+    JsonGenerator startStream(int status) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        sendHeaders(status, 0);
+        return mapper.getFactory().createGenerator(exchange.getResponseBody(), JsonEncoding.UTF8);
+    }
+
+    private void sendHeaders(int status, long length) throws IOException {
+        this.status = status;
+        exchange.sendResponseHeaders(status, length);
+    }
+
+    private byte[] readBodyBytes() throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Тело запроса больше " + MAX_BODY_BYTES + " байт");
+            }
+            if (body.length == 0) {
+                throw new ApiException(400, "Тело запроса пусто");
+            }
+            return body;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                params.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Некорректная строка запроса");
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,638 @@
+package com.example.fitness_tracker.server;
+
+import com.example.fitness_tracker.dao.DataAccessException;
+import com.example.fitness_tracker.dao.HistoryCursor;
+import com.example.fitness_tracker.dao.MappedUserDataDao;
+import com.example.fitness_tracker.dao.PostgresUserDataDao;
+import com.example.fitness_tracker.dao.StorageBackend;
+import com.example.fitness_tracker.dao.UserDataDao;
+import com.example.fitness_tracker.dao.UserDataDaoFactory;
+import com.example.fitness_tracker.metrics.LatencyHistogram;
+import com.example.fitness_tracker.metrics.MetricsRegistry;
+import com.example.fitness_tracker.metrics.OperationMetrics;
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+import com.example.fitness_tracker.service.Conversion;
+import com.example.fitness_tracker.service.FitnessService;
+import com.example.fitness_tracker.service.HistoryExportQuery;
+import com.example.fitness_tracker.service.LoadAssessment;
+import com.example.fitness_tracker.service.ProgressResult;
+import com.example.fitness_tracker.service.ProgressStatus;
+import com.example.fitness_tracker.service.ResultFormatter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * HTTP-сервер, предоставляющий операции {@link FitnessService} в JSON без графического интерфейса.
+ * Каждый запрос обрабатывается в отдельном виртуальном потоке, поэтому блокирующие обращения к хранилищу
+ * не ограничивают число одновременных запросов. Пользователь задается заголовком {@value #USER_ID_HEADER}
+ * (по умолчанию — пользователь {@value UserDataDao#DEFAULT_USER_ID}); допустимы ID от 1 до заданного
+ * при запуске наибольшего ID. Сервис пользователя создается при первом обращении и переиспользуется,
+ * чтобы запросы пользователя попадали в его кэш; открытыми остаются сервисы не более
+ * {@value #MAX_OPEN_USERS} пользователей (см. {@link UserServices}).
+ *
+ * <p>Операции:
+ * <ul>
+ *   <li>POST /api/progress, POST /api/overtraining — тело: данные пользователя; ?save=true сохраняет результат в историю</li>
+ *   <li>POST /api/conversion — тело: {"miles": число}; ?save=true сохраняет результат в историю</li>
+ *   <li>Ответ расчета: текст для пользователя (result) и значения расчета (status, weeklyLoss, level, km и т.д.)</li>
+ *   <li>GET /api/history — вся история потоком; параметры search, type, sort, ascending.
+ *       С параметром limit — страница по ключу (дата, ID): afterDate, afterId, descending</li>
+ *   <li>POST /api/history, GET/PUT/PATCH/DELETE /api/history/{id} — запись истории;
+ *       PATCH меняет только статус: {"active": true|false}</li>
+ *   <li>GET /api/metrics — метрики операций всех слоев (см. {@link MetricsRegistry})</li>
+ * </ul>
+ * Ошибки возвращаются как {"error": "..."} с кодом 4xx/5xx. Без JavaFX DAO сообщают об ошибках хранилища
+ * исключением {@link DataAccessException}: недоступное хранилище (нет соединения с БД) дает 503,
+ * прочие ошибки хранилища — 500. POST /api/history возвращает 201 с ID записи и заголовком Location.
+ */
+public class FitnessHttpServer {
+    public static final String USER_ID_HEADER = "X-User-Id";
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_USER_ID = 1000;
+
+    private static final String LAYER = "http";
+    private static final int MAX_PAGE_SIZE = 10_000;
+    // Пользователи, сервисы и файлы которых остаются открытыми между запросами
+    private static final int MAX_OPEN_USERS = 256;
+    private static final Set<String> SORT_FIELDS = Set.of("operation_date", "operation_type", "details");
+    // Время на завершение начатых запросов при остановке
+    private static final Duration STOP_DELAY = Duration.ofSeconds(5);
+
+    /**
+     * Обработчик операции API.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        void handle(ApiExchange exchange) throws IOException;
+    }
+
+    /**
+     * Операция API, выбранная по методу и пути запроса, и ее метрики.
+     */
+    private static final class Route {
+        private final OperationMetrics metrics;
+        private final Endpoint endpoint;
+
+        Route(OperationMetrics metrics, Endpoint endpoint) {
+            this.metrics = metrics;
+            this.endpoint = endpoint;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Router {
+        Route route(ApiExchange exchange);
+    }
+
+    private final String backend;
+    private final int maxUserId;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final UserServices services;
+    private final ResultFormatter formatter = ResultFormatter.getDefault();
+
+    private final OperationMetrics progress;
+    private final OperationMetrics overtraining;
+    private final OperationMetrics conversion;
+    private final OperationMetrics listHistory;
+    private final OperationMetrics getHistoryRecord;
+    private final OperationMetrics createHistoryRecord;
+    private final OperationMetrics updateHistoryRecord;
+    private final OperationMetrics updateHistoryRecordStatus;
+    private final OperationMetrics deleteHistoryRecord;
+    private final OperationMetrics metrics;
+    // Запросы к несуществующим путям и неподдерживаемыми методами
+    private final OperationMetrics notFound;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param daoFactory DAO пользователей источника данных
+     * @param backend имя источника данных в метриках
+     */
+    public FitnessHttpServer(UserDataDaoFactory daoFactory, String backend) {
+        this(daoFactory, backend, DEFAULT_MAX_USER_ID);
+    }
+
+    /**
+     * @param daoFactory DAO пользователей источника данных
+     * @param backend имя источника данных в метриках
+     * @param maxUserId наибольший допустимый ID пользователя
+     */
+    public FitnessHttpServer(UserDataDaoFactory daoFactory, String backend, int maxUserId) {
+        if (maxUserId < UserDataDao.DEFAULT_USER_ID) {
+            throw new IllegalArgumentException("Invalid max user id: " + maxUserId);
+        }
+        this.backend = backend;
+        this.maxUserId = maxUserId;
+        this.services = new UserServices(daoFactory, backend, MAX_OPEN_USERS);
+        progress = operation("progress");
+        overtraining = operation("overtraining");
+        conversion = operation("conversion");
+        listHistory = operation("listHistory");
+        getHistoryRecord = operation("getHistoryRecord");
+        createHistoryRecord = operation("createHistoryRecord");
+        updateHistoryRecord = operation("updateHistoryRecord");
+        updateHistoryRecordStatus = operation("updateHistoryRecordStatus");
+        deleteHistoryRecord = operation("deleteHistoryRecord");
+        metrics = operation("metrics");
+        notFound = operation("notFound");
+    }
+
+    /**
+     * Запускает сервер.
+     * @param address адрес и порт; порт 0 — любой свободный
+     * @throws IOException если порт не удается открыть
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Сервер уже запущен");
+        }
+        server = HttpServer.create(address, 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/progress", exchange -> dispatch(exchange,
+                api -> exact(api, "/api/progress", "POST", progress, this::calculateProgress)));
+        server.createContext("/api/overtraining", exchange -> dispatch(exchange,
+                api -> exact(api, "/api/overtraining", "POST", overtraining, this::checkOvertraining)));
+        server.createContext("/api/conversion", exchange -> dispatch(exchange,
+                api -> exact(api, "/api/conversion", "POST", conversion, this::convertMilesToKm)));
+        server.createContext("/api/history", exchange -> dispatch(exchange, this::routeHistory));
+        server.createContext("/api/metrics", exchange -> dispatch(exchange,
+                api -> exact(api, "/api/metrics", "GET", metrics, this::writeMetrics)));
+        server.createContext("/", exchange -> dispatch(exchange, api -> {
+            throw new ApiException(404, "Нет такой операции: " + api.getPath());
+        }));
+        server.start();
+    }
+
+    /**
+     * @return адрес, на котором сервер принимает запросы
+     */
+    public synchronized InetSocketAddress getAddress() {
+        if (server == null) {
+            throw new IllegalStateException("Сервер не запущен");
+        }
+        return server.getAddress();
+    }
+
+    /**
+     * Останавливает сервер, давая начатым запросам время завершиться.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop((int) STOP_DELAY.toSeconds());
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Запускает приложение в серверном режиме.
+     * Параметры: --port=N (по умолчанию {@value #DEFAULT_PORT}), --host=адрес (по умолчанию все интерфейсы),
+     * --storage=postgres|file|inmemory|mapped (по умолчанию postgres),
+     * --max-user-id=N (по умолчанию {@value #DEFAULT_MAX_USER_ID}).
+     * Сервер работает до завершения процесса; при завершении освобождаются соединения с БД.
+     * @param args аргументы командной строки
+     * @param metricsReportPeriod период вывода сводки метрик в лог
+     */
+    public static void launch(String[] args, Duration metricsReportPeriod) {
+        StorageBackend storage = StorageBackend.POSTGRES;
+        String host = null;
+        int port = DEFAULT_PORT;
+        int maxUserId = DEFAULT_MAX_USER_ID;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(arg.substring("--port=".length()));
+                } else if (arg.startsWith("--host=")) {
+                    host = arg.substring("--host=".length());
+                } else if (arg.startsWith("--storage=")) {
+                    storage = StorageBackend.fromName(arg.substring("--storage=".length()));
+                } else if (arg.startsWith("--max-user-id=")) {
+                    maxUserId = Integer.parseInt(arg.substring("--max-user-id=".length()));
+                    if (maxUserId < UserDataDao.DEFAULT_USER_ID) {
+                        throw new IllegalArgumentException("--max-user-id должен быть положительным");
+                    }
+                } else if (!arg.equals("--server")) {
+                    throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println("Параметры: --server [--port=N] [--host=адрес] [--storage=postgres|file|inmemory|mapped]"
+                    + " [--max-user-id=N]");
+            System.exit(2);
+        }
+
+        FitnessHttpServer httpServer = new FitnessHttpServer(storage, storage.getName(), maxUserId);
+        InetSocketAddress address = host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+        try {
+            httpServer.start(address);
+        } catch (IOException e) {
+            System.err.println("ERROR: не удалось открыть порт " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+        MetricsRegistry.getInstance().startReporting(metricsReportPeriod);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            httpServer.stop();
+            PostgresUserDataDao.closeSharedPool();
+            MappedUserDataDao.flushAll();
+            MetricsRegistry.getInstance().stopReporting();
+        }, "http-server-shutdown"));
+        System.err.println("INFO: сервер запущен на " + httpServer.getAddress() + ", источник данных " + storage.getName());
+    }
+
+    /**
+     * @param args аргументы командной строки
+     * @return true, если приложение запускается в серверном режиме (--server)
+     */
+    public static boolean isServerMode(String[] args) {
+        return Arrays.asList(args).contains("--server");
+    }
+
+    /**
+     * Выполняет запрос: выбирает операцию, переводит ошибки в ответы и записывает метрики.
+     * Ответ с кодом 5xx и оборванный поток засчитываются операции как ошибка.
+     */
+    private void dispatch(HttpExchange exchange, Router router) {
+        ApiExchange api = new ApiExchange(exchange, mapper);
+        OperationMetrics operation = notFound;
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Route route = router.route(api);
+            operation = route.metrics;
+            route.endpoint.handle(api);
+            failed = false;
+        } catch (ApiException e) {
+            failed = e.getStatus() >= 500;
+            respondError(api, e.getStatus(), e.getMessage());
+        } catch (DataAccessException e) {
+            System.err.println("ERROR: " + api.getMethod() + " " + api.getPath() + " - " + e.getMessage());
+            if (isUnavailable(e)) {
+                respondError(api, 503, "Хранилище данных недоступно");
+            } else {
+                respondError(api, 500, "Ошибка хранилища данных");
+            }
+        } catch (IOException e) {
+            // Клиент закрыл соединение, не дочитав ответ
+            System.err.println("WARN: " + api.getMethod() + " " + api.getPath() + " прерван: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("ERROR: " + api.getMethod() + " " + api.getPath() + " - " + e);
+            respondError(api, 500, "Внутренняя ошибка сервера");
+        } finally {
+            api.complete();
+            operation.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Ошибка соединения с хранилищем, а не самой операции: состояние SQL класса 08,
+     * исключения соединения и истекшее ожидание соединения из пула.
+     */
+    private static boolean isUnavailable(DataAccessException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLTimeoutException || cause instanceof ConnectException) {
+                return true;
+            }
+            if (cause instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void respondError(ApiExchange api, int status, String message) {
+        if (api.getStatus() != 0) {
+            // Заголовки уже отправлены (потоковый ответ): клиент увидит оборванный ответ
+            return;
+        }
+        try {
+            api.sendError(status, message);
+        } catch (IOException e) {
+            System.err.println("WARN: не удалось отправить ответ об ошибке: " + e.getMessage());
+        }
+    }
+
+    private static Route exact(ApiExchange api, String path, String method, OperationMetrics metrics, Endpoint endpoint) {
+        if (!api.getPath().equals(path)) {
+            throw new ApiException(404, "Нет такой операции: " + api.getPath());
+        }
+        if (!api.getMethod().equals(method)) {
+            throw new ApiException(405, "Метод " + api.getMethod() + " не поддерживается для " + path);
+        }
+        return new Route(metrics, endpoint);
+    }
+
+    private Route routeHistory(ApiExchange api) {
+        String path = api.getPath();
+        String method = api.getMethod();
+        if (path.equals("/api/history") || path.equals("/api/history/")) {
+            return switch (method) {
+                case "GET" -> new Route(listHistory, this::listHistory);
+                case "POST" -> new Route(createHistoryRecord, this::createHistoryRecord);
+                default -> throw new ApiException(405, "Метод " + method + " не поддерживается для " + path);
+            };
+        }
+        int id = parseId(path.substring("/api/history/".length()));
+        return switch (method) {
+            case "GET" -> new Route(getHistoryRecord, exchange -> getHistoryRecord(exchange, id));
+            case "PUT" -> new Route(updateHistoryRecord, exchange -> updateHistoryRecord(exchange, id));
+            case "PATCH" -> new Route(updateHistoryRecordStatus, exchange -> updateHistoryRecordStatus(exchange, id));
+            case "DELETE" -> new Route(deleteHistoryRecord, exchange -> deleteHistoryRecord(exchange, id));
+            default -> throw new ApiException(405, "Метод " + method + " не поддерживается для " + path);
+        };
+    }
+
+    private static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "Нет такой операции: /api/history/" + value);
+        }
+    }
+
+    private void calculateProgress(ApiExchange api) throws IOException {
+        UserData userData = readUserData(api);
+        if (userData.getTargetDate() == null) {
+            throw new ApiException(400, "Не указана целевая дата (targetDate)");
+        }
+        FitnessService service = serviceFor(api);
+        ProgressResult progressResult = service.assessProgress(userData);
+        String result = formatter.formatProgress(progressResult);
+        if (api.getBooleanParam("save", false)) {
+            service.saveProgressCalculation(userData, result);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("result", result);
+        response.put("status", progressResult.getStatus());
+        response.put("daysLeft", progressResult.getDaysLeft());
+        if (progressResult.getStatus() != ProgressStatus.DEADLINE_PASSED) {
+            response.put("weeklyLoss", progressResult.getWeeklyLoss());
+            response.put("dailyLoss", progressResult.getDailyLoss());
+        }
+        api.sendJson(200, response);
+    }
+
+    private void checkOvertraining(ApiExchange api) throws IOException {
+        UserData userData = readUserData(api);
+        FitnessService service = serviceFor(api);
+        LoadAssessment load = service.assessLoad(userData);
+        String result = formatter.formatLoad(load);
+        if (api.getBooleanParam("save", false)) {
+            service.saveWorkoutData(userData, result);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("result", result);
+        response.put("level", load.getLevel());
+        response.put("totalMinutes", load.getTotalMinutes());
+        api.sendJson(200, response);
+    }
+
+    private void convertMilesToKm(ApiExchange api) throws IOException {
+        JsonNode miles = api.readObject().get("miles");
+        if (miles == null || !miles.isNumber()) {
+            throw new ApiException(400, "Поле miles должно быть числом");
+        }
+        FitnessService service = serviceFor(api);
+        Conversion conversionResult = service.convert(miles.doubleValue());
+        String result = formatter.formatConversion(conversionResult);
+        if (api.getBooleanParam("save", false)) {
+            service.saveConversion(miles.doubleValue(), result);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("result", result);
+        response.put("miles", conversionResult.getMiles());
+        response.put("km", conversionResult.getKm());
+        api.sendJson(200, response);
+    }
+
+    /**
+     * Отдает историю потоком: записи читаются из хранилища и пишутся клиенту по одной,
+     * так что память сервера не зависит от размера истории.
+     */
+    private void listHistory(ApiExchange api) throws IOException {
+        FitnessService service = serviceFor(api);
+        if (api.getParam("limit") != null) {
+            listHistoryPage(api, service);
+            return;
+        }
+        String sortBy = api.getParam("sort");
+        if (sortBy != null && !sortBy.isBlank() && !SORT_FIELDS.contains(sortBy.trim())) {
+            throw new ApiException(400, "Параметр sort должен быть одним из " + SORT_FIELDS);
+        }
+        HistoryExportQuery query = new HistoryExportQuery()
+                .search(api.getParam("search"))
+                .operationType(api.getParam("type"))
+                .sortBy(sortBy, api.getBooleanParam("ascending", true));
+        try (Stream<HistoryRecord> records = service.streamHistory(query);
+             JsonGenerator json = api.startStream(200)) {
+            json.writeStartArray();
+            for (HistoryRecord record : (Iterable<HistoryRecord>) records::iterator) {
+                writeHistoryRecord(json, record);
+            }
+            json.writeEndArray();
+        }
+    }
+
+    private void listHistoryPage(ApiExchange api, FitnessService service) throws IOException {
+        int limit = api.getIntParam("limit", 0);
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ApiException(400, "Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        HistoryCursor after = null;
+        String afterDate = api.getParam("afterDate");
+        if (afterDate != null) {
+            after = HistoryCursor.of(parseDate(afterDate, "afterDate"), api.getIntParam("afterId", 0));
+        }
+        List<HistoryRecord> page = service.loadHistoryPage(after, limit, api.getBooleanParam("descending", false));
+        try (JsonGenerator json = api.startStream(200)) {
+            json.writeStartArray();
+            for (HistoryRecord record : page) {
+                writeHistoryRecord(json, record);
+            }
+            json.writeEndArray();
+        }
+    }
+
+    private void getHistoryRecord(ApiExchange api, int id) throws IOException {
+        HistoryRecord record = findHistoryRecord(serviceFor(api), id);
+        try (JsonGenerator json = api.startStream(200)) {
+            writeHistoryRecord(json, record);
+        }
+    }
+
+    private void createHistoryRecord(ApiExchange api) throws IOException {
+        HistoryRecord record = readHistoryRecord(api.readObject(), 0, null);
+        int id = serviceFor(api).saveHistoryRecord(record);
+        if (id <= 0) {
+            throw new ApiException(500, "Запись истории не сохранена");
+        }
+        api.setResponseHeader("Location", "/api/history/" + id);
+        api.sendJson(201, Map.of("id", id));
+    }
+
+    private void updateHistoryRecord(ApiExchange api, int id) throws IOException {
+        JsonNode body = api.readObject();
+        FitnessService service = serviceFor(api);
+        HistoryRecord existing = findHistoryRecord(service, id);
+        service.updateHistoryRecord(id, readHistoryRecord(body, id, existing));
+        api.sendEmpty(204);
+    }
+
+    private void updateHistoryRecordStatus(ApiExchange api, int id) throws IOException {
+        JsonNode active = api.readObject().get("active");
+        if (active == null || !active.isBoolean()) {
+            throw new ApiException(400, "Поле active должно быть true или false");
+        }
+        FitnessService service = serviceFor(api);
+        findHistoryRecord(service, id);
+        service.updateHistoryRecordStatus(id, active.booleanValue());
+        api.sendEmpty(204);
+    }
+
+    private void deleteHistoryRecord(ApiExchange api, int id) throws IOException {
+        FitnessService service = serviceFor(api);
+        findHistoryRecord(service, id);
+        service.deleteHistoryRecord(id);
+        api.sendEmpty(204);
+    }
+
+    private void writeMetrics(ApiExchange api) throws IOException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (OperationMetrics operation : MetricsRegistry.getInstance().getOperations()) {
+            LatencyHistogram.Snapshot snapshot = operation.snapshot();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("layer", operation.getLayer());
+            entry.put("backend", operation.getBackend());
+            entry.put("operation", operation.getOperation());
+            entry.put("calls", snapshot.getCount());
+            entry.put("errors", operation.getErrors());
+            entry.put("meanMicros", snapshot.getMeanNanos() / 1000.0);
+            entry.put("p50Micros", snapshot.getPercentileNanos(0.5) / 1000.0);
+            entry.put("p99Micros", snapshot.getPercentileNanos(0.99) / 1000.0);
+            entry.put("p999Micros", snapshot.getPercentileNanos(0.999) / 1000.0);
+            entry.put("maxMicros", snapshot.getMaxNanos() / 1000.0);
+            result.add(entry);
+        }
+        api.sendJson(200, result);
+    }
+
+    /**
+     * Возвращает сервис пользователя из заголовка запроса на время запроса,
+     * создавая его при первом обращении.
+     */
+    private FitnessService serviceFor(ApiExchange api) {
+        int userId = UserDataDao.DEFAULT_USER_ID;
+        String header = api.getHeader(USER_ID_HEADER);
+        if (header != null) {
+            try {
+                userId = Integer.parseInt(header.trim());
+            } catch (NumberFormatException e) {
+                userId = 0;
+            }
+            if (userId <= 0) {
+                throw new ApiException(400, "Заголовок " + USER_ID_HEADER + " должен быть положительным целым числом");
+            }
+            if (userId > maxUserId) {
+                throw new ApiException(404, "Пользователь " + userId + " не найден");
+            }
+        }
+        UserServices.Lease lease = services.acquire(userId);
+        api.closeOnCompletion(lease);
+        return lease.getService();
+    }
+
+    private static HistoryRecord findHistoryRecord(FitnessService service, int id) {
+        Optional<HistoryRecord> record = service.getHistoryRecordById(id);
+        return record.orElseThrow(() -> new ApiException(404, "Запись истории " + id + " не найдена"));
+    }
+
+    private UserData readUserData(ApiExchange api) throws IOException {
+        UserData userData = api.readBody(UserData.class);
+        if (userData == null) {
+            throw new ApiException(400, "Тело запроса должно быть объектом JSON");
+        }
+        return userData;
+    }
+
+    /**
+     * Читает запись истории из JSON; незаданные поля берутся из прежней записи,
+     * а для новой записи — текущая дата и активный статус.
+     */
+    private static HistoryRecord readHistoryRecord(JsonNode body, int id, HistoryRecord existing) {
+        JsonNode date = body.get("date");
+        JsonNode operationType = body.get("operationType");
+        JsonNode details = body.get("details");
+        JsonNode active = body.get("active");
+        if (existing == null && (operationType == null || details == null)) {
+            throw new ApiException(400, "Поля operationType и details обязательны");
+        }
+        if (operationType != null && !operationType.isTextual() || details != null && !details.isTextual()) {
+            throw new ApiException(400, "Поля operationType и details должны быть строками");
+        }
+        if (active != null && !active.isBoolean()) {
+            throw new ApiException(400, "Поле active должно быть true или false");
+        }
+        return new HistoryRecord(id,
+                date != null ? parseDate(date.asText(), "date") : existing != null ? existing.getDate() : LocalDate.now(),
+                operationType != null ? operationType.textValue() : existing.getOperationType(),
+                details != null ? details.textValue() : existing.getDetails(),
+                active != null ? active.booleanValue() : existing == null || existing.isActive());
+    }
+
+    private static LocalDate parseDate(String value, String name) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "Поле " + name + " должно быть датой в формате ГГГГ-ММ-ДД");
+        }
+    }
+
+    private static void writeHistoryRecord(JsonGenerator json, HistoryRecord record) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", record.getId());
+        json.writeStringField("date", record.getDate().toString());
+        json.writeStringField("operationType", record.getOperationType());
+        json.writeStringField("details", record.getDetails());
+        json.writeBooleanField("active", record.isActive());
+        json.writeEndObject();
+    }
+
+    private OperationMetrics operation(String name) {
+        return MetricsRegistry.getInstance().operation(LAYER, backend, name);
+    }
+}
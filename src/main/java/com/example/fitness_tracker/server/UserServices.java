@@ -0,0 +1,116 @@
+package com.example.fitness_tracker.server;
+
+import com.example.fitness_tracker.dao.UserDataDaoFactory;
+import com.example.fitness_tracker.service.FitnessService;
+import com.example.fitness_tracker.service.FitnessServiceImpl;
+import com.example.fitness_tracker.service.MeteredFitnessService;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Сервисы пользователей сервера. Сервис создается при первом запросе пользователя и переиспользуется,
+ * чтобы запросы пользователя попадали в его кэш. Число открытых сервисов ограничено: при превышении
+ * закрываются сервисы пользователей, дольше всех не обращавшихся к серверу и не выполняющих запросов,
+ * а хранилище освобождает открытые для них файлы и индексы ({@link UserDataDaoFactory#release(int)}).
+ * Сервис выдается на время запроса и возвращается закрытием {@link Lease}.
+ */
+final class UserServices {
+    /**
+     * Сервис пользователя, выданный на время запроса.
+     */
+    final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        FitnessService getService() {
+            return entry.service;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    private static final class Entry {
+        private final FitnessService service;
+        // Количество выполняемых запросов пользователя
+        private int active;
+
+        Entry(FitnessService service) {
+            this.service = service;
+        }
+    }
+
+    private final UserDataDaoFactory daoFactory;
+    private final String backend;
+    private final int capacity;
+    // Порядок обращений: первыми идут пользователи, дольше всех не обращавшиеся к серверу
+    private final Map<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param daoFactory DAO пользователей источника данных
+     * @param backend имя источника данных в метриках
+     * @param capacity наибольшее количество сервисов без выполняемых запросов
+     */
+    UserServices(UserDataDaoFactory daoFactory, String backend, int capacity) {
+        this.daoFactory = daoFactory;
+        this.backend = backend;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Выдает сервис пользователя, создавая его при первом обращении.
+     * Сервис создается под блокировкой, чтобы он не открыл хранилище пользователя,
+     * которое в это же время освобождается.
+     * @param userId ID пользователя
+     * @return сервис на время запроса; его нужно закрыть
+     */
+    synchronized Lease acquire(int userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            entry = new Entry(new MeteredFitnessService(new FitnessServiceImpl(daoFactory.forUser(userId)), backend));
+            entries.put(userId, entry);
+        }
+        entry.active++;
+        evictIdle();
+        return new Lease(entry);
+    }
+
+    /**
+     * @return количество открытых сервисов
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void release(Lease lease) {
+        if (lease.closed) {
+            return;
+        }
+        lease.closed = true;
+        lease.entry.active--;
+        evictIdle();
+    }
+
+    /**
+     * Закрывает сервисы без выполняемых запросов, начиная с давно не использованных,
+     * пока их количество превышает предел.
+     */
+    private void evictIdle() {
+        for (Iterator<Map.Entry<Integer, Entry>> it = entries.entrySet().iterator();
+             entries.size() > capacity && it.hasNext(); ) {
+            Map.Entry<Integer, Entry> entry = it.next();
+            if (entry.getValue().active == 0) {
+                it.remove();
+                daoFactory.release(entry.getKey());
+            }
+        }
+    }
+}
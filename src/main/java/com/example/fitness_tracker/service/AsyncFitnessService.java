@@ -0,0 +1,223 @@
+package com.example.fitness_tracker.service;
+
+import com.example.fitness_tracker.dao.HistoryCursor;
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+import javafx.application.Platform;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Асинхронная обертка над FitnessService.
+ * Операции выполняются в фоновом исполнителе (по умолчанию — виртуальные потоки),
+ * а возвращаемые CompletableFuture завершаются в потоке UI (по умолчанию — через
+ * {@link Platform#runLater(Runnable)}), поэтому их обработчики могут обновлять интерфейс.
+ * Запросы, заменяющие содержимое таблицы истории, отменяют предыдущий незавершенный запрос,
+ * чтобы устаревший результат не перезаписал новый.
+ */
+public class AsyncFitnessService implements AutoCloseable {
+    private static final String HISTORY_CHANNEL = "history";
+
+    private final FitnessService delegate;
+    private final ExecutorService executor;
+    private final Executor uiExecutor;
+    private final boolean ownsExecutor;
+    private final Map<String, CompletableFuture<?>> latest = new ConcurrentHashMap<>();
+
+    /**
+     * Создает сервис с исполнителем на виртуальных потоках и доставкой результатов в поток JavaFX.
+     * @param delegate синхронный сервис
+     */
+    public AsyncFitnessService(FitnessService delegate) {
+        this(delegate, Executors.newVirtualThreadPerTaskExecutor(), Platform::runLater, true);
+    }
+
+    /**
+     * Создает сервис с указанными исполнителями.
+     * @param delegate синхронный сервис
+     * @param executor исполнитель фоновых операций (не закрывается этим сервисом)
+     * @param uiExecutor исполнитель, в котором завершаются возвращаемые future
+     */
+    public AsyncFitnessService(FitnessService delegate, ExecutorService executor, Executor uiExecutor) {
+        this(delegate, executor, uiExecutor, false);
+    }
+
+    private AsyncFitnessService(FitnessService delegate, ExecutorService executor, Executor uiExecutor,
+                                boolean ownsExecutor) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.uiExecutor = uiExecutor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Возвращает синхронный сервис, которому делегируются операции.
+     */
+    public FitnessService getDelegate() {
+        return delegate;
+    }
+
+    public CompletableFuture<String> calculateProgress(UserData userData) {
+        return submit(() -> delegate.calculateProgress(userData));
+    }
+
+    public CompletableFuture<String> checkOvertraining(UserData userData) {
+        return submit(() -> delegate.checkOvertraining(userData));
+    }
+
+    public CompletableFuture<String> convertMilesToKm(double miles) {
+        return submit(() -> delegate.convertMilesToKm(miles));
+    }
+
+    public CompletableFuture<Void> saveProgressCalculation(UserData userData, String result) {
+        return submit(() -> {
+            delegate.saveProgressCalculation(userData, result);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> saveWorkoutData(UserData userData, String recommendation) {
+        return submit(() -> {
+            delegate.saveWorkoutData(userData, recommendation);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> saveConversion(double miles, String result) {
+        return submit(() -> {
+            delegate.saveConversion(miles, result);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> updateHistoryRecord(int id, HistoryRecord record) {
+        return submit(() -> {
+            delegate.updateHistoryRecord(id, record);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteHistoryRecord(int id) {
+        return submit(() -> {
+            delegate.deleteHistoryRecord(id);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> updateHistoryRecordStatus(int id, boolean newStatus) {
+        return submit(() -> {
+            delegate.updateHistoryRecordStatus(id, newStatus);
+            return null;
+        });
+    }
+
+    /**
+     * Импортирует файл в фоне. Отчеты о ходе доставляются через uiExecutor;
+     * отмена возвращенного future прерывает импорт.
+     * @param file импортируемый файл (.xlsx или .csv)
+     * @param listener получатель отчетов о ходе импорта
+     */
+    public CompletableFuture<ImportResult> importData(Path file, DataImporter.ProgressListener listener) {
+        return submit(() -> delegate.importData(file,
+                progress -> uiExecutor.execute(() -> listener.onProgress(progress))));
+    }
+
+    /**
+     * Выгружает историю в XLSX в фоне. Отчеты о ходе доставляются через uiExecutor;
+     * отмена возвращенного future прерывает экспорт.
+     * @param file целевой файл
+     * @param query параметры выборки
+     * @param listener получатель отчетов о ходе экспорта
+     */
+    public CompletableFuture<ExportResult> exportHistory(Path file, HistoryExportQuery query,
+                                                         DataExporter.ProgressListener listener) {
+        return submit(() -> delegate.exportHistory(file, query,
+                progress -> uiExecutor.execute(() -> listener.onProgress(progress))));
+    }
+
+    /**
+     * Загружает страницу истории. Отменяет предыдущий незавершенный запрос истории.
+     */
+    public CompletableFuture<List<HistoryRecord>> loadHistoryPage(HistoryCursor after, int limit,
+                                                                  boolean descending) {
+        return submitLatest(HISTORY_CHANNEL, () -> delegate.loadHistoryPage(after, limit, descending));
+    }
+
+    /**
+     * Ищет записи истории. Отменяет предыдущий незавершенный запрос истории.
+     */
+    public CompletableFuture<List<HistoryRecord>> searchHistoryRecords(String searchTerm) {
+        return submitLatest(HISTORY_CHANNEL, () -> delegate.searchHistoryRecords(searchTerm));
+    }
+
+    /**
+     * Сортирует записи истории. Отменяет предыдущий незавершенный запрос истории.
+     */
+    public CompletableFuture<List<HistoryRecord>> getHistoryRecordsSorted(String sortBy, boolean ascending) {
+        return submitLatest(HISTORY_CHANNEL, () -> delegate.getHistoryRecordsSorted(sortBy, ascending));
+    }
+
+    /**
+     * Фильтрует записи истории. Отменяет предыдущий незавершенный запрос истории.
+     */
+    public CompletableFuture<List<HistoryRecord>> filterHistoryRecordsByType(String operationType) {
+        return submitLatest(HISTORY_CHANNEL, () -> delegate.filterHistoryRecordsByType(operationType));
+    }
+
+    /**
+     * Отменяет все незавершенные запросы, результаты которых еще не доставлены.
+     */
+    public void cancelPending() {
+        latest.values().forEach(future -> future.cancel(true));
+        latest.clear();
+    }
+
+    /**
+     * Выполняет задачу в фоне; результат или ошибка доставляются через uiExecutor.
+     * Отмена возвращенного future прерывает фоновую задачу.
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                T value = task.call();
+                uiExecutor.execute(() -> result.complete(value));
+            } catch (Throwable e) {
+                uiExecutor.execute(() -> result.completeExceptionally(e));
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Выполняет задачу, отменяя предыдущую задачу того же канала.
+     */
+    private <T> CompletableFuture<T> submitLatest(String channel, Callable<T> task) {
+        CompletableFuture<T> future = submit(task);
+        CompletableFuture<?> previous = latest.put(channel, future);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+        future.whenComplete((value, error) -> latest.remove(channel, future));
+        return future;
+    }
+
+    /**
+     * Отменяет незавершенные запросы и закрывает собственный исполнитель.
+     */
+    @Override
+    public void close() {
+        cancelPending();
+        if (ownsExecutor) {
+            executor.close();
+        }
+    }
+}
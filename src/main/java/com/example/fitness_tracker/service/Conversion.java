@@ -0,0 +1,33 @@
+package com.example.fitness_tracker.service;
+
+/**
+ * Результат конвертации расстояния из миль в километры.
+ * Текст для пользователя формирует {@link ResultFormatter}.
+ */
+public final class Conversion {
+    public static final double KM_PER_MILE = 1.60934;
+
+    private final double miles;
+    private final double km;
+
+    private Conversion(double miles, double km) {
+        this.miles = miles;
+        this.km = km;
+    }
+
+    /**
+     * @param miles расстояние в милях
+     * @return результат конвертации
+     */
+    public static Conversion ofMiles(double miles) {
+        return new Conversion(miles, miles * KM_PER_MILE);
+    }
+
+    public double getMiles() {
+        return miles;
+    }
+
+    public double getKm() {
+        return km;
+    }
+}
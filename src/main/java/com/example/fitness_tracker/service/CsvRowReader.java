@@ -0,0 +1,124 @@
+package com.example.fitness_tracker.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковое чтение CSV (RFC 4180): поля в кавычках могут содержать разделители,
+ * переводы строк и удвоенные кавычки. Разделитель (запятая или точка с запятой)
+ * определяется по строке заголовка. Файл читается блоками, в памяти — только текущая строка.
+ */
+class CsvRowReader implements ImportRowReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char BOM = '\uFEFF';
+
+    private final Path file;
+
+    CsvRowReader(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void read(RowHandler handler) throws IOException {
+        String sheet = file.getFileName().toString();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[BUFFER_SIZE];
+            List<String> cells = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            char delimiter = 0;
+            boolean quoted = false;
+            // Последний символ — кавычка внутри поля в кавычках: либо конец поля, либо удвоенная кавычка
+            boolean quotePending = false;
+            boolean skipLineFeed = false;
+            boolean rowStarted = false;
+            int rowNumber = 1;
+            int read;
+            boolean first = true;
+            while ((read = reader.read(buffer)) > 0) {
+                int start = 0;
+                if (first) {
+                    first = false;
+                    if (buffer[0] == BOM) {
+                        start = 1;
+                    }
+                    delimiter = detectDelimiter(buffer, start, read);
+                }
+                for (int i = start; i < read; i++) {
+                    char c = buffer[i];
+                    if (skipLineFeed) {
+                        skipLineFeed = false;
+                        if (c == '\n') {
+                            continue;
+                        }
+                    }
+                    if (quotePending) {
+                        quotePending = false;
+                        if (c == '"') {
+                            field.append('"');
+                            continue;
+                        }
+                        quoted = false;
+                    }
+                    if (quoted) {
+                        if (c == '"') {
+                            quotePending = true;
+                        } else {
+                            field.append(c);
+                        }
+                        continue;
+                    }
+                    if (c == '"' && field.length() == 0) {
+                        quoted = true;
+                        rowStarted = true;
+                    } else if (c == delimiter) {
+                        cells.add(field.toString());
+                        field.setLength(0);
+                        rowStarted = true;
+                    } else if (c == '\n' || c == '\r') {
+                        if (rowStarted || field.length() > 0) {
+                            cells.add(field.toString());
+                            field.setLength(0);
+                            handler.row(sheet, rowNumber, cells);
+                            cells.clear();
+                        }
+                        rowNumber++;
+                        rowStarted = false;
+                        skipLineFeed = c == '\r';
+                    } else {
+                        field.append(c);
+                        rowStarted = true;
+                    }
+                }
+            }
+            if (quoted && !quotePending) {
+                throw new IOException("Незакрытая кавычка в строке " + rowNumber + " файла " + sheet);
+            }
+            if (rowStarted || field.length() > 0) {
+                cells.add(field.toString());
+                handler.row(sheet, rowNumber, cells);
+            }
+        }
+    }
+
+    /**
+     * Выбирает разделитель по первой строке: точка с запятой, если ее больше, чем запятых
+     * (так сохраняет CSV Excel в русской локали), иначе запятая.
+     */
+    private static char detectDelimiter(char[] buffer, int start, int end) {
+        int commas = 0;
+        int semicolons = 0;
+        for (int i = start; i < end && buffer[i] != '\n' && buffer[i] != '\r'; i++) {
+            if (buffer[i] == ',') {
+                commas++;
+            } else if (buffer[i] == ';') {
+                semicolons++;
+            }
+        }
+        return semicolons > commas ? ';' : ',';
+    }
+}
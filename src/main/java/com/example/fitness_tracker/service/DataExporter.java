@@ -0,0 +1,217 @@
+package com.example.fitness_tracker.service;
+
+import com.example.fitness_tracker.dao.DataAccessException;
+import com.example.fitness_tracker.dao.UserDataDao;
+import com.example.fitness_tracker.model.HistoryRecord;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Потоковый экспорт истории в XLSX через {@link SXSSFWorkbook}.
+ * Записи читаются потоковыми методами DAO, а в памяти держится только окно последних строк листа:
+ * остальные строки сбрасываются во временный сжатый файл, поэтому сами записи истории в памяти не накапливаются.
+ * Память, зависящая от размера истории, остается только у DAO: при сортировке и поиске файловое
+ * и отображаемое хранилища обходят ID по индексам в памяти (ключи сортировки, списки триграмм,
+ * номера слотов), а хранилище в памяти и так держит всю историю.
+ * Файл сначала пишется рядом с целевым и заменяет его только после успешной записи.
+ * Столбцы совпадают с подписями таблицы истории, поэтому выгруженный файл можно импортировать обратно.
+ */
+public class DataExporter {
+    // Отчет о ходе выгрузки отправляется через каждые REPORT_INTERVAL строк
+    static final int REPORT_INTERVAL = 10_000;
+
+    private static final String[] HEADER = {"ID", "Дата", "Тип операции", "Детали", "Статус"};
+    private static final int[] COLUMN_WIDTHS = {10, 12, 24, 80, 12};
+    private static final int MAX_TEXT_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+    // Строк данных на листе: предел строк Excel без строки заголовка
+    private static final int MAX_DATA_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+    /**
+     * Получатель отчетов о ходе экспорта. Вызывается в потоке экспорта.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(ExportResult progress);
+    }
+
+    private final UserDataDao dao;
+    private final int rowWindow;
+
+    /**
+     * Создает экспорт с окном по умолчанию ({@value SXSSFWorkbook#DEFAULT_WINDOW_SIZE} строк).
+     * @param dao хранилище, из которого выгружается история
+     */
+    public DataExporter(UserDataDao dao) {
+        this(dao, SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param dao хранилище, из которого выгружается история
+     * @param rowWindow количество строк листа, которые держатся в памяти до сброса во временный файл
+     */
+    public DataExporter(UserDataDao dao, int rowWindow) {
+        if (rowWindow <= 0) {
+            throw new IllegalArgumentException("Invalid row window: " + rowWindow);
+        }
+        this.dao = dao;
+        this.rowWindow = rowWindow;
+    }
+
+    /**
+     * Выгружает выбранные записи истории в файл XLSX.
+     * @param file целевой файл; существующий файл заменяется
+     * @param query параметры выборки
+     * @param listener получатель отчетов о ходе экспорта или null
+     * @return итог экспорта
+     * @throws IOException если не удалось записать файл
+     * @throws DataAccessException если не удалось прочитать историю; существующий файл не заменяется
+     * @throws CancellationException если поток прерван во время экспорта
+     */
+    public ExportResult exportHistory(Path file, HistoryExportQuery query, ProgressListener listener)
+            throws IOException {
+        long started = System.nanoTime();
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        boolean completed = false;
+        try (Stream<HistoryRecord> records = select(dao, query)) {
+            SheetWriter writer = new SheetWriter(workbook);
+            Iterator<HistoryRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+                if (writer.rows % REPORT_INTERVAL == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException("Экспорт прерван");
+                    }
+                    if (listener != null) {
+                        listener.onProgress(new ExportResult(writer.rows, writer.sheets, elapsed(started)));
+                    }
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                workbook.write(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            completed = true;
+            return new ExportResult(writer.rows, writer.sheets, elapsed(started));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            workbook.dispose();
+            workbook.close();
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Выбирает поток записей по параметрам запроса.
+     * При поиске вместе с сортировкой записи идут в порядке сортировки, а из результатов поиска
+     * в памяти держатся только ID.
+     */
+    static Stream<HistoryRecord> select(UserDataDao dao, HistoryExportQuery query) {
+        Stream<HistoryRecord> records;
+        if (query.getSortBy() != null) {
+            Set<Integer> matches = query.getSearchTerm() != null ? searchIds(dao, query.getSearchTerm()) : null;
+            records = dao.streamHistoryRecordsSorted(query.getSortBy(), query.isAscending());
+            if (matches != null) {
+                records = records.filter(record -> matches.contains(record.getId()));
+            }
+        } else if (query.getSearchTerm() != null) {
+            records = dao.streamSearchHistoryRecords(query.getSearchTerm());
+        } else {
+            records = dao.streamHistoryRecords();
+        }
+        String operationType = query.getOperationType();
+        if (operationType != null) {
+            records = records.filter(record -> operationType.equalsIgnoreCase(record.getOperationType()));
+        }
+        return records;
+    }
+
+    private static Set<Integer> searchIds(UserDataDao dao, String searchTerm) {
+        try (Stream<HistoryRecord> found = dao.streamSearchHistoryRecords(searchTerm)) {
+            return found.map(HistoryRecord::getId).collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    private static Duration elapsed(long started) {
+        return Duration.ofNanos(System.nanoTime() - started);
+    }
+
+    /**
+     * Заполняет листы книги; при достижении предела строк Excel начинает следующий лист.
+     */
+    private static final class SheetWriter {
+        private final SXSSFWorkbook workbook;
+        private final CellStyle headerStyle;
+        private final CellStyle dateStyle;
+        private SXSSFSheet sheet;
+        private int sheetRows;
+        private long rows;
+        private int sheets;
+
+        SheetWriter(SXSSFWorkbook workbook) {
+            this.workbook = workbook;
+            Font bold = workbook.createFont();
+            bold.setBold(true);
+            headerStyle = workbook.createCellStyle();
+            headerStyle.setFont(bold);
+            dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("dd.mm.yyyy"));
+            newSheet();
+        }
+
+        void write(HistoryRecord record) {
+            if (sheetRows == MAX_DATA_ROWS) {
+                newSheet();
+            }
+            Row row = sheet.createRow(++sheetRows);
+            row.createCell(0).setCellValue(record.getId());
+            row.createCell(1).setCellValue(record.getDate());
+            row.getCell(1).setCellStyle(dateStyle);
+            row.createCell(2).setCellValue(record.getOperationType());
+            row.createCell(3).setCellValue(truncate(record.getDetails()));
+            row.createCell(4).setCellValue(record.getActiveStatus());
+            rows++;
+        }
+
+        private void newSheet() {
+            sheets++;
+            sheet = workbook.createSheet(sheets == 1 ? "История" : "История " + sheets);
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < HEADER.length; i++) {
+                header.createCell(i).setCellValue(HEADER[i]);
+                header.getCell(i).setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, COLUMN_WIDTHS[i] * 256);
+            }
+            sheet.createFreezePane(0, 1);
+            sheetRows = 0;
+        }
+
+        // Ячейка Excel вмещает не более MAX_TEXT_LENGTH символов
+        private static String truncate(String text) {
+            return text != null && text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text;
+        }
+    }
+}
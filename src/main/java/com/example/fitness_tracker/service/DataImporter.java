@@ -0,0 +1,317 @@
+package com.example.fitness_tracker.service;
+
+import com.example.fitness_tracker.dao.UserDataDao;
+import com.example.fitness_tracker.dao.WriteBatch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Потоковый импорт истории и данных пользователя из XLSX или CSV в любой UserDataDao.
+ * Файл разбирается в вызывающем потоке, а пакеты записываются через
+ * {@link UserDataDao#executeBatch(WriteBatch)} в виртуальных потоках параллельно разбору.
+ * Очередь пакетов ограничена: если запись отстает, разбор ждет, поэтому память
+ * не зависит от размера файла.
+ * Каждый лист (для CSV — файл) начинается со строки заголовка, по которой определяется вид
+ * строк; строки, не прошедшие проверку, пропускаются и попадают в отчет.
+ */
+public class DataImporter {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    // Сообщения сверх этого количества только подсчитываются, чтобы отчет не рос с размером файла
+    static final int MAX_ERRORS = 100;
+
+    /**
+     * Получатель отчетов о ходе импорта. Вызывается после записи каждого пакета
+     * в потоке записи; вызовы не пересекаются.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(ImportProgress progress);
+    }
+
+    /**
+     * Пакет записи и количество записей каждого вида в нем.
+     */
+    private static final class Chunk {
+        private final WriteBatch batch;
+        private final int historyRecords;
+        private final int userData;
+
+        Chunk(WriteBatch batch, int historyRecords, int userData) {
+            this.batch = batch;
+            this.historyRecords = historyRecords;
+            this.userData = userData;
+        }
+    }
+
+    // Сигнал потоку записи о завершении
+    private static final Chunk END = new Chunk(new WriteBatch(), 0, 0);
+
+    private final UserDataDao dao;
+    private final int batchSize;
+    private final int writers;
+
+    /**
+     * Создает импорт с пакетами по {@value #DEFAULT_BATCH_SIZE} строк и одним потоком записи.
+     * @param dao хранилище, в которое импортируются данные
+     */
+    public DataImporter(UserDataDao dao) {
+        this(dao, DEFAULT_BATCH_SIZE, 1);
+    }
+
+    /**
+     * @param dao хранилище, в которое импортируются данные
+     * @param batchSize количество строк в пакете записи
+     * @param writers количество потоков записи; при нескольких потоках пакеты записываются
+     *                параллельно и записи получают ID не в порядке файла
+     */
+    public DataImporter(UserDataDao dao, int batchSize, int writers) {
+        if (batchSize <= 0 || writers <= 0) {
+            throw new IllegalArgumentException("Invalid import settings");
+        }
+        this.dao = dao;
+        this.batchSize = batchSize;
+        this.writers = writers;
+    }
+
+    /**
+     * Импортирует файл .xlsx или .csv.
+     * @param file импортируемый файл
+     * @param listener получатель отчетов о ходе импорта или null
+     * @return итог импорта
+     * @throws IOException если файл не удается прочитать или запись в хранилище не удалась
+     * @throws CancellationException если поток прерван во время импорта
+     */
+    public ImportResult importFile(Path file, ProgressListener listener) throws IOException {
+        return importRows(readerFor(file), listener);
+    }
+
+    static ImportRowReader readerFor(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xlsx")) {
+            return new XlsxRowReader(file);
+        }
+        if (name.endsWith(".csv")) {
+            return new CsvRowReader(file);
+        }
+        throw new IOException("Неподдерживаемый формат файла: " + file.getFileName() + " (ожидается .xlsx или .csv)");
+    }
+
+    ImportResult importRows(ImportRowReader reader, ProgressListener listener) throws IOException {
+        Run run = new Run(listener);
+        boolean completed = false;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < writers; i++) {
+                executor.execute(run::write);
+            }
+            try {
+                reader.read(run);
+                run.flush();
+                completed = true;
+            } finally {
+                run.stopWriters(!completed);
+            }
+        } catch (Aborted e) {
+            // Разбор остановлен из-за ошибки записи; она сообщается ниже
+        }
+        if (run.failure != null) {
+            throw new IOException("Ошибка записи при импорте: " + run.failure.getMessage(), run.failure);
+        }
+        return run.result();
+    }
+
+    /**
+     * Останавливает разбор после ошибки записи.
+     */
+    private static final class Aborted extends RuntimeException {
+        Aborted() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Состояние одного импорта. Методы RowHandler вызываются в потоке разбора,
+     * {@link #write()} — в потоках записи.
+     */
+    private final class Run implements ImportRowReader.RowHandler {
+        private final long started = System.nanoTime();
+        private final ProgressListener listener;
+        private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(writers * 2);
+        private final AtomicLong historyImported = new AtomicLong();
+        private final AtomicLong userDataImported = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+        private volatile Throwable failure;
+        // Пишутся только потоком разбора, читаются в отчетах о ходе
+        private volatile long rowsRead;
+        private volatile long rowsRejected;
+
+        private String sheet;
+        private boolean headerSeen;
+        private ImportRowMapper mapper;
+        private WriteBatch batch = new WriteBatch();
+        private int batchHistory;
+        private int batchUserData;
+
+        Run(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void row(String sheetName, int rowNumber, List<String> cells) {
+            if (!sheetName.equals(sheet)) {
+                sheet = sheetName;
+                headerSeen = false;
+                mapper = null;
+            }
+            if (isBlank(cells)) {
+                return;
+            }
+            if (!headerSeen) {
+                headerSeen = true;
+                mapper = ImportRowMapper.forHeader(cells);
+                if (mapper == null) {
+                    error(rowNumber, "заголовок не распознан, строки листа пропущены");
+                }
+                return;
+            }
+            rowsRead++;
+            if (mapper == null) {
+                rowsRejected++;
+                return;
+            }
+            try {
+                mapper.map(cells, batch);
+            } catch (IllegalArgumentException e) {
+                rowsRejected++;
+                error(rowNumber, e.getMessage());
+                return;
+            }
+            if (mapper.getKind() == ImportRowMapper.Kind.HISTORY) {
+                batchHistory++;
+            } else {
+                batchUserData++;
+            }
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Передает накопленный пакет потокам записи, ожидая места в очереди.
+         */
+        void flush() {
+            if (failure != null) {
+                throw new Aborted();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                queue.put(new Chunk(batch, batchHistory, batchUserData));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Импорт прерван");
+            }
+            batch = new WriteBatch();
+            batchHistory = 0;
+            batchUserData = 0;
+        }
+
+        void write() {
+            while (true) {
+                Chunk chunk;
+                try {
+                    chunk = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (chunk == END) {
+                    return;
+                }
+                if (failure != null) {
+                    // После ошибки пакеты только выбираются, чтобы поток разбора не ждал места в очереди
+                    continue;
+                }
+                try {
+                    dao.executeBatch(chunk.batch);
+                } catch (RuntimeException e) {
+                    failure = e;
+                    continue;
+                }
+                historyImported.addAndGet(chunk.historyRecords);
+                userDataImported.addAndGet(chunk.userData);
+                report();
+            }
+        }
+
+        /**
+         * Передает каждому потоку записи сигнал завершения.
+         * @param abort true - несохраненные пакеты отбрасываются
+         */
+        void stopWriters(boolean abort) {
+            boolean interrupted = false;
+            if (abort) {
+                queue.clear();
+            }
+            int remaining = writers;
+            while (remaining > 0) {
+                try {
+                    queue.put(END);
+                    remaining--;
+                } catch (InterruptedException e) {
+                    // Прерывание во время ожидания: отбрасываем очередь, после очистки места хватает всем сигналам
+                    interrupted = true;
+                    queue.clear();
+                    remaining = writers;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        ImportResult result() {
+            return new ImportResult(rowsRead, historyImported.get(), userDataImported.get(), rowsRejected,
+                    elapsed(), errors);
+        }
+
+        private void report() {
+            if (listener == null) {
+                return;
+            }
+            synchronized (listener) {
+                listener.onProgress(new ImportProgress(rowsRead,
+                        historyImported.get() + userDataImported.get(), rowsRejected, elapsed()));
+            }
+        }
+
+        private Duration elapsed() {
+            return Duration.ofNanos(System.nanoTime() - started);
+        }
+
+        private void error(int rowNumber, String message) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("Лист " + sheet + ", строка " + rowNumber + ": " + message);
+            }
+        }
+    }
+
+    private static boolean isBlank(List<String> cells) {
+        for (String cell : cells) {
+            if (!cell.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.fitness_tracker.service;
+
+import java.time.Duration;
+
+/**
+ * Состояние или итог экспорта: количество выгруженных записей, листов и время.
+ */
+public class ExportResult {
+    private final long rowsWritten;
+    private final int sheets;
+    private final Duration elapsed;
+
+    public ExportResult(long rowsWritten, int sheets, Duration elapsed) {
+        this.rowsWritten = rowsWritten;
+        this.sheets = sheets;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Количество выгруженных записей (без заголовков).
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Количество листов книги; история переносится на следующий лист при достижении предела строк Excel.
+     */
+    public int getSheets() {
+        return sheets;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Скорость выгрузки в строках в секунду.
+     */
+    public double getRowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos > 0 ? rowsWritten * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Выгружено записей: %d за %.1f с (%.0f строк/с)",
+                rowsWritten, elapsed.toMillis() / 1000.0, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.fitness_tracker.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Пакетный расчет прогресса и нагрузки для большого числа пользователей (например, ночного пересчета рекомендаций).
+ * Данные передаются столбцами — массивами примитивов, где i-й элемент каждого массива относится к i-му пользователю;
+ * результаты записываются в заранее выделенные выходные массивы, поэтому расчет не создает объектов на пользователя.
+ * Массивы делятся на участки, которые рассчитываются параллельно в ForkJoinPool.
+ * Правила расчета те же, что у {@link FitnessServiceImpl}: {@link ProgressStatus}, {@link LoadLevel}.
+ */
+public class FitnessBatchCalculator {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+
+    /**
+     * Расчет на участке массивов [from, to).
+     */
+    @FunctionalInterface
+    private interface Kernel {
+        void apply(int from, int to);
+    }
+
+    /**
+     * Делит диапазон пополам, пока участок больше chunkSize, и рассчитывает участки параллельно.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private final Kernel kernel;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        ChunkTask(Kernel kernel, int from, int to, int chunkSize) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                kernel.apply(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(kernel, from, mid, chunkSize), new ChunkTask(kernel, mid, to, chunkSize));
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Создает калькулятор, использующий общий ForkJoinPool и участки по {@value #DEFAULT_CHUNK_SIZE} пользователей.
+     */
+    public FitnessBatchCalculator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool пул, в котором рассчитываются участки
+     * @param chunkSize наибольшее количество пользователей в участке; пакеты не больше участка
+     *                  рассчитываются в вызывающем потоке
+     */
+    public FitnessBatchCalculator(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Рассчитывает темп похудения для каждого пользователя (см. {@link FitnessService#calculateProgress}).
+     * @param currentWeights текущий вес
+     * @param targetWeights целевой вес
+     * @param targetEpochDays целевая дата как день эпохи ({@link LocalDate#toEpochDay()})
+     * @param today дата, от которой считаются сроки
+     * @param weeklyLossOut результат: кг в неделю; NaN, если срок прошел (дневной темп — в 7 раз меньше)
+     * @param statusOut результат: коды {@link ProgressStatus}
+     * @throws IllegalArgumentException если длины входных массивов различаются или выходные массивы короче
+     */
+    public void calculateProgress(double[] currentWeights, double[] targetWeights, int[] targetEpochDays,
+                                  LocalDate today, double[] weeklyLossOut, byte[] statusOut) {
+        int count = currentWeights.length;
+        checkInput("targetWeights", targetWeights.length, count);
+        checkInput("targetEpochDays", targetEpochDays.length, count);
+        checkOutput("weeklyLossOut", weeklyLossOut.length, count);
+        checkOutput("statusOut", statusOut.length, count);
+        long todayEpochDay = today.toEpochDay();
+        run(count, (from, to) -> {
+            // Арифметика и классификация идут отдельными циклами без ветвлений в первом,
+            // чтобы JIT мог векторизовать расчет темпа
+            for (int i = from; i < to; i++) {
+                long days = targetEpochDays[i] - todayEpochDay;
+                double weeklyLoss = ProgressStatus.weeklyLoss(currentWeights[i], targetWeights[i], days);
+                weeklyLossOut[i] = days > 0 ? weeklyLoss : Double.NaN;
+            }
+            for (int i = from; i < to; i++) {
+                statusOut[i] = ProgressStatus.of(targetEpochDays[i] - todayEpochDay, weeklyLossOut[i]).code();
+            }
+        });
+    }
+
+    /**
+     * Оценивает тренировочную нагрузку для каждого пользователя (см. {@link FitnessService#checkOvertraining}).
+     * @param workouts количество тренировок за неделю
+     * @param avgDurations средняя продолжительность тренировки в минутах
+     * @param levelOut результат: коды {@link LoadLevel}
+     * @throws IllegalArgumentException если длины входных массивов различаются или выходной массив короче
+     */
+    public void checkOvertraining(int[] workouts, int[] avgDurations, byte[] levelOut) {
+        int count = workouts.length;
+        checkInput("avgDurations", avgDurations.length, count);
+        checkOutput("levelOut", levelOut.length, count);
+        run(count, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                levelOut[i] = LoadLevel.of(workouts[i], avgDurations[i]).code();
+            }
+        });
+    }
+
+    private void run(int count, Kernel kernel) {
+        if (count <= chunkSize) {
+            kernel.apply(0, count);
+        } else {
+            pool.invoke(new ChunkTask(kernel, 0, count, chunkSize));
+        }
+    }
+
+    private static void checkInput(String name, int length, int count) {
+        if (length != count) {
+            throw new IllegalArgumentException("Array " + name + " has " + length + " elements, expected " + count);
+        }
+    }
+
+    private static void checkOutput(String name, int length, int count) {
+        if (length < count) {
+            throw new IllegalArgumentException("Array " + name + " has " + length + " elements, expected at least " + count);
+        }
+    }
+}
@@ -1,33 +1,63 @@
 package com.example.fitness_tracker.service;
 
+import com.example.fitness_tracker.dao.HistoryCursor;
+import com.example.fitness_tracker.dao.WriteBatch;
 import com.example.fitness_tracker.model.UserData;
 import com.example.fitness_tracker.model.HistoryRecord;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Интерфейс сервисного слоя приложения.
  * Определяет бизнес-логику и операции с данными.
+ * Сервис работает с данными одного пользователя — того же, что и его DAO.
  */
 public interface FitnessService {
+    /**
+     * @return ID пользователя, с данными которого работает сервис
+     */
+    int getUserId();
+
     /**
      * Рассчитывает прогресс потери веса.
      * @param userData Данные пользователя
      * @return Результат расчета
      */
     String calculateProgress(UserData userData);
+    /**
+     * Рассчитывает прогресс потери веса без формирования текста (см. {@link ResultFormatter}).
+     * @param userData данные пользователя
+     * @return срок, необходимый темп и его оценка
+     */
+    ProgressResult assessProgress(UserData userData);
     /**
      * Проверяет наличие перетренированности.
      * @param userData Данные пользователя
      * @return Рекомендация по нагрузке
      */
     String checkOvertraining(UserData userData);
+    /**
+     * Анализирует тренировочную нагрузку без формирования текста (см. {@link ResultFormatter}).
+     * @param userData данные пользователя
+     * @return уровень нагрузки
+     */
+    LoadAssessment assessLoad(UserData userData);
     /**
      * Конвертирует мили в километры.
      * @param miles Значение в милях
      * @return Результат конвертации
      */
     String convertMilesToKm(double miles);
+    /**
+     * Конвертирует мили в километры без формирования текста (см. {@link ResultFormatter}).
+     * @param miles значение в милях
+     * @return результат конвертации
+     */
+    Conversion convert(double miles);
 
     /**
      * Сохраняет расчет прогресса в историю.
@@ -47,14 +77,70 @@ public interface FitnessService {
      * @param result результат конвертации
      */
     void saveConversion(double miles, String result);
+    /**
+     * Выполняет пакет операций записи одной единицей работы.
+     * @param batch пакет операций
+     */
+    void saveBatch(WriteBatch batch);
+    /**
+     * Сохраняет запись истории с заданными датой и статусом под новым ID.
+     * @param record запись истории
+     * @return ID сохраненной записи или 0, если запись не сохранена
+     */
+    int saveHistoryRecord(HistoryRecord record);
+    /**
+     * Импортирует историю и данные пользователя из файла XLSX или CSV.
+     * @param file импортируемый файл
+     * @param listener получатель отчетов о ходе импорта или null
+     * @return итог импорта
+     * @throws IOException если файл не удается прочитать или запись не удалась
+     */
+    ImportResult importData(Path file, DataImporter.ProgressListener listener) throws IOException;
+    /**
+     * Выгружает историю в файл XLSX потоково, не загружая ее целиком в память.
+     * @param file целевой файл
+     * @param query параметры выборки (поиск, фильтр по типу, сортировка)
+     * @param listener получатель отчетов о ходе экспорта или null
+     * @return итог экспорта
+     * @throws IOException если историю не удается прочитать или файл записать
+     */
+    ExportResult exportHistory(Path file, HistoryExportQuery query, DataExporter.ProgressListener listener)
+            throws IOException;
 
     /**
      * Загружает историю операций.
      * @return список записей истории
      */
     List<HistoryRecord> loadHistory();
+    /**
+     * Загружает страницу истории операций.
+     * @param after курсор последней записи предыдущей страницы или null
+     * @param limit максимальное количество записей
+     * @param descending true - от новых записей к старым
+     * @return записи страницы
+     */
+    List<HistoryRecord> loadHistoryPage(HistoryCursor after, int limit, boolean descending);
+    /**
+     * Возвращает запись истории по ID.
+     * @param id идентификатор записи
+     * @return запись или пустое значение, если записи нет
+     */
+    Optional<HistoryRecord> getHistoryRecordById(int id);
+    /**
+     * Открывает поток записей истории, выбранных по параметрам запроса.
+     * Записи читаются из хранилища по мере потребления; поток нужно закрыть.
+     * @param query параметры выборки (поиск, фильтр по типу, сортировка)
+     * @return поток записей
+     */
+    Stream<HistoryRecord> streamHistory(HistoryExportQuery query);
     void updateHistoryRecord(int id, HistoryRecord record);
     void deleteHistoryRecord(int id);
+    /**
+     * Изменяет статус активности записи истории.
+     * @param id идентификатор записи
+     * @param newStatus новый статус
+     */
+    void updateHistoryRecordStatus(int id, boolean newStatus);
 
     /**
      * Ищет записи истории по ключевому слову.
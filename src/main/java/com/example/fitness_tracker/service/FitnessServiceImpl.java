@@ -1,11 +1,17 @@
 package com.example.fitness_tracker.service;
 
+import com.example.fitness_tracker.dao.HistoryCursor;
 import com.example.fitness_tracker.dao.UserDataDao;
+import com.example.fitness_tracker.dao.WriteBatch;
 import com.example.fitness_tracker.model.UserData;
 import com.example.fitness_tracker.model.HistoryRecord;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Реализация сервисного слоя приложения.
@@ -22,6 +28,11 @@ public class FitnessServiceImpl implements FitnessService {
         this.userDataDao = userDataDao;
     }
 
+    @Override
+    public int getUserId() {
+        return userDataDao.getUserId();
+    }
+
     /**
      * Рассчитывает прогресс потери веса с учетом безопасных темпов.
      * @param userData Данные пользователя
@@ -29,31 +40,18 @@ public class FitnessServiceImpl implements FitnessService {
      */
     @Override
     public String calculateProgress(UserData userData) {
-        // Рассчитываем количество дней до цели
-        long days = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), userData.getTargetDate());
-        double weightDiff = userData.getCurrentWeight() - userData.getTargetWeight();
-
-        if (days <= 0) {
-            return "Ошибка: срок должен быть в будущем!";
-        }
-
-        // Расчет по неделям (более здоровый подход)
-        double weeklyLoss = weightDiff / (days / 7.0);
-        double dailyLoss = weeklyLoss / 7;
-
-        String result = String.format("Для цели нужно терять %.2f кг/неделю (%.2f кг/день)",
-                weeklyLoss, dailyLoss);
-
-        // Предупреждения о здоровье
-        if (weeklyLoss > 1.0) {
-            result += "\n⚠️ Внимание! Потеря более 1 кг/неделю может быть вредна для здоровья!";
-        } else if (weeklyLoss < 0.5) {
-            result += "\n💡 Можно немного увеличить дефицит калорий";
-        } else {
-            result += "\n✅ Это безопасный и эффективный темп похудения";
-        }
+        return ResultFormatter.getDefault().formatProgress(assessProgress(userData));
+    }
 
-        return result;
+    /**
+     * Рассчитывает количество дней до цели и необходимый недельный темп.
+     * @param userData данные пользователя
+     * @return результат расчета
+     */
+    @Override
+    public ProgressResult assessProgress(UserData userData) {
+        long days = userData.getTargetDate().toEpochDay() - LocalDate.now().toEpochDay();
+        return ProgressResult.of(userData.getCurrentWeight(), userData.getTargetWeight(), days);
     }
 
     /**
@@ -63,17 +61,17 @@ public class FitnessServiceImpl implements FitnessService {
      */
     @Override
     public String checkOvertraining(UserData userData) {
-        int totalMinutes = userData.getWorkoutsThisWeek() * userData.getAvgWorkoutDuration();
+        return ResultFormatter.getDefault().formatLoad(assessLoad(userData));
+    }
 
-        if (userData.getWorkoutsThisWeek() > 6 || totalMinutes > 420) {
-            return "Перетренированность! Отдых 2-3 дня.";
-        } else if (userData.getWorkoutsThisWeek() > 4 || totalMinutes > 300) {
-            return "Высокая нагрузка. Отдых 1-2 дня.";
-        } else if (userData.getWorkoutsThisWeek() < 3 || totalMinutes < 150) {
-            return "Можно добавить 1-2 тренировки.";
-        } else {
-            return "Оптимальная нагрузка!";
-        }
+    /**
+     * Оценивает недельную нагрузку по количеству и продолжительности тренировок.
+     * @param userData данные пользователя
+     * @return результат анализа
+     */
+    @Override
+    public LoadAssessment assessLoad(UserData userData) {
+        return LoadAssessment.of(userData.getWorkoutsThisWeek(), userData.getAvgWorkoutDuration());
     }
 
     /**
@@ -83,8 +81,12 @@ public class FitnessServiceImpl implements FitnessService {
      */
     @Override
     public String convertMilesToKm(double miles) {
-        double km = miles * 1.60934;
-        return String.format("%.2f миль = %.2f км", miles, km);
+        return ResultFormatter.getDefault().formatConversion(convert(miles));
+    }
+
+    @Override
+    public Conversion convert(double miles) {
+        return Conversion.ofMiles(miles);
     }
 
     /**
@@ -94,8 +96,9 @@ public class FitnessServiceImpl implements FitnessService {
      */
     @Override
     public void saveProgressCalculation(UserData userData, String result) {
-        userDataDao.saveUserData(userData);
-        userDataDao.saveHistoryRecord("Расчет прогресса", result);
+        userDataDao.executeBatch(new WriteBatch()
+                .saveUserData(userData)
+                .saveHistoryRecord("Расчет прогресса", result));
     }
 
     /**
@@ -105,8 +108,9 @@ public class FitnessServiceImpl implements FitnessService {
      */
     @Override
     public void saveWorkoutData(UserData userData, String recommendation) {
-        userDataDao.saveUserData(userData);
-        userDataDao.saveHistoryRecord("Анализ нагрузки", recommendation);
+        userDataDao.executeBatch(new WriteBatch()
+                .saveUserData(userData)
+                .saveHistoryRecord("Анализ нагрузки", recommendation));
     }
 
     /**
@@ -119,6 +123,49 @@ public class FitnessServiceImpl implements FitnessService {
         userDataDao.saveHistoryRecord("Конвертация", result);
     }
 
+    /**
+     * Выполняет пакет операций записи одной единицей работы (для массовой загрузки).
+     * @param batch пакет операций
+     */
+    @Override
+    public void saveBatch(WriteBatch batch) {
+        userDataDao.executeBatch(batch);
+    }
+
+    /**
+     * Сохраняет запись истории через DAO.
+     * @param record запись истории
+     * @return ID сохраненной записи или 0, если запись не сохранена
+     */
+    @Override
+    public int saveHistoryRecord(HistoryRecord record) {
+        return userDataDao.saveHistoryRecord(record);
+    }
+
+    /**
+     * Импортирует файл потоково: разбор и пакетная запись в DAO идут параллельно.
+     * @param file импортируемый файл (.xlsx или .csv)
+     * @param listener получатель отчетов о ходе импорта или null
+     * @return итог импорта
+     */
+    @Override
+    public ImportResult importData(Path file, DataImporter.ProgressListener listener) throws IOException {
+        return new DataImporter(userDataDao).importFile(file, listener);
+    }
+
+    /**
+     * Выгружает историю в XLSX: записи читаются из DAO потоком, в памяти держится только окно строк листа.
+     * @param file целевой файл
+     * @param query параметры выборки
+     * @param listener получатель отчетов о ходе экспорта или null
+     * @return итог экспорта
+     */
+    @Override
+    public ExportResult exportHistory(Path file, HistoryExportQuery query, DataExporter.ProgressListener listener)
+            throws IOException {
+        return new DataExporter(userDataDao).exportHistory(file, query, listener);
+    }
+
     /**
      * Загружает историю операций из DAO.
      * @return список записей истории
@@ -128,6 +175,38 @@ public class FitnessServiceImpl implements FitnessService {
         return userDataDao.getHistoryRecords();
     }
 
+    /**
+     * Загружает страницу истории из DAO.
+     * @param after курсор последней записи предыдущей страницы или null
+     * @param limit максимальное количество записей
+     * @param descending true - от новых записей к старым
+     * @return записи страницы
+     */
+    @Override
+    public List<HistoryRecord> loadHistoryPage(HistoryCursor after, int limit, boolean descending) {
+        return userDataDao.getHistoryPage(after, limit, descending);
+    }
+
+    /**
+     * Возвращает запись истории по ID через DAO.
+     * @param id идентификатор записи
+     * @return запись или пустое значение
+     */
+    @Override
+    public Optional<HistoryRecord> getHistoryRecordById(int id) {
+        return userDataDao.getHistoryRecordById(id);
+    }
+
+    /**
+     * Открывает поток записей истории: выборка та же, что при экспорте.
+     * @param query параметры выборки
+     * @return поток записей
+     */
+    @Override
+    public Stream<HistoryRecord> streamHistory(HistoryExportQuery query) {
+        return DataExporter.select(userDataDao, query);
+    }
+
     /**
      * Обновляет запись истории через DAO.
      * @param id идентификатор записи
@@ -147,6 +226,16 @@ public class FitnessServiceImpl implements FitnessService {
         userDataDao.deleteHistoryRecord(id);
     }
 
+    /**
+     * Изменяет статус активности записи истории через DAO.
+     * @param id идентификатор записи
+     * @param newStatus новый статус
+     */
+    @Override
+    public void updateHistoryRecordStatus(int id, boolean newStatus) {
+        userDataDao.updateHistoryRecordStatus(id, newStatus);
+    }
+
     /**
      * Ищет записи истории через DAO.
      * @param searchTerm ключевое слово для поиска
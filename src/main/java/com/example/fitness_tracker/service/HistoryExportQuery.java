@@ -0,0 +1,66 @@
+package com.example.fitness_tracker.service;
+
+/**
+ * Параметры выборки истории для экспорта и потокового чтения: поиск, фильтр по типу операции и сортировка.
+ * Соответствуют параметрам {@link FitnessService#searchHistoryRecords(String)},
+ * {@link FitnessService#filterHistoryRecordsByType(String)} и
+ * {@link FitnessService#getHistoryRecordsSorted(String, boolean)}; пустой запрос выбирает всю историю.
+ */
+public class HistoryExportQuery {
+    private String searchTerm;
+    private String operationType;
+    private String sortBy;
+    private boolean ascending = true;
+
+    /**
+     * Выбирает записи, найденные поиском по ключевому слову.
+     * @param searchTerm ключевое слово или null/пустая строка — без поиска
+     * @return этот запрос
+     */
+    public HistoryExportQuery search(String searchTerm) {
+        this.searchTerm = blankToNull(searchTerm);
+        return this;
+    }
+
+    /**
+     * Выбирает записи с заданным типом операции (без учета регистра).
+     * @param operationType тип операции или null — все типы
+     * @return этот запрос
+     */
+    public HistoryExportQuery operationType(String operationType) {
+        this.operationType = blankToNull(operationType);
+        return this;
+    }
+
+    /**
+     * Задает порядок записей.
+     * @param sortBy поле для сортировки (operation_date, operation_type, details) или null — порядок хранилища
+     * @param ascending направление сортировки
+     * @return этот запрос
+     */
+    public HistoryExportQuery sortBy(String sortBy, boolean ascending) {
+        this.sortBy = blankToNull(sortBy);
+        this.ascending = ascending;
+        return this;
+    }
+
+    public String getSearchTerm() {
+        return searchTerm;
+    }
+
+    public String getOperationType() {
+        return operationType;
+    }
+
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
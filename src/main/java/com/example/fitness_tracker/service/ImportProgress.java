@@ -0,0 +1,59 @@
+package com.example.fitness_tracker.service;
+
+import java.time.Duration;
+
+/**
+ * Состояние импорта на момент отчета.
+ */
+public class ImportProgress {
+    private final long rowsRead;
+    private final long rowsImported;
+    private final long rowsRejected;
+    private final Duration elapsed;
+
+    public ImportProgress(long rowsRead, long rowsImported, long rowsRejected, Duration elapsed) {
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsRejected = rowsRejected;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Количество прочитанных строк данных (без заголовков).
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Количество строк, записанных в хранилище.
+     */
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    /**
+     * Количество строк, не прошедших проверку.
+     */
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Скорость записи в строках в секунду.
+     */
+    public double getRowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos > 0 ? rowsImported * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Прочитано: %d, импортировано: %d, отклонено: %d (%.0f строк/с)",
+                rowsRead, rowsImported, rowsRejected, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.fitness_tracker.service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Итог импорта: количество записей каждого вида и сообщения об отклоненных строках.
+ */
+public class ImportResult extends ImportProgress {
+    private final long historyRecordsImported;
+    private final long userDataImported;
+    private final List<String> errors;
+
+    public ImportResult(long rowsRead, long historyRecordsImported, long userDataImported, long rowsRejected,
+                        Duration elapsed, List<String> errors) {
+        super(rowsRead, historyRecordsImported + userDataImported, rowsRejected, elapsed);
+        this.historyRecordsImported = historyRecordsImported;
+        this.userDataImported = userDataImported;
+        this.errors = List.copyOf(errors);
+    }
+
+    public long getHistoryRecordsImported() {
+        return historyRecordsImported;
+    }
+
+    public long getUserDataImported() {
+        return userDataImported;
+    }
+
+    /**
+     * Возвращает сообщения об ошибках (не более {@value DataImporter#MAX_ERRORS}; остальные только подсчитываются).
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Импортировано записей истории: %d, данных пользователя: %d, отклонено строк: %d "
+                        + "за %.1f с (%.0f строк/с)",
+                historyRecordsImported, userDataImported, getRowsRejected(),
+                getElapsed().toMillis() / 1000.0, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.fitness_tracker.service;
+
+import com.example.fitness_tracker.dao.WriteBatch;
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Преобразует строки импортируемого листа в записи истории или данные пользователя.
+ * Вид листа и порядок столбцов определяются по строке заголовка: распознаются имена столбцов
+ * таблиц БД (operation_date, operation_type, ...) и подписи интерфейса («Дата», «Тип операции», ...).
+ * Лишние столбцы (например, ID) игнорируются.
+ */
+class ImportRowMapper {
+    // Длина столбца operation_type в PostgreSQL
+    static final int MAX_OPERATION_TYPE_LENGTH = 50;
+
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("d.M.uuuu"));
+
+    /**
+     * Вид импортируемых строк.
+     */
+    enum Kind {
+        HISTORY, USER_DATA
+    }
+
+    private enum Field {
+        DATE(true, "operation_date", "date", "дата"),
+        OPERATION_TYPE(true, "operation_type", "type", "тип операции"),
+        DETAILS(true, "details", "детали"),
+        ACTIVE(false, "active", "status", "статус"),
+        CURRENT_WEIGHT(true, "current_weight", "текущий вес", "текущий вес (кг)"),
+        TARGET_WEIGHT(true, "target_weight", "целевой вес", "целевой вес (кг)"),
+        TARGET_DATE(true, "target_date", "целевая дата"),
+        WORKOUTS(true, "workouts_this_week", "тренировок на неделе"),
+        DURATION(true, "avg_workout_duration", "средняя продолжительность", "средняя продолжительность (мин)");
+
+        private final boolean required;
+        private final List<String> names;
+
+        Field(boolean required, String... names) {
+            this.required = required;
+            this.names = List.of(names);
+        }
+    }
+
+    private static final Map<Kind, List<Field>> FIELDS = Map.of(
+            Kind.HISTORY, List.of(Field.DATE, Field.OPERATION_TYPE, Field.DETAILS, Field.ACTIVE),
+            Kind.USER_DATA, List.of(Field.CURRENT_WEIGHT, Field.TARGET_WEIGHT, Field.TARGET_DATE,
+                    Field.WORKOUTS, Field.DURATION));
+
+    private final Kind kind;
+    // Номер столбца для каждого поля или -1, если необязательного столбца нет
+    private final int[] columns;
+
+    private ImportRowMapper(Kind kind, int[] columns) {
+        this.kind = kind;
+        this.columns = columns;
+    }
+
+    /**
+     * Распознает заголовок листа.
+     * @param header ячейки строки заголовка
+     * @return преобразователь для строк листа или null, если заголовок не распознан
+     */
+    static ImportRowMapper forHeader(List<String> header) {
+        for (Kind kind : Kind.values()) {
+            int[] columns = new int[Field.values().length];
+            Arrays.fill(columns, -1);
+            boolean complete = true;
+            for (Field field : FIELDS.get(kind)) {
+                columns[field.ordinal()] = indexOf(header, field);
+                complete &= columns[field.ordinal()] >= 0 || !field.required;
+            }
+            if (complete) {
+                return new ImportRowMapper(kind, columns);
+            }
+        }
+        return null;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Проверяет строку и добавляет соответствующую операцию в пакет.
+     * @param cells ячейки строки
+     * @param batch пакет, в который добавляется операция
+     * @throws IllegalArgumentException если строка не проходит проверку
+     */
+    void map(List<String> cells, WriteBatch batch) {
+        if (kind == Kind.HISTORY) {
+            String operationType = cell(cells, Field.OPERATION_TYPE);
+            if (operationType.isEmpty()) {
+                throw new IllegalArgumentException("не указан тип операции");
+            }
+            if (operationType.length() > MAX_OPERATION_TYPE_LENGTH) {
+                throw new IllegalArgumentException("тип операции длиннее " + MAX_OPERATION_TYPE_LENGTH + " символов");
+            }
+            batch.saveHistoryRecord(new HistoryRecord(parseDate(cells, Field.DATE), operationType,
+                    cell(cells, Field.DETAILS), parseActive(cells)));
+        } else {
+            double currentWeight = parseWeight(cells, Field.CURRENT_WEIGHT);
+            double targetWeight = parseWeight(cells, Field.TARGET_WEIGHT);
+            batch.importUserData(new UserData(currentWeight, targetWeight, parseDate(cells, Field.TARGET_DATE),
+                    parseCount(cells, Field.WORKOUTS), parseCount(cells, Field.DURATION)));
+        }
+    }
+
+    private String cell(List<String> cells, Field field) {
+        int column = columns[field.ordinal()];
+        return column >= 0 && column < cells.size() ? cells.get(column).trim() : "";
+    }
+
+    private LocalDate parseDate(List<String> cells, Field field) {
+        String value = cell(cells, field);
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(value, format);
+            } catch (DateTimeParseException e) {
+                // пробуем следующий формат
+            }
+        }
+        throw new IllegalArgumentException("неверная дата '" + value + "' в столбце " + field.names.get(0));
+    }
+
+    private double parseWeight(List<String> cells, Field field) {
+        String value = cell(cells, field);
+        double weight;
+        try {
+            weight = Double.parseDouble(value.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("неверное число '" + value + "' в столбце " + field.names.get(0));
+        }
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("вес должен быть положительным: " + value);
+        }
+        return weight;
+    }
+
+    private int parseCount(List<String> cells, Field field) {
+        String value = cell(cells, field);
+        int count;
+        try {
+            count = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("неверное целое число '" + value + "' в столбце " + field.names.get(0));
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("отрицательное значение в столбце " + field.names.get(0));
+        }
+        return count;
+    }
+
+    private boolean parseActive(List<String> cells) {
+        String value = cell(cells, Field.ACTIVE).toLowerCase(Locale.ROOT);
+        switch (value) {
+            case "", "true", "1", "да", "активно":
+                return true;
+            case "false", "0", "нет", "неактивно":
+                return false;
+            default:
+                throw new IllegalArgumentException("неверный статус '" + value + "'");
+        }
+    }
+
+    private static int indexOf(List<String> header, Field field) {
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith(":")) {
+                name = name.substring(0, name.length() - 1).trim();
+            }
+            if (field.names.contains(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.fitness_tracker.service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Источник строк для импорта. Читает файл потоково и передает строки обработчику по одной,
+ * поэтому память не зависит от размера файла.
+ */
+interface ImportRowReader {
+    /**
+     * Получатель строк. Список ячеек действителен только во время вызова.
+     */
+    @FunctionalInterface
+    interface RowHandler {
+        /**
+         * @param sheet имя листа (для CSV — имя файла)
+         * @param rowNumber номер строки, начиная с 1
+         * @param cells значения ячеек по порядку столбцов; пропущенные ячейки — пустые строки
+         */
+        void row(String sheet, int rowNumber, List<String> cells);
+    }
+
+    /**
+     * Читает все строки файла по порядку.
+     * @param handler получатель строк
+     * @throws IOException если файл не удается прочитать
+     */
+    void read(RowHandler handler) throws IOException;
+}
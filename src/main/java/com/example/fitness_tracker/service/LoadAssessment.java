@@ -0,0 +1,43 @@
+package com.example.fitness_tracker.service;
+
+/**
+ * Результат анализа тренировочной нагрузки за неделю.
+ * Текст для пользователя формирует {@link ResultFormatter}.
+ */
+public final class LoadAssessment {
+    private final int workouts;
+    private final int avgDuration;
+    private final LoadLevel level;
+
+    private LoadAssessment(int workouts, int avgDuration, LoadLevel level) {
+        this.workouts = workouts;
+        this.avgDuration = avgDuration;
+        this.level = level;
+    }
+
+    /**
+     * Оценивает нагрузку.
+     * @param workouts количество тренировок за неделю
+     * @param avgDuration средняя продолжительность тренировки в минутах
+     * @return результат анализа
+     */
+    public static LoadAssessment of(int workouts, int avgDuration) {
+        return new LoadAssessment(workouts, avgDuration, LoadLevel.of(workouts, avgDuration));
+    }
+
+    public int getWorkouts() {
+        return workouts;
+    }
+
+    public int getAvgDuration() {
+        return avgDuration;
+    }
+
+    public int getTotalMinutes() {
+        return workouts * avgDuration;
+    }
+
+    public LoadLevel getLevel() {
+        return level;
+    }
+}
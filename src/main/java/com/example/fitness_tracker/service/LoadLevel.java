@@ -0,0 +1,49 @@
+package com.example.fitness_tracker.service;
+
+/**
+ * Уровень тренировочной нагрузки за неделю.
+ * Код уровня ({@link #code()}) используется в пакетных расчетах, где результаты хранятся в массивах byte.
+ */
+public enum LoadLevel {
+    /** Больше 6 тренировок или 420 минут — нужен отдых 2-3 дня. */
+    OVERTRAINING,
+    /** Больше 4 тренировок или 300 минут — нужен отдых 1-2 дня. */
+    HIGH,
+    /** Меньше 3 тренировок или 150 минут — можно добавить тренировки. */
+    LOW,
+    /** Оптимальная нагрузка. */
+    OPTIMAL;
+
+    private static final LoadLevel[] VALUES = values();
+
+    /**
+     * Оценивает нагрузку.
+     * @param workouts количество тренировок за неделю
+     * @param avgDuration средняя продолжительность тренировки в минутах
+     * @return уровень нагрузки
+     */
+    public static LoadLevel of(int workouts, int avgDuration) {
+        int totalMinutes = workouts * avgDuration;
+        if (workouts > 6 || totalMinutes > 420) {
+            return OVERTRAINING;
+        } else if (workouts > 4 || totalMinutes > 300) {
+            return HIGH;
+        } else if (workouts < 3 || totalMinutes < 150) {
+            return LOW;
+        } else {
+            return OPTIMAL;
+        }
+    }
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * @param code код уровня из {@link #code()}
+     * @return уровень нагрузки
+     */
+    public static LoadLevel ofCode(byte code) {
+        return VALUES[code];
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.fitness_tracker.service;
+
+import com.example.fitness_tracker.dao.HistoryCursor;
+import com.example.fitness_tracker.dao.WriteBatch;
+import com.example.fitness_tracker.metrics.MetricsRegistry;
+import com.example.fitness_tracker.metrics.OperationMetrics;
+import com.example.fitness_tracker.model.HistoryRecord;
+import com.example.fitness_tracker.model.UserData;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Обертка над FitnessService, измеряющая каждый метод: количество вызовов, ошибок
+ * и распределение длительностей (см. {@link MetricsRegistry}).
+ * Время сервисного метода включает время вызванных им методов DAO.
+ * Для потоковых методов измеряется открытие потока, но не чтение записей.
+ */
+public class MeteredFitnessService implements FitnessService {
+    private static final String LAYER = "service";
+
+    private final FitnessService delegate;
+    private final String backend;
+
+    private final OperationMetrics calculateProgress;
+    private final OperationMetrics checkOvertraining;
+    private final OperationMetrics convertMilesToKm;
+    private final OperationMetrics assessProgress;
+    private final OperationMetrics assessLoad;
+    private final OperationMetrics convert;
+    private final OperationMetrics saveProgressCalculation;
+    private final OperationMetrics saveWorkoutData;
+    private final OperationMetrics saveConversion;
+    private final OperationMetrics saveBatch;
+    private final OperationMetrics saveHistoryRecord;
+    private final OperationMetrics importData;
+    private final OperationMetrics exportHistory;
+    private final OperationMetrics loadHistory;
+    private final OperationMetrics loadHistoryPage;
+    private final OperationMetrics getHistoryRecordById;
+    private final OperationMetrics streamHistory;
+    private final OperationMetrics updateHistoryRecord;
+    private final OperationMetrics deleteHistoryRecord;
+    private final OperationMetrics updateHistoryRecordStatus;
+    private final OperationMetrics searchHistoryRecords;
+    private final OperationMetrics getHistoryRecordsSorted;
+    private final OperationMetrics filterHistoryRecordsByType;
+
+    /**
+     * @param delegate измеряемый сервис
+     * @param backend имя источника данных сервиса в метриках
+     */
+    public MeteredFitnessService(FitnessService delegate, String backend) {
+        this.delegate = delegate;
+        this.backend = backend;
+        calculateProgress = operation("calculateProgress");
+        checkOvertraining = operation("checkOvertraining");
+        convertMilesToKm = operation("convertMilesToKm");
+        assessProgress = operation("assessProgress");
+        assessLoad = operation("assessLoad");
+        convert = operation("convert");
+        saveProgressCalculation = operation("saveProgressCalculation");
+        saveWorkoutData = operation("saveWorkoutData");
+        saveConversion = operation("saveConversion");
+        saveBatch = operation("saveBatch");
+        saveHistoryRecord = operation("saveHistoryRecord");
+        importData = operation("importData");
+        exportHistory = operation("exportHistory");
+        loadHistory = operation("loadHistory");
+        loadHistoryPage = operation("loadHistoryPage");
+        getHistoryRecordById = operation("getHistoryRecordById");
+        streamHistory = operation("streamHistory");
+        updateHistoryRecord = operation("updateHistoryRecord");
+        deleteHistoryRecord = operation("deleteHistoryRecord");
+        updateHistoryRecordStatus = operation("updateHistoryRecordStatus");
+        searchHistoryRecords = operation("searchHistoryRecords");
+        getHistoryRecordsSorted = operation("getHistoryRecordsSorted");
+        filterHistoryRecordsByType = operation("filterHistoryRecordsByType");
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    @Override
+    public int getUserId() {
+        return delegate.getUserId();
+    }
+
+    @Override
+    public String calculateProgress(UserData userData) {
+        return calculateProgress.call(() -> delegate.calculateProgress(userData));
+    }
+
+    @Override
+    public String checkOvertraining(UserData userData) {
+        return checkOvertraining.call(() -> delegate.checkOvertraining(userData));
+    }
+
+    @Override
+    public String convertMilesToKm(double miles) {
+        return convertMilesToKm.call(() -> delegate.convertMilesToKm(miles));
+    }
+
+    @Override
+    public ProgressResult assessProgress(UserData userData) {
+        return assessProgress.call(() -> delegate.assessProgress(userData));
+    }
+
+    @Override
+    public LoadAssessment assessLoad(UserData userData) {
+        return assessLoad.call(() -> delegate.assessLoad(userData));
+    }
+
+    @Override
+    public Conversion convert(double miles) {
+        return convert.call(() -> delegate.convert(miles));
+    }
+
+    @Override
+    public void saveProgressCalculation(UserData userData, String result) {
+        saveProgressCalculation.run(() -> delegate.saveProgressCalculation(userData, result));
+    }
+
+    @Override
+    public void saveWorkoutData(UserData userData, String recommendation) {
+        saveWorkoutData.run(() -> delegate.saveWorkoutData(userData, recommendation));
+    }
+
+    @Override
+    public void saveConversion(double miles, String result) {
+        saveConversion.run(() -> delegate.saveConversion(miles, result));
+    }
+
+    @Override
+    public void saveBatch(WriteBatch batch) {
+        saveBatch.run(() -> delegate.saveBatch(batch));
+    }
+
+    @Override
+    public int saveHistoryRecord(HistoryRecord record) {
+        return saveHistoryRecord.call(() -> delegate.saveHistoryRecord(record));
+    }
+
+    @Override
+    public ImportResult importData(Path file, DataImporter.ProgressListener listener) throws IOException {
+        return importData.call(() -> delegate.importData(file, listener));
+    }
+
+    @Override
+    public ExportResult exportHistory(Path file, HistoryExportQuery query, DataExporter.ProgressListener listener)
+            throws IOException {
+        return exportHistory.call(() -> delegate.exportHistory(file, query, listener));
+    }
+
+    @Override
+    public List<HistoryRecord> loadHistory() {
+        return loadHistory.call(delegate::loadHistory);
+    }
+
+    @Override
+    public List<HistoryRecord> loadHistoryPage(HistoryCursor after, int limit, boolean descending) {
+        return loadHistoryPage.call(() -> delegate.loadHistoryPage(after, limit, descending));
+    }
+
+    @Override
+    public Optional<HistoryRecord> getHistoryRecordById(int id) {
+        return getHistoryRecordById.call(() -> delegate.getHistoryRecordById(id));
+    }
+
+    @Override
+    public Stream<HistoryRecord> streamHistory(HistoryExportQuery query) {
+        return streamHistory.call(() -> delegate.streamHistory(query));
+    }
+
+    @Override
+    public void updateHistoryRecord(int id, HistoryRecord record) {
+        updateHistoryRecord.run(() -> delegate.updateHistoryRecord(id, record));
+    }
+
+    @Override
+    public void deleteHistoryRecord(int id) {
+        deleteHistoryRecord.run(() -> delegate.deleteHistoryRecord(id));
+    }
+
+    @Override
+    public void updateHistoryRecordStatus(int id, boolean newStatus) {
+        updateHistoryRecordStatus.run(() -> delegate.updateHistoryRecordStatus(id, newStatus));
+    }
+
+    @Override
+    public List<HistoryRecord> searchHistoryRecords(String searchTerm) {
+        return searchHistoryRecords.call(() -> delegate.searchHistoryRecords(searchTerm));
+    }
+
+    @Override
+    public List<HistoryRecord> getHistoryRecordsSorted(String sortBy, boolean ascending) {
+        return getHistoryRecordsSorted.call(() -> delegate.getHistoryRecordsSorted(sortBy, ascending));
+    }
+
+    @Override
+    public List<HistoryRecord> filterHistoryRecordsByType(String operationType) {
+        return filterHistoryRecordsByType.call(() -> delegate.filterHistoryRecordsByType(operationType));
+    }
+
+    private OperationMetrics operation(String name) {
+        return MetricsRegistry.getInstance().operation(LAYER, backend, name);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.fitness_tracker.service;
+
+/**
+ * Результат расчета прогресса потери веса: срок, необходимый темп и его оценка.
+ * Текст для пользователя формирует {@link ResultFormatter}.
+ */
+public final class ProgressResult {
+    private final long daysLeft;
+    private final double weeklyLoss;
+    private final ProgressStatus status;
+
+    private ProgressResult(long daysLeft, double weeklyLoss, ProgressStatus status) {
+        this.daysLeft = daysLeft;
+        this.weeklyLoss = weeklyLoss;
+        this.status = status;
+    }
+
+    /**
+     * Рассчитывает прогресс.
+     * @param currentWeight текущий вес
+     * @param targetWeight целевой вес
+     * @param daysLeft дней до целевой даты
+     * @return результат расчета
+     */
+    public static ProgressResult of(double currentWeight, double targetWeight, long daysLeft) {
+        if (daysLeft <= 0) {
+            return new ProgressResult(daysLeft, Double.NaN, ProgressStatus.DEADLINE_PASSED);
+        }
+        double weeklyLoss = ProgressStatus.weeklyLoss(currentWeight, targetWeight, daysLeft);
+        return new ProgressResult(daysLeft, weeklyLoss, ProgressStatus.of(daysLeft, weeklyLoss));
+    }
+
+    public long getDaysLeft() {
+        return daysLeft;
+    }
+
+    /**
+     * @return кг в неделю; NaN, если срок прошел
+     */
+    public double getWeeklyLoss() {
+        return weeklyLoss;
+    }
+
+    /**
+     * @return кг в день; NaN, если срок прошел
+     */
+    public double getDailyLoss() {
+        return weeklyLoss / 7;
+    }
+
+    public ProgressStatus getStatus() {
+        return status;
+    }
+}
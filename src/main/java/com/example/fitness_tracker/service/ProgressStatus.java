@@ -0,0 +1,61 @@
+package com.example.fitness_tracker.service;
+
+/**
+ * Оценка темпа похудения, необходимого для достижения цели к сроку.
+ * Код оценки ({@link #code()}) используется в пакетных расчетах, где результаты хранятся в массивах byte.
+ */
+public enum ProgressStatus {
+    /** Срок уже наступил или прошел: темп не рассчитывается. */
+    DEADLINE_PASSED,
+    /** Больше {@value #MAX_SAFE_WEEKLY_LOSS} кг в неделю — может быть вредно для здоровья. */
+    TOO_FAST,
+    /** Меньше {@value #MIN_EFFECTIVE_WEEKLY_LOSS} кг в неделю — можно увеличить дефицит калорий. */
+    SLOW,
+    /** Безопасный и эффективный темп. */
+    SAFE;
+
+    public static final double MAX_SAFE_WEEKLY_LOSS = 1.0;
+    public static final double MIN_EFFECTIVE_WEEKLY_LOSS = 0.5;
+
+    private static final ProgressStatus[] VALUES = values();
+
+    /**
+     * Рассчитывает недельный темп похудения.
+     * @param currentWeight текущий вес
+     * @param targetWeight целевой вес
+     * @param days дней до целевой даты (должно быть больше 0)
+     * @return кг в неделю
+     */
+    public static double weeklyLoss(double currentWeight, double targetWeight, long days) {
+        // Расчет по неделям (более здоровый подход)
+        return (currentWeight - targetWeight) / (days / 7.0);
+    }
+
+    /**
+     * Оценивает темп похудения.
+     * @param days дней до целевой даты
+     * @param weeklyLoss кг в неделю (не используется, если срок прошел)
+     * @return оценка
+     */
+    public static ProgressStatus of(long days, double weeklyLoss) {
+        if (days <= 0) {
+            return DEADLINE_PASSED;
+        }
+        if (weeklyLoss > MAX_SAFE_WEEKLY_LOSS) {
+            return TOO_FAST;
+        }
+        return weeklyLoss < MIN_EFFECTIVE_WEEKLY_LOSS ? SLOW : SAFE;
+    }
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * @param code код оценки из {@link #code()}
+     * @return оценка
+     */
+    public static ProgressStatus ofCode(byte code) {
+        return VALUES[code];
+    }
+}
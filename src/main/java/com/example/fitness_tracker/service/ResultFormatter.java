@@ -0,0 +1,170 @@
+package com.example.fitness_tracker.service;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Текст результатов расчетов для пользователя: прогресса, анализа нагрузки и конвертации.
+ * Текст дописывается в переданный StringBuilder, который можно переиспользовать между вызовами;
+ * числа с фиксированным количеством знаков после запятой выводятся без промежуточных строк
+ * с тем же результатом, что у String.format. Разделитель дробной части и цифры берутся из локали.
+ * Экземпляр неизменяем и может использоваться из нескольких потоков.
+ */
+public final class ResultFormatter {
+    public static final int MAX_FRACTION_DIGITS = 9;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Больше этого значения масштабированное число не помещается в long
+    private static final double MAX_SCALED = 9.0e18;
+    // Погрешность масштабирования и отличие double от его десятичной записи, в ulp масштабированного числа
+    private static final int TIE_ULPS = 8;
+
+    private static final ResultFormatter DEFAULT = new ResultFormatter(Locale.getDefault(Locale.Category.FORMAT));
+
+    private final Locale locale;
+    private final char decimalSeparator;
+    private final char zeroDigit;
+
+    /**
+     * @param locale локаль чисел
+     */
+    public ResultFormatter(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.locale = locale;
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.zeroDigit = symbols.getZeroDigit();
+    }
+
+    /**
+     * @return форматтер для локали по умолчанию на момент запуска приложения
+     */
+    public static ResultFormatter getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Дописывает результат расчета прогресса.
+     * @param out получатель текста
+     * @param result результат расчета
+     * @return out
+     */
+    public StringBuilder appendProgress(StringBuilder out, ProgressResult result) {
+        if (result.getStatus() == ProgressStatus.DEADLINE_PASSED) {
+            return out.append("Ошибка: срок должен быть в будущем!");
+        }
+        out.append("Для цели нужно терять ");
+        appendFixed(out, result.getWeeklyLoss(), 2).append(" кг/неделю (");
+        appendFixed(out, result.getDailyLoss(), 2).append(" кг/день)");
+
+        // Предупреждения о здоровье
+        return switch (result.getStatus()) {
+            case TOO_FAST -> out.append("\n⚠️ Внимание! Потеря более 1 кг/неделю может быть вредна для здоровья!");
+            case SLOW -> out.append("\n💡 Можно немного увеличить дефицит калорий");
+            default -> out.append("\n✅ Это безопасный и эффективный темп похудения");
+        };
+    }
+
+    /**
+     * Дописывает рекомендацию по тренировочной нагрузке.
+     * @param out получатель текста
+     * @param assessment результат анализа нагрузки
+     * @return out
+     */
+    public StringBuilder appendLoad(StringBuilder out, LoadAssessment assessment) {
+        return out.append(switch (assessment.getLevel()) {
+            case OVERTRAINING -> "Перетренированность! Отдых 2-3 дня.";
+            case HIGH -> "Высокая нагрузка. Отдых 1-2 дня.";
+            case LOW -> "Можно добавить 1-2 тренировки.";
+            case OPTIMAL -> "Оптимальная нагрузка!";
+        });
+    }
+
+    /**
+     * Дописывает результат конвертации.
+     * @param out получатель текста
+     * @param conversion результат конвертации
+     * @return out
+     */
+    public StringBuilder appendConversion(StringBuilder out, Conversion conversion) {
+        appendFixed(out, conversion.getMiles(), 2).append(" миль = ");
+        return appendFixed(out, conversion.getKm(), 2).append(" км");
+    }
+
+    public String formatProgress(ProgressResult result) {
+        return appendProgress(new StringBuilder(128), result).toString();
+    }
+
+    public String formatLoad(LoadAssessment assessment) {
+        return appendLoad(new StringBuilder(40), assessment).toString();
+    }
+
+    public String formatConversion(Conversion conversion) {
+        return appendConversion(new StringBuilder(32), conversion).toString();
+    }
+
+    /**
+     * Дописывает число с фиксированным количеством знаков после запятой — так же, как "%.Nf" у String.format:
+     * без разделителя групп, с округлением половины вверх по десятичной записи числа.
+     * String.format вызывается только для чисел у самой границы округления, где результат зависит
+     * от десятичной записи double, и для чисел, не помещающихся в long.
+     * @param out получатель текста
+     * @param value число
+     * @param fractionDigits знаков после запятой, от 0 до {@value #MAX_FRACTION_DIGITS}
+     * @return out
+     */
+    public StringBuilder appendFixed(StringBuilder out, double value, int fractionDigits) {
+        if (fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS) {
+            throw new IllegalArgumentException("Invalid fraction digits: " + fractionDigits);
+        }
+        if (Double.isNaN(value)) {
+            return out.append("NaN");
+        }
+        if (Double.isInfinite(value)) {
+            return out.append(value > 0 ? "Infinity" : "-Infinity");
+        }
+        long scale = POWERS_OF_TEN[fractionDigits];
+        double scaled = Math.abs(value) * scale;
+        if (scaled >= MAX_SCALED) {
+            return out.append(String.format(locale, "%." + fractionDigits + "f", value));
+        }
+        long units = (long) scaled;
+        double fraction = scaled - units;
+        if (Math.abs(fraction - 0.5) <= TIE_ULPS * Math.ulp(scaled)) {
+            // Например, 19.185 хранится как 19.18499..., но String.format округляет запись "19.185" до 19.19
+            return out.append(String.format(locale, "%." + fractionDigits + "f", value));
+        }
+        if (fraction > 0.5) {
+            units++;
+        }
+        if (Math.copySign(1.0, value) < 0) {
+            out.append('-');
+        }
+        appendDigits(out, units / scale, 1);
+        if (fractionDigits > 0) {
+            out.append(decimalSeparator);
+            appendDigits(out, units % scale, fractionDigits);
+        }
+        return out;
+    }
+
+    /**
+     * Дописывает неотрицательное число цифрами локали, дополняя нулями слева до minDigits.
+     */
+    private void appendDigits(StringBuilder out, long value, int minDigits) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        for (int i = Math.max(digits, minDigits) - 1; i >= 0; i--) {
+            out.append((char) (zeroDigit + (value / POWERS_OF_TEN[i]) % 10));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.fitness_tracker.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Потоковое чтение XLSX через событийную модель POI (XSSFReader и SAX).
+ * Листы разбираются по одной строке без построения модели книги; в памяти держится
+ * только таблица общих строк книги. Даты, отформатированные как даты, передаются в формате ISO.
+ */
+class XlsxRowReader implements ImportRowReader {
+    private final Path file;
+
+    XlsxRowReader(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void read(RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings,
+                            new RowCollector(sheets.getSheetName(), handler), new IsoDateFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (SAXException e) {
+            // Исключения обработчика строк (например, отмена импорта) передаются как есть
+            if (e.getException() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Ошибка разбора XLSX: " + e.getMessage(), e);
+        } catch (OpenXML4JException | ParserConfigurationException e) {
+            throw new IOException("Не удалось открыть XLSX: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Собирает ячейки строки по номерам столбцов: пустые ячейки в XLSX пропускаются,
+     * поэтому пропуски заполняются пустыми строками.
+     */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final String sheetName;
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+
+        RowCollector(String sheetName, RowHandler handler) {
+            this.sheetName = sheetName;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < column) {
+                cells.add("");
+            }
+            cells.add(formattedValue != null ? formattedValue : "");
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.row(sheetName, rowNum + 1, cells);
+        }
+    }
+
+    /**
+     * Форматирует числа без учета локали, а даты — в ISO (yyyy-MM-dd) независимо от формата ячейки.
+     */
+    private static final class IsoDateFormatter extends DataFormatter {
+        IsoDateFormatter() {
+            super(Locale.ROOT);
+        }
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).toLocalDate().toString();
+            }
+            return super.formatRawCellContents(value, formatIndex, formatString);
+        }
+    }
+}
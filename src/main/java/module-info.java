@@ -19,6 +19,11 @@ module com.example.fitness_tracker {
     requires com.fasterxml.jackson.datatype.jsr310;
     requires com.fasterxml.jackson.databind;
     requires java.sql;
+    requires java.xml;
+    requires org.apache.poi.poi;
+    requires org.apache.poi.ooxml;
+    requires java.management;
+    requires jdk.httpserver;
 
 
     // Открываем пакеты для JavaFX FXML
@@ -29,4 +34,6 @@ module com.example.fitness_tracker {
     exports com.example.fitness_tracker;
     exports com.example.fitness_tracker.controller;
     exports com.example.fitness_tracker.model;
+    // MBean метрик читаются сервером JMX через отражение
+    exports com.example.fitness_tracker.metrics to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingUserDataDaoTest {
+    private static final int USER_ID = 2_000_000_002;
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 1);
+
+    private InMemoryUserDataDao delegate;
+    private CachingUserDataDao cache;
+
+    @BeforeEach
+    void setUp() {
+        delegate = InMemoryUserDataDao.forUser(USER_ID);
+        delegate.clearAllData();
+        cache = new CachingUserDataDao(delegate, 1000, Duration.ofHours(1));
+    }
+
+    @Test
+    void cachedListIsReturnedAsCopyUntilWrite() {
+        cache.saveHistoryRecord(record("A", DATE));
+
+        List<HistoryRecord> first = cache.getHistoryRecords();
+        first.clear();
+        List<HistoryRecord> second = cache.getHistoryRecords();
+
+        assertEquals(1, second.size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        cache.saveHistoryRecord(record("A", DATE));
+
+        assertEquals(2, cache.getHistoryRecords().size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void savedRecordInvalidatesOnlyAffectedFiltersAndRanges() {
+        cache.saveHistoryRecord(record("A", DATE));
+        cache.saveHistoryRecord(record("B", DATE));
+        cache.filterHistoryRecordsByType("a");
+        cache.filterHistoryRecordsByType("B");
+        cache.getHistoryRecordsByDateRange(DATE, DATE);
+        cache.getHistoryRecordsByDateRange(DATE.plusDays(10), DATE.plusDays(20));
+        long misses = cache.getMissCount();
+
+        cache.saveHistoryRecord(record("A", DATE.plusDays(15)));
+
+        assertEquals(2, cache.filterHistoryRecordsByType("a").size());
+        assertEquals(1, cache.filterHistoryRecordsByType("B").size());
+        assertEquals(2, cache.getHistoryRecordsByDateRange(DATE, DATE).size());
+        assertEquals(1, cache.getHistoryRecordsByDateRange(DATE.plusDays(10), DATE.plusDays(20)).size());
+        assertEquals(misses + 2, cache.getMissCount());
+    }
+
+    @Test
+    void cachedAbsentRecordIsInvalidatedBySave() {
+        assertTrue(cache.getHistoryRecordById(1).isEmpty());
+
+        int id = cache.saveHistoryRecord(record("A", DATE));
+
+        assertEquals(1, id);
+        assertTrue(cache.getHistoryRecordById(1).isPresent());
+    }
+
+    @Test
+    void updateInvalidatesPreviousAndNewType() {
+        int id = cache.saveHistoryRecord(record("A", DATE));
+        cache.getHistoryRecordById(id);
+        cache.filterHistoryRecordsByType("A");
+        cache.filterHistoryRecordsByType("B");
+
+        cache.updateHistoryRecord(id, new HistoryRecord(id, DATE, "B", "изменено", true));
+
+        assertEquals("изменено", cache.getHistoryRecordById(id).orElseThrow().getDetails());
+        assertTrue(cache.filterHistoryRecordsByType("A").isEmpty());
+        assertEquals(1, cache.filterHistoryRecordsByType("B").size());
+
+        cache.updateHistoryRecordStatus(id, false);
+
+        assertFalse(cache.getHistoryRecordById(id).orElseThrow().isActive());
+        assertFalse(cache.getHistoryRecords().get(0).isActive());
+    }
+
+    @Test
+    void batchInvalidatesHistoryLists() {
+        cache.getHistoryRecords();
+        WriteBatch batch = new WriteBatch();
+        batch.saveHistoryRecord("A", "пакет");
+
+        cache.executeBatch(batch);
+
+        assertEquals(1, cache.getHistoryRecords().size());
+    }
+
+    @Test
+    void writesBypassingCacheStayHiddenUntilInvalidation() {
+        cache.getHistoryRecords();
+
+        delegate.saveHistoryRecord(record("A", DATE));
+
+        assertTrue(cache.getHistoryRecords().isEmpty());
+        cache.invalidateAll();
+        assertEquals(1, cache.getHistoryRecords().size());
+    }
+
+    @Test
+    void eldestEntriesAreEvictedByWeight() {
+        CachingUserDataDao small = new CachingUserDataDao(delegate, 3, Duration.ofHours(1));
+        delegate.saveHistoryRecord(record("A", DATE));
+        delegate.saveHistoryRecord(record("A", DATE));
+
+        small.getHistoryRecords();
+        small.filterHistoryRecordsByType("A");
+
+        assertEquals(1, small.getEvictionCount());
+        assertEquals(1, small.getSize());
+        assertEquals(2, small.getWeight());
+        small.filterHistoryRecordsByType("A");
+        assertEquals(1, small.getHitCount());
+    }
+
+    private static HistoryRecord record(String type, LocalDate date) {
+        return new HistoryRecord(date, type, "детали", true);
+    }
+}
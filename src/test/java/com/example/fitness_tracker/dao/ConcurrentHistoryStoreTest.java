@@ -0,0 +1,163 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentHistoryStoreTest {
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void addAssignsSequentialIds() {
+        ConcurrentHistoryStore store = new ConcurrentHistoryStore();
+
+        HistoryRecord first = store.add(DATE, "t", "a", true);
+        HistoryRecord second = store.add(DATE, "t", "b", false);
+
+        assertEquals(1, first.getId());
+        assertEquals(2, second.getId());
+        assertEquals(2, store.size());
+        assertEquals("b", store.get(2).orElseThrow().getDetails());
+        assertTrue(store.get(3).isEmpty());
+    }
+
+    @Test
+    void replaceAndRemoveReturnPreviousRecord() {
+        ConcurrentHistoryStore store = new ConcurrentHistoryStore();
+        store.add(DATE, "t", "a", true);
+
+        HistoryRecord previous = store.replace(1, current ->
+                new HistoryRecord(1, current.getDate(), current.getOperationType(), "changed", false));
+
+        assertEquals("a", previous.getDetails());
+        assertEquals("changed", store.get(1).orElseThrow().getDetails());
+        assertNull(store.replace(7, current -> current));
+        assertEquals("changed", store.remove(1).getDetails());
+        assertNull(store.remove(1));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void snapshotIsStableAndOrderedById() {
+        ConcurrentHistoryStore store = new ConcurrentHistoryStore();
+        // Больше одного блока, чтобы снимок проходил через несколько блоков
+        for (int i = 0; i < 1500; i++) {
+            store.add(DATE, "t", "record " + i, true);
+        }
+        store.remove(10);
+
+        List<HistoryRecord> snapshot = store.snapshot();
+        store.add(DATE, "t", "later", true);
+        store.remove(20);
+
+        assertInstanceOf(RandomAccess.class, snapshot);
+        assertEquals(1499, snapshot.size());
+        int previousId = 0;
+        for (HistoryRecord record : snapshot) {
+            assertTrue(record.getId() > previousId);
+            previousId = record.getId();
+        }
+        assertEquals(20, snapshot.get(18).getId());
+        assertEquals(1500, snapshot.get(snapshot.size() - 1).getId());
+        assertEquals(1501, store.snapshot().get(1498).getId());
+    }
+
+    @Test
+    void clearRestartsIds() {
+        ConcurrentHistoryStore store = new ConcurrentHistoryStore();
+        store.add(DATE, "t", "a", true);
+        store.add(DATE, "t", "b", true);
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertTrue(store.snapshot().isEmpty());
+        assertEquals(1, store.add(DATE, "t", "c", true).getId());
+    }
+
+    @Test
+    void listenersReceiveChangesInOrder() {
+        ConcurrentHistoryStore store = new ConcurrentHistoryStore();
+        List<String> events = new ArrayList<>();
+        ConcurrentHistoryStore.Listener listener = new ConcurrentHistoryStore.Listener() {
+            @Override
+            public void added(HistoryRecord record) {
+                events.add("added " + record.getId());
+            }
+
+            @Override
+            public void updated(HistoryRecord previous, HistoryRecord current) {
+                events.add("updated " + previous.getDetails() + "->" + current.getDetails());
+            }
+
+            @Override
+            public void removed(HistoryRecord record) {
+                events.add("removed " + record.getId());
+            }
+
+            @Override
+            public void cleared() {
+                events.add("cleared");
+            }
+        };
+        store.addListener(listener);
+
+        store.add(DATE, "t", "a", true);
+        store.replace(1, current -> new HistoryRecord(1, DATE, "t", "b", true));
+        store.remove(1);
+        store.remove(1);
+        store.clear();
+        store.removeListener(listener);
+        store.add(DATE, "t", "c", true);
+
+        assertEquals(List.of("added 1", "updated a->b", "removed 1", "cleared"), events);
+    }
+
+    @Test
+    void concurrentAddsKeepEveryRecord() throws Exception {
+        ConcurrentHistoryStore store = new ConcurrentHistoryStore();
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        HistoryRecord record = store.add(DATE, "t", "d", true);
+                        if (i % 2 == 0) {
+                            store.replace(record.getId(), current -> new HistoryRecord(current.getId(),
+                                    current.getDate(), current.getOperationType(), "updated", false));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<HistoryRecord> snapshot = store.snapshot();
+        assertEquals(threads * perThread, store.size());
+        assertEquals(threads * perThread, snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(i + 1, snapshot.get(i).getId());
+        }
+        assertEquals(threads * perThread / 2,
+                snapshot.stream().filter(record -> "updated".equals(record.getDetails())).count());
+    }
+}
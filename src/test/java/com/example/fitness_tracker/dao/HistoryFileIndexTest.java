@@ -0,0 +1,182 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryFileIndexTest {
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    Path dir;
+
+    private Path dataPath;
+    private Path indexPath;
+    private Path logPath;
+    private Path nextIdPath;
+
+    @BeforeEach
+    void setUp() {
+        dataPath = dir.resolve("history_records.txt");
+        indexPath = dir.resolve("history_records.idx");
+        logPath = dir.resolve("history_records.wal");
+        nextIdPath = dir.resolve("history_records.nextid");
+    }
+
+    @Test
+    void appendedRecordsAreReadBackById() throws IOException {
+        HistoryFileIndex index = open();
+
+        int first = index.append(encoder("Прогресс", "многострочные\nдетали", 0));
+        int second = index.appendAll(List.of(encoder("Нагрузка", "a", 1), encoder("Конвертация", "b", 2)));
+
+        assertEquals(1, first);
+        assertEquals(2, second);
+        assertArrayEquals(new int[] {1, 2, 3}, index.ids());
+        assertEquals("многострочные\nдетали", decode(index.read(1).orElseThrow()).getDetails());
+        assertEquals("Конвертация", decode(index.read(3).orElseThrow()).getOperationType());
+    }
+
+    @Test
+    void logChangesSurviveReopen() throws IOException {
+        HistoryFileIndex index = open();
+        index.append(encoder("t", "one", 0));
+        index.append(encoder("t", "two", 0));
+        index.append(encoder("t", "three", 0));
+
+        assertTrue(index.replace(2, HistoryRecordCodec.encode(record(2, "t", "changed", 5))));
+        assertTrue(index.remove(3));
+        assertFalse(index.remove(3));
+
+        HistoryFileIndex reopened = open();
+        assertArrayEquals(new int[] {1, 2}, reopened.ids());
+        HistoryRecord changed = decode(reopened.read(2).orElseThrow());
+        assertEquals("changed", changed.getDetails());
+        assertEquals(DATE.plusDays(5), changed.getDate());
+        assertTrue(reopened.read(3).isEmpty());
+    }
+
+    @Test
+    void statusPatchUsesCurrentRecordBytes() throws IOException {
+        HistoryFileIndex index = open();
+        index.append(encoder("t", "short", 0));
+        index.append(id -> (id + ",2024-01-01,t,прежний формат,true\n").getBytes(StandardCharsets.UTF_8));
+        index.replace(1, HistoryRecordCodec.encode(record(1, "t", "details, now longer", 0)));
+
+        assertTrue(index.patchStatus(1, false));
+        assertFalse(index.patchStatus(2, false));
+        assertFalse(index.patchStatus(3, false));
+
+        HistoryRecord patched = decode(open().read(1).orElseThrow());
+        assertEquals("details, now longer", patched.getDetails());
+        assertFalse(patched.isActive());
+        assertTrue(decode(index.read(2).orElseThrow()).isActive());
+    }
+
+    @Test
+    void compactionFoldsLogIntoDataFile() throws IOException {
+        HistoryFileIndex index = open();
+        for (int i = 0; i < 5; i++) {
+            index.append(encoder("t", "record " + i, i));
+        }
+        index.replace(2, HistoryRecordCodec.encode(record(2, "t", "changed", 1)));
+        index.remove(4);
+        long logLength = Files.size(logPath);
+
+        assertTrue(index.compact());
+        assertFalse(index.compact());
+
+        assertTrue(Files.size(logPath) < logLength);
+        String data = Files.readString(dataPath, StandardCharsets.UTF_8);
+        assertFalse(data.contains("record 1"));
+        assertFalse(data.contains("record 3"));
+        assertTrue(data.contains("changed"));
+        assertArrayEquals(new int[] {1, 2, 3, 5}, index.ids());
+        assertEquals("changed", decode(index.read(2).orElseThrow()).getDetails());
+        assertEquals("record 4", decode(index.read(5).orElseThrow()).getDetails());
+
+        HistoryFileIndex reopened = open();
+        assertArrayEquals(new int[] {1, 2, 3, 5}, reopened.ids());
+        assertEquals("record 2", decode(reopened.read(3).orElseThrow()).getDetails());
+    }
+
+    @Test
+    void rebuildRecoversRecordsWhenIndexIsMissing() throws IOException {
+        HistoryFileIndex index = open();
+        index.append(encoder("t", "first", 2));
+        index.append(encoder("t", "2,2024-01-01,\"похоже на запись\"", 1));
+        index.append(encoder("t", "third", 0));
+        Files.delete(indexPath);
+
+        HistoryFileIndex rebuilt = open();
+
+        assertArrayEquals(new int[] {1, 2, 3}, rebuilt.ids());
+        assertEquals("2,2024-01-01,\"похоже на запись\"", decode(rebuilt.read(2).orElseThrow()).getDetails());
+        List<String> details = new ArrayList<>();
+        for (byte[] bytes : rebuilt.readDateRange(DATE.toEpochDay(), DATE.plusDays(1).toEpochDay())) {
+            details.add(decode(bytes).getDetails());
+        }
+        assertEquals(List.of("third", "2,2024-01-01,\"похоже на запись\""), details);
+        assertEquals(4, rebuilt.append(encoder("t", "next", 0)));
+    }
+
+    @Test
+    void rebuildAfterCompactionDoesNotReuseDeletedIds() throws IOException {
+        HistoryFileIndex index = open();
+        for (int i = 0; i < 5; i++) {
+            index.append(encoder("t", "record " + i, 0));
+        }
+        index.remove(5);
+        index.remove(4);
+        assertTrue(index.compact());
+        Files.delete(indexPath);
+
+        HistoryFileIndex rebuilt = open();
+
+        assertArrayEquals(new int[] {1, 2, 3}, rebuilt.ids());
+        assertEquals(6, rebuilt.append(encoder("t", "next", 0)));
+    }
+
+    @Test
+    void closedIndexDoesNotCompact() throws IOException {
+        HistoryFileIndex index = open();
+        index.append(encoder("t", "record", 0));
+        index.remove(1);
+
+        index.close();
+
+        assertFalse(index.compact());
+        assertArrayEquals(new int[0], open().ids());
+    }
+
+    private HistoryFileIndex open() throws IOException {
+        return HistoryFileIndex.open(dataPath, indexPath, logPath, nextIdPath);
+    }
+
+    private static IntFunction<byte[]> encoder(String type, String details, int dayOffset) {
+        return id -> HistoryRecordCodec.encode(record(id, type, details, dayOffset));
+    }
+
+    private static HistoryRecord record(int id, String type, String details, int dayOffset) {
+        return new HistoryRecord(id, DATE.plusDays(dayOffset), type, details, true);
+    }
+
+    private static HistoryRecord decode(byte[] bytes) {
+        return new HistoryRecordCodec().decode(bytes).orElseThrow();
+    }
+}
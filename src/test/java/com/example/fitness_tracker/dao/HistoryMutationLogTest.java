@@ -0,0 +1,147 @@
+package com.example.fitness_tracker.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryMutationLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayReturnsEntriesInOrder() throws IOException {
+        Path path = dir.resolve("history.wal");
+        HistoryMutationLog log = new HistoryMutationLog(path);
+        log.replay(new Recorder());
+        log.logUpdate(1, bytes("one"));
+        log.logDelete(2);
+        log.logPatch(3, 4, bytes("false"));
+
+        Recorder recorder = new Recorder();
+        HistoryMutationLog reopened = new HistoryMutationLog(path);
+        reopened.replay(recorder);
+
+        assertEquals(List.of("update 1 one", "delete 2", "patch 3 4 false"), recorder.entries);
+        assertEquals(3, reopened.size());
+        assertEquals(Files.size(path), reopened.length());
+    }
+
+    @Test
+    void replayCreatesMissingLog() throws IOException {
+        Path path = dir.resolve("history.wal");
+        HistoryMutationLog log = new HistoryMutationLog(path);
+
+        Recorder recorder = new Recorder();
+        log.replay(recorder);
+
+        assertEquals(List.of(), recorder.entries);
+        assertEquals(0, log.size());
+        assertEquals(Files.size(path), log.length());
+    }
+
+    @Test
+    void replayDropsTornTail() throws IOException {
+        Path path = dir.resolve("history.wal");
+        HistoryMutationLog log = new HistoryMutationLog(path);
+        log.replay(new Recorder());
+        log.logUpdate(1, bytes("kept"));
+        long intact = log.length();
+        log.logUpdate(2, bytes("torn"));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(log.length() - 2);
+        }
+
+        Recorder recorder = new Recorder();
+        HistoryMutationLog reopened = new HistoryMutationLog(path);
+        reopened.replay(recorder);
+
+        assertEquals(List.of("update 1 kept"), recorder.entries);
+        assertEquals(intact, Files.size(path));
+        assertEquals(intact, reopened.length());
+    }
+
+    @Test
+    void replayStopsAtCorruptedEntry() throws IOException {
+        Path path = dir.resolve("history.wal");
+        HistoryMutationLog log = new HistoryMutationLog(path);
+        log.replay(new Recorder());
+        log.logDelete(1);
+        long intact = log.length();
+        log.logUpdate(2, bytes("corrupted"));
+        log.logDelete(3);
+        byte[] content = Files.readAllBytes(path);
+        content[(int) intact + 12] ^= 0x7F;
+        Files.write(path, content);
+
+        Recorder recorder = new Recorder();
+        new HistoryMutationLog(path).replay(recorder);
+
+        assertEquals(List.of("delete 1"), recorder.entries);
+        assertEquals(intact, Files.size(path));
+    }
+
+    @Test
+    void replayRejectsUnknownFormat() throws IOException {
+        Path path = dir.resolve("history.wal");
+        Files.write(path, bytes("not a log file"));
+
+        assertThrows(IOException.class, () -> new HistoryMutationLog(path).replay(new Recorder()));
+    }
+
+    @Test
+    void replaceWithTailKeepsLaterEntries() throws IOException {
+        Path path = dir.resolve("history.wal");
+        HistoryMutationLog log = new HistoryMutationLog(path);
+        log.replay(new Recorder());
+        log.logDelete(1);
+        log.logDelete(2);
+        long from = log.length();
+        log.logUpdate(3, bytes("three"));
+
+        Path tail = log.writeTail(from);
+        log.replaceWith(tail, from, 2);
+
+        assertFalse(Files.exists(tail));
+        assertEquals(1, log.size());
+        assertEquals(Files.size(path), log.length());
+        log.logDelete(4);
+        Recorder recorder = new Recorder();
+        new HistoryMutationLog(path).replay(recorder);
+        assertEquals(List.of("update 3 three", "delete 4"), recorder.entries);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Recorder implements HistoryMutationLog.Replayer {
+        private final List<String> entries = new ArrayList<>();
+
+        @Override
+        public void update(int id, byte[] bytes) {
+            entries.add("update " + id + " " + new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void delete(int id) {
+            entries.add("delete " + id);
+        }
+
+        @Override
+        public void patch(int id, int relativeOffset, byte[] bytes) {
+            entries.add("patch " + id + " " + relativeOffset + " " + new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+}
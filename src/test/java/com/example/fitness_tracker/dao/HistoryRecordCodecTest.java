@@ -0,0 +1,95 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryRecordCodecTest {
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 15);
+
+    @Test
+    void roundTripKeepsSeparatorsQuotesAndLineBreaks() {
+        HistoryRecord record = new HistoryRecord(42, DATE, "Тип, \"с кавычками\"", "0,31 кг\nвторая строка", false);
+
+        HistoryRecord decoded = new HistoryRecordCodec().decode(HistoryRecordCodec.encode(record)).orElseThrow();
+
+        assertRecord(record, decoded);
+    }
+
+    @Test
+    void encodedStatusHasFixedWidth() {
+        byte[] active = HistoryRecordCodec.encode(new HistoryRecord(1, DATE, "t", "d", true));
+        byte[] inactive = HistoryRecordCodec.encode(new HistoryRecord(1, DATE, "t", "d", false));
+
+        assertEquals(active.length, inactive.length);
+        assertEquals(HistoryRecordCodec.STATUS_WIDTH, HistoryRecordCodec.status(true).length);
+        assertEquals(HistoryRecordCodec.STATUS_WIDTH, HistoryRecordCodec.status(false).length);
+        assertEquals('\n', active[active.length - 1]);
+    }
+
+    @Test
+    void readsLegacyPlainFormat() {
+        byte[] bytes = "7,2024-03-15,Конвертация,10,00 миль = 16,09 км,true\n".getBytes(StandardCharsets.UTF_8);
+
+        HistoryRecord decoded = new HistoryRecordCodec().decode(bytes).orElseThrow();
+
+        assertRecord(new HistoryRecord(7, DATE, "Конвертация", "10,00 миль = 16,09 км", true), decoded);
+    }
+
+    @Test
+    void rejectsMalformedRecords() {
+        HistoryRecordCodec codec = new HistoryRecordCodec();
+
+        assertEquals(Optional.empty(), codec.decode(new byte[0]));
+        assertEquals(Optional.empty(), codec.decode("id,2024-03-15,t,d,true\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Optional.empty(), codec.decode("1,2024-13-45,t,d,true\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Optional.empty(), codec.decode("99999999999,2024-03-15,t,d,true\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void readsRecordsFromBufferSlicesWithoutArray() {
+        byte[] first = HistoryRecordCodec.encode(new HistoryRecord(1, DATE, "Прогресс", "a", true));
+        byte[] second = HistoryRecordCodec.encode(new HistoryRecord(2, DATE.plusDays(1), "Нагрузка", "b,c", false));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(first.length + second.length);
+        buffer.put(first).put(second).flip();
+        HistoryRecordCodec codec = new HistoryRecordCodec();
+
+        assertTrue(codec.read(buffer, first.length, second.length));
+        assertEquals(2, codec.getId());
+        assertEquals(DATE.plusDays(1), codec.getDate());
+        assertFalse(codec.isActive());
+        assertTrue(codec.operationTypeEquals("Нагрузка".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("b,c", codec.getDetails());
+
+        assertTrue(codec.read(buffer, 0, first.length));
+        assertEquals(1, codec.getId());
+        assertEquals("Прогресс", codec.getOperationType());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void encodeMatchesReEncodeOfDecoded() {
+        byte[] bytes = HistoryRecordCodec.encode(new HistoryRecord(5, DATE, "\"\"", "", true));
+
+        HistoryRecord decoded = new HistoryRecordCodec().decode(bytes).orElseThrow();
+
+        assertArrayEquals(bytes, HistoryRecordCodec.encode(decoded));
+    }
+
+    static void assertRecord(HistoryRecord expected, HistoryRecord actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getOperationType(), actual.getOperationType());
+        assertEquals(expected.getDetails(), actual.getDetails());
+        assertEquals(expected.isActive(), actual.isActive());
+    }
+}
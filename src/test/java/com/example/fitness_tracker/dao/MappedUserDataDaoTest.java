@@ -0,0 +1,127 @@
+package com.example.fitness_tracker.dao;
+
+import com.example.fitness_tracker.model.HistoryRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Файлы пользователя открываются в users/&lt;ID&gt; рабочего каталога, поэтому тест использует
+ * отдельного пользователя и удаляет его каталог.
+ */
+class MappedUserDataDaoTest {
+    private static final int USER_ID = 2_000_000_001;
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 1);
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MappedUserDataDao.release(USER_ID);
+        directory = UserDirectories.of(USER_ID);
+        deleteDirectory();
+        Files.createDirectories(directory);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        MappedUserDataDao.release(USER_ID);
+        deleteDirectory();
+        try {
+            Files.deleteIfExists(directory.getParent());
+        } catch (DirectoryNotEmptyException e) {
+            // В каталоге есть файлы других пользователей
+        }
+    }
+
+    @Test
+    void historySurvivesReopen() {
+        List<String> types = List.of("Расчет прогресса", "тип\nс переводом строки", "тип\r\nCRLF", "Анализ нагрузки");
+        MappedUserDataDao dao = MappedUserDataDao.forUser(USER_ID);
+        for (int i = 0; i < types.size(); i++) {
+            dao.saveHistoryRecord(new HistoryRecord(DATE.plusDays(i), types.get(i), "детали " + i, true));
+        }
+        dao.saveHistoryRecord(new HistoryRecord(DATE, "Анализ нагрузки", "еще", true));
+        dao.updateHistoryRecordStatus(2, false);
+
+        MappedUserDataDao.release(USER_ID);
+        MappedUserDataDao reopened = MappedUserDataDao.forUser(USER_ID);
+
+        List<HistoryRecord> records = reopened.getHistoryRecords();
+        assertEquals(5, records.size());
+        for (int i = 0; i < types.size(); i++) {
+            HistoryRecord record = records.get(i);
+            assertEquals(i + 1, record.getId());
+            assertEquals(DATE.plusDays(i), record.getDate());
+            assertEquals(types.get(i), record.getOperationType());
+            assertEquals("детали " + i, record.getDetails());
+            assertEquals(i != 1, record.isActive());
+        }
+        assertEquals(2, reopened.filterHistoryRecordsByType("Анализ нагрузки").size());
+        assertEquals(6, reopened.saveHistoryRecord(new HistoryRecord(DATE, "тип\r\nCRLF", "после", true)));
+        assertEquals(2, reopened.filterHistoryRecordsByType("тип\r\nCRLF").size());
+    }
+
+    @Test
+    void legacyTypeDictionaryIsMigrated() throws IOException {
+        Files.writeString(directory.resolve("history_types.txt"), "A\nB\n", StandardCharsets.UTF_8);
+        MappedUserDataDao dao = MappedUserDataDao.forUser(USER_ID);
+        Path typesFile = directory.resolve("history_types.bin");
+        long migratedSize = Files.size(typesFile);
+
+        dao.saveHistoryRecord(new HistoryRecord(DATE, "B", "известный тип", true));
+        assertEquals(migratedSize, Files.size(typesFile));
+        dao.saveHistoryRecord(new HistoryRecord(DATE, "C", "новый тип", true));
+        assertTrue(Files.size(typesFile) > migratedSize);
+
+        MappedUserDataDao.release(USER_ID);
+        List<HistoryRecord> records = MappedUserDataDao.forUser(USER_ID).getHistoryRecords();
+        assertEquals(List.of("B", "C"), records.stream().map(HistoryRecord::getOperationType).toList());
+        assertFalse(Files.exists(directory.resolve("history_types.txt")));
+    }
+
+    @Test
+    void tornTypeEntryIsDropped() throws IOException {
+        MappedUserDataDao dao = MappedUserDataDao.forUser(USER_ID);
+        dao.saveHistoryRecord(new HistoryRecord(DATE, "A", "запись", true));
+        MappedUserDataDao.release(USER_ID);
+        Path typesFile = directory.resolve("history_types.bin");
+        long intactSize = Files.size(typesFile);
+        // Длина типа записана, а его байты — нет
+        Files.write(typesFile, new byte[] {0, 0, 0, 9, 'B'}, StandardOpenOption.APPEND);
+
+        MappedUserDataDao reopened = MappedUserDataDao.forUser(USER_ID);
+
+        assertEquals(intactSize, Files.size(typesFile));
+        reopened.saveHistoryRecord(new HistoryRecord(DATE, "B", "запись", true));
+        MappedUserDataDao.release(USER_ID);
+        List<HistoryRecord> records = MappedUserDataDao.forUser(USER_ID).getHistoryRecords();
+        assertEquals(List.of("A", "B"), records.stream().map(HistoryRecord::getOperationType).toList());
+    }
+
+    private void deleteDirectory() throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.fitness_tracker.dao;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.util.ByteStreamWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PgCopyEncoderTest {
+    @Test
+    void textEscapesCopyControlCharacters() throws SQLException {
+        assertEquals("a\\\\b\\tc\\nd\\re\t\\N\n", encode(encoder -> {
+            encoder.text("a\\b\tc\nd\re").text(null).endRow();
+        }));
+    }
+
+    @Test
+    void textIsEncodedAsUtf8() throws SQLException {
+        String value = "вес €🏃 ok";
+        assertEquals(value + "\n", encode(encoder -> {
+            encoder.text(value).endRow();
+        }));
+        assertEquals("a?b\n", encode(encoder -> {
+            encoder.text("a\uD800b").endRow();
+        }));
+    }
+
+    @Test
+    void numbersDatesAndBooleans() throws SQLException {
+        assertEquals("0\t7\t123456\t-42\t-2147483648\t1.5\tNaN\tt\tf\n", encode(encoder -> {
+            encoder.number(0).number(7).number(123456).number(-42).number(Integer.MIN_VALUE)
+                    .number(1.5).number(Double.NaN).bool(true).bool(false).endRow();
+        }));
+        assertEquals("2024-03-05\t0005-01-09\t10000-12-31\t\\N\n", encode(encoder -> {
+            encoder.date(LocalDate.of(2024, 3, 5)).date(LocalDate.of(5, 1, 9))
+                    .date(LocalDate.of(10000, 12, 31)).date(null).endRow();
+        }));
+    }
+
+    @Test
+    void rowsLargerThanBufferAreSentInBlocks() throws SQLException {
+        String details = "детали\t".repeat(20_000);
+        RecordingCopyIn copyIn = new RecordingCopyIn();
+        PgCopyEncoder encoder = new PgCopyEncoder(copyIn);
+        for (int i = 0; i < 3; i++) {
+            encoder.number(i).text(details).endRow();
+        }
+
+        assertEquals(3, encoder.finish());
+
+        String row = "\t" + details.replace("\t", "\\t") + "\n";
+        assertEquals("0" + row + "1" + row + "2" + row, copyIn.text());
+        assertTrue(copyIn.writes > 1);
+    }
+
+    @Test
+    void cancelStopsActiveCopy() throws SQLException {
+        RecordingCopyIn copyIn = new RecordingCopyIn();
+        PgCopyEncoder encoder = new PgCopyEncoder(copyIn);
+        encoder.text("a").endRow();
+
+        encoder.cancel();
+        encoder.cancel();
+
+        assertFalse(copyIn.isActive());
+        assertEquals(1, copyIn.cancels);
+    }
+
+    @FunctionalInterface
+    private interface Rows {
+        void write(PgCopyEncoder encoder) throws SQLException;
+    }
+
+    private static String encode(Rows rows) throws SQLException {
+        RecordingCopyIn copyIn = new RecordingCopyIn();
+        PgCopyEncoder encoder = new PgCopyEncoder(copyIn);
+        rows.write(encoder);
+        encoder.finish();
+        return copyIn.text();
+    }
+
+    /**
+     * Сохраняет переданные байты вместо отправки серверу; количество строк — количество переводов строки.
+     */
+    private static final class RecordingCopyIn implements CopyIn {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private boolean active = true;
+        private int writes;
+        private int cancels;
+
+        String text() {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void writeToCopy(byte[] buf, int off, int siz) {
+            bytes.write(buf, off, siz);
+            writes++;
+        }
+
+        @Override
+        public void writeToCopy(ByteStreamWriter from) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void flushCopy() {
+        }
+
+        @Override
+        public long endCopy() {
+            active = false;
+            return text().chars().filter(c -> c == '\n').count();
+        }
+
+        @Override
+        public int getFieldCount() {
+            return 0;
+        }
+
+        @Override
+        public int getFormat() {
+            return 0;
+        }
+
+        @Override
+        public int getFieldFormat(int field) {
+            return 0;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public void cancelCopy() {
+            active = false;
+            cancels++;
+        }
+
+        @Override
+        public long getHandledRowCount() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.fitness_tracker.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptySnapshotReportsZeros() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getMeanNanos());
+        assertEquals(0, snapshot.getPercentileNanos(0.99));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10, snapshot.getCount());
+        assertEquals(10, snapshot.getMaxNanos());
+        assertEquals(5.5, snapshot.getMeanNanos());
+        assertEquals(5, snapshot.getPercentileNanos(0.5));
+        assertEquals(10, snapshot.getPercentileNanos(1.0));
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getPercentileNanos(0.5));
+    }
+
+    @Test
+    void bucketBoundsCoverValuesWithinRelativeError() {
+        long[] values = {16, 17, 31, 32, 1_000, 123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.index(value);
+            long upper = LatencyHistogram.upperBound(index);
+            assertTrue(upper >= value, "upper bound below value " + value);
+            assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value,
+                    "value " + value + " fits a lower bucket");
+            assertTrue(upper - value <= value / LatencyHistogram.SUB_BUCKETS, "bucket too wide for " + value);
+        }
+    }
+
+    @Test
+    void percentileIsUpperEstimateCappedByMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000);
+        }
+        histogram.record(1_000_000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        long p50 = snapshot.getPercentileNanos(0.5);
+        assertTrue(p50 >= 1_000 && p50 <= 1_000 + 1_000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(1_000_000, snapshot.getPercentileNanos(1.0));
+    }
+
+    @Test
+    void resetClearsCounts() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMaxNanos());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.fitness_tracker.server;
+
+import com.example.fitness_tracker.dao.InMemoryUserDataDao;
+import com.example.fitness_tracker.dao.UserDataDao;
+import com.example.fitness_tracker.dao.UserDataDaoFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class UserServicesTest {
+
+    @Test
+    void reusesServiceOfOpenUser() {
+        UserServices services = new UserServices(new RecordingFactory(), "test", 2);
+
+        UserServices.Lease first = services.acquire(1);
+        first.close();
+        UserServices.Lease second = services.acquire(1);
+
+        assertSame(first.getService(), second.getService());
+        assertEquals(1, services.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedIdleUsers() {
+        RecordingFactory factory = new RecordingFactory();
+        UserServices services = new UserServices(factory, "test", 2);
+
+        services.acquire(1).close();
+        services.acquire(2).close();
+        services.acquire(1).close();
+        services.acquire(3).close();
+
+        assertEquals(2, services.size());
+        assertEquals(List.of(2), factory.released);
+    }
+
+    @Test
+    void keepsUsersWithRequestsInProgress() {
+        RecordingFactory factory = new RecordingFactory();
+        UserServices services = new UserServices(factory, "test", 1);
+
+        UserServices.Lease busy = services.acquire(1);
+        UserServices.Lease other = services.acquire(2);
+
+        assertEquals(2, services.size());
+        assertEquals(List.of(), factory.released);
+
+        busy.close();
+        assertEquals(List.of(1), factory.released);
+        other.close();
+        other.close();
+        assertEquals(1, services.size());
+        assertEquals(List.of(1), factory.released);
+    }
+
+    private static final class RecordingFactory implements UserDataDaoFactory {
+        private final List<Integer> released = new ArrayList<>();
+
+        @Override
+        public UserDataDao forUser(int userId) {
+            return InMemoryUserDataDao.forUser(userId);
+        }
+
+        @Override
+        public void release(int userId) {
+            released.add(userId);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.fitness_tracker.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvRowReaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void quotedFieldsKeepDelimitersQuotesAndLineBreaks() throws IOException {
+        List<List<String>> rows = read("a,b,c\n"
+                + "\"x, y\",\"он сказал \"\"да\"\"\",\"две\r\nстроки\"\n"
+                + "\"\",,\"\"\"\"\n");
+
+        assertEquals(List.of(
+                List.of("a", "b", "c"),
+                List.of("x, y", "он сказал \"да\"", "две\r\nстроки"),
+                List.of("", "", "\"")), rows);
+    }
+
+    @Test
+    void crlfAndBlankLinesDoNotProduceRows() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        List<List<String>> rows = new ArrayList<>();
+        reader("a,b\r\n1,2\r\n\r\n3,\r\n4,5").read((sheet, rowNumber, cells) -> {
+            numbers.add(rowNumber);
+            rows.add(List.copyOf(cells));
+        });
+
+        assertEquals(List.of(1, 2, 4, 5), numbers);
+        assertEquals(List.of(List.of("a", "b"), List.of("1", "2"), List.of("3", ""), List.of("4", "5")), rows);
+    }
+
+    @Test
+    void bomIsSkippedAndSemicolonDelimiterDetected() throws IOException {
+        List<List<String>> rows = read("\uFEFFДата;Вес;Комментарий\n2024-01-01;80,5;\"a;b\"\n");
+
+        assertEquals(List.of(
+                List.of("Дата", "Вес", "Комментарий"),
+                List.of("2024-01-01", "80,5", "a;b")), rows);
+    }
+
+    @Test
+    void sheetIsFileName() throws IOException {
+        List<String> sheets = new ArrayList<>();
+        reader("a\n").read((sheet, rowNumber, cells) -> sheets.add(sheet));
+
+        assertEquals(List.of("data.csv"), sheets);
+    }
+
+    @Test
+    void unclosedQuoteFails() {
+        assertThrows(IOException.class, () -> read("a,b\n1,\"не закрыта\n"));
+    }
+
+    @Test
+    void rowsSpanningReadBuffersAreJoined() throws IOException {
+        StringBuilder csv = new StringBuilder("id,details\r\n");
+        for (int i = 0; i < 20_000; i++) {
+            csv.append(i).append(",\"запись ").append(i).append(",\r\nс \"\"кавычками\"\"\"\r\n");
+        }
+
+        List<List<String>> rows = read(csv.toString());
+
+        assertEquals(20_001, rows.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(List.of(Integer.toString(i), "запись " + i + ",\r\nс \"кавычками\""), rows.get(i + 1));
+        }
+    }
+
+    private List<List<String>> read(String content) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        reader(content).read((sheet, rowNumber, cells) -> rows.add(List.copyOf(cells)));
+        return rows;
+    }
+
+    private CsvRowReader reader(String content) throws IOException {
+        Path file = dir.resolve("data.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return new CsvRowReader(file);
+    }
+}
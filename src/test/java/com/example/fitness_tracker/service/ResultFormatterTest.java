@@ -0,0 +1,90 @@
+package com.example.fitness_tracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultFormatterTest {
+    private static final Locale RU = Locale.forLanguageTag("ru-RU");
+
+    private final ResultFormatter formatter = new ResultFormatter(RU);
+
+    @Test
+    void fixedMatchesStringFormat() {
+        double[] values = {0, -0.0, 0.005, 0.015, 1.005, 2.675, 19.185, -19.185, 0.125, 99.995, 123456.789,
+                -0.004, 1e-9, 1e15 + 0.5, 9.3e18, 1e300, Double.MIN_VALUE, Double.MAX_VALUE};
+        for (double value : values) {
+            for (int digits = 0; digits <= ResultFormatter.MAX_FRACTION_DIGITS; digits++) {
+                assertEquals(String.format(RU, "%." + digits + "f", value),
+                        formatter.appendFixed(new StringBuilder(), value, digits).toString(),
+                        value + " with " + digits + " digits");
+            }
+        }
+    }
+
+    @Test
+    void fixedMatchesStringFormatForRandomValues() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+            int digits = random.nextInt(ResultFormatter.MAX_FRACTION_DIGITS + 1);
+            assertEquals(String.format(RU, "%." + digits + "f", value),
+                    formatter.appendFixed(new StringBuilder(), value, digits).toString());
+        }
+    }
+
+    @Test
+    void fixedUsesLocaleSeparator() {
+        assertEquals("1.50", new ResultFormatter(Locale.US).appendFixed(new StringBuilder(), 1.5, 2).toString());
+        assertEquals("1,50", formatter.appendFixed(new StringBuilder(), 1.5, 2).toString());
+        assertEquals("NaN", formatter.appendFixed(new StringBuilder(), Double.NaN, 2).toString());
+        assertEquals("-Infinity", formatter.appendFixed(new StringBuilder(), Double.NEGATIVE_INFINITY, 2).toString());
+    }
+
+    @Test
+    void fixedRejectsInvalidDigits() {
+        assertThrows(IllegalArgumentException.class, () -> formatter.appendFixed(new StringBuilder(), 1, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> formatter.appendFixed(new StringBuilder(), 1, ResultFormatter.MAX_FRACTION_DIGITS + 1));
+    }
+
+    @Test
+    void appendsToExistingText() {
+        StringBuilder out = new StringBuilder("Итого: ");
+
+        formatter.appendConversion(out, Conversion.ofMiles(10));
+
+        assertEquals("Итого: 10,00 миль = 16,09 км", out.toString());
+    }
+
+    @Test
+    void formatsProgress() {
+        ProgressResult result = ProgressResult.of(80, 75, 35);
+
+        String text = formatter.formatProgress(result);
+
+        assertTrue(text.startsWith("Для цели нужно терять "
+                + String.format(RU, "%.2f", result.getWeeklyLoss()) + " кг/неделю ("
+                + String.format(RU, "%.2f", result.getDailyLoss()) + " кг/день)\n"), text);
+        assertEquals("Ошибка: срок должен быть в будущем!", formatter.formatProgress(ProgressResult.of(80, 75, 0)));
+    }
+
+    @Test
+    void formatsEveryLoadLevel() {
+        for (int workouts = 0; workouts <= 10; workouts++) {
+            LoadAssessment assessment = LoadAssessment.of(workouts, 60);
+            String expected = switch (assessment.getLevel()) {
+                case OVERTRAINING -> "Перетренированность! Отдых 2-3 дня.";
+                case HIGH -> "Высокая нагрузка. Отдых 1-2 дня.";
+                case LOW -> "Можно добавить 1-2 тренировки.";
+                case OPTIMAL -> "Оптимальная нагрузка!";
+            };
+            assertEquals(expected, formatter.formatLoad(assessment));
+        }
+    }
+}